@@ -1343,6 +1343,7 @@ class CapacityTaskScheduler extends TaskScheduler {
      * becomes expensive, do it once every few heartbeats only.
      */ 
     updateQSIObjects(mapClusterCapacity, reduceClusterCapacity);
+    memoryMatcher.clearCache();
     List<Task> result = new ArrayList<Task>();
     if (assignMultipleTasks) {
       addReduceTask(taskTracker, result, maxReduceSlots, currentReduceSlots);
@@ -1423,6 +1424,11 @@ class CapacityTaskScheduler extends TaskScheduler {
     
     // setup scheduler specific job information
     preInitializeJob(job);
+
+    // let the poller pick up the new job without waiting for its next poll
+    if (initializationPoller != null) {
+      initializationPoller.wakeUp();
+    }
     
     LOG.debug("Job " + job.getJobID().toString() + " is added under user " 
               + job.getProfile().getUser() + ", user now has " + i + " jobs");
@@ -1468,6 +1474,10 @@ class CapacityTaskScheduler extends TaskScheduler {
       LOG.debug("User still has " + i + " jobs, number of users = "
                 + qsi.numJobsByUser.size());
     }
+    // a completed job may allow more jobs of its queue to be initialized
+    if (initializationPoller != null) {
+      initializationPoller.wakeUp();
+    }
   }
   
   @Override
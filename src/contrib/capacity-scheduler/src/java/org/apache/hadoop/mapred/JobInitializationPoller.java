@@ -82,6 +82,15 @@ public class JobInitializationPoller extends Thread {
   private long sleepInterval;
   private int poolSize;
 
+  /**
+   * Lock used by the poller to wait between polls. Waiting on it instead of
+   * sleeping lets job additions and completions wake the poller up, so that
+   * jobs get initialized as soon as they can be, without polling queues more
+   * often.
+   */
+  private final Object pollLock = new Object();
+  private boolean pollRequested = false; // guarded by pollLock
+
   /**
    * A worker thread that initializes jobs in one or more queues assigned to
    * it.
@@ -96,6 +105,12 @@ public class JobInitializationPoller extends Thread {
     private volatile boolean startIniting;
     private AtomicInteger currentJobCount = new AtomicInteger(0); // number of jobs to initialize
 
+    /**
+     * Lock used by the worker to wait for jobs to initialize. It is not the
+     * thread's own monitor, which Thread.join() also waits and notifies on.
+     */
+    private final Object jobsLock = new Object();
+
     /**
      * The hash map which maintains relationship between queue to jobs to
      * initialize per queue.
@@ -113,7 +128,12 @@ public class JobInitializationPoller extends Thread {
         initializeJobs();  
         try {
           if (startIniting) {
-            Thread.sleep(sleepInterval);
+            synchronized (jobsLock) {
+              // woken up early by addJobsToQueue
+              if (currentJobCount.get() == 0) {
+                jobsLock.wait(sleepInterval);
+              }
+            }
           } else {
             break;
           }
@@ -197,6 +217,9 @@ public class JobInitializationPoller extends Thread {
         jobs.put(schedInfo, job);
         currentJobCount.getAndIncrement();
       }
+      synchronized (jobsLock) {
+        jobsLock.notifyAll();
+      }
     }
 
     void addQueue(String queue) {
@@ -305,7 +328,12 @@ public class JobInitializationPoller extends Thread {
         cleanUpInitializedJobsList();
         selectJobsToInitialize();
         if (!this.isInterrupted()) {
-          Thread.sleep(sleepInterval);
+          synchronized (pollLock) {
+            if (!pollRequested) {
+              pollLock.wait(sleepInterval);
+            }
+            pollRequested = false;
+          }
         }
       } catch (InterruptedException e) {
         LOG.error("Job Initialization poller interrupted"
@@ -314,6 +342,17 @@ public class JobInitializationPoller extends Thread {
     }
   }
 
+  /**
+   * Ask the poller to select jobs to initialize now rather than at the end
+   * of its sleep interval. Called when jobs are added or completed.
+   */
+  void wakeUp() {
+    synchronized (pollLock) {
+      pollRequested = true;
+      pollLock.notifyAll();
+    }
+  }
+
   /**
    * The key method which does selecting jobs to be initalized across 
    * queues and assign those jobs to their appropriate init-worker threads.
@@ -18,11 +18,11 @@
 package org.apache.hadoop.mapred;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -67,6 +67,12 @@ class JobQueuesManager extends JobInProgressListener {
     boolean supportsPriorities;
     Map<JobSchedulingInfo, JobInProgress> waitingJobs; // for waiting jobs
     Map<JobSchedulingInfo, JobInProgress> runningJobs; // for running jobs
+    // Read-only copies of the job lists, handed out to the scheduler on
+    // every heartbeat. They are rebuilt only after the lists change, so
+    // that heartbeats don't copy every running job of every queue.
+    // Guarded by the lock on the corresponding list.
+    private Collection<JobInProgress> waitingJobsView = null;
+    private Collection<JobInProgress> runningJobsView = null;
     
     public Comparator<JobSchedulingInfo> comparator;
     
@@ -85,39 +91,55 @@ class JobQueuesManager extends JobInProgressListener {
     
     Collection<JobInProgress> getWaitingJobs() {
       synchronized (waitingJobs) {
-        return Collections.unmodifiableCollection(
-            new LinkedList<JobInProgress>(waitingJobs.values()));
+        if (waitingJobsView == null) {
+          waitingJobsView = Collections.unmodifiableCollection(
+              new ArrayList<JobInProgress>(waitingJobs.values()));
+        }
+        return waitingJobsView;
       }
     }
     
     Collection<JobInProgress> getRunningJobs() {
       synchronized (runningJobs) {
-       return Collections.unmodifiableCollection(
-           new LinkedList<JobInProgress>(runningJobs.values())); 
+        if (runningJobsView == null) {
+          runningJobsView = Collections.unmodifiableCollection(
+              new ArrayList<JobInProgress>(runningJobs.values()));
+        }
+        return runningJobsView;
       }
     }
     
     void addRunningJob(JobInProgress job) {
       synchronized (runningJobs) {
        runningJobs.put(new JobSchedulingInfo(job),job); 
+       runningJobsView = null;
       }
     }
     
     JobInProgress removeRunningJob(JobSchedulingInfo jobInfo) {
       synchronized (runningJobs) {
-        return runningJobs.remove(jobInfo); 
+        JobInProgress job = runningJobs.remove(jobInfo);
+        if (job != null) {
+          runningJobsView = null;
+        }
+        return job;
       }
     }
     
     JobInProgress removeWaitingJob(JobSchedulingInfo schedInfo) {
       synchronized (waitingJobs) {
-        return waitingJobs.remove(schedInfo);
+        JobInProgress job = waitingJobs.remove(schedInfo);
+        if (job != null) {
+          waitingJobsView = null;
+        }
+        return job;
       }
     }
     
     void addWaitingJob(JobInProgress job) {
       synchronized (waitingJobs) {
         waitingJobs.put(new JobSchedulingInfo(job), job);
+        waitingJobsView = null;
       }
     }
     
@@ -27,10 +27,59 @@ class MemoryMatcher {
   private static final Log LOG = LogFactory.getLog(MemoryMatcher.class);
   private CapacityTaskScheduler scheduler;
 
+  // Memory reserved on the last tracker looked at, per task type. A single
+  // heartbeat checks the memory requirements of many jobs against the same
+  // tracker, so the tracker's task reports are only walked once. The cached
+  // value is used only for the same status object with the same number of
+  // task reports.
+  private TaskTrackerStatus cachedTracker = null;
+  private int cachedNumTaskReports = -1;
+  private Long cachedMemReservedForMaps = null;
+  private Long cachedMemReservedForReduces = null;
+
   public MemoryMatcher(CapacityTaskScheduler capacityTaskScheduler) {
     this.scheduler = capacityTaskScheduler;
   }
 
+  /**
+   * Forget the memory reserved on the last tracker looked at. Called at the
+   * start of each heartbeat.
+   */
+  synchronized void clearCache() {
+    cachedTracker = null;
+    cachedNumTaskReports = -1;
+    cachedMemReservedForMaps = null;
+    cachedMemReservedForReduces = null;
+  }
+
+  /**
+   * Get the memory reserved by the tasks on the given TaskTracker, reusing
+   * the value computed for the same tracker during this heartbeat if the
+   * tracker's tasks did not change.
+   */
+  synchronized Long getCachedMemReservedForTasks(
+      TaskTrackerStatus taskTracker, TaskType taskType) {
+    int numTaskReports = taskTracker.getTaskReports().size();
+    if (taskTracker != cachedTracker ||
+        numTaskReports != cachedNumTaskReports) {
+      clearCache();
+      cachedTracker = taskTracker;
+      cachedNumTaskReports = numTaskReports;
+    }
+    if (taskType == TaskType.MAP) {
+      if (cachedMemReservedForMaps == null) {
+        cachedMemReservedForMaps = getMemReservedForTasks(taskTracker, taskType);
+      }
+      return cachedMemReservedForMaps;
+    } else {
+      if (cachedMemReservedForReduces == null) {
+        cachedMemReservedForReduces =
+          getMemReservedForTasks(taskTracker, taskType);
+      }
+      return cachedMemReservedForReduces;
+    }
+  }
+
   boolean isSchedulingBasedOnMemEnabled() {
     if (scheduler.getLimitMaxMemForMapSlot()
                                   == JobConf.DISABLED_MEMORY_LIMIT
@@ -102,7 +151,7 @@ class MemoryMatcher {
       return true;
     }
 
-    Long memUsedOnTT = getMemReservedForTasks(taskTracker, taskType);
+    Long memUsedOnTT = getCachedMemReservedForTasks(taskTracker, taskType);
     long totalMemUsableOnTT = 0;
     long memForThisTask = 0;
     if (taskType == TaskType.MAP) {
@@ -1226,6 +1226,46 @@ public class TestCapacityScheduler extends TestCase {
         subJobsList.get("u1").containsAll(jobs));
   }
   
+  // test that the job lists handed out by JobQueuesManager are reused
+  // across heartbeats, and are refreshed when the queues change
+  public void testJobQueueViews() throws Exception {
+    String[] qs = { "default" };
+    taskTrackerManager.addQueues(qs);
+    ArrayList<FakeQueueInfo> queues = new ArrayList<FakeQueueInfo>();
+    queues.add(new FakeQueueInfo("default", 100.0f, true, 100));
+    resConf.setFakeQueues(queues);
+    scheduler.setResourceManagerConf(resConf);
+    scheduler.start();
+    submitJobs(1, 2, "default");
+
+    JobQueuesManager mgr = scheduler.jobQueuesManager;
+    while(mgr.getWaitingJobs("default").size() < 2){
+      Thread.sleep(1);
+    }
+    raiseStatusChangeEvents(mgr);
+
+    Collection<JobInProgress> running = mgr.getRunningJobQueue("default");
+    assertEquals(2, running.size());
+    assertSame("Running jobs view should be reused", running,
+        mgr.getRunningJobQueue("default"));
+    try {
+      running.clear();
+      fail("Running jobs view should not be modifiable");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+
+    // completing a job should give out a fresh view
+    JobInProgress job = running.iterator().next();
+    taskTrackerManager.finalizeJob(job, JobStatus.SUCCEEDED);
+    Collection<JobInProgress> after = mgr.getRunningJobQueue("default");
+    assertNotSame(running, after);
+    assertEquals(1, after.size());
+    assertFalse(after.contains(job));
+    // the earlier view is a snapshot and is left untouched
+    assertEquals(2, running.size());
+  }
+
   //Basic test to test capacity allocation across the queues which have no
   //capacity configured.
   
@@ -77,6 +77,7 @@ public class FairScheduler extends TaskScheduler {
   protected volatile boolean running; // Are we running?
   protected JobComparator jobComparator; // How to sort the jobs
   protected boolean assignMultiple; // Simultaneously assign map and reduce?
+  protected boolean batchAssignment; // Fill all free map slots in one pass?
   protected boolean sizeBasedWeight; // Give larger weights to larger jobs
   protected boolean waitForMapsBeforeLaunchingReduces = true;
   private Clock clock;
@@ -105,7 +106,31 @@ public class FairScheduler extends TaskScheduler {
 
   private FairSchedulerMetricsInst fairSchedulerMetrics = null;
 
-  
+  // Incremental update state. When enabled, per-job task counts are only
+  // recomputed for jobs whose counters changed, min slots are only
+  // recomputed for pools whose jobs changed, and fair shares are only
+  // recomputed when some pool changed or the cluster size changed.
+  protected boolean incrementalUpdate = true;
+  // Force a full recount of all jobs every this many updates
+  protected int fullUpdateInterval = 20;
+  private int updatesSinceFullUpdate = 0;
+  private boolean fullUpdate = true;        // Is the current update a full one?
+  private Set<String> dirtyPools = new HashSet<String>();
+  private Map<String, Integer> lastPoolMapAllocs =
+    new HashMap<String, Integer>();
+  private Map<String, Integer> lastPoolReduceAllocs =
+    new HashMap<String, Integer>();
+  private int lastTotalMapSlots = -1;
+  private int lastTotalReduceSlots = -1;
+
+  // Index from host (or rack) name to the runnable jobs that have
+  // non-running maps with local data there. Only kept in batch assignment
+  // mode. Entries may be stale; they are pruned when a job fails to launch
+  // a node-local map on the host.
+  private Map<String, Set<JobInProgress>> localJobsByHost =
+    new HashMap<String, Set<JobInProgress>>();
+
+
   /**
    * Class holding summary computations over all JobInfo objects
    */
@@ -159,6 +184,25 @@ public class FairScheduler extends TaskScheduler {
      long lastTimeAtReduceMinShare;   // Similar for reduces.
      long lastTimeAtMapHalfFairShare; // When was the job last at half fair maps?
      long lastTimeAtReduceHalfFairShare;  // Similar for reduces.
+     // Variables used for incremental updates
+     boolean countsInited = false; // Have the task counts been computed?
+     int lastRunningMapTasks;      // JobInProgress counters at last recount
+     int lastFinishedMapTasks;
+     int lastPendingMaps;
+     int lastRunningReduceTasks;
+     int lastFinishedReduceTasks;
+     int lastPendingReduces;
+     int countedRunningMaps;       // Task counts at last recount, before
+     int countedRunningReduces;    // any adjustment made by assignTasks
+     int countedNeededMaps;
+     int countedNeededReduces;
+     boolean lastRunnable = false; // Values used at the last min slots update
+     int lastRunnableMaps = -1;
+     int lastRunnableReduces = -1;
+     double lastMapWeight = -1;
+     double lastReduceWeight = -1;
+     // Locations under which the job is indexed in localJobsByHost
+     Collection<String> indexedLocations = null;
 
      public JobInfo(long currentTime) {
        lastTimeAtMapMinShare = currentTime;
@@ -289,6 +333,8 @@ public class FairScheduler extends TaskScheduler {
       preemptionEnabled = conf.getBoolean(
           "mapred.fairscheduler.preemption", false);
 
+      batchAssignment = assignMultiple && conf.getBoolean(
+          "mapred.fairscheduler.assignmultiple.batch", false);
       mapPerHeartBeat =
         conf.getInt("mapred.fairscheduler.mapsperheartbeat", 1);
       reducePerHeartBeat =
@@ -304,6 +350,10 @@ public class FairScheduler extends TaskScheduler {
           "mapred.fairscheduler.locality.delay.racklocal", defaultDelay);
       dumpStatusPeriod = conf.getLong(
           "mapred.fairscheduler.dump.status.period", dumpStatusPeriod);
+      incrementalUpdate = conf.getBoolean(
+          "mapred.fairscheduler.update.incremental", incrementalUpdate);
+      fullUpdateInterval = conf.getInt(
+          "mapred.fairscheduler.update.full.interval", fullUpdateInterval);
       if (defaultDelay == -1 &&
           (localityDelayNodeLocal == -1 || localityDelayRackLocal == -1)) {
          autoComputeLocalityDelay = true; // Compute from heartbeat interval
@@ -401,6 +451,7 @@ public class FairScheduler extends TaskScheduler {
         JobInfo info = new JobInfo(clock.getTime());
         info.poolName = poolMgr.getPoolName(job);
         infos.put(job, info);
+        dirtyPools.add(info.poolName);
         if (updateThread != null)
           updateThread.interrupt();
         else
@@ -412,7 +463,11 @@ public class FairScheduler extends TaskScheduler {
     public void jobRemoved(JobInProgress job) {
       synchronized (FairScheduler.this) {
         poolMgr.removeJob(job);
-        infos.remove(job);
+        JobInfo info = infos.remove(job);
+        if (info != null) {
+          dirtyPools.add(info.poolName);
+          unindexJobLocations(job, info);
+        }
         if(sortedJobsByMapNeed != null) 
           sortedJobsByMapNeed.remove(job);
         if(sortedJobsByReduceNeed != null) 
@@ -499,9 +554,22 @@ public class FairScheduler extends TaskScheduler {
         break;
       }
       LinkedList<JobInProgress> jobsToReinsert = new LinkedList<JobInProgress> ();
+      int maxTasks;
+      if (taskType == TaskType.MAP) {
+        maxTasks = batchAssignment ? availableMapsOnTT :
+          Math.min(Math.max(mapPerHeartBeat, 1), availableMapsOnTT);
+      } else {
+        maxTasks = Math.min(Math.max(reducePerHeartBeat, 1),
+                            availableReducesOnTT);
+      }
+      if (taskType == TaskType.MAP && batchAssignment) {
+        // Fill as many slots as possible with node-local maps first
+        numTasks += assignLocalMaps(trackerStatus, clusterStatus, candidates,
+            jobsToReinsert, tasks, maxTasks);
+      }
       Iterator<JobInProgress> iterator = candidates.iterator();
 
-      while (iterator.hasNext()) {
+      while (numTasks < maxTasks && iterator.hasNext()) {
         JobInProgress job = iterator.next();
 
         if (job.getStatus().getRunState() != JobStatus.RUNNING) {
@@ -537,21 +605,7 @@ public class FairScheduler extends TaskScheduler {
         }
         // Update information when obtained a task
         if (task != null) {
-          // Update the JobInfo for this job so we account for the launched
-          // tasks during this update interval and don't try to launch more
-          // tasks than the job needed on future heartbeats
-          if (taskType == TaskType.MAP) {
-            info.runningMaps++;
-            info.neededMaps--;
-            infosummary.totalRunningMaps++;
-            infosummary.totalNeededMaps--;
-          } else {
-            info.runningReduces++;
-            info.neededReduces--;
-            infosummary.totalRunningReduces++;
-            infosummary.totalNeededReduces--;
-          }
-          poolMgr.incRunningTasks(info.poolName, taskType, 1);
+          taskAssigned(info, taskType);
           tasks.add(task);
           numTasks++;
 
@@ -569,14 +623,6 @@ public class FairScheduler extends TaskScheduler {
             return tasks;
           }
 
-          if (numTasks >= ((taskType == TaskType.MAP)
-                          ? mapPerHeartBeat : reducePerHeartBeat)) {
-            break;
-          }
-          if (numTasks >= ((taskType == TaskType.MAP)
-                          ? availableMapsOnTT : availableReducesOnTT)) {
-            break;
-          }
         }
       }
 
@@ -588,6 +634,125 @@ public class FairScheduler extends TaskScheduler {
     return tasks.isEmpty() ? null : tasks;
   }
 
+  /**
+   * Update the JobInfo of a job that was just given a task so we account for
+   * the launched tasks during this update interval and don't try to launch
+   * more tasks than the job needed on future heartbeats.
+   */
+  private void taskAssigned(JobInfo info, TaskType taskType) {
+    if (taskType == TaskType.MAP) {
+      info.runningMaps++;
+      info.neededMaps--;
+      infosummary.totalRunningMaps++;
+      infosummary.totalNeededMaps--;
+    } else {
+      info.runningReduces++;
+      info.neededReduces--;
+      infosummary.totalRunningReduces++;
+      infosummary.totalNeededReduces--;
+    }
+    poolMgr.incRunningTasks(info.poolName, taskType, 1);
+  }
+
+  /**
+   * Assign node-local maps on a tracker to the jobs that have local data on
+   * it, going through the candidate jobs in sorted order and giving each job
+   * as many node-local maps as it can run before moving to the next job.
+   * Jobs given tasks are removed from <code>candidates</code> and added to
+   * <code>jobsToReinsert</code> if they still need tasks.
+   * @return the number of tasks assigned
+   */
+  private int assignLocalMaps(TaskTrackerStatus tracker,
+      ClusterStatus clusterStatus, LinkedList<JobInProgress> candidates,
+      LinkedList<JobInProgress> jobsToReinsert, List<Task> tasks,
+      int maxTasks) throws IOException {
+    Set<JobInProgress> localJobs = localJobsByHost.get(tracker.getHost());
+    if (localJobs == null || localJobs.isEmpty()) {
+      return 0;
+    }
+    int numTasks = 0;
+    Iterator<JobInProgress> iterator = candidates.iterator();
+    while (numTasks < maxTasks && iterator.hasNext()) {
+      JobInProgress job = iterator.next();
+      if (!localJobs.contains(job) ||
+          job.getStatus().getRunState() != JobStatus.RUNNING ||
+          !loadMgr.canLaunchTask(tracker, job, TaskType.MAP)) {
+        continue;
+      }
+      JobInfo info = infos.get(job);
+      boolean assigned = false;
+      while (numTasks < maxTasks && neededTasks(info, TaskType.MAP) > 0 &&
+             !poolMgr.isMaxTasks(info.poolName, TaskType.MAP)) {
+        Task task = job.obtainNewMapTask(tracker,
+            clusterStatus.getTaskTrackers(),
+            taskTrackerManager.getNumberOfUniqueHosts(),
+            LocalityLevel.NODE.getCacheLevelCap());
+        if (task == null) {
+          // The job has no node-local maps left on this host
+          localJobs.remove(job);
+          break;
+        }
+        updateLastMapLocalityLevel(job, task, tracker);
+        taskAssigned(info, TaskType.MAP);
+        tasks.add(task);
+        numTasks++;
+        assigned = true;
+      }
+      if (assigned) {
+        iterator.remove();
+        if (neededTasks(job, TaskType.MAP) > 0)
+          jobsToReinsert.push(job);
+      }
+    }
+    return numTasks;
+  }
+
+  /**
+   * Index the runnable jobs that are not indexed yet by the locations of
+   * their non-running maps. On full updates, all jobs are re-indexed so that
+   * maps put back in the cache after failures are found again.
+   */
+  private void updateLocalityIndex() {
+    for (Map.Entry<JobInProgress, JobInfo> entry: infos.entrySet()) {
+      JobInProgress job = entry.getKey();
+      JobInfo info = entry.getValue();
+      if (!info.runnable ||
+          job.getStatus().getRunState() != JobStatus.RUNNING) {
+        continue;
+      }
+      if (info.indexedLocations != null && !fullUpdate) {
+        continue;
+      }
+      unindexJobLocations(job, info);
+      Collection<String> locations = job.getNonRunningMapLocations();
+      for (String location: locations) {
+        Set<JobInProgress> jobs = localJobsByHost.get(location);
+        if (jobs == null) {
+          jobs = new HashSet<JobInProgress>();
+          localJobsByHost.put(location, jobs);
+        }
+        jobs.add(job);
+      }
+      info.indexedLocations = locations;
+    }
+  }
+
+  private void unindexJobLocations(JobInProgress job, JobInfo info) {
+    if (info.indexedLocations == null) {
+      return;
+    }
+    for (String location: info.indexedLocations) {
+      Set<JobInProgress> jobs = localJobsByHost.get(location);
+      if (jobs != null) {
+        jobs.remove(job);
+        if (jobs.isEmpty()) {
+          localJobsByHost.remove(location);
+        }
+      }
+    }
+    info.indexedLocations = null;
+  }
+
   /**
    * reinsert a set of jobs into the sorted jobs for a given type (MAP/REDUCE)
    * the re-insertion happens in place.
@@ -867,19 +1032,32 @@ public class FairScheduler extends TaskScheduler {
         }
       }
       for (JobInProgress job: toRemove) {
-        infos.remove(job);
+        JobInfo info = infos.remove(job);
+        if (info != null) {
+          dirtyPools.add(info.poolName);
+          unindexJobLocations(job, info);
+        }
         poolMgr.removeJob(job);
       }
       // Update running jobs with deficits since last update, and compute new
       // slot allocations, weight, shares and task counts
       long now = clock.getTime();
       long timeDelta = now - lastUpdateTime;
+      fullUpdate = !incrementalUpdate ||
+          ++updatesSinceFullUpdate >= fullUpdateInterval;
+      if (fullUpdate) {
+        updatesSinceFullUpdate = 0;
+      }
       updateDeficits(timeDelta);
       updateRunnability();
       updateTaskCounts();
+      if (batchAssignment) {
+        updateLocalityIndex();
+      }
       updateWeights();
       updateMinSlots();
       updateFairShares(clusterStatus);
+      dirtyPools.clear();
       if (preemptionEnabled) {
         updatePreemptionVariables();
       }
@@ -1036,45 +1214,24 @@ public class FairScheduler extends TaskScheduler {
       JobInfo info = entry.getValue();
       if (job.getStatus().getRunState() != JobStatus.RUNNING)
         continue; // Job is still in PREP state and tasks aren't initialized
-      // Count maps
-      int totalMaps = job.numMapTasks;
-      int finishedMaps = 0;
-      int runningMaps = 0;
-      for (TaskInProgress tip :
-           job.getTasks(org.apache.hadoop.mapreduce.TaskType.MAP)) {
-        if (tip.isComplete()) {
-          finishedMaps += 1;
-        } else if (tip.isRunning()) {
-          runningMaps += tip.getActiveTasks().size();
-        }
+      if (fullUpdate || jobCountersChanged(job, info)) {
+        recountTasks(job, info);
       }
       info.totalInitedTasks = job.numMapTasks + job.numReduceTasks;
-      info.runningMaps = runningMaps;
-      infosummary.totalRunningMaps += runningMaps;
-      poolMgr.incRunningTasks(info.poolName, TaskType.MAP, runningMaps);
+      info.runningMaps = info.countedRunningMaps;
+      infosummary.totalRunningMaps += info.runningMaps;
+      poolMgr.incRunningTasks(info.poolName, TaskType.MAP, info.runningMaps);
       info.neededSpeculativeMaps =  taskSelector.neededSpeculativeMaps(job);
-      info.neededMaps = (totalMaps - runningMaps - finishedMaps
-          + info.neededSpeculativeMaps);
-      // Count reduces
-      int totalReduces = job.numReduceTasks;
-      int finishedReduces = 0;
-      int runningReduces = 0;
-      for (TaskInProgress tip :
-           job.getTasks(org.apache.hadoop.mapreduce.TaskType.REDUCE)) {
-        if (tip.isComplete()) {
-          finishedReduces += 1;
-        } else if (tip.isRunning()) {
-          runningReduces += tip.getActiveTasks().size();
-        }
-      }
-      info.runningReduces = runningReduces;
-      infosummary.totalRunningReduces += runningReduces;
-      poolMgr.incRunningTasks(info.poolName, TaskType.REDUCE, runningReduces);
+      info.neededMaps = info.countedNeededMaps + info.neededSpeculativeMaps;
+      info.runningReduces = info.countedRunningReduces;
+      infosummary.totalRunningReduces += info.runningReduces;
+      poolMgr.incRunningTasks(info.poolName, TaskType.REDUCE,
+                              info.runningReduces);
       if (job.scheduleReduces()) {
         info.neededSpeculativeReduces =
           taskSelector.neededSpeculativeReduces(job);
-        info.neededReduces = (totalReduces - runningReduces - finishedReduces
-            + info.neededSpeculativeReduces);
+        info.neededReduces = info.countedNeededReduces +
+          info.neededSpeculativeReduces;
       } else {
         info.neededReduces = 0;
       }
@@ -1090,6 +1247,64 @@ public class FairScheduler extends TaskScheduler {
     }
   }
 
+  /**
+   * Check whether the task counters of a job changed since its tasks were
+   * last counted. Scanning every TaskInProgress of every job is the most
+   * expensive part of an update, so it is skipped for jobs that did not
+   * launch, finish or fail any task since the previous update.
+   */
+  private boolean jobCountersChanged(JobInProgress job, JobInfo info) {
+    return !info.countsInited ||
+        info.lastRunningMapTasks != job.runningMaps() ||
+        info.lastFinishedMapTasks != job.finishedMaps() ||
+        info.lastPendingMaps != job.pendingMaps() ||
+        info.lastRunningReduceTasks != job.runningReduces() ||
+        info.lastFinishedReduceTasks != job.finishedReduces() ||
+        info.lastPendingReduces != job.pendingReduces();
+  }
+
+  /**
+   * Count the running and needed (non-speculative) tasks of a job by
+   * scanning its tasks, and remember the job counters they correspond to.
+   */
+  private void recountTasks(JobInProgress job, JobInfo info) {
+    info.lastRunningMapTasks = job.runningMaps();
+    info.lastFinishedMapTasks = job.finishedMaps();
+    info.lastPendingMaps = job.pendingMaps();
+    info.lastRunningReduceTasks = job.runningReduces();
+    info.lastFinishedReduceTasks = job.finishedReduces();
+    info.lastPendingReduces = job.pendingReduces();
+    info.countsInited = true;
+    // Count maps
+    int totalMaps = job.numMapTasks;
+    int finishedMaps = 0;
+    int runningMaps = 0;
+    for (TaskInProgress tip :
+         job.getTasks(org.apache.hadoop.mapreduce.TaskType.MAP)) {
+      if (tip.isComplete()) {
+        finishedMaps += 1;
+      } else if (tip.isRunning()) {
+        runningMaps += tip.getActiveTasks().size();
+      }
+    }
+    info.countedRunningMaps = runningMaps;
+    info.countedNeededMaps = totalMaps - runningMaps - finishedMaps;
+    // Count reduces
+    int totalReduces = job.numReduceTasks;
+    int finishedReduces = 0;
+    int runningReduces = 0;
+    for (TaskInProgress tip :
+         job.getTasks(org.apache.hadoop.mapreduce.TaskType.REDUCE)) {
+      if (tip.isComplete()) {
+        finishedReduces += 1;
+      } else if (tip.isRunning()) {
+        runningReduces += tip.getActiveTasks().size();
+      }
+    }
+    info.countedRunningReduces = runningReduces;
+    info.countedNeededReduces = totalReduces - runningReduces - finishedReduces;
+  }
+
   private void updateWeights() {
     // First, calculate raw weights for each job
     for (Map.Entry<JobInProgress, JobInfo> entry: infos.entrySet()) {
@@ -1138,10 +1353,13 @@ public class FairScheduler extends TaskScheduler {
   }
 
   private void updateMinSlots() {
-    // Clear old minSlots
+    markDirtyPools();
+    // Clear old minSlots of the jobs in pools that will be recomputed
     for (JobInfo info: infos.values()) {
-      info.minMaps = 0;
-      info.minReduces = 0;
+      if (dirtyPools.contains(info.poolName)) {
+        info.minMaps = 0;
+        info.minReduces = 0;
+      }
     }
     // For each pool, distribute its task allocation among jobs in it that need
     // slots. This is a little tricky since some jobs in the pool might not be
@@ -1153,6 +1371,9 @@ public class FairScheduler extends TaskScheduler {
     // need all its allocation, we leave the leftover slots for general use.
     PoolManager poolMgr = getPoolManager();
     for (Pool pool: poolMgr.getPools()) {
+      if (!dirtyPools.contains(pool.getName())) {
+        continue; // Nothing changed in this pool since the last update
+      }
       for (final TaskType type: MAP_AND_REDUCE) {
         Set<JobInProgress> jobs = new HashSet<JobInProgress>(pool.getJobs());
         int slotsLeft = poolMgr.getAllocation(pool.getName(), type);
@@ -1210,6 +1431,44 @@ public class FairScheduler extends TaskScheduler {
     }
   }
 
+  /**
+   * Add to <code>dirtyPools</code> every pool whose min slots may have
+   * changed since the last update: pools with a job whose runnability,
+   * runnable task count or weight changed, and pools whose allocation
+   * changed. On a full update every pool is considered dirty.
+   */
+  private void markDirtyPools() {
+    for (Map.Entry<JobInProgress, JobInfo> entry: infos.entrySet()) {
+      JobInProgress job = entry.getKey();
+      JobInfo info = entry.getValue();
+      int runnableMaps = runnableTasks(job, TaskType.MAP);
+      int runnableReduces = runnableTasks(job, TaskType.REDUCE);
+      if (info.lastRunnable != info.runnable ||
+          info.lastRunnableMaps != runnableMaps ||
+          info.lastRunnableReduces != runnableReduces ||
+          info.lastMapWeight != info.mapWeight ||
+          info.lastReduceWeight != info.reduceWeight) {
+        info.lastRunnable = info.runnable;
+        info.lastRunnableMaps = runnableMaps;
+        info.lastRunnableReduces = runnableReduces;
+        info.lastMapWeight = info.mapWeight;
+        info.lastReduceWeight = info.reduceWeight;
+        dirtyPools.add(info.poolName);
+      }
+    }
+    for (Pool pool: poolMgr.getPools()) {
+      String name = pool.getName();
+      Integer mapAlloc = poolMgr.getAllocation(name, TaskType.MAP);
+      Integer reduceAlloc = poolMgr.getAllocation(name, TaskType.REDUCE);
+      Integer lastMapAlloc = lastPoolMapAllocs.put(name, mapAlloc);
+      Integer lastReduceAlloc = lastPoolReduceAllocs.put(name, reduceAlloc);
+      if (fullUpdate || !mapAlloc.equals(lastMapAlloc) ||
+          !reduceAlloc.equals(lastReduceAlloc)) {
+        dirtyPools.add(name);
+      }
+    }
+  }
+
   /**
    * Give up to <code>tasksToGive</code> min slots to a job (potentially fewer
    * if either the job needs fewer slots or there aren't enough slots left).
@@ -1230,22 +1489,33 @@ public class FairScheduler extends TaskScheduler {
   }
 
   private void updateFairShares(ClusterStatus clusterStatus) {
+    int totalMapSlots = getTotalSlots(TaskType.MAP, clusterStatus);
+    int totalReduceSlots = getTotalSlots(TaskType.REDUCE, clusterStatus);
+    if (!fullUpdate && dirtyPools.isEmpty() &&
+        totalMapSlots == lastTotalMapSlots &&
+        totalReduceSlots == lastTotalReduceSlots) {
+      return; // No weight, min share or cluster size changed
+    }
+    lastTotalMapSlots = totalMapSlots;
+    lastTotalReduceSlots = totalReduceSlots;
     // Clear old fairShares
     for (JobInfo info: infos.values()) {
       info.mapFairShare = 0;
       info.reduceFairShare = 0;
     }
     // Assign new shares, based on weight and minimum share. This is done
-    // as follows. First, we split up the available slots between all
-    // jobs according to weight. Then if there are any jobs whose minSlots is
-    // larger than their fair allocation, we give them their minSlots and
-    // remove them from the list, and start again with the amount of slots
-    // left over. This continues until all jobs' minSlots are less than their
-    // fair allocation, and at this point we know that we've met everyone's
-    // guarantee and we've split the excess capacity fairly among jobs left.
-    for (TaskType type: TaskType.values()) {
+    // by water-filling. Conceptually, we split up the available slots between
+    // all jobs according to weight, and if there are any jobs whose minSlots
+    // is larger than their fair allocation, we give them their minSlots and
+    // split the slots left over between the remaining jobs. The jobs that get
+    // their minSlots are exactly those with the largest minSlots to weight
+    // ratios, so we sort the jobs by that ratio once and walk down the list
+    // until we find a job whose minSlots is met by its fair allocation. At
+    // that point we know that we've met everyone's guarantee and we can
+    // split the excess capacity fairly among the jobs left.
+    for (final TaskType type: TaskType.values()) {
       // Select only jobs that still need this type of task
-      HashSet<JobInfo> jobsLeft = new HashSet<JobInfo>();
+      List<JobInfo> jobsLeft = new ArrayList<JobInfo>();
       for (Entry<JobInProgress, JobInfo> entry: infos.entrySet()) {
         JobInProgress job = entry.getKey();
         JobInfo info = entry.getValue();
@@ -1253,53 +1523,71 @@ public class FairScheduler extends TaskScheduler {
           jobsLeft.add(info);
         }
       }
-      double slotsLeft = getTotalSlots(type, clusterStatus);
-      while (!jobsLeft.isEmpty()) {
-        double totalWeight = 0;
-        for (JobInfo info: jobsLeft) {
-          double weight = (type == TaskType.MAP ?
-              info.mapWeight : info.reduceWeight);
-          totalWeight += weight;
-        }
-        boolean recomputeSlots = false;
-        double oldSlots = slotsLeft; // Copy slotsLeft so we can modify it
-        for (Iterator<JobInfo> iter = jobsLeft.iterator(); iter.hasNext();) {
-          JobInfo info = iter.next();
-          double minSlots = (type == TaskType.MAP ?
-              info.minMaps : info.minReduces);
-          double weight = (type == TaskType.MAP ?
-              info.mapWeight : info.reduceWeight);
-          double fairShare = weight / totalWeight * oldSlots;
-          if (minSlots > fairShare) {
-            // Job needs more slots than its fair share; give it its minSlots,
-            // remove it from the list, and set recomputeSlots = true to
-            // remember that we must loop again to redistribute unassigned slots
-            if (type == TaskType.MAP)
-              info.mapFairShare = minSlots;
-            else
-              info.reduceFairShare = minSlots;
-            slotsLeft -= minSlots;
-            iter.remove();
-            recomputeSlots = true;
-          }
+      Collections.sort(jobsLeft, new Comparator<JobInfo>() {
+        public int compare(JobInfo j1, JobInfo j2) {
+          // Largest minSlots to weight ratio first
+          return Double.compare(minShareRatio(j2, type),
+                                minShareRatio(j1, type));
         }
-        if (!recomputeSlots) {
-          // All minimums are met. Give each job its fair share of excess slots.
-          for (JobInfo info: jobsLeft) {
-            double weight = (type == TaskType.MAP ?
-                info.mapWeight : info.reduceWeight);
-            double fairShare = weight / totalWeight * oldSlots;
-            if (type == TaskType.MAP)
-              info.mapFairShare = fairShare;
-            else
-              info.reduceFairShare = fairShare;
-          }
+      });
+      double slotsLeft = getTotalSlots(type, clusterStatus);
+      double totalWeight = 0;
+      for (JobInfo info: jobsLeft) {
+        totalWeight += shareWeight(info, type);
+      }
+      int firstUnmet = 0;
+      while (firstUnmet < jobsLeft.size()) {
+        JobInfo info = jobsLeft.get(firstUnmet);
+        double minSlots = minShare(info, type);
+        double weight = shareWeight(info, type);
+        double fairShare = weight / totalWeight * slotsLeft;
+        if (!(minSlots > fairShare)) {
           break;
         }
+        // Job needs more slots than its fair share; give it its minSlots
+        // and redistribute the remaining slots between the jobs after it
+        if (type == TaskType.MAP)
+          info.mapFairShare = minSlots;
+        else
+          info.reduceFairShare = minSlots;
+        slotsLeft -= minSlots;
+        totalWeight -= weight;
+        firstUnmet++;
+      }
+      // All minimums are met. Give each job its fair share of excess slots.
+      // Sum the remaining weights again to avoid accumulating rounding errors.
+      totalWeight = 0;
+      for (int i = firstUnmet; i < jobsLeft.size(); i++) {
+        totalWeight += shareWeight(jobsLeft.get(i), type);
+      }
+      for (int i = firstUnmet; i < jobsLeft.size(); i++) {
+        JobInfo info = jobsLeft.get(i);
+        double fairShare = shareWeight(info, type) / totalWeight * slotsLeft;
+        if (type == TaskType.MAP)
+          info.mapFairShare = fairShare;
+        else
+          info.reduceFairShare = fairShare;
       }
     }
   }
 
+  private static double minShare(JobInfo info, TaskType type) {
+    return type == TaskType.MAP ? info.minMaps : info.minReduces;
+  }
+
+  private static double shareWeight(JobInfo info, TaskType type) {
+    return type == TaskType.MAP ? info.mapWeight : info.reduceWeight;
+  }
+
+  private static double minShareRatio(JobInfo info, TaskType type) {
+    double minSlots = minShare(info, type);
+    double weight = shareWeight(info, type);
+    if (weight == 0) {
+      return minSlots > 0 ? Double.POSITIVE_INFINITY : 0;
+    }
+    return minSlots / weight;
+  }
+
   private double calculateRawWeight(JobInProgress job, TaskType taskType) {
     if (!isRunnable(job)) {
       return 0;
@@ -1417,6 +1705,20 @@ public class FairScheduler extends TaskScheduler {
     return info.runnable;
   }
 
+  /**
+   * Move a job to another pool. Both the pool the job leaves and the pool
+   * it joins have their min slots recomputed at the next update.
+   */
+  synchronized void setJobPool(JobInProgress job, String pool) {
+    JobInfo info = infos.get(job);
+    poolMgr.setPool(job, pool);
+    if (info != null) {
+      dirtyPools.add(info.poolName);
+      info.poolName = pool;
+    }
+    dirtyPools.add(pool);
+  }
+
   @Override
   public synchronized Collection<JobInProgress> getJobs(String queueName) {
     Pool myJobPool = poolMgr.getPool(queueName);
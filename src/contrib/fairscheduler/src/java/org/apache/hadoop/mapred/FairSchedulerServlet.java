@@ -97,18 +97,11 @@ public class FairSchedulerServlet extends HttpServlet {
     }
     if (request.getParameter("setPool") != null) {
       Collection<JobInProgress> runningJobs = getInitedJobs();
-      PoolManager poolMgr = null;
-      synchronized (scheduler) {
-        poolMgr = scheduler.getPoolManager();
-      }
       String pool = request.getParameter("setPool");
       String jobId = request.getParameter("jobid");
       for (JobInProgress job: runningJobs) {
         if (job.getProfile().getJobID().toString().equals(jobId)) {
-          synchronized(scheduler){
-            poolMgr.setPool(job, pool);
-            scheduler.infos.get(job).poolName = pool;
-          }
+          scheduler.setJobPool(job, pool);
           scheduler.update();
           break;
         }
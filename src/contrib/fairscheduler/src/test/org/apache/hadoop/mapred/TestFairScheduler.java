@@ -53,6 +53,8 @@ public class TestFairScheduler extends TestCase {
       "test-pools").getAbsolutePath();
   
   private static final String POOL_PROPERTY = "pool";
+  private static final String FAKE_MAP_LOCATIONS_PROPERTY =
+    "test.fake.map.locations";
   private static final int LOCALITY_DELAY = 10000;
   private static final int LOCALITY_DELAY_NODE_LOCAL = 5000;
   
@@ -147,6 +149,11 @@ public class TestFairScheduler extends TestCase {
       return initialized;
     }
 
+    @Override
+    public Collection<String> getNonRunningMapLocations() {
+      return getJobConf().getStringCollection(FAKE_MAP_LOCATIONS_PROPERTY);
+    }
+
     /*
      * Set the best locality in obtainNewMapTask
      */
@@ -2283,4 +2290,100 @@ public class TestFairScheduler extends TestCase {
     checkAssignment("tt2", "attempt_test_0002_r_000001_0 on tt2");
     checkAssignment("tt2", "attempt_test_0001_r_000000_0 on tt2");
   }
+
+  /**
+   * This test checks that the incremental update, which only recounts tasks
+   * of jobs whose counters changed and only recomputes min slots of pools
+   * that changed, computes the same shares as a full update.
+   */
+  public void testIncrementalUpdate() throws Exception {
+    // Set up pools file
+    PrintWriter out = new PrintWriter(new FileWriter(ALLOC_FILE));
+    out.println("<?xml version=\"1.0\"?>");
+    out.println("<allocations>");
+    // Give pool A a minimum of 2 maps, 1 reduce
+    out.println("<pool name=\"poolA\">");
+    out.println("<minMaps>2</minMaps>");
+    out.println("<minReduces>1</minReduces>");
+    out.println("</pool>");
+    out.println("</allocations>");
+    out.close();
+    scheduler.getPoolManager().reloadAllocs();
+    scheduler.fullUpdateInterval = 1000;
+
+    JobInProgress job1 = submitJob(JobStatus.RUNNING, 10, 10);
+    JobInfo info1 = scheduler.infos.get(job1);
+    advanceTime(100);
+    JobInProgress job2 = submitJob(JobStatus.RUNNING, 1, 1, "poolA");
+    JobInfo info2 = scheduler.infos.get(job2);
+    JobInProgress job3 = submitJob(JobStatus.RUNNING, 10, 10, "poolA");
+    JobInfo info3 = scheduler.infos.get(job3);
+    advanceTime(100);
+
+    // Launch some tasks and finish one, so that only some jobs change
+    scheduler.assignTasks(tracker("tt1"));
+    scheduler.assignTasks(tracker("tt1"));
+    taskTrackerManager.finishTask("tt1", "attempt_test_0002_m_000000_0");
+    advanceTime(100);
+    advanceTime(100);
+    assertEquals(0, info2.neededMaps);
+    assertEquals(0, info2.runningMaps);
+
+    // The pool A min share should now go entirely to job 3
+    assertEquals(2, info3.minMaps);
+    double[] incremental = new double[] {
+        info1.mapFairShare, info1.reduceFairShare,
+        info2.mapFairShare, info2.reduceFairShare,
+        info3.mapFairShare, info3.reduceFairShare,
+        info1.minMaps, info2.minMaps, info3.minMaps,
+        info1.neededMaps, info2.neededMaps, info3.neededMaps,
+        info1.runningMaps, info2.runningMaps, info3.runningMaps };
+
+    // Force a full update and check that nothing changed
+    scheduler.fullUpdateInterval = 1;
+    advanceTime(0);
+    double[] full = new double[] {
+        info1.mapFairShare, info1.reduceFairShare,
+        info2.mapFairShare, info2.reduceFairShare,
+        info3.mapFairShare, info3.reduceFairShare,
+        info1.minMaps, info2.minMaps, info3.minMaps,
+        info1.neededMaps, info2.neededMaps, info3.neededMaps,
+        info1.runningMaps, info2.runningMaps, info3.runningMaps };
+    for (int i = 0; i < full.length; i++) {
+      assertEquals(full[i], incremental[i], 0.0001);
+    }
+  }
+
+  /**
+   * This test starts two jobs, where only job 2 has data on host1. With batch
+   * assignment, all the free map slots of tt1 should be given to node-local
+   * maps of job 2 in one heartbeat, even though job 1 is ahead of it, while
+   * tt2 should still be filled in one heartbeat from the sorted job list.
+   */
+  public void testBatchAssignment() throws Exception {
+    scheduler.assignMultiple = true;
+    scheduler.batchAssignment = true;
+    JobInProgress job1 = submitJob(JobStatus.RUNNING, 10, 0);
+    advanceTime(100);
+    conf.set(FAKE_MAP_LOCATIONS_PROPERTY, "host1");
+    JobInProgress job2 = submitJob(JobStatus.RUNNING, 10, 0);
+    conf.set(FAKE_MAP_LOCATIONS_PROPERTY, "");
+    advanceTime(100);
+
+    List<Task> tasks = scheduler.assignTasks(tracker("tt1"));
+    assertNotNull(tasks);
+    assertEquals(2, tasks.size());
+    assertEquals("attempt_test_0002_m_000000_0 on tt1",
+                 tasks.get(0).toString());
+    assertEquals("attempt_test_0002_m_000001_0 on tt1",
+                 tasks.get(1).toString());
+    assertEquals(2, scheduler.infos.get(job2).runningMaps);
+    assertEquals(0, scheduler.infos.get(job1).runningMaps);
+
+    tasks = scheduler.assignTasks(tracker("tt2"));
+    assertNotNull(tasks);
+    assertEquals(2, tasks.size());
+    assertEquals("attempt_test_0001_m_000000_0 on tt2",
+                 tasks.get(0).toString());
+  }
 }
@@ -195,6 +195,19 @@ public class DistributedAvatarFileSystem extends DistributedFileSystem {
       }).callFS();
     }
 
+    @Override
+    public LocatedDirectoryListing[] getLocatedPartialListings(
+        final String[] srcs, final byte[][] startAfter) throws IOException {
+      return (new ImmutableFSCaller<LocatedDirectoryListing[]>() {
+
+        @Override
+        LocatedDirectoryListing[] call() throws IOException {
+          return namenode.getLocatedPartialListings(srcs, startAfter);
+        }
+
+      }).callFS();
+    }
+
     @Override
     public LocatedBlock addBlock(final String src, final String clientName,
         final DatanodeInfo[] excludedNodes) throws IOException {
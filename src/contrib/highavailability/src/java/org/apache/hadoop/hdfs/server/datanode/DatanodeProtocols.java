@@ -115,7 +115,10 @@ public class DatanodeProtocols implements DatanodeProtocol {
                                        long capacity,
                                        long dfsUsed, long remaining,
                                        int xmitsInProgress,
-                                       int xceiverCount) throws IOException {
+                                       int xceiverCount,
+                                       int volumeQueueDepth,
+                                       long ioLatency,
+                                       long networkThroughput) throws IOException {
     throw new IOException("sendHeartbeat" + errMessage);
   }
 
@@ -163,12 +163,16 @@ public class OfferService implements Runnable {
           // -- Bytes remaining
           //
           lastHeartbeat = startTime;
+          anode.ioLoad.roll(startTime);
           DatanodeCommand[] cmds = namenode.sendHeartbeat(dnRegistration,
                                                        data.getCapacity(),
                                                        data.getDfsUsed(),
                                                        data.getRemaining(),
                                                        anode.xmitsInProgress.get(),
-                                                       anode.getXceiverCount());
+                                                       anode.getXceiverCount(),
+                                                       data.getVolumeQueueDepth(),
+                                                       anode.ioLoad.getIoLatency(),
+                                                       anode.ioLoad.getNetworkThroughput());
           myMetrics.heartbeats.inc(anode.now() - startTime);
           //LOG.info("Just sent heartbeat, with name " + localName);
           if (!processCommand(cmds))
@@ -174,6 +174,10 @@ public class AvatarNode extends NameNode implements AvatarProtocol {
       // namenode object to exit safemode.
       super.namesystem.setSafeModeManualOverride(true);
 
+      // the invalidates of the standby are dropped, so it must not mark
+      // any replicas as excess before it becomes the primary
+      super.namesystem.deferOverReplicationUntilSafeModeOff();
+
       // Create a standby object which does the actual work of 
       // processing transactions from the primary and checkpointing
       standby = new Standby(this, startupConf, confg); 
@@ -343,7 +347,19 @@ public class AvatarNode extends NameNode implements AvatarProtocol {
 
     @Override
     public void run() {
+      boolean warm = !confg.getBoolean("dfs.avatarnode.replqueue.warmup",
+                                       true);
       while (running) {
+        if (!warm) {
+          // Populate the replication queues ahead of failover, once enough
+          // blocks have been reported. From then on block reports and
+          // ingested transactions keep them current, so leaving safe mode
+          // does not need to rescan the block map.
+          warm = namesystem.initializeReplQueues();
+          if (warm) {
+            LOG.info("Standby: replication queues are initialized");
+          }
+        }
         clearInvalidates();
         try {
           Thread.sleep(INVALIDATES_CLEANUP_INTERVAL);
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.DataOutputStream;
 import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.InputStream;
 import java.io.FileInputStream;
 import java.io.DataInput;
@@ -49,7 +50,6 @@ import org.apache.hadoop.fs.permission.*;
 import org.apache.hadoop.hdfs.protocol.FSConstants;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
-import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.hdfs.protocol.AvatarProtocol;
@@ -83,12 +83,24 @@ public class Ingest implements Runnable {
   RandomAccessFile rp;  // the file to read transactions from.
   FileInputStream fp;
   FileChannel fc ;
+  PositionTrackingInputStream tracker; // buffered view of fp
   long currentPosition; // current offset in the transaction log
 
+  // The edits file is polled for new transactions every minPollInterval
+  // ms while it keeps growing, backing off to maxPollInterval ms when idle.
+  private final int readBufferSize;
+  private final long minPollInterval;
+  private final long maxPollInterval;
+
   Ingest(Standby standby, Configuration conf, File edits) throws IOException {
     this.standby = standby;
     this.confg = conf;
     this.ingestFile = edits;
+    this.readBufferSize = conf.getInt("dfs.avatarnode.ingest.buffer.size",
+                                      64 * 1024);
+    this.minPollInterval = conf.getLong("dfs.avatarnode.ingest.poll.min", 10);
+    this.maxPollInterval = Math.max(minPollInterval,
+        conf.getLong("dfs.avatarnode.ingest.poll.max", 1000));
   }
 
   public void run() {
@@ -112,6 +124,7 @@ public class Ingest implements Runnable {
    */
   void stop() {
     running = false;
+    wakeUp();
   }
 
   /**
@@ -119,6 +132,7 @@ public class Ingest implements Runnable {
    */
   void quiesce() {
     lastScan = true;
+    wakeUp();
   }
 
   /**
@@ -129,6 +143,39 @@ public class Ingest implements Runnable {
   synchronized void quiesce(CheckpointSignature sig) {
     lastSignature = sig;
     lastScan = true;
+    notifyAll();
+  }
+
+  /**
+   * Wake up the ingest thread if it is waiting for new transactions.
+   */
+  private synchronized void wakeUp() {
+    notifyAll();
+  }
+
+  /**
+   * Wait for new transactions to appear in the log, or for a call to
+   * stop() or quiesce().
+   */
+  private synchronized void waitForEdits(long millis) {
+    if (running && !lastScan) {
+      try {
+        wait(millis);
+      } catch (InterruptedException e) {
+        // break out of waiting if we receive an interrupt.
+      }
+    }
+  }
+
+  /**
+   * Position the transaction log at the specified offset and return a
+   * buffered stream that reads from there.
+   */
+  private DataInputStream openAt(long position) throws IOException {
+    fc.position(position);
+    tracker = new PositionTrackingInputStream(
+                new BufferedInputStream(fp, readBufferSize), position);
+    return new DataInputStream(tracker);
   }
 
   private synchronized CheckpointSignature getLastCheckpointSignature() {
@@ -192,6 +239,7 @@ public class Ingest implements Runnable {
       assert logVersion <= Storage.LAST_UPGRADABLE_LAYOUT_VERSION :
                             "Unsupported version " + logVersion;
       currentPosition = fc.position();
+      in = openAt(currentPosition);
       numEdits = ingestFSEdits(edits, in, logVersion); // continue to ingest 
     } finally {
       LOG.info("Ingest: Closing transactions file " + edits);
@@ -240,6 +288,7 @@ public class Ingest implements Runnable {
     long startTime = FSNamesystem.now();
     boolean error = false;
     boolean quitAfterScan = false;
+    long pollInterval = minPollInterval;
 
     while (running && !quitAfterScan) {
 
@@ -258,8 +307,7 @@ public class Ingest implements Runnable {
         fc = rp.getChannel();
 
         // discard older buffers and start a fresh one.
-        fc.position(currentPosition);
-        in = new DataInputStream(fp);
+        in = openAt(currentPosition);
       }
 
       //
@@ -304,8 +352,9 @@ public class Ingest implements Runnable {
       //
       // Process all existing transactions till end of file
       //
+      int numEditsBefore = numEdits;
       while (running) {
-        currentPosition = fc.position(); // record the current file offset.
+        currentPosition = tracker.getPos(); // record the current file offset.
 
         fsNamesys.writeLock();
         try {
@@ -430,6 +479,9 @@ public class Ingest implements Runnable {
             fsNamesys.leaseManager.addLease(cons.clientName, path);
             fsDir.fsImage.getEditLog().logOpenFile(path, cons);
             } else {
+              if (fsNamesys.isPopulatingReplQueues()) {
+                fsNamesys.checkReplicationFactor(node);
+              }
               fsDir.fsImage.getEditLog().logCloseFile(path, node);
             }
             break;
@@ -438,7 +490,15 @@ public class Ingest implements Runnable {
           numOpSetRepl++;
           path = FSImage.readString(in);
           short replication = readShort(in);
-          fsDir.unprotectedSetReplication(path, replication, null);
+          int[] oldReplication = new int[1];
+          Block[] fileBlocks = fsDir.unprotectedSetReplication(path,
+                                           replication, oldReplication);
+          if (fileBlocks != null && fsNamesys.isPopulatingReplQueues()) {
+            for (Block b : fileBlocks) {
+              fsNamesys.updateNeededReplications(b, 0,
+                                           replication - oldReplication[0]);
+            }
+          }
           fsDir.fsImage.getEditLog().logSetReplication(path, replication);
           break;
           } 
@@ -472,9 +532,7 @@ public class Ingest implements Runnable {
           String s = FSImage.readString(in);
           String d = FSImage.readString(in);
           timestamp = readLong(in);
-          HdfsFileStatus dinfo = fsDir.getHdfsFileInfo(d);
           fsDir.unprotectedRenameTo(s, d, timestamp);
-          fsNamesys.changeLease(s, d, dinfo);
           fsDir.fsImage.getEditLog().logRename(s, d, timestamp);
           break;
           }
@@ -616,8 +674,10 @@ public class Ingest implements Runnable {
           }
           }
           numEdits++;
-          LOG.info("Ingest: Processed transaction from " + fname + " opcode " + opcode +
-                   " file offset " + currentPosition);
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Ingest: Processed transaction from " + fname +
+                      " opcode " + opcode + " file offset " + currentPosition);
+          }
         }
         catch (IOException e) {
           error = true; // if we haven't reached eof, then error.
@@ -631,27 +691,29 @@ public class Ingest implements Runnable {
    
       // if we failed to read the entire transaction from disk, 
       // then roll back to the offset where there was a last good 
-      // read, sleep for sometime for new transaction to
-      // appear in the file and then continue;
+      // read, wait for new transactions to appear in the file and
+      // then continue. The wait is short while transactions keep
+      // arriving and grows while the log is idle.
       //
       if (error || running) {
 
         // discard older buffers and start a fresh one.
-        fc.position(currentPosition);
-        in = new DataInputStream(fp);
+        in = openAt(currentPosition);
 
         if (error) {
           LOG.info("Ingest: Incomplete transaction record at offset " + 
-                   fc.position() +
+                   currentPosition +
                    " but the file is of size " + fc.size() + 
                    ". Continuing....");
         }
 
+        if (numEdits > numEditsBefore) {
+          pollInterval = minPollInterval;
+        }
         if (running && !lastScan) {
-          try {
-            Thread.sleep(1000); // sleep for a second
-          } catch (InterruptedException e) {
-            // break out of waiting if we receive an interrupt.
+          waitForEdits(pollInterval);
+          if (numEdits == numEditsBefore) {
+            pollInterval = Math.min(pollInterval * 2, maxPollInterval);
           }
         }
       }
@@ -679,6 +741,50 @@ public class Ingest implements Runnable {
     }
   }
 
+  /**
+   * Counts the bytes consumed from the transaction log through the read
+   * buffer, so that the offset of the last complete transaction is known
+   * without reading the log a byte at a time.
+   */
+  static class PositionTrackingInputStream extends FilterInputStream {
+    private long pos;
+
+    PositionTrackingInputStream(InputStream in, long pos) {
+      super(in);
+      this.pos = pos;
+    }
+
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        pos++;
+      }
+      return b;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        pos += n;
+      }
+      return n;
+    }
+
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      pos += skipped;
+      return skipped;
+    }
+
+    public boolean markSupported() {
+      return false;
+    }
+
+    long getPos() {
+      return pos;
+    }
+  }
+
   /**
    * A class to read in blocks stored in the old format. The only two
    * fields in the block were blockid and length.
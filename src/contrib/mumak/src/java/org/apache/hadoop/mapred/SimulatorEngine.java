@@ -111,7 +111,11 @@ public class SimulatorEngine extends Configured implements Tool {
     jobConf.setUser("mumak");
     jobConf.set("mapred.system.dir", 
         jobConf.get("hadoop.log.dir", "/tmp/hadoop-"+jobConf.getUser()) + "/mapred/system");
-    jobConf.set("mapred.jobtracker.taskScheduler", JobQueueTaskScheduler.class.getName());
+    // allow the scheduler under simulation to be picked through the
+    // configuration, so that its heartbeat cost can be measured
+    jobConf.set("mapred.jobtracker.taskScheduler", getConf().get(
+        "mapred.jobtracker.taskScheduler",
+        JobQueueTaskScheduler.class.getName()));
     
     FileSystem lfs = FileSystem.getLocal(getConf());
     Path logPath =
@@ -180,6 +184,14 @@ public class SimulatorEngine extends Configured implements Tool {
    */
   void summary(PrintStream out) {
     out.println("Done, total events processed: " + queue.getEventCount());
+    if (jt != null) {
+      long calls = jt.getNumAssignTasksCalls();
+      long nanos = jt.getAssignTasksNanos();
+      out.println("Scheduler " + jt.conf.get(
+          "mapred.jobtracker.taskScheduler") + ": " + calls
+          + " heartbeats, " + (calls == 0 ? 0 : nanos / calls / 1000)
+          + " us average assignTasks time");
+    }
   }
   
   public static void main(String[] args) throws Exception {
@@ -59,6 +59,10 @@ public class SimulatorJobTracker extends JobTracker {
   // The SimulatorEngine data structure is engine that drives the simulator.
   private static SimulatorEngine engine = null;
 
+  // wall-clock cost of the scheduler's assignTasks calls
+  private long numAssignTasksCalls = 0;
+  private long assignTasksNanos = 0;
+
   private static synchronized void resetEngineClock(SimulatorEngine engine, SimulatorClock clock) {
     SimulatorJobTracker.engine = engine;
     SimulatorJobTracker.clock = clock;
@@ -136,6 +140,16 @@ public class SimulatorJobTracker extends JobTracker {
     }
   }
 
+  /** @return the number of times the task scheduler was asked for tasks */
+  long getNumAssignTasksCalls() {
+    return numAssignTasksCalls;
+  }
+
+  /** @return the total time, in nanoseconds, spent assigning tasks */
+  long getAssignTasksNanos() {
+    return assignTasksNanos;
+  }
+
   /**
    * Returns the simulatorClock in that is a static object in SimulatorJobTracker. 
    * 
@@ -413,7 +427,10 @@ public class SimulatorJobTracker extends JobTracker {
     if (acceptNewTasks) {
       TaskTracker taskTracker = getTaskTracker(trackerName);
       // get the list of tasks to be executed on this tasktracker
+      long start = System.nanoTime();
       List<Task> tasks = taskScheduler.assignTasks(taskTracker);
+      assignTasksNanos += System.nanoTime() - start;
+      numAssignTasksCalls++;
       if (tasks != null) {
         if (loggingEnabled && tasks.size()>0) {
           LOG.debug("Tasks found from TaskScheduler: number = " + tasks.size());
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hdfs;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.DataInput;
@@ -33,6 +34,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.fs.ChecksumException;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FilterFileSystem;
@@ -171,6 +173,25 @@ public class DistributedRaidFileSystem extends FilterFileSystem {
       private final int buffersize;
       private final Configuration conf;
       private final int stripeLength;
+      // Bytes of the file rebuilt from the parity after a read error, so
+      // that the following reads in the same range need not rebuild them.
+      private final int recoveryRangeSize;
+      private byte[] recoveredRange = null;
+      private long recoveredRangeStart = -1;
+      // The block that last failed to read. Reads within it go straight to
+      // the parity instead of failing on the block again.
+      private long badBlockStart = -1;
+      private long badBlockEnd = -1;
+      // What rebuilding a range needs. Resolved on the first bad block and
+      // reused for the following ranges of the file.
+      private Path recoveryPath = null;
+      private FileSystem recoveryFs = null;
+      private FileStatus recoveryStat = null;
+      private RaidNode.ParityFilePair[] parityFiles = null;
+      private Decoder[] decoders = null;
+      // The uncached filesystems opened for rebuilding, closed with the stream
+      private final List<FileSystem> recoveryFileSystems =
+        new ArrayList<FileSystem>();
 
       ExtFsInputStream(Configuration conf, DistributedRaidFileSystem lfs,
           DecodeInfo[] alternates, Path path, int stripeLength, int buffersize)
@@ -183,6 +204,8 @@ public class DistributedRaidFileSystem extends FilterFileSystem {
         this.conf = conf;
         this.lfs = lfs;
         this.stripeLength = stripeLength;
+        this.recoveryRangeSize = conf.getInt("fs.raid.recovery.range.size",
+                                             4 * 1024 * 1024);
       }
       
       @Override
@@ -195,6 +218,15 @@ public class DistributedRaidFileSystem extends FilterFileSystem {
       @Override
       public synchronized  void close() throws IOException {
         underLyingStream.close();
+        for (FileSystem fs : recoveryFileSystems) {
+          try {
+            fs.close();
+          } catch (IOException e) {
+            LOG.info("Error closing " + fs.getUri() + ". " + e +
+                     " Ignoring...");
+          }
+        }
+        recoveryFileSystems.clear();
         super.close();
       }
       
@@ -212,34 +244,13 @@ public class DistributedRaidFileSystem extends FilterFileSystem {
       
       @Override
       public synchronized int read() throws IOException {
-        long pos = underLyingStream.getPos();
-        while (true) {
-          try {
-            int value = underLyingStream.read();
-            nextLocation = 0;
-            return value;
-          } catch (BlockMissingException e) {
-            setAlternateLocations(e, pos);
-          } catch (ChecksumException e) {
-            setAlternateLocations(e, pos);
-          }
-        }
+        int value = read(oneBytebuff, 0, 1);
+        return value <= 0 ? -1 : (oneBytebuff[0] & 0xff);
       }
       
       @Override
       public synchronized int read(byte[] b) throws IOException {
-        long pos = underLyingStream.getPos();
-        while (true) {
-          try{
-            int value = underLyingStream.read(b);
-            nextLocation = 0;
-            return value;
-          } catch (BlockMissingException e) {
-            setAlternateLocations(e, pos);
-          } catch (ChecksumException e) {
-            setAlternateLocations(e, pos);
-          }
-        }
+        return read(b, 0, b.length);
       }
 
       @Override
@@ -247,14 +258,22 @@ public class DistributedRaidFileSystem extends FilterFileSystem {
         throws IOException {
         long pos = underLyingStream.getPos();
         while (true) {
+          int value = readRecovered(pos, b, offset, len);
+          if (value >= 0) {
+            underLyingStream.seek(pos + value);
+            return value;
+          }
           try{
-            int value = underLyingStream.read(b, offset, len);
+            if (inBadBlock(pos) && recoverRange(pos)) {
+              continue;
+            }
+            value = underLyingStream.read(b, offset, len);
             nextLocation = 0;
             return value;
           } catch (BlockMissingException e) {
-            setAlternateLocations(e, pos);
+            handleReadError(e, pos, pos);
           } catch (ChecksumException e) {
-            setAlternateLocations(e, pos);
+            handleReadError(e, pos, pos);
           }
         }
       }
@@ -264,14 +283,21 @@ public class DistributedRaidFileSystem extends FilterFileSystem {
         throws IOException {
         long pos = underLyingStream.getPos();
         while (true) {
+          int value = readRecovered(position, b, offset, len);
+          if (value >= 0) {
+            return value;
+          }
           try {
-            int value = underLyingStream.read(position, b, offset, len);
+            if (inBadBlock(position) && recoverRange(position)) {
+              continue;
+            }
+            value = underLyingStream.read(position, b, offset, len);
             nextLocation = 0;
             return value;
           } catch (BlockMissingException e) {
-            setAlternateLocations(e, pos);
+            handleReadError(e, position, pos);
           } catch (ChecksumException e) {
-            setAlternateLocations(e, pos);
+            handleReadError(e, position, pos);
           }
         }
       }
@@ -339,6 +365,161 @@ public class DistributedRaidFileSystem extends FilterFileSystem {
         }
       }
 
+      /**
+       * Copies bytes from the range rebuilt from the parity.
+       * @return the number of bytes copied, -1 if the range does not
+       *         cover pos.
+       */
+      private int readRecovered(long pos, byte[] b, int offset, int len) {
+        if (recoveredRange == null || pos < recoveredRangeStart ||
+            pos >= recoveredRangeStart + recoveredRange.length) {
+          return -1;
+        }
+        int value = (int)Math.min(len,
+                       recoveredRangeStart + recoveredRange.length - pos);
+        System.arraycopy(recoveredRange, (int)(pos - recoveredRangeStart),
+                         b, offset, value);
+        return value;
+      }
+
+      private boolean inBadBlock(long pos) {
+        return pos >= badBlockStart && pos < badBlockEnd;
+      }
+
+      /**
+       * Handles an error reading at readPos by rebuilding the bytes from
+       * there on, or failing that, the whole file.
+       * @param streamPos the position of the stream before the read
+       */
+      private void handleReadError(IOException curexp, long readPos,
+                                   long streamPos) throws IOException {
+        if (!recoverRange(readPos)) {
+          setAlternateLocations(curexp, streamPos);
+        }
+      }
+
+      /**
+       * Rebuilds the bytes of the file from pos on using the parity, up to
+       * fs.raid.recovery.range.size bytes or the end of the block. Only the
+       * matching ranges of the rest of the stripe are read.
+       * @return false if the bytes could not be rebuilt.
+       */
+      private boolean recoverRange(long pos) {
+        if (alternates == null || recoveryRangeSize <= 0) {
+          return false;
+        }
+        try {
+          initRecovery();
+          long blockSize = recoveryStat.getBlockSize();
+          long blockStart = (pos / blockSize) * blockSize;
+          long end = Math.min(Math.min(blockStart + blockSize,
+                                       recoveryStat.getLen()),
+                              pos + recoveryRangeSize);
+          if (pos >= end) {
+            return false;
+          }
+          for (int i = 0; i < alternates.length; i++) {
+            if (parityFiles[i] == null || decoders[i] == null) {
+              continue;
+            }
+            ByteArrayOutputStream out =
+              new ByteArrayOutputStream((int)(end - pos));
+            try {
+              decoders[i].recoverRangeToStream(recoveryFs, recoveryPath,
+                  parityFiles[i].getFileSystem(), parityFiles[i].getPath(),
+                  blockSize, pos, end - pos, out);
+              recoveredRange = out.toByteArray();
+              recoveredRangeStart = pos;
+              badBlockStart = blockStart;
+              badBlockEnd = blockStart + blockSize;
+              LOG.info("Rebuilt " + path + ":" + pos + "-" + end +
+                       " using " + parityFiles[i].getPath());
+              return true;
+            } catch (IOException e) {
+              LOG.info("Error rebuilding " + path + ":" + pos + " using " +
+                       parityFiles[i].getPath() + ". " + e + " Ignoring...");
+            }
+          }
+        } catch (IOException e) {
+          LOG.info("Error rebuilding " + path + ":" + pos + ". " + e +
+                   " Ignoring...");
+        }
+        return false;
+      }
+
+      /**
+       * Looks up the status of the file, its parity files and their
+       * decoders, unless an earlier bad block already did.
+       */
+      private void initRecovery() throws IOException {
+        if (recoveryStat != null) {
+          return;
+        }
+        Configuration clientConf = underlyingConf();
+        FileSystem srcFs = getRecoveryFileSystem(path, clientConf);
+        FileStatus stat = srcFs.getFileStatus(path);
+        RaidNode.ParityFilePair[] parity =
+          new RaidNode.ParityFilePair[alternates.length];
+        Decoder[] decs = new Decoder[alternates.length];
+        for (int i = 0; i < alternates.length; i++) {
+          try {
+            FileSystem destFs =
+              getRecoveryFileSystem(alternates[i].destPath, clientConf);
+            parity[i] = RaidNode.getParityFile(alternates[i].destPath, path,
+                                               srcFs, destFs, clientConf);
+            if (parity[i] != null) {
+              decs[i] = alternates[i].createDecoder();
+            }
+          } catch (IOException e) {
+            LOG.info("Error finding the parity of " + path + " under " +
+                     alternates[i].destPath + ". " + e + " Ignoring...");
+          }
+        }
+        recoveryPath = path;
+        recoveryFs = srcFs;
+        parityFiles = parity;
+        decoders = decs;
+        recoveryStat = stat;
+      }
+
+      /**
+       * Returns an uncached filesystem for p, opening it unless one for the
+       * same filesystem was already opened by this stream.
+       */
+      private FileSystem getRecoveryFileSystem(Path p, Configuration clientConf)
+        throws IOException {
+        URI uri = p.toUri();
+        if (uri.getScheme() == null) {
+          uri = FileSystem.getDefaultUri(clientConf);
+        }
+        for (FileSystem fs : recoveryFileSystems) {
+          URI fsUri = fs.getUri();
+          if (uri.getScheme().equalsIgnoreCase(fsUri.getScheme()) &&
+              (uri.getAuthority() == null ?
+               fsUri.getAuthority() == null :
+               uri.getAuthority().equalsIgnoreCase(fsUri.getAuthority()))) {
+            return fs;
+          }
+        }
+        FileSystem fs = FileSystem.get(uri, clientConf);
+        recoveryFileSystems.add(fs);
+        return fs;
+      }
+
+      /**
+       * Returns a configuration that accesses the filesystem underneath this
+       * one, so that decoding does not recurse into DistributedRaidFileSystem.
+       */
+      private Configuration underlyingConf() {
+        Configuration clientConf = new Configuration(conf);
+        Class<?> clazz = conf.getClass("fs.raid.underlyingfs.impl",
+                                            DistributedFileSystem.class);
+        clientConf.set("fs.hdfs.impl", clazz.getName());
+        // Disable caching so that a previously cached RaidDfs is not used.
+        clientConf.setBoolean("fs.hdfs.impl.disable.cache", true);
+        return clientConf;
+      }
+
       /**
        * Extract good file from RAID
        * @param curpos curexp the current exception
@@ -353,12 +534,7 @@ public class DistributedRaidFileSystem extends FilterFileSystem {
             long corruptOffset = underLyingStream.getPos();
             
             // Make sure we use DFS and not DistributedRaidFileSystem for unRaid.
-            Configuration clientConf = new Configuration(conf);
-            Class<?> clazz = conf.getClass("fs.raid.underlyingfs.impl",
-                                                DistributedFileSystem.class);
-            clientConf.set("fs.hdfs.impl", clazz.getName());
-            // Disable caching so that a previously cached RaidDfs is not used.
-            clientConf.setBoolean("fs.hdfs.impl.disable.cache", true);
+            Configuration clientConf = underlyingConf();
             Path npath = RaidNode.unRaid(clientConf, path,
                          alternates[idx].destPath,
                          alternates[idx].createDecoder(),
@@ -187,6 +187,35 @@ public abstract class Decoder {
     out.close();
   }
 
+  /**
+   * Reconstructs a range of bytes of the source file, reading only the
+   * matching ranges of the other blocks of the stripe and of the parity.
+   * The range must not cross a block boundary.
+   *
+   * @param fs The filesystem containing the source file.
+   * @param srcFile The damaged source file.
+   * @param parityFs The filesystem containing the parity file. This could be
+   *        different from fs in case the parity file is part of a HAR archive.
+   * @param parityFile The parity file.
+   * @param blockSize The block size of the file.
+   * @param offset The offset in the source file of the first byte to rebuild.
+   * @param length The number of bytes to rebuild.
+   * @param out The output.
+   */
+  public void recoverRangeToStream(
+    FileSystem fs, Path srcFile, FileSystem parityFs, Path parityFile,
+    long blockSize, long offset, long length, OutputStream out)
+    throws IOException {
+    long blockOffset = (offset / blockSize) * blockSize;
+    if (offset + length > blockOffset + blockSize) {
+      throw new IOException("Range " + offset + ":" + length + " of " +
+                            srcFile + " crosses a block boundary");
+    }
+    configureBuffers(blockSize);
+    fixErasedBlock(fs, srcFile, parityFs, parityFile, blockSize, blockOffset,
+                   offset - blockOffset, offset - blockOffset + length, out);
+  }
+
   /**
    * Implementation-specific mechanism of writing a fixed block.
    * @param fs The filesystem containing the source file.
@@ -24,7 +24,16 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -53,6 +62,7 @@ public abstract class Encoder {
   protected int bufSize;
   protected byte[][] readBufs;
   protected byte[][] writeBufs;
+  private ExecutorService readPool;
 
   /**
    * A class that acts as a sink for data, similar to /dev/null.
@@ -344,6 +354,100 @@ public abstract class Encoder {
     OutputStream[] outs,
     Progressable reporter) throws IOException;
 
+  /**
+   * Returns the pool of threads used to read the blocks of a stripe in
+   * parallel. Like the buffers, it is created once and reused by every
+   * stripe and file encoded with this object. There are
+   * raid.encoder.read.threads threads, by default one for each block of
+   * the stripe. Threads left idle for a minute exit.
+   */
+  protected synchronized ExecutorService getReadPool() {
+    if (readPool == null) {
+      int threads = Math.max(1,
+          Math.min(stripeSize, conf.getInt("raid.encoder.read.threads",
+                                           stripeSize)));
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+          60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+              Thread t = new Thread(r, "Encoder block reader");
+              t.setDaemon(true);
+              return t;
+            }
+          });
+      pool.allowCoreThreadTimeOut(true);
+      readPool = pool;
+    }
+    return readPool;
+  }
+
+  /**
+   * Starts reading the next bufs[i].length bytes of every block into bufs[i].
+   * Past the end of a block the buffer is filled with zeros.
+   * @param pool The threads doing the reads.
+   * @param blocks The streams to blocks in the stripe.
+   * @param bufs The buffers to read into, one per block.
+   * @return The pending reads, to be passed to {@link #waitForReads}.
+   */
+  protected Future<?>[] readBlocksAsync(ExecutorService pool,
+      InputStream[] blocks, byte[][] bufs) {
+    Future<?>[] reads = new Future<?>[blocks.length];
+    for (int i = 0; i < blocks.length; i++) {
+      final InputStream in = blocks[i];
+      final byte[] buf = bufs[i];
+      reads[i] = pool.submit(new Callable<Void>() {
+        public Void call() throws IOException {
+          RaidUtils.readTillEnd(in, buf, true);
+          return null;
+        }
+      });
+    }
+    return reads;
+  }
+
+  /**
+   * Waits for reads started by {@link #readBlocksAsync} to complete.
+   * @throws IOException the first error hit by one of the reads.
+   */
+  protected static void waitForReads(Future<?>[] reads) throws IOException {
+    for (Future<?> read : reads) {
+      try {
+        read.get();
+      } catch (InterruptedException e) {
+        IOException ioe = new InterruptedIOException(
+            "Interrupted while reading stripe");
+        ioe.initCause(e);
+        throw ioe;
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        IOException ioe = new IOException("Error reading stripe");
+        ioe.initCause(cause);
+        throw ioe;
+      }
+    }
+  }
+
+  /**
+   * Waits for reads started by {@link #readBlocksAsync} to end, ignoring
+   * their errors. Used when encoding fails, so that no read is still
+   * filling the buffers when they are reused for the next stripe.
+   */
+  protected static void finishReads(Future<?>[] reads) {
+    for (Future<?> read : reads) {
+      try {
+        read.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        // the encoding has already failed
+      }
+    }
+  }
+
   /**
    * Return the temp path for the parity file
    */
@@ -43,6 +43,30 @@ public interface ErasureCode {
    */
   public void decode(int[] data, int[] erasedLocations, int[] erasedValues);
 
+  /**
+   * Encodes len messages at once. The symbols are stored one per byte, so
+   * this requires symbolSize() to be 8.
+   * @param message stripeSize() buffers. Symbol k of the message k is taken
+   *                from position k of each buffer.
+   * @param parity  (out) paritySize() buffers receiving the parity of each
+   *                message at the same position.
+   * @param len     The number of messages to encode.
+   */
+  public void encodeBulk(byte[][] message, byte[][] parity, int len);
+
+  /**
+   * Generates missing portions of len stripes at once. The symbols are
+   * stored one per byte, so this requires symbolSize() to be 8.
+   * @param data The message and parity buffers, parity first, as in
+   *             decode(). The buffers at the erased locations are not read.
+   * @param erasedLocations The indexes in data which are not available.
+   * @param erasedValues    (out) The decoded values, one buffer for each of
+   *                        erasedLocations.
+   * @param len  The number of stripes to decode.
+   */
+  public void decodeBulk(byte[][] data, int[] erasedLocations,
+                         byte[][] erasedValues, int len);
+
   /**
    * The number of elements in the message.
    */
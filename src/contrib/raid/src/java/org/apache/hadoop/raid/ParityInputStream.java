@@ -68,9 +68,7 @@ class ParityInputStream extends InputStream {
       return -1;
     }
     int ret = Math.min(len, available);
-    for (int i = 0; i < ret; ++i) {
-      b[off+i] = xor[readPos+i];
-    }
+    System.arraycopy(xor, readPos, b, off, ret);
     readPos += ret;
     available -= ret;
     return ret;
@@ -120,9 +118,7 @@ class ParityInputStream extends InputStream {
     for (int i = 1; i < streams.length; i++) {
       readExact(streams[i], buf, xorlen);
 
-      for (int j = 0; j < xorlen; j++) {
-        xor[j] ^= buf[j];
-      }
+      RaidUtils.xor(buf, 0, xor, 0, xorlen);
     }
     
     remaining -= xorlen;
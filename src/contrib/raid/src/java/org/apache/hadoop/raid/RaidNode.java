@@ -610,7 +610,7 @@ public abstract class RaidNode implements RaidProtocol {
     return new Path(destPathPrefix, makeRelative(srcPath));
   }
   
-  static class ParityFilePair {
+  public static class ParityFilePair {
     private Path path;
     private FileSystem fs;
     
@@ -689,11 +689,27 @@ public abstract class RaidNode implements RaidProtocol {
    * @throws IOException
    */
   static ParityFilePair getParityFile(Path destPathPrefix, Path srcPath, Configuration conf) throws IOException {
-    Path srcParent = srcPath.getParent();
-
     FileSystem fsDest = destPathPrefix.getFileSystem(conf);
     FileSystem fsSrc = srcPath.getFileSystem(conf);
-    
+    return getParityFile(destPathPrefix, srcPath, fsSrc, fsDest, conf);
+  }
+
+  /**
+   * Returns the Path to the parity file of a given file, using the given
+   * filesystems for the source and the parity.
+   * 
+   * @param destPathPrefix Destination prefix defined by some policy
+   * @param srcPath Path to the original source file
+   * @param fsSrc The filesystem of srcPath
+   * @param fsDest The filesystem of destPathPrefix
+   * @return the parity file of the source, null if there is none
+   * @throws IOException
+   */
+  public static ParityFilePair getParityFile(Path destPathPrefix,
+      Path srcPath, FileSystem fsSrc, FileSystem fsDest, Configuration conf)
+      throws IOException {
+    Path srcParent = srcPath.getParent();
+
     FileStatus srcStatus = null;
     try {
       srcStatus = fsSrc.getFileStatus(srcPath);
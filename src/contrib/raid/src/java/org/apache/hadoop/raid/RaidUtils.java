@@ -21,6 +21,8 @@ package org.apache.hadoop.raid;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Iterator;
@@ -96,6 +98,26 @@ public class RaidUtils {
     }
   }
 
+  /**
+   * XOR len bytes of src, starting at srcOff, into dst, starting at dstOff.
+   * Whole 8-byte words are combined through LongBuffer views of the arrays;
+   * the remaining tail is done a byte at a time.
+   */
+  public static void xor(byte[] src, int srcOff, byte[] dst, int dstOff,
+                         int len) {
+    int words = len >>> 3;
+    if (words > 0) {
+      LongBuffer in = ByteBuffer.wrap(src, srcOff, words << 3).asLongBuffer();
+      LongBuffer out = ByteBuffer.wrap(dst, dstOff, words << 3).asLongBuffer();
+      for (int i = 0; i < words; i++) {
+        out.put(i, out.get(i) ^ in.get(i));
+      }
+    }
+    for (int i = words << 3; i < len; i++) {
+      dst[dstOff + i] ^= src[srcOff + i];
+    }
+  }
+
   public static class ZeroInputStream extends InputStream
 	    implements Seekable, PositionedReadable {
     private long endOffset;
@@ -18,8 +18,14 @@
 
 package org.apache.hadoop.raid;
 
+import java.util.Arrays;
+
 public class ReedSolomonCode implements ErasureCode {
 
+  // Number of bytes of each buffer processed at a time by the bulk methods,
+  // so that the slices of all the buffers stay in cache together.
+  private static final int BULK_CHUNK_SIZE = 4096;
+
   private final int stripeSize;
   private final int paritySize;
   private final int[] generatingPolynomial;
@@ -29,6 +35,13 @@ public class ReedSolomonCode implements ErasureCode {
   private int[] errSignature;
   private final int[] paritySymbolLocations;
   private final int[] dataBuff;
+  // Full multiplication table of the field, as bytes to halve its footprint.
+  private final byte[][] mulTable;
+  // The code is linear: parity[i] = sum of encodeMatrix[i][j] * message[j].
+  private final int[][] encodeMatrix;
+  // Decoding matrix for the erasure pattern last seen by decodeBulk().
+  private int[] decodeLocations = null;
+  private int[][] decodeMatrix = null;
 
   public ReedSolomonCode(int stripeSize, int paritySize) {
     assert(stripeSize + paritySize < GF.getFieldSize());
@@ -56,6 +69,26 @@ public class ReedSolomonCode implements ErasureCode {
     }
     // generating polynomial has all generating roots
     generatingPolynomial = gen;
+
+    int fieldSize = GF.getFieldSize();
+    this.mulTable = new byte[fieldSize][fieldSize];
+    for (int i = 0; i < fieldSize; i++) {
+      for (int j = 0; j < fieldSize; j++) {
+        mulTable[i][j] = (byte) GF.multiply(i, j);
+      }
+    }
+    // column j of the encoding matrix is the parity of the j-th unit message
+    this.encodeMatrix = new int[paritySize][stripeSize];
+    int[] unit = new int[stripeSize];
+    int[] column = new int[paritySize];
+    for (int j = 0; j < stripeSize; j++) {
+      unit[j] = 1;
+      encode(unit, column);
+      unit[j] = 0;
+      for (int i = 0; i < paritySize; i++) {
+        encodeMatrix[i][j] = column[i];
+      }
+    }
   }
 
   @Override
@@ -89,6 +122,93 @@ public class ReedSolomonCode implements ErasureCode {
     GF.solveVandermondeSystem(errSignature, erasedValue, erasedLocation.length);
   }
 
+  @Override
+  public void encodeBulk(byte[][] message, byte[][] parity, int len) {
+    assert(message.length == stripeSize && parity.length == paritySize);
+    for (int i = 0; i < paritySize; i++) {
+      Arrays.fill(parity[i], 0, len, (byte) 0);
+    }
+    multiplyAndAdd(encodeMatrix, message, parity, len);
+  }
+
+  @Override
+  public void decodeBulk(byte[][] data, int[] erasedLocations,
+                         byte[][] erasedValues, int len) {
+    if (erasedLocations.length == 0) {
+      return;
+    }
+    assert(erasedLocations.length <= erasedValues.length);
+    for (int i = 0; i < erasedLocations.length; i++) {
+      Arrays.fill(erasedValues[i], 0, len, (byte) 0);
+    }
+    multiplyAndAdd(getDecodeMatrix(erasedLocations), data, erasedValues, len);
+  }
+
+  /**
+   * Returns the matrix giving the erased symbols from the available ones.
+   * Decoding is linear in the available symbols, so column l is what
+   * decode() yields when symbol l is 1 and all the others are 0. Columns of
+   * erased locations are all zero.
+   */
+  private int[][] getDecodeMatrix(int[] erasedLocations) {
+    if (decodeLocations != null &&
+        Arrays.equals(decodeLocations, erasedLocations)) {
+      return decodeMatrix;
+    }
+    int n = stripeSize + paritySize;
+    int[][] matrix = new int[erasedLocations.length][n];
+    boolean[] erased = new boolean[n];
+    for (int loc : erasedLocations) {
+      erased[loc] = true;
+    }
+    int[] unit = new int[n];
+    int[] values = new int[erasedLocations.length];
+    for (int l = 0; l < n; l++) {
+      if (erased[l]) {
+        continue;
+      }
+      Arrays.fill(unit, 0);
+      unit[l] = 1;
+      decode(unit, erasedLocations, values);
+      for (int i = 0; i < erasedLocations.length; i++) {
+        matrix[i][l] = values[i];
+      }
+    }
+    decodeLocations = erasedLocations.clone();
+    decodeMatrix = matrix;
+    return matrix;
+  }
+
+  /**
+   * Computes outputs[i] += sum of matrix[i][j] * inputs[j] over the first
+   * len bytes of the buffers. Inputs whose coefficients are all zero are
+   * not read.
+   */
+  private void multiplyAndAdd(int[][] matrix, byte[][] inputs,
+                              byte[][] outputs, int len) {
+    for (int start = 0; start < len; start += BULK_CHUNK_SIZE) {
+      int end = Math.min(len, start + BULK_CHUNK_SIZE);
+      for (int j = 0; j < inputs.length; j++) {
+        byte[] in = inputs[j];
+        for (int i = 0; i < matrix.length; i++) {
+          int coef = matrix[i][j];
+          if (coef == 0) {
+            continue;
+          }
+          byte[] out = outputs[i];
+          if (coef == 1) {
+            RaidUtils.xor(in, start, out, start, end - start);
+          } else {
+            byte[] row = mulTable[coef];
+            for (int k = start; k < end; k++) {
+              out[k] ^= row[in[k] & 0xFF];
+            }
+          }
+        }
+      }
+    }
+  }
+
   @Override
   public int stripeSize() {
     return this.stripeSize;
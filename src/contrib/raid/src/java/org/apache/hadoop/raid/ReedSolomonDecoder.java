@@ -51,17 +51,20 @@ public class ReedSolomonDecoder extends Decoder {
       long blockSize, long errorOffset, long bytesToSkip, long limit,
       OutputStream out) throws IOException {
     FSDataInputStream[] inputs = new FSDataInputStream[stripeSize + paritySize];
+    // The inputs start at bytesToSkip into their blocks, so that only the
+    // bytes to be written out are read and decoded.
     int[] erasedLocations = buildInputs(fs, srcFile, parityFs, parityFile, 
-                                        errorOffset, inputs);
+                                        errorOffset, bytesToSkip, inputs);
     int blockIdxInStripe = ((int)(errorOffset/blockSize)) % stripeSize;
     int erasedLocationToFix = paritySize + blockIdxInStripe;
     writeFixedBlock(inputs, erasedLocations, erasedLocationToFix,
-                    bytesToSkip, limit, out);
+                    0, limit - bytesToSkip, out);
   }
 
   protected int[] buildInputs(FileSystem fs, Path srcFile, 
                               FileSystem parityFs, Path parityFile,
-                              long errorOffset, FSDataInputStream[] inputs)
+                              long errorOffset, long bytesToSkip,
+                              FSDataInputStream[] inputs)
       throws IOException {
     LOG.info("Building inputs to recover block starting at " + errorOffset);
     FileStatus srcStat = fs.getFileStatus(srcFile);
@@ -76,7 +79,7 @@ public class ReedSolomonDecoder extends Decoder {
       long offset = blockSize * (stripeIdx * paritySize + i);
       FSDataInputStream in = parityFs.open(
         parityFile, conf.getInt("io.file.buffer.size", 64 * 1024));
-      in.seek(offset);
+      in.seek(offset + bytesToSkip);
       LOG.info("Adding " + parityFile + ":" + offset + " as input " + i);
       inputs[i] = in;
     }
@@ -89,15 +92,16 @@ public class ReedSolomonDecoder extends Decoder {
         inputs[i] = new FSDataInputStream(new RaidUtils.ZeroInputStream(
             offset + blockSize));
         erasedLocations.add(i);
-      } else if (offset > srcStat.getLen()) {
+      } else if (offset + bytesToSkip > srcStat.getLen()) {
         LOG.info(srcFile + ":" + offset +
                  " is past file size, adding zeros as input " + i);
         inputs[i] = new FSDataInputStream(new RaidUtils.ZeroInputStream(
             offset + blockSize));
+        inputs[i].seek(offset + bytesToSkip);
       } else {
         FSDataInputStream in = fs.open(
           srcFile, conf.getInt("io.file.buffer.size", 64 * 1024));
-        in.seek(offset);
+        in.seek(offset + bytesToSkip);
         LOG.info("Adding " + srcFile + ":" + offset + " as input " + i);
         inputs[i] = in;
       }
@@ -134,15 +138,10 @@ public class ReedSolomonDecoder extends Decoder {
 
     LOG.info("Need to write " + (limit - skipBytes) +
              " bytes for erased location index " + erasedLocationToFix);
-    int[] tmp = new int[inputs.length];
-    int[] decoded = new int[erasedLocations.length];
     long toDiscard = skipBytes;
     // Loop while the number of skipped + written bytes is less than the max.
     for (long written = 0; skipBytes + written < limit; ) {
       erasedLocations = readFromInputs(inputs, erasedLocations, limit);
-      if (decoded.length != erasedLocations.length) {
-        decoded = new int[erasedLocations.length];
-      }
 
       int toWrite = (int)Math.min((long)bufSize, limit - (skipBytes + written));
       if (toDiscard >= toWrite) {
@@ -151,9 +150,7 @@ public class ReedSolomonDecoder extends Decoder {
       }
 
       // Decoded bufSize amount of data.
-      for (int i = 0; i < bufSize; i++) {
-        performDecode(readBufs, writeBufs, i, tmp, erasedLocations, decoded);
-      }
+      reedSolomonCode.decodeBulk(readBufs, erasedLocations, writeBufs, bufSize);
 
       for (int i = 0; i < erasedLocations.length; i++) {
         if (erasedLocations[i] == erasedLocationToFix) {
@@ -209,19 +206,4 @@ public class ReedSolomonDecoder extends Decoder {
     return erasedLocations;
   }
 
-  void performDecode(byte[][] readBufs, byte[][] writeBufs,
-                     int idx, int[] inputs,
-                     int[] erasedLocations, int[] decoded) {
-    for (int i = 0; i < decoded.length; i++) {
-      decoded[i] = 0;
-    }
-    for (int i = 0; i < inputs.length; i++) {
-      inputs[i] = readBufs[i][idx] & 0x000000FF;
-    }
-    reedSolomonCode.decode(inputs, erasedLocations, decoded);
-    for (int i = 0; i < decoded.length; i++) {
-      writeBufs[i][idx] = (byte)decoded[i];
-    }
-  }
-
 }
@@ -21,6 +21,8 @@ package org.apache.hadoop.raid;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -35,6 +37,8 @@ public class ReedSolomonEncoder extends Encoder {
   public static final Log LOG = LogFactory.getLog(
                                   "org.apache.hadoop.raid.ReedSolomonEncoder");
   private ErasureCode reedSolomonCode;
+  // Second set of source buffers, filled while readBufs is being encoded.
+  private byte[][] prefetchBufs;
 
   public ReedSolomonEncoder(
     Configuration conf, int stripeSize, int paritySize) {
@@ -49,40 +53,40 @@ public class ReedSolomonEncoder extends Encoder {
     OutputStream[] outs,
     Progressable reporter) throws IOException {
 
-    int[] data = new int[stripeSize];
-    int[] code = new int[paritySize];
+    if (prefetchBufs == null || prefetchBufs[0].length != bufSize) {
+      prefetchBufs = new byte[stripeSize][bufSize];
+    }
+    // The blocks are read in parallel, and the next bufSize of each block
+    // is read while the current one is encoded and written out.
+    byte[][] current = readBufs;
+    byte[][] next = prefetchBufs;
+    ExecutorService readPool = getReadPool();
+    Future<?>[] reads = readBlocksAsync(readPool, blocks, next);
+    try {
+      for (long encoded = 0; encoded < blockSize; encoded += bufSize) {
+        waitForReads(reads);
+        reads = null;
+        byte[][] tmp = current;
+        current = next;
+        next = tmp;
+        if (encoded + bufSize < blockSize) {
+          reads = readBlocksAsync(readPool, blocks, next);
+        }
 
-    for (long encoded = 0; encoded < blockSize; encoded += bufSize) {
-      // Read some data from each block = bufSize.
-      for (int i = 0; i < blocks.length; i++) {
-        RaidUtils.readTillEnd(blocks[i], readBufs[i], true);
-      }
+        // Encode the data read.
+        reedSolomonCode.encodeBulk(current, writeBufs, bufSize);
 
-      // Encode the data read.
-      for (int j = 0; j < bufSize; j++) {
-        performEncode(readBufs, writeBufs, j, data, code);
-      }
+        // Now that we have some data to write, send it to the temp files.
+        for (int i = 0; i < paritySize; i++) {
+          outs[i].write(writeBufs[i], 0, bufSize);
+        }
 
-      // Now that we have some data to write, send it to the temp files.
-      for (int i = 0; i < paritySize; i++) {
-        outs[i].write(writeBufs[i], 0, bufSize);
+        reporter.progress();
+      }
+    } finally {
+      if (reads != null) {
+        finishReads(reads);
       }
-
-      reporter.progress();
-    }
-  }
-
-  void performEncode(byte[][] readBufs, byte[][] writeBufs, int idx,
-                          int[] data, int[] code) {
-    for (int i = 0; i < paritySize; i++) {
-      code[i] = 0;
-    }
-    for (int i = 0; i < stripeSize; i++) {
-      data[i] = readBufs[i][idx] & 0x000000FF;
-    }
-    reedSolomonCode.encode(data, code);
-    for (int i = 0; i < paritySize; i++) {
-      writeBufs[i][idx] = (byte)code[i];
     }
   }
 
@@ -49,8 +49,10 @@ public class XORDecoder extends Decoder {
     FileStatus srcStat = fs.getFileStatus(srcFile);
     ArrayList<FSDataInputStream> xorinputs = new ArrayList<FSDataInputStream>();
 
+    // Start all the inputs at bytesToSkip into their blocks, so that only
+    // the bytes to be written out are read.
     FSDataInputStream parityFileIn = parityFs.open(parityFile);
-    parityFileIn.seek(parityOffset(errorOffset, blockSize));
+    parityFileIn.seek(parityOffset(errorOffset, blockSize) + bytesToSkip);
     xorinputs.add(parityFileIn);
 
     long errorBlockOffset = (errorOffset / blockSize) * blockSize;
@@ -60,17 +62,16 @@ public class XORDecoder extends Decoder {
         LOG.info("Skipping block at " + srcFile + ":" + errorBlockOffset);
         continue;
       }
-      if (srcOffsets[i] < srcStat.getLen()) {
+      if (srcOffsets[i] + bytesToSkip < srcStat.getLen()) {
         FSDataInputStream in = fs.open(srcFile);
-        in.seek(srcOffsets[i]);
+        in.seek(srcOffsets[i] + bytesToSkip);
         xorinputs.add(in);
       }
     }
     FSDataInputStream[] inputs = xorinputs.toArray(
                                     new FSDataInputStream[]{null});
-    ParityInputStream recovered =
-      new ParityInputStream(inputs, limit, readBufs[0], writeBufs[0]);
-    recovered.skip(bytesToSkip);
+    ParityInputStream recovered = new ParityInputStream(
+      inputs, limit - bytesToSkip, readBufs[0], writeBufs[0]);
     recovered.drain(out, null);
   }
 
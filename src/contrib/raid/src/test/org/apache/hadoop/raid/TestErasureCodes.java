@@ -65,6 +65,100 @@ public class TestErasureCodes extends TestCase {
     }
   }
 
+  public void testEncodeDecodeBulk() {
+    for (int n = 0; n < TEST_CODES; n++) {
+      int stripeSize = RAND.nextInt(99) + 1; // 1, 2, 3, ... 100
+      int paritySize = RAND.nextInt(9) + 1; //1, 2, 3, 4, ... 10
+      ErasureCode ec = new ReedSolomonCode(stripeSize, paritySize);
+      int len = RAND.nextInt(10000) + 1;
+      byte[][] message = new byte[stripeSize][len];
+      for (int i = 0; i < stripeSize; i++) {
+        RAND.nextBytes(message[i]);
+      }
+      byte[][] parity = new byte[paritySize][len];
+      ec.encodeBulk(message, parity, len);
+
+      // the bulk parity matches the one computed symbol by symbol
+      int[] tmpIn = new int[stripeSize];
+      int[] tmpOut = new int[paritySize];
+      for (int k = 0; k < len; k += 97) {
+        for (int j = 0; j < stripeSize; j++) {
+          tmpIn[j] = 0x000000FF & message[j][k];
+        }
+        ec.encode(tmpIn, tmpOut);
+        for (int j = 0; j < paritySize; j++) {
+          assertEquals("Encode failed", (byte)tmpOut[j], parity[j][k]);
+        }
+      }
+
+      byte[][] data = new byte[stripeSize + paritySize][];
+      for (int i = 0; i < paritySize; i++) {
+        data[i] = parity[i];
+      }
+      for (int i = 0; i < stripeSize; i++) {
+        data[i + paritySize] = message[i];
+      }
+      // decode twice to use the cached decoding matrix
+      for (int m = 0; m < 2; m++) {
+        int erasedLen = RAND.nextInt(paritySize) + 1;
+        int[] erasedLocations = randomErasedLocation(erasedLen, data.length);
+        byte[][] available = data.clone();
+        for (int i = 0; i < erasedLen; i++) {
+          available[erasedLocations[i]] = new byte[len];
+        }
+        byte[][] erasedValues = new byte[erasedLen][len];
+        ec.decodeBulk(available, erasedLocations, erasedValues, len);
+        ec.decodeBulk(available, erasedLocations, erasedValues, len);
+        for (int i = 0; i < erasedLen; i++) {
+          assertTrue("Decode failed", java.util.Arrays.equals(
+              data[erasedLocations[i]], erasedValues[i]));
+        }
+      }
+    }
+  }
+
+  public void testRSBulkPerformance() {
+    int stripeSize = 10;
+    int paritySize = 4;
+    ErasureCode ec = new ReedSolomonCode(stripeSize, paritySize);
+    int bufsize = 1024 * 1024 * 10;
+    byte[][] message = new byte[stripeSize][bufsize];
+    for (int i = 0; i < stripeSize; i++) {
+      RAND.nextBytes(message[i]);
+    }
+    byte[][] parity = new byte[paritySize][bufsize];
+
+    long encodeStart = System.currentTimeMillis();
+    ec.encodeBulk(message, parity, bufsize);
+    long encodeEnd = System.currentTimeMillis();
+    float encodeMSecs = Math.max(1, encodeEnd - encodeStart);
+    System.out.println("Time to bulk encode rs = " + encodeMSecs +
+      "msec (" + (stripeSize * bufsize) / (1000 * encodeMSecs) +
+      " MB/s of data)");
+
+    byte[][] data = new byte[paritySize + stripeSize][];
+    for (int i = 0; i < paritySize; i++) {
+      data[i] = parity[i];
+    }
+    for (int i = 0; i < stripeSize; i++) {
+      data[i + paritySize] = message[i];
+    }
+    // 4th location is the 0th symbol in the message
+    int[] erasedLocations = new int[]{4, 1, 5, 7};
+    byte[] copy = message[0];
+    data[4] = new byte[bufsize];
+    byte[][] erasedValues = new byte[erasedLocations.length][bufsize];
+
+    long decodeStart = System.currentTimeMillis();
+    ec.decodeBulk(data, erasedLocations, erasedValues, bufsize);
+    long decodeEnd = System.currentTimeMillis();
+    float decodeMSecs = Math.max(1, decodeEnd - decodeStart);
+    System.out.println("Time to bulk decode = " + decodeMSecs +
+      "msec (" + (stripeSize * bufsize) / (1000 * decodeMSecs) +
+      " MB/s of data)");
+    assertTrue("Decode failed", java.util.Arrays.equals(copy, erasedValues[0]));
+  }
+
   public void testRSPerformance() {
     int stripeSize = 10;
     int paritySize = 4;
@@ -169,6 +263,58 @@ public class TestErasureCodes extends TestCase {
     assertTrue("Decode failed", java.util.Arrays.equals(copy, message[0]));
   }
 
+  /**
+   * Checks RaidUtils.xor against a byte-at-a-time XOR for unaligned
+   * offsets and lengths, then compares the rates of the two on 1MB buffers.
+   */
+  public void testXorLongWord() {
+    for (int n = 0; n < TEST_TIMES; n++) {
+      int len = RAND.nextInt(100);
+      int srcOff = RAND.nextInt(16);
+      int dstOff = RAND.nextInt(16);
+      byte[] src = new byte[srcOff + len];
+      byte[] expected = new byte[dstOff + len + RAND.nextInt(16)];
+      RAND.nextBytes(src);
+      RAND.nextBytes(expected);
+      byte[] actual = expected.clone();
+      for (int j = 0; j < len; j++) {
+        expected[dstOff + j] ^= src[srcOff + j];
+      }
+      RaidUtils.xor(src, srcOff, actual, dstOff, len);
+      assertTrue("Long-word xor differs",
+                 java.util.Arrays.equals(expected, actual));
+    }
+
+    int bufsize = 1024 * 1024;
+    int rounds = 200;
+    byte[] src = new byte[bufsize];
+    RAND.nextBytes(src);
+    byte[] byByte = new byte[bufsize];
+    byte[] byLong = new byte[bufsize];
+    RAND.nextBytes(byByte);
+    System.arraycopy(byByte, 0, byLong, 0, bufsize);
+
+    long byteStart = System.currentTimeMillis();
+    for (int r = 0; r < rounds; r++) {
+      for (int j = 0; j < bufsize; j++) {
+        byByte[j] ^= src[j];
+      }
+    }
+    float byteMSecs = Math.max(1, System.currentTimeMillis() - byteStart);
+
+    long longStart = System.currentTimeMillis();
+    for (int r = 0; r < rounds; r++) {
+      RaidUtils.xor(src, 0, byLong, 0, bufsize);
+    }
+    float longMSecs = Math.max(1, System.currentTimeMillis() - longStart);
+
+    System.out.println("xor by byte = " +
+      ((long)rounds * bufsize) / (1000 * byteMSecs) + " MB/s, by long = " +
+      ((long)rounds * bufsize) / (1000 * longMSecs) + " MB/s");
+    assertTrue("Long-word xor differs",
+               java.util.Arrays.equals(byByte, byLong));
+  }
+
   private int[] randomErasedLocation(int erasedLen, int dataLen) {
     int[] erasedLocations = new int[erasedLen];
     for (int i = 0; i < erasedLen; i++) {
@@ -18,7 +18,12 @@
 
 package org.apache.hadoop.raid;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
 
 import junit.framework.TestCase;
 import org.apache.commons.logging.Log;
@@ -57,6 +62,45 @@ public class TestReedSolomonEncoder extends TestCase {
   MiniDFSCluster dfs = null;
   FileSystem fileSys = null;
 
+  /**
+   * Checks that encoding a stripe through the read-ahead pipeline gives the
+   * same parity as encoding the whole blocks at once.
+   */
+  public void testEncodeStripe() throws Exception {
+    int stripeSize = 10;
+    int paritySize = 4;
+    int blockSize = 8192;
+    Configuration conf = new Configuration();
+    conf.setInt("raid.encoder.bufsize", 1024);
+    conf.setInt("raid.encoder.read.threads", 3);
+    ReedSolomonEncoder encoder = new ReedSolomonEncoder(
+      conf, stripeSize, paritySize);
+
+    Random rand = new Random();
+    byte[][] data = new byte[stripeSize][blockSize];
+    InputStream[] blocks = new InputStream[stripeSize];
+    for (int i = 0; i < stripeSize; i++) {
+      rand.nextBytes(data[i]);
+      // the last block is partial, the rest of it reads as zeros
+      int len = (i == stripeSize - 1) ? blockSize / 3 : blockSize;
+      Arrays.fill(data[i], len, blockSize, (byte)0);
+      blocks[i] = new ByteArrayInputStream(data[i], 0, len);
+    }
+    ByteArrayOutputStream[] outs = new ByteArrayOutputStream[paritySize];
+    for (int i = 0; i < paritySize; i++) {
+      outs[i] = new ByteArrayOutputStream();
+    }
+    encoder.encodeStripe(blocks, 0, blockSize, outs, Reporter.NULL);
+
+    byte[][] expected = new byte[paritySize][blockSize];
+    new ReedSolomonCode(stripeSize, paritySize).encodeBulk(
+      data, expected, blockSize);
+    for (int i = 0; i < paritySize; i++) {
+      assertTrue("Wrong parity for block " + i,
+                 Arrays.equals(expected[i], outs[i].toByteArray()));
+    }
+  }
+
   public void testEncoder() throws Exception {
     mySetup();
     int stripeSize = 10;
@@ -28,6 +28,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -818,6 +819,68 @@ public abstract class FileSystem extends Configured implements Closeable {
     };
   }
 
+  /**
+   * Listing several paths
+   * For a directory the entries in it are returned, and a file is returned
+   * itself. The results include block locations if they are files.
+   * The results are filtered by the given path filter.
+   * File systems that list many directories per call override this.
+   * @param paths the paths to list
+   * @param filter a path filter
+   * @param recursive if true, the entries of the subdirectories are listed
+   *                  in place of the subdirectories
+   * @return an iterator that traverses statuses of the files/directories
+   *         in the given paths, the entries of a path after those of the
+   *         paths before it; only in a recursive listing the entries of a
+   *         subdirectory may come later than that
+   * @throws FileNotFoundException if a path does not exist
+   * @throws IOException if any I/O error occurred
+   */
+  public RemoteIterator<LocatedFileStatus> listLocatedStatus(
+      final Path[] paths, final PathFilter filter, final boolean recursive)
+  throws FileNotFoundException, IOException {
+    return new RemoteIterator<LocatedFileStatus>() {
+      // listings of the current path and of its subdirectories being listed
+      private final LinkedList<RemoteIterator<LocatedFileStatus>> itors =
+        new LinkedList<RemoteIterator<LocatedFileStatus>>();
+      private int nextPath = 0;
+      private LocatedFileStatus curStat = null;
+
+      @Override
+      public boolean hasNext() throws IOException {
+        while (curStat == null) {
+          if (itors.isEmpty()) {
+            if (nextPath == paths.length) {
+              return false;
+            }
+            itors.addFirst(listLocatedStatus(paths[nextPath++], filter));
+          } else if (!itors.getFirst().hasNext()) {
+            itors.removeFirst();
+          } else {
+            LocatedFileStatus next = itors.getFirst().next();
+            if (recursive && next.isDir()) {
+              itors.addFirst(listLocatedStatus(next.getPath(), filter));
+            } else {
+              curStat = next;
+            }
+          }
+        }
+        return true;
+      }
+
+      @Override
+      public LocatedFileStatus next() throws IOException {
+        if (!hasNext()) {
+          throw new NoSuchElementException("No more entry in " +
+                                           Arrays.toString(paths));
+        }
+        LocatedFileStatus tmp = curStat;
+        curStat = null;
+        return tmp;
+      }
+    };
+  }
+
   /*
    * Filter files/directories in the given path using the user-supplied path
    * filter. Results are added to the given array <code>results</code>.
@@ -22,6 +22,12 @@ import java.io.*;
 import java.util.*;
 import java.rmi.server.UID;
 import java.security.MessageDigest;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import org.apache.commons.logging.*;
 import org.apache.hadoop.fs.*;
 import org.apache.hadoop.io.compress.CodecPool;
@@ -37,6 +43,7 @@ import org.apache.hadoop.io.serializer.Deserializer;
 import org.apache.hadoop.io.serializer.SerializationFactory;
 import org.apache.hadoop.io.serializer.Serializer;
 import org.apache.hadoop.conf.*;
+import org.apache.hadoop.util.Daemon;
 import org.apache.hadoop.util.Progressable;
 import org.apache.hadoop.util.Progress;
 import org.apache.hadoop.util.ReflectionUtils;
@@ -1166,6 +1173,13 @@ public class SequenceFile {
     private DataOutputBuffer valBuffer = new DataOutputBuffer();
 
     private int compressionBlockSize;
+
+    // With io.seqfile.compress.threads > 1, full blocks are compressed on a
+    // pool of threads and written out in order as they complete.
+    private ExecutorService compressionPool = null;
+    private LinkedList<Future<DataOutputBuffer>> pendingBlocks =
+      new LinkedList<Future<DataOutputBuffer>>();
+    private int maxPendingBlocks;
     
     /** Create the named file. */
     public BlockCompressWriter(FileSystem fs, Configuration conf, Path name, 
@@ -1236,6 +1250,17 @@ public class SequenceFile {
       keySerializer.open(keyBuffer);
       uncompressedValSerializer.close();
       uncompressedValSerializer.open(valBuffer);
+      int threads = conf.getInt("io.seqfile.compress.threads", 1);
+      if (threads > 1) {
+        compressionPool = Executors.newFixedThreadPool(threads,
+            new ThreadFactory() {
+              public Thread newThread(Runnable r) {
+                return new Daemon(r);
+              }
+            });
+        // Keep the threads busy while the oldest block is being written.
+        maxPendingBlocks = 2 * threads;
+      }
     }
     
     /** Workhorse to check and write out compressed data/lengths */
@@ -1255,7 +1280,27 @@ public class SequenceFile {
     
     /** Compress and flush contents to dfs */
     public synchronized void sync() throws IOException {
-      if (noBufferedRecords > 0) {
+      compressBlock();
+      writePendingBlocks(0);
+    }
+
+    /**
+     * Compress the buffered records and write them out. With a compression
+     * pool, hand them to the pool instead, and write out completed blocks
+     * while too many are pending.
+     */
+    private void compressBlock() throws IOException {
+      if (noBufferedRecords > 0 && compressionPool != null) {
+        pendingBlocks.add(compressionPool.submit(new BlockCompressor(codec,
+            noBufferedRecords, copyOf(keyLenBuffer), copyOf(keyBuffer),
+            copyOf(valLenBuffer), copyOf(valBuffer))));
+        keyLenBuffer.reset();
+        keyBuffer.reset();
+        valLenBuffer.reset();
+        valBuffer.reset();
+        noBufferedRecords = 0;
+        writePendingBlocks(maxPendingBlocks - 1);
+      } else if (noBufferedRecords > 0) {
         super.sync();
         
         // No. of records
@@ -1281,11 +1326,88 @@ public class SequenceFile {
       }
       
     }
+
+    /**
+     * Write out compressed blocks, in order, until at most maxPending are
+     * still pending.
+     */
+    private void writePendingBlocks(int maxPending) throws IOException {
+      while (pendingBlocks.size() > maxPending) {
+        DataOutputBuffer block;
+        try {
+          block = pendingBlocks.removeFirst().get();
+        } catch (InterruptedException e) {
+          throw new IOException("Interrupted while compressing " + e);
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof IOException) {
+            throw (IOException)e.getCause();
+          }
+          throw new IOException("Failed to compress: " + e.getCause());
+        }
+        super.sync();
+        out.write(block.getData(), 0, block.getLength());
+        out.flush();
+      }
+    }
+
+    private static DataOutputBuffer copyOf(DataOutputBuffer buffer)
+      throws IOException {
+      DataOutputBuffer copy = new DataOutputBuffer(buffer.getLength());
+      copy.write(buffer.getData(), 0, buffer.getLength());
+      return copy;
+    }
+
+    /**
+     * Compresses the buffers of a block with a compressor from the
+     * CodecPool, into the same layout as the inline path: the number of
+     * records followed by each compressed buffer with its length.
+     */
+    private static class BlockCompressor implements Callable<DataOutputBuffer> {
+      private final CompressionCodec codec;
+      private final int noRecords;
+      private final DataOutputBuffer[] buffers;
+
+      BlockCompressor(CompressionCodec codec, int noRecords,
+                      DataOutputBuffer... buffers) {
+        this.codec = codec;
+        this.noRecords = noRecords;
+        this.buffers = buffers;
+      }
+
+      public DataOutputBuffer call() throws IOException {
+        DataOutputBuffer block = new DataOutputBuffer();
+        DataOutputBuffer compressed = new DataOutputBuffer();
+        Compressor compressor = CodecPool.getCompressor(codec);
+        try {
+          CompressionOutputStream filter =
+            codec.createOutputStream(compressed, compressor);
+          WritableUtils.writeVInt(block, noRecords);
+          for (DataOutputBuffer buffer : buffers) {
+            filter.resetState();
+            compressed.reset();
+            filter.write(buffer.getData(), 0, buffer.getLength());
+            filter.finish();
+            WritableUtils.writeVInt(block, compressed.getLength());
+            block.write(compressed.getData(), 0, compressed.getLength());
+          }
+        } finally {
+          CodecPool.returnCompressor(compressor);
+        }
+        return block;
+      }
+    }
     
     /** Close the file. */
     public synchronized void close() throws IOException {
-      if (out != null) {
-        sync();
+      try {
+        if (out != null) {
+          sync();
+        }
+      } finally {
+        if (compressionPool != null) {
+          compressionPool.shutdownNow();
+          compressionPool = null;
+        }
       }
       super.close();
     }
@@ -1318,7 +1440,7 @@ public class SequenceFile {
       // Compress and flush?
       int currentBlockSize = keyBuffer.getLength() + valBuffer.getLength();
       if (currentBlockSize >= compressionBlockSize) {
-        sync();
+        compressBlock();
       }
     }
     
@@ -1343,7 +1465,7 @@ public class SequenceFile {
       // Compress and flush?
       int currentBlockSize = keyBuffer.getLength() + valBuffer.getLength(); 
       if (currentBlockSize >= compressionBlockSize) {
-        sync();
+        compressBlock();
       }
     }
   
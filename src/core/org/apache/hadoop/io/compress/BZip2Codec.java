@@ -23,30 +23,53 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
-import org.apache.hadoop.io.compress.bzip2.BZip2DummyCompressor;
-import org.apache.hadoop.io.compress.bzip2.BZip2DummyDecompressor;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.bzip2.Bzip2Compressor;
+import org.apache.hadoop.io.compress.bzip2.Bzip2Decompressor;
+import org.apache.hadoop.io.compress.bzip2.Bzip2Factory;
 import org.apache.hadoop.io.compress.bzip2.CBZip2InputStream;
 import org.apache.hadoop.io.compress.bzip2.CBZip2OutputStream;
 
 /**
  * This class provides CompressionOutputStream and CompressionInputStream for
- * compression and decompression. Currently we dont have an implementation of
- * the Compressor and Decompressor interfaces, so those methods of
- * CompressionCodec which have a Compressor or Decompressor type argument, throw
- * UnsupportedOperationException.
+ * compression and decompression.
+ *
+ * When native-bzip2 is available the codec hands out
+ * {@link Bzip2Compressor}s and {@link Bzip2Decompressor}s, which call libbz2
+ * and can be pooled through {@link CodecPool}. Otherwise it hands out dummy
+ * compressors and falls back to the pure-java bzip2 streams, which ignore
+ * them.
  */
-public class BZip2Codec implements
+public class BZip2Codec implements Configurable,
     org.apache.hadoop.io.compress.CompressionCodec {
 
   private static final String HEADER = "BZ";
   private static final int HEADER_LEN = HEADER.length();
 
+  private Configuration conf;
+
   /**
   * Creates a new instance of BZip2Codec
   */
   public BZip2Codec() {
   }
 
+  public void setConf(Configuration conf) {
+    this.conf = conf;
+  }
+
+  public Configuration getConf() {
+    return conf;
+  }
+
+  private Configuration getConfOrDefault() {
+    if (conf == null) {
+      conf = new Configuration();
+    }
+    return conf;
+  }
+
   /**
   * Creates CompressionOutputStream for BZip2
   *
@@ -58,38 +81,39 @@ public class BZip2Codec implements
   */
   public CompressionOutputStream createOutputStream(OutputStream out)
       throws IOException {
-    return new BZip2CompressionOutputStream(out);
+    return createOutputStream(out, createCompressor());
   }
 
   /**
-   * This functionality is currently not supported.
-   *
-   * @throws java.lang.UnsupportedOperationException
-   *             Throws UnsupportedOperationException
+   * Creates CompressionOutputStream for BZip2 that uses the given
+   * compressor. Compressors other than {@link Bzip2Compressor} are ignored
+   * and the pure-java stream is used instead.
    */
   public CompressionOutputStream createOutputStream(OutputStream out,
       Compressor compressor) throws IOException {
-    return createOutputStream(out);
+    if (compressor instanceof Bzip2Compressor) {
+      return new CompressorStream(out, compressor,
+          Bzip2Factory.getBufferSize(getConfOrDefault()));
+    }
+    return new BZip2CompressionOutputStream(out);
   }
 
   /**
-  * This functionality is currently not supported.
+  * Get the type of {@link Compressor} needed by this codec.
   *
-  * @throws java.lang.UnsupportedOperationException
-  *             Throws UnsupportedOperationException
+  * @return {@link Bzip2Compressor} with native-bzip2, a dummy otherwise
   */
   public Class<? extends org.apache.hadoop.io.compress.Compressor> getCompressorType() {
-    return BZip2DummyCompressor.class;
+    return Bzip2Factory.getBzip2CompressorType(getConfOrDefault());
   }
 
   /**
-  * This functionality is currently not supported.
+  * Create a new {@link Compressor} for use by this codec.
   *
-  * @throws java.lang.UnsupportedOperationException
-  *             Throws UnsupportedOperationException
+  * @return {@link Bzip2Compressor} with native-bzip2, a dummy otherwise
   */
   public Compressor createCompressor() {
-    return new BZip2DummyCompressor();
+    return Bzip2Factory.getBzip2Compressor(getConfOrDefault());
   }
 
   /**
@@ -103,38 +127,39 @@ public class BZip2Codec implements
   */
   public CompressionInputStream createInputStream(InputStream in)
       throws IOException {
-    return new BZip2CompressionInputStream(in);
+    return createInputStream(in, createDecompressor());
   }
 
   /**
-  * This functionality is currently not supported.
-  *
-  * @throws java.lang.UnsupportedOperationException
-  *             Throws UnsupportedOperationException
-  */
+   * Creates CompressionInputStream for BZip2 that uses the given
+   * decompressor. Decompressors other than {@link Bzip2Decompressor} are
+   * ignored and the pure-java stream is used instead.
+   */
   public CompressionInputStream createInputStream(InputStream in,
       Decompressor decompressor) throws IOException {
-    return createInputStream(in);
+    if (decompressor instanceof Bzip2Decompressor) {
+      return new DecompressorStream(in, decompressor,
+          Bzip2Factory.getBufferSize(getConfOrDefault()));
+    }
+    return new BZip2CompressionInputStream(in);
   }
 
   /**
-  * This functionality is currently not supported.
+  * Get the type of {@link Decompressor} needed by this codec.
   *
-  * @throws java.lang.UnsupportedOperationException
-  *             Throws UnsupportedOperationException
+  * @return {@link Bzip2Decompressor} with native-bzip2, a dummy otherwise
   */
   public Class<? extends org.apache.hadoop.io.compress.Decompressor> getDecompressorType() {
-    return BZip2DummyDecompressor.class;
+    return Bzip2Factory.getBzip2DecompressorType(getConfOrDefault());
   }
 
   /**
-  * This functionality is currently not supported.
+  * Create a new {@link Decompressor} for use by this codec.
   *
-  * @throws java.lang.UnsupportedOperationException
-  *             Throws UnsupportedOperationException
+  * @return {@link Bzip2Decompressor} with native-bzip2, a dummy otherwise
   */
   public Decompressor createDecompressor() {
-    return new BZip2DummyDecompressor();
+    return Bzip2Factory.getBzip2Decompressor(getConfOrDefault());
   }
 
   /**
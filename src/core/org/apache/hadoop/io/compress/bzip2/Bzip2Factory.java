@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.io.compress.bzip2;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.util.NativeCodeLoader;
+
+/**
+ * A collection of factories to create the right
+ * bzip2 compressor/decompressor instances.
+ *
+ * Without native-bzip2 the dummy implementations are returned; the
+ * codec then falls back to the pure-java bzip2 streams.
+ */
+public class Bzip2Factory {
+  private static final Log LOG =
+    LogFactory.getLog(Bzip2Factory.class);
+
+  private static boolean nativeBzip2Loaded = false;
+
+  static {
+    if (NativeCodeLoader.isNativeCodeLoaded()) {
+      nativeBzip2Loaded = Bzip2Compressor.isNativeBzip2Loaded() &&
+        Bzip2Decompressor.isNativeBzip2Loaded();
+
+      if (nativeBzip2Loaded) {
+        LOG.info("Successfully loaded & initialized native-bzip2 library");
+      } else {
+        LOG.warn("Failed to load/initialize native-bzip2 library");
+      }
+    }
+  }
+
+  /**
+   * Check if native-bzip2 code is loaded & initialized correctly and
+   * can be loaded for this job.
+   *
+   * @param conf configuration
+   * @return <code>true</code> if native-bzip2 is loaded & initialized
+   *         and can be loaded for this job, else <code>false</code>
+   */
+  public static boolean isNativeBzip2Loaded(Configuration conf) {
+    return nativeBzip2Loaded && conf.getBoolean("hadoop.native.lib", true);
+  }
+
+  /**
+   * Return the appropriate type of the bzip2 compressor.
+   *
+   * @param conf configuration
+   * @return the appropriate type of the bzip2 compressor.
+   */
+  public static Class<? extends Compressor>
+  getBzip2CompressorType(Configuration conf) {
+    return (isNativeBzip2Loaded(conf)) ?
+            Bzip2Compressor.class : BZip2DummyCompressor.class;
+  }
+
+  /**
+   * Return the appropriate implementation of the bzip2 compressor.
+   *
+   * @param conf configuration
+   * @return the appropriate implementation of the bzip2 compressor.
+   */
+  public static Compressor getBzip2Compressor(Configuration conf) {
+    return (isNativeBzip2Loaded(conf)) ?
+      new Bzip2Compressor(getBlockSize(conf),
+                          Bzip2Compressor.DEFAULT_WORK_FACTOR,
+                          getBufferSize(conf)) :
+      new BZip2DummyCompressor();
+  }
+
+  /**
+   * Return the appropriate type of the bzip2 decompressor.
+   *
+   * @param conf configuration
+   * @return the appropriate type of the bzip2 decompressor.
+   */
+  public static Class<? extends Decompressor>
+  getBzip2DecompressorType(Configuration conf) {
+    return (isNativeBzip2Loaded(conf)) ?
+            Bzip2Decompressor.class : BZip2DummyDecompressor.class;
+  }
+
+  /**
+   * Return the appropriate implementation of the bzip2 decompressor.
+   *
+   * @param conf configuration
+   * @return the appropriate implementation of the bzip2 decompressor.
+   */
+  public static Decompressor getBzip2Decompressor(Configuration conf) {
+    return (isNativeBzip2Loaded(conf)) ?
+      new Bzip2Decompressor(false, getBufferSize(conf)) :
+      new BZip2DummyDecompressor();
+  }
+
+  /**
+   * Return the size of the buffers used between the streams and
+   * native-bzip2.
+   *
+   * @param conf configuration
+   * @return buffer size in bytes
+   */
+  public static int getBufferSize(Configuration conf) {
+    return conf.getInt("io.compression.codec.bzip2.buffersize", 64*1024);
+  }
+
+  private static int getBlockSize(Configuration conf) {
+    int blockSize = conf.getInt("io.compression.codec.bzip2.blocksize",
+                                Bzip2Compressor.DEFAULT_BLOCK_SIZE);
+    return Math.max(1, Math.min(9, blockSize));
+  }
+}
@@ -25,6 +25,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
@@ -479,6 +480,11 @@ final class BCFile {
     // Index for meta blocks
     final MetaIndex metaIndex;
     final Version version;
+    // optional cache of decompressed data blocks, and the key of this file
+    private BlockCache cache = null;
+    private String cacheId = null;
+    // optional memory mapping of the whole file
+    private ByteBuffer mapped = null;
 
     /**
      * Intermediate class that maintain the state of a Readable Compression
@@ -490,7 +496,7 @@ final class BCFile {
       private final BlockRegion region;
       private final InputStream in;
 
-      public RBlockState(Algorithm compressionAlgo, FSDataInputStream fsin,
+      public RBlockState(Algorithm compressionAlgo, InputStream rawIn,
           BlockRegion region, Configuration conf) throws IOException {
         this.compressAlgo = compressionAlgo;
         this.region = region;
@@ -498,17 +504,25 @@ final class BCFile {
 
         try {
           this.in =
-              compressAlgo
-                  .createDecompressionStream(new BoundedRangeFileInputStream(
-                      fsin, this.region.getOffset(), this.region
-                          .getCompressedSize()), decompressor, TFile
-                      .getFSInputBufferSize(conf));
+              compressAlgo.createDecompressionStream(rawIn, decompressor, TFile
+                  .getFSInputBufferSize(conf));
         } catch (IOException e) {
           compressAlgo.returnDecompressor(decompressor);
           throw e;
         }
       }
 
+      /**
+       * Read a block that is already decompressed.
+       */
+      public RBlockState(Algorithm compressionAlgo, byte[] block,
+          BlockRegion region) {
+        this.compressAlgo = compressionAlgo;
+        this.region = region;
+        this.decompressor = null;
+        this.in = new BoundedByteBufferInputStream(ByteBuffer.wrap(block));
+      }
+
       /**
        * Get the output stream for BlockAppender's consumption.
        * 
@@ -530,8 +544,10 @@ final class BCFile {
         try {
           in.close();
         } finally {
-          compressAlgo.returnDecompressor(decompressor);
-          decompressor = null;
+          if (decompressor != null) {
+            compressAlgo.returnDecompressor(decompressor);
+            decompressor = null;
+          }
         }
       }
     }
@@ -641,6 +657,30 @@ final class BCFile {
       }
     }
 
+    /**
+     * Serve data blocks through a cache of decompressed blocks.
+     * 
+     * @param cache
+     *          The block cache.
+     * @param cacheId
+     *          Identifies this file, and its version, in the cache.
+     */
+    void setBlockCache(BlockCache cache, String cacheId) {
+      this.cache = cache;
+      this.cacheId = cacheId;
+    }
+
+    /**
+     * Read blocks from a memory mapping of the file instead of the input
+     * stream.
+     * 
+     * @param mapped
+     *          The mapping of the whole file.
+     */
+    void setMappedFile(ByteBuffer mapped) {
+      this.mapped = mapped;
+    }
+
     /**
      * Get the name of the default compression algorithm.
      * 
@@ -720,12 +760,39 @@ final class BCFile {
       }
 
       BlockRegion region = dataIndex.getBlockRegionList().get(blockIndex);
-      return createReader(dataIndex.getDefaultCompressionAlgorithm(), region);
+      Algorithm compressAlgo = dataIndex.getDefaultCompressionAlgorithm();
+      if (cache == null || region.getRawSize() > Integer.MAX_VALUE) {
+        return createReader(compressAlgo, region);
+      }
+
+      byte[] block = cache.get(cacheId, region.getOffset());
+      if (block == null) {
+        block = new byte[(int) region.getRawSize()];
+        BlockReader blockR = createReader(compressAlgo, region);
+        try {
+          blockR.readFully(block);
+        } finally {
+          blockR.close();
+        }
+        cache.put(cacheId, region.getOffset(), block);
+      }
+      return new BlockReader(new RBlockState(compressAlgo, block, region));
     }
 
     private BlockReader createReader(Algorithm compressAlgo, BlockRegion region)
         throws IOException {
-      RBlockState rbs = new RBlockState(compressAlgo, in, region, conf);
+      InputStream rawIn;
+      if (mapped != null) {
+        ByteBuffer buf = mapped.duplicate();
+        buf.position((int) region.getOffset());
+        buf.limit((int) (region.getOffset() + region.getCompressedSize()));
+        rawIn = new BoundedByteBufferInputStream(buf);
+      } else {
+        rawIn =
+            new BoundedRangeFileInputStream(in, region.getOffset(), region
+                .getCompressedSize());
+      }
+      RBlockState rbs = new RBlockState(compressAlgo, rawIn, region, conf);
       return new BlockReader(rbs);
     }
 
@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.hadoop.io.file.tfile;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * A size-bounded LRU cache of decompressed TFile data blocks, shared by all
+ * the TFile readers of a process. Blocks are keyed by the file they come from
+ * and their offset within it, so repeated point lookups into the same blocks
+ * skip both the read and the decompression.
+ * 
+ * The cache is only used by readers opened with
+ * {@link TFile.Reader#Reader(org.apache.hadoop.fs.FileSystem,
+ * org.apache.hadoop.fs.Path, Configuration)}, and only when
+ * "tfile.blockcache.size" is set to a positive number of bytes.
+ */
+public class BlockCache {
+  static final String CACHE_SIZE_ATTR = "tfile.blockcache.size";
+
+  private static BlockCache instance = null;
+
+  /**
+   * Get the process-wide block cache.
+   * 
+   * @param conf
+   *          The configuration. Caching is enabled if its
+   *          "tfile.blockcache.size" is positive. The value of the first
+   *          configuration that enables caching becomes the capacity of the
+   *          shared cache; the values of later ones do not change it, so that
+   *          one reader cannot shrink the cache of all the others. Use
+   *          {@link #setCapacity(long)} to resize the cache.
+   * @return the shared cache; or null if caching is disabled.
+   */
+  public static synchronized BlockCache getInstance(Configuration conf) {
+    long capacity = conf.getLong(CACHE_SIZE_ATTR, 0);
+    if (capacity <= 0) {
+      return null;
+    }
+    if (instance == null) {
+      instance = new BlockCache(capacity);
+    }
+    return instance;
+  }
+
+  /**
+   * Key of a cached block.
+   */
+  private static final class BlockKey {
+    private final String file;
+    private final long offset;
+
+    BlockKey(String file, long offset) {
+      this.file = file;
+      this.offset = offset;
+    }
+
+    @Override
+    public int hashCode() {
+      return file.hashCode() * 31 + (int) (offset ^ (offset >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof BlockKey)) return false;
+      BlockKey other = (BlockKey) obj;
+      return offset == other.offset && file.equals(other.file);
+    }
+  }
+
+  // access-ordered, so iteration starts with the least recently used block
+  private final LinkedHashMap<BlockKey, byte[]> blocks =
+      new LinkedHashMap<BlockKey, byte[]>(16, 0.75f, true);
+  private long capacity;
+  private long size = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  /**
+   * Constructor
+   * 
+   * @param capacity
+   *          Maximum total size, in bytes, of the cached blocks.
+   */
+  public BlockCache(long capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+    this.capacity = capacity;
+  }
+
+  /**
+   * Look up a block.
+   * 
+   * @param file
+   *          Identifies the file and its version.
+   * @param offset
+   *          Offset of the block in the file.
+   * @return the decompressed block; or null if it is not cached. The caller
+   *         must not modify the returned array.
+   */
+  public synchronized byte[] get(String file, long offset) {
+    byte[] block = blocks.get(new BlockKey(file, offset));
+    if (block == null) {
+      ++misses;
+    } else {
+      ++hits;
+    }
+    return block;
+  }
+
+  /**
+   * Add a block, evicting the least recently used blocks to make room. Blocks
+   * larger than the capacity are not cached.
+   * 
+   * @param file
+   *          Identifies the file and its version.
+   * @param offset
+   *          Offset of the block in the file.
+   * @param block
+   *          The decompressed block. It must not be modified afterwards.
+   */
+  public synchronized void put(String file, long offset, byte[] block) {
+    if (block.length > capacity) {
+      return;
+    }
+    byte[] old = blocks.put(new BlockKey(file, offset), block);
+    if (old != null) {
+      size -= old.length;
+    }
+    size += block.length;
+    evict();
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<BlockKey, byte[]>> it = blocks.entrySet().iterator();
+    while (size > capacity && it.hasNext()) {
+      size -= it.next().getValue().length;
+      it.remove();
+      ++evictions;
+    }
+  }
+
+  /**
+   * Change the capacity, evicting blocks if it shrinks.
+   * 
+   * @param capacity
+   *          Maximum total size, in bytes, of the cached blocks.
+   */
+  public synchronized void setCapacity(long capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+    this.capacity = capacity;
+    evict();
+  }
+
+  /**
+   * Drop all cached blocks. The statistics are kept.
+   */
+  public synchronized void clear() {
+    blocks.clear();
+    size = 0;
+  }
+
+  public synchronized long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return total size, in bytes, of the cached blocks.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * @return number of cached blocks.
+   */
+  public synchronized int getBlockCount() {
+    return blocks.size();
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  /**
+   * @return the fraction of lookups that were hits; or 0 if there were no
+   *         lookups.
+   */
+  public synchronized double getHitRatio() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+}
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.hadoop.io.file.tfile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.InvalidMarkException;
+
+/**
+ * BoundedByteBufferInputStream presents the remaining bytes of a ByteBuffer
+ * as a regular input stream. It is used to read cached blocks and regions of
+ * memory mapped files without copying them first. Unlike
+ * ByteArrayInputStream, it is not synchronized; each stream is expected to be
+ * used by a single scanner.
+ */
+class BoundedByteBufferInputStream extends InputStream {
+  private final ByteBuffer buf;
+
+  /**
+   * Constructor
+   * 
+   * @param buf
+   *          The buffer to read from, between its position and limit. The
+   *          stream advances the position of the buffer.
+   */
+  public BoundedByteBufferInputStream(ByteBuffer buf) {
+    this.buf = buf;
+  }
+
+  @Override
+  public int available() {
+    return buf.remaining();
+  }
+
+  @Override
+  public int read() {
+    if (!buf.hasRemaining()) {
+      return -1;
+    }
+    return buf.get() & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+    if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (len == 0) {
+      return 0;
+    }
+    int n = Math.min(len, buf.remaining());
+    if (n == 0) {
+      return -1;
+    }
+    buf.get(b, off, n);
+    return n;
+  }
+
+  @Override
+  public long skip(long n) {
+    int len = (int) Math.max(0, Math.min(n, buf.remaining()));
+    buf.position(buf.position() + len);
+    return len;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public void mark(int readlimit) {
+    buf.mark();
+  }
+
+  @Override
+  public void reset() throws IOException {
+    try {
+      buf.reset();
+    } catch (InvalidMarkException e) {
+      throw new IOException("Resetting to invalid mark");
+    }
+  }
+}
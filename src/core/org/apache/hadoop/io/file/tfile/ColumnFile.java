@@ -0,0 +1,844 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.hadoop.io.file.tfile;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.file.tfile.BCFile.Reader.BlockReader;
+import org.apache.hadoop.io.file.tfile.BCFile.Writer.BlockAppender;
+import org.apache.hadoop.io.file.tfile.Utils.Version;
+
+/**
+ * A column-oriented container of rows, built on top of {@link BCFile}.
+ * <p>
+ * Every row has the same fixed number of named columns, and every column value
+ * is a byte array or null. Rows are buffered into row groups. When a row group
+ * is full, each of its columns is written to its own compressed data block, so
+ * a file with <i>C</i> columns stores column <i>c</i> of row group <i>g</i> in
+ * data block <i>g*C+c</i>. A reader only opens and decompresses the blocks of
+ * the columns it asks for.
+ * <p>
+ * Two meta blocks describe the file:
+ * <ul>
+ * <li><b>ColumnFile.schema</b>: version and column names.
+ * <li><b>ColumnFile.stats</b>: for each row group, its row count and, per
+ * column, the number of nulls and the smallest and largest value in unsigned
+ * byte order. Readers may use these to skip row groups without reading them.
+ * </ul>
+ * <p>
+ * The behavior of ColumnFile can be customized by the following variables
+ * through Configuration, in addition to those understood by {@link TFile}:
+ * <ul>
+ * <li><b>tfile.column.rowgroup.size</b>: Approximate uncompressed size of a
+ * row group. Integer (in bytes). Default to 4MB. Larger row groups give each
+ * column more contiguous data to compress and read, but need more memory to
+ * buffer during writing.
+ * </ul>
+ */
+public class ColumnFile {
+  static final Log LOG = LogFactory.getLog(ColumnFile.class);
+
+  private static final String ROWGROUP_SIZE_ATTR = "tfile.column.rowgroup.size";
+
+  static int getRowGroupSize(Configuration conf) {
+    int ret = conf.getInt(ROWGROUP_SIZE_ATTR, 4 * 1024 * 1024);
+    return (ret > 0) ? ret : 4 * 1024 * 1024;
+  }
+
+  // the current version of ColumnFile impl, increment them (major or minor)
+  // made enough changes
+  static final Version API_VERSION = new Version((short) 1, (short) 0);
+
+  static final String BLOCK_NAME_SCHEMA = "ColumnFile.schema";
+  static final String BLOCK_NAME_STATS = "ColumnFile.stats";
+
+  /**
+   * Prevent the instantiation of ColumnFile objects.
+   */
+  private ColumnFile() {
+    // nothing
+  }
+
+  /**
+   * Get names of supported compression algorithms.
+   *
+   * @return Array of strings, each represents a supported compression
+   *         algorithm. Currently, the following compression algorithms are
+   *         supported.
+   * @see TFile#getSupportedCompressionAlgorithms()
+   */
+  public static String[] getSupportedCompressionAlgorithms() {
+    return TFile.getSupportedCompressionAlgorithms();
+  }
+
+  /**
+   * ColumnFile Writer.
+   */
+  public static class Writer implements Closeable {
+    private final BCFile.Writer writerBCF;
+    private final String[] columnNames;
+    private final int rowGroupSize;
+
+    // the row group being buffered
+    private final DataOutputBuffer[] columnBuffers;
+    private ColumnStats[] groupStats;
+    private long groupRows = 0;
+
+    // stats of all finished row groups
+    private final ArrayList<Long> rowCounts = new ArrayList<Long>();
+    private final ArrayList<ColumnStats[]> allStats =
+        new ArrayList<ColumnStats[]>();
+
+    private boolean closed = false;
+
+    /**
+     * Constructor
+     *
+     * @param fsdos
+     *          output stream for writing. Must be at position 0.
+     * @param columnNames
+     *          names of the columns, in order. Must not be empty.
+     * @param compressName
+     *          Name of the compression algorithm. Must be one of the strings
+     *          returned by {@link ColumnFile#getSupportedCompressionAlgorithms()}.
+     * @param conf
+     *          The configuration object.
+     * @throws IOException
+     */
+    public Writer(FSDataOutputStream fsdos, String[] columnNames,
+        String compressName, Configuration conf) throws IOException {
+      if (columnNames.length == 0) {
+        throw new IllegalArgumentException("No columns.");
+      }
+      this.columnNames = columnNames.clone();
+      rowGroupSize = getRowGroupSize(conf);
+      writerBCF = new BCFile.Writer(fsdos, compressName, conf);
+      columnBuffers = new DataOutputBuffer[columnNames.length];
+      for (int i = 0; i < columnBuffers.length; ++i) {
+        columnBuffers[i] = new DataOutputBuffer();
+      }
+      groupStats = newStats(columnNames.length);
+    }
+
+    /**
+     * Append a row.
+     *
+     * @param values
+     *          one value per column; a null element is a null value.
+     * @throws IOException
+     */
+    public void append(byte[][] values) throws IOException {
+      if (closed) {
+        throw new IllegalStateException("Writer already closed.");
+      }
+      if (values.length != columnBuffers.length) {
+        throw new IllegalArgumentException("Row has " + values.length
+            + " values, expecting " + columnBuffers.length);
+      }
+
+      int groupBytes = 0;
+      for (int i = 0; i < values.length; ++i) {
+        DataOutputBuffer buf = columnBuffers[i];
+        byte[] value = values[i];
+        if (value == null) {
+          Utils.writeVInt(buf, -1);
+          groupStats[i].addNull();
+        } else {
+          Utils.writeVInt(buf, value.length);
+          buf.write(value);
+          groupStats[i].add(value);
+        }
+        groupBytes += buf.getLength();
+      }
+      ++groupRows;
+
+      if (groupBytes >= rowGroupSize) {
+        finishRowGroup();
+      }
+    }
+
+    /**
+     * Write out the buffered row group, one data block per column.
+     */
+    private void finishRowGroup() throws IOException {
+      if (groupRows == 0) {
+        return;
+      }
+      for (int i = 0; i < columnBuffers.length; ++i) {
+        BlockAppender appender = writerBCF.prepareDataBlock();
+        try {
+          appender.write(columnBuffers[i].getData(), 0,
+              columnBuffers[i].getLength());
+        } finally {
+          appender.close();
+        }
+        columnBuffers[i].reset();
+      }
+      rowCounts.add(groupRows);
+      allStats.add(groupStats);
+      groupRows = 0;
+      groupStats = newStats(columnBuffers.length);
+    }
+
+    /**
+     * Close the Writer. Resources will be released regardless of the exceptions
+     * being thrown. Future close calls will have no effect.
+     *
+     * The underlying FSDataOutputStream is not closed.
+     */
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+
+      try {
+        finishRowGroup();
+
+        BlockAppender appender =
+            writerBCF.prepareMetaBlock(BLOCK_NAME_SCHEMA,
+                TFile.COMPRESSION_NONE);
+        try {
+          API_VERSION.write(appender);
+          Utils.writeVInt(appender, columnNames.length);
+          for (String name : columnNames) {
+            Utils.writeString(appender, name);
+          }
+        } finally {
+          appender.close();
+        }
+
+        appender = writerBCF.prepareMetaBlock(BLOCK_NAME_STATS);
+        try {
+          Utils.writeVInt(appender, rowCounts.size());
+          for (int g = 0; g < rowCounts.size(); ++g) {
+            Utils.writeVLong(appender, rowCounts.get(g));
+            for (ColumnStats stats : allStats.get(g)) {
+              stats.write(appender);
+            }
+          }
+        } finally {
+          appender.close();
+        }
+
+        writerBCF.close();
+      } finally {
+        closed = true;
+      }
+    }
+  }
+
+  /**
+   * ColumnFile Reader.
+   */
+  public static class Reader implements Closeable {
+    private final BCFile.Reader readerBCF;
+    private final String[] columnNames;
+    private final long[] rowCounts;
+    private final long[] firstRows;
+    private final ColumnStats[][] stats;
+
+    /**
+     * Constructor
+     *
+     * @param fsdis
+     *          FS input stream of the ColumnFile.
+     * @param fileLength
+     *          The length of the corresponding file
+     * @param conf
+     * @throws IOException
+     */
+    public Reader(FSDataInputStream fsdis, long fileLength, Configuration conf)
+        throws IOException {
+      readerBCF = new BCFile.Reader(fsdis, fileLength, conf);
+
+      BlockReader brMeta = readerBCF.getMetaBlock(BLOCK_NAME_SCHEMA);
+      try {
+        Version version = new Version(brMeta);
+        if (!version.compatibleWith(API_VERSION)) {
+          throw new RuntimeException("Incompatible ColumnFile fileVersion.");
+        }
+        columnNames = new String[Utils.readVInt(brMeta)];
+        for (int i = 0; i < columnNames.length; ++i) {
+          columnNames[i] = Utils.readString(brMeta);
+        }
+      } finally {
+        brMeta.close();
+      }
+
+      brMeta = readerBCF.getMetaBlock(BLOCK_NAME_STATS);
+      try {
+        int groups = Utils.readVInt(brMeta);
+        rowCounts = new long[groups];
+        firstRows = new long[groups + 1];
+        stats = new ColumnStats[groups][];
+        for (int g = 0; g < groups; ++g) {
+          rowCounts[g] = Utils.readVLong(brMeta);
+          firstRows[g + 1] = firstRows[g] + rowCounts[g];
+          stats[g] = new ColumnStats[columnNames.length];
+          for (int c = 0; c < columnNames.length; ++c) {
+            stats[g][c] = new ColumnStats();
+            stats[g][c].readFields(brMeta);
+          }
+        }
+      } finally {
+        brMeta.close();
+      }
+
+      if (readerBCF.getBlockCount() != rowCounts.length * columnNames.length) {
+        throw new IOException("Corrupt ColumnFile: " + readerBCF.getBlockCount()
+            + " data blocks for " + rowCounts.length + " row groups of "
+            + columnNames.length + " columns");
+      }
+    }
+
+    /**
+     * Close the reader. The state of the Reader object is undefined after
+     * close. Calling close() for multiple times has no effect.
+     */
+    public void close() throws IOException {
+      readerBCF.close();
+    }
+
+    /**
+     * @return the names of the columns, in order.
+     */
+    public String[] getColumnNames() {
+      return columnNames.clone();
+    }
+
+    /**
+     * @return the number of columns.
+     */
+    public int getColumnCount() {
+      return columnNames.length;
+    }
+
+    /**
+     * Look up a column by name.
+     *
+     * @param name
+     *          the column name.
+     * @return the index of the column.
+     * @throws IllegalArgumentException
+     *           if there is no such column.
+     */
+    public int getColumnIndex(String name) {
+      for (int i = 0; i < columnNames.length; ++i) {
+        if (columnNames[i].equals(name)) {
+          return i;
+        }
+      }
+      throw new IllegalArgumentException("No column named " + name);
+    }
+
+    /**
+     * @return the number of row groups.
+     */
+    public int getRowGroupCount() {
+      return rowCounts.length;
+    }
+
+    /**
+     * @return the number of rows in the file.
+     */
+    public long getRowCount() {
+      return firstRows[rowCounts.length];
+    }
+
+    /**
+     * @param rowGroup
+     *          the row group.
+     * @return the number of rows in the row group.
+     */
+    public long getRowCount(int rowGroup) {
+      return rowCounts[rowGroup];
+    }
+
+    /**
+     * @param rowGroup
+     *          the row group, or {@link #getRowGroupCount()}.
+     * @return the row number of the first row of the row group, or the number
+     *         of rows in the file.
+     */
+    public long getFirstRow(int rowGroup) {
+      return firstRows[rowGroup];
+    }
+
+    /**
+     * Get the statistics of a column within one row group.
+     *
+     * @param rowGroup
+     *          the row group.
+     * @param column
+     *          the column index.
+     * @return the statistics.
+     */
+    public ColumnStats getColumnStats(int rowGroup, int column) {
+      return stats[rowGroup][column];
+    }
+
+    /**
+     * Get the statistics of a column over the whole file.
+     *
+     * @param column
+     *          the column index.
+     * @return the statistics.
+     */
+    public ColumnStats getColumnStats(int column) {
+      ColumnStats ret = new ColumnStats();
+      for (ColumnStats[] groupStats : stats) {
+        ret.merge(groupStats[column]);
+      }
+      return ret;
+    }
+
+    /**
+     * Get the compressed size of a column within one row group, i.e. the
+     * number of bytes that must be read to scan it.
+     *
+     * @param rowGroup
+     *          the row group.
+     * @param column
+     *          the column index.
+     * @return the compressed size in bytes.
+     */
+    public long getCompressedSize(int rowGroup, int column) {
+      return getRegion(rowGroup, column).getCompressedSize();
+    }
+
+    /**
+     * Find the first row group that starts at or after the given file offset.
+     * Every row group starts in exactly one of a set of adjacent byte ranges
+     * that cover the file, which makes this suitable for splitting.
+     *
+     * @param offset
+     *          the file offset.
+     * @return the row group index, or {@link #getRowGroupCount()} if no row
+     *         group starts at or after offset.
+     */
+    public int getRowGroupAt(long offset) {
+      int block = readerBCF.getBlockIndexNear(offset);
+      if (block < 0) {
+        return rowCounts.length;
+      }
+      // a block in the middle of a row group means the group started earlier
+      return (block + columnNames.length - 1) / columnNames.length;
+    }
+
+    private BCFile.BlockRegion getRegion(int rowGroup, int column) {
+      return readerBCF.dataIndex.getBlockRegionList().get(
+          rowGroup * columnNames.length + column);
+    }
+
+    /**
+     * Get a scanner over all rows that reads the given columns.
+     *
+     * @param columns
+     *          indexes of the columns to read, in the order they should appear
+     *          in each {@link Row}.
+     * @return The scanner object.
+     * @throws IOException
+     */
+    public Scanner createScanner(int[] columns) throws IOException {
+      return createScanner(columns, 0, rowCounts.length);
+    }
+
+    /**
+     * Get a scanner over a range of row groups that reads the given columns.
+     *
+     * @param columns
+     *          indexes of the columns to read, in the order they should appear
+     *          in each {@link Row}.
+     * @param beginRowGroup
+     *          first row group to read (inclusive).
+     * @param endRowGroup
+     *          last row group to read (exclusive).
+     * @return The scanner object.
+     * @throws IOException
+     */
+    public Scanner createScanner(int[] columns, int beginRowGroup,
+        int endRowGroup) throws IOException {
+      for (int column : columns) {
+        if (column < 0 || column >= columnNames.length) {
+          throw new IndexOutOfBoundsException("column=" + column
+              + ", numColumns=" + columnNames.length);
+        }
+      }
+      if (beginRowGroup < 0 || endRowGroup > rowCounts.length
+          || beginRowGroup > endRowGroup) {
+        throw new IndexOutOfBoundsException(String.format(
+            "rowGroups=[%d, %d), numRowGroups=%d", beginRowGroup, endRowGroup,
+            rowCounts.length));
+      }
+      return new Scanner(this, columns.clone(), beginRowGroup, endRowGroup);
+    }
+
+    /**
+     * The ColumnFile Scanner. Rows are read in order; only the data blocks of
+     * the projected columns are read and decompressed.
+     */
+    public static class Scanner implements Closeable {
+      private final Reader reader;
+      private final int[] columns;
+      private final BlockReader[] blocks;
+      private final int endRowGroup;
+      private int nextRowGroup;
+      private long rowsLeft = 0;
+      private long rowNumber;
+
+      Scanner(Reader reader, int[] columns, int beginRowGroup, int endRowGroup) {
+        this.reader = reader;
+        this.columns = columns;
+        this.blocks = new BlockReader[columns.length];
+        this.nextRowGroup = beginRowGroup;
+        this.endRowGroup = endRowGroup;
+        this.rowNumber = reader.firstRows[beginRowGroup];
+      }
+
+      /**
+       * Read the next row.
+       *
+       * @param row
+       *          receives the values of the projected columns.
+       * @return false if there are no more rows.
+       * @throws IOException
+       */
+      public boolean next(Row row) throws IOException {
+        while (rowsLeft == 0) {
+          closeBlocks();
+          if (nextRowGroup >= endRowGroup) {
+            return false;
+          }
+          openRowGroup(nextRowGroup++);
+        }
+
+        row.setSize(columns.length);
+        for (int i = 0; i < blocks.length; ++i) {
+          int len = Utils.readVInt(blocks[i]);
+          if (len < 0) {
+            row.setNull(i);
+          } else {
+            row.readValue(i, blocks[i], len);
+          }
+        }
+        --rowsLeft;
+        ++rowNumber;
+        return true;
+      }
+
+      /**
+       * @return the row number of the row the next call to
+       *         {@link #next(Row)} will return.
+       */
+      public long getRowNumber() {
+        return rowNumber;
+      }
+
+      private void openRowGroup(int rowGroup) throws IOException {
+        int base = rowGroup * reader.columnNames.length;
+        for (int i = 0; i < columns.length; ++i) {
+          blocks[i] = reader.readerBCF.getDataBlock(base + columns[i]);
+        }
+        rowsLeft = reader.rowCounts[rowGroup];
+      }
+
+      private void closeBlocks() throws IOException {
+        for (int i = 0; i < blocks.length; ++i) {
+          if (blocks[i] != null) {
+            blocks[i].close();
+            blocks[i] = null;
+          }
+        }
+      }
+
+      /**
+       * Close the scanner. Release all resources.
+       */
+      public void close() throws IOException {
+        rowsLeft = 0;
+        nextRowGroup = endRowGroup;
+        closeBlocks();
+      }
+    }
+  }
+
+  /**
+   * The values of the projected columns of one row.
+   */
+  public static class Row implements Writable {
+    private BytesWritable[] values = new BytesWritable[0];
+    private boolean[] nulls = new boolean[0];
+    private int size = 0;
+
+    /**
+     * @return the number of values.
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * @param i
+     *          index of the value.
+     * @return true if the value is null.
+     */
+    public boolean isNull(int i) {
+      checkIndex(i);
+      return nulls[i];
+    }
+
+    /**
+     * Get a value. The returned object is reused by the next read into this
+     * row.
+     *
+     * @param i
+     *          index of the value.
+     * @return the value, or null if the value is null.
+     */
+    public BytesWritable get(int i) {
+      checkIndex(i);
+      return nulls[i] ? null : values[i];
+    }
+
+    /**
+     * Set a value.
+     *
+     * @param i
+     *          index of the value.
+     * @param value
+     *          the value; null for a null value.
+     */
+    public void set(int i, byte[] value) {
+      checkIndex(i);
+      if (value == null) {
+        setNull(i);
+      } else {
+        values[i].set(value, 0, value.length);
+        nulls[i] = false;
+      }
+    }
+
+    /**
+     * Change the number of values. Existing values are kept.
+     *
+     * @param newSize
+     *          the new number of values.
+     */
+    public void setSize(int newSize) {
+      if (newSize > values.length) {
+        int oldLength = values.length;
+        values = Arrays.copyOf(values, newSize);
+        nulls = Arrays.copyOf(nulls, newSize);
+        for (int i = oldLength; i < newSize; ++i) {
+          values[i] = new BytesWritable();
+          nulls[i] = true;
+        }
+      }
+      size = newSize;
+    }
+
+    void setNull(int i) {
+      nulls[i] = true;
+      values[i].setSize(0);
+    }
+
+    void readValue(int i, DataInput in, int len) throws IOException {
+      values[i].setSize(len);
+      in.readFully(values[i].getBytes(), 0, len);
+      nulls[i] = false;
+    }
+
+    private void checkIndex(int i) {
+      if (i < 0 || i >= size) {
+        throw new IndexOutOfBoundsException("index=" + i + ", size=" + size);
+      }
+    }
+
+    public void write(DataOutput out) throws IOException {
+      Utils.writeVInt(out, size);
+      for (int i = 0; i < size; ++i) {
+        if (nulls[i]) {
+          Utils.writeVInt(out, -1);
+        } else {
+          Utils.writeVInt(out, values[i].getLength());
+          out.write(values[i].getBytes(), 0, values[i].getLength());
+        }
+      }
+    }
+
+    public void readFields(DataInput in) throws IOException {
+      setSize(Utils.readVInt(in));
+      for (int i = 0; i < size; ++i) {
+        int len = Utils.readVInt(in);
+        if (len < 0) {
+          setNull(i);
+        } else {
+          readValue(i, in, len);
+        }
+      }
+    }
+  }
+
+  /**
+   * Statistics of one column over a set of rows. Values are ordered as
+   * unsigned byte strings.
+   */
+  public static class ColumnStats implements Writable {
+    private long rowCount = 0;
+    private long nullCount = 0;
+    private byte[] min = null;
+    private byte[] max = null;
+
+    void addNull() {
+      ++rowCount;
+      ++nullCount;
+    }
+
+    void add(byte[] value) {
+      ++rowCount;
+      if (min == null || compare(value, min) < 0) {
+        min = value.clone();
+      }
+      if (max == null || compare(value, max) > 0) {
+        max = value.clone();
+      }
+    }
+
+    void merge(ColumnStats other) {
+      rowCount += other.rowCount;
+      nullCount += other.nullCount;
+      if (other.min != null && (min == null || compare(other.min, min) < 0)) {
+        min = other.min;
+      }
+      if (other.max != null && (max == null || compare(other.max, max) > 0)) {
+        max = other.max;
+      }
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+      return WritableComparator.compareBytes(a, 0, a.length, b, 0, b.length);
+    }
+
+    /**
+     * @return the number of rows, including nulls.
+     */
+    public long getRowCount() {
+      return rowCount;
+    }
+
+    /**
+     * @return the number of null values.
+     */
+    public long getNullCount() {
+      return nullCount;
+    }
+
+    /**
+     * @return the smallest non-null value, or null if all values are null.
+     */
+    public byte[] getMin() {
+      return (min == null) ? null : min.clone();
+    }
+
+    /**
+     * @return the largest non-null value, or null if all values are null.
+     */
+    public byte[] getMax() {
+      return (max == null) ? null : max.clone();
+    }
+
+    /**
+     * Check whether any value in [lower, upper] may be present. Useful to skip
+     * row groups.
+     *
+     * @param lower
+     *          lower bound (inclusive), or null for no lower bound.
+     * @param upper
+     *          upper bound (inclusive), or null for no upper bound.
+     * @return false if no non-null value lies within the bounds.
+     */
+    public boolean mayContain(byte[] lower, byte[] upper) {
+      if (min == null) {
+        return false;
+      }
+      if (lower != null && compare(max, lower) < 0) {
+        return false;
+      }
+      if (upper != null && compare(min, upper) > 0) {
+        return false;
+      }
+      return true;
+    }
+
+    public void write(DataOutput out) throws IOException {
+      Utils.writeVLong(out, rowCount);
+      Utils.writeVLong(out, nullCount);
+      writeBytes(out, min);
+      writeBytes(out, max);
+    }
+
+    public void readFields(DataInput in) throws IOException {
+      rowCount = Utils.readVLong(in);
+      nullCount = Utils.readVLong(in);
+      min = readBytes(in);
+      max = readBytes(in);
+    }
+
+    private static void writeBytes(DataOutput out, byte[] b)
+        throws IOException {
+      if (b == null) {
+        Utils.writeVInt(out, -1);
+      } else {
+        Utils.writeVInt(out, b.length);
+        out.write(b);
+      }
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+      int len = Utils.readVInt(in);
+      if (len < 0) {
+        return null;
+      }
+      byte[] b = new byte[len];
+      in.readFully(b);
+      return b;
+    }
+  }
+
+  private static ColumnStats[] newStats(int columns) {
+    ColumnStats[] ret = new ColumnStats[columns];
+    for (int i = 0; i < columns; ++i) {
+      ret[i] = new ColumnStats();
+    }
+    return ret;
+  }
+}
@@ -24,8 +24,12 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Comparator;
 
@@ -34,6 +38,11 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.DataOutputBuffer;
@@ -120,6 +129,12 @@ import org.apache.hadoop.io.serializer.JavaSerializationComparator;
  * reads/writes keys and values in large buffers, we can reduce the sizes of
  * input/output buffering in TFile layer by setting the configuration parameters
  * "tfile.fs.input.buffer.size" and "tfile.fs.output.buffer.size".
+ * <li>Repeated point lookups. Readers opened by path can share a
+ * process-wide LRU cache of decompressed blocks ({@link BlockCache}), sized
+ * by "tfile.blockcache.size" (disabled by default). Setting
+ * "tfile.local.mmap" makes such readers memory map files on the local file
+ * system instead of reading them through the stream; note this skips the
+ * checksum verification of LocalFileSystem.
  * </ul>
  * 
  * Some design rationale behind TFile can be found at <a
@@ -133,6 +148,7 @@ public class TFile {
       "tfile.fs.input.buffer.size";
   private static final String FS_OUTPUT_BUF_SIZE_ATTR =
       "tfile.fs.output.buffer.size";
+  private static final String LOCAL_MMAP_ATTR = "tfile.local.mmap";
 
   static int getChunkBufferSize(Configuration conf) {
     int ret = conf.getInt(CHUNK_BUF_SIZE_ATTR, 1024 * 1024);
@@ -147,6 +163,10 @@ public class TFile {
     return conf.getInt(FS_OUTPUT_BUF_SIZE_ATTR, 256 * 1024);
   }
 
+  static boolean getLocalMmap(Configuration conf) {
+    return conf.getBoolean(LOCAL_MMAP_ATTR, false);
+  }
+
   private static final int MAX_KEY_SIZE = 64 * 1024; // 64KB
   static final Version API_VERSION = new Version((short) 1, (short) 0);
 
@@ -676,6 +696,8 @@ public class TFile {
   public static class Reader implements Closeable {
     // The underlying BCFile reader.
     final BCFile.Reader readerBCF;
+    // The input stream, if it was opened by this reader.
+    private final FSDataInputStream ownedIn;
 
     // TFile index, it is loaded lazily.
     TFileIndex tfileIndex = null;
@@ -793,20 +815,103 @@ public class TFile {
      */
     public Reader(FSDataInputStream fsdis, long fileLength, Configuration conf)
         throws IOException {
-      readerBCF = new BCFile.Reader(fsdis, fileLength, conf);
+      this(fsdis, fileLength, conf, null, null);
+    }
+
+    /**
+     * Constructor. The reader opens the file itself and closes it in
+     * {@link #close()}. Data blocks are served from the shared
+     * {@link BlockCache} if "tfile.blockcache.size" is set, and local files
+     * are memory mapped if "tfile.local.mmap" is set.
+     * 
+     * @param fs
+     *          The file system of the TFile.
+     * @param path
+     *          Path of the TFile.
+     * @param conf
+     * @throws IOException
+     */
+    public Reader(FileSystem fs, Path path, Configuration conf)
+        throws IOException {
+      this(fs, fs.getFileStatus(path), conf);
+    }
+
+    private Reader(FileSystem fs, FileStatus status, Configuration conf)
+        throws IOException {
+      this(fs.open(status.getPath()), status.getLen(), conf, fs, status);
+    }
 
-      // first, read TFile meta
-      BlockReader brMeta = readerBCF.getMetaBlock(TFileMeta.BLOCK_NAME);
+    private Reader(FSDataInputStream fsdis, long fileLength,
+        Configuration conf, FileSystem fs, FileStatus status)
+        throws IOException {
+      ownedIn = (status == null) ? null : fsdis;
+      boolean done = false;
       try {
-        tfileMeta = new TFileMeta(brMeta);
+        readerBCF = new BCFile.Reader(fsdis, fileLength, conf);
+
+        // first, read TFile meta
+        BlockReader brMeta = readerBCF.getMetaBlock(TFileMeta.BLOCK_NAME);
+        try {
+          tfileMeta = new TFileMeta(brMeta);
+        } finally {
+          brMeta.close();
+        }
+
+        comparator = tfileMeta.getComparator();
+        // Set begin and end locations.
+        begin = new Location(0, 0);
+        end = new Location(readerBCF.getBlockCount(), 0);
+
+        if (status != null) {
+          BlockCache cache = BlockCache.getInstance(conf);
+          if (cache != null) {
+            // a rewritten file gets a new key
+            readerBCF.setBlockCache(cache, status.getPath().makeQualified(fs)
+                + "@" + status.getModificationTime() + "/" + status.getLen());
+          }
+          if (getLocalMmap(conf)) {
+            ByteBuffer mapped = mapLocalFile(fs, status);
+            if (mapped != null) {
+              readerBCF.setMappedFile(mapped);
+            }
+          }
+        }
+        done = true;
       } finally {
-        brMeta.close();
+        if (!done && ownedIn != null) {
+          ownedIn.close();
+        }
       }
+    }
 
-      comparator = tfileMeta.getComparator();
-      // Set begin and end locations.
-      begin = new Location(0, 0);
-      end = new Location(readerBCF.getBlockCount(), 0);
+    /**
+     * Memory map a file of the local file system.
+     * 
+     * @return the mapping; or null if the file is not local or too large to
+     *         map in one piece.
+     */
+    private static ByteBuffer mapLocalFile(FileSystem fs, FileStatus status)
+        throws IOException {
+      File file;
+      if (fs instanceof LocalFileSystem) {
+        file = ((LocalFileSystem) fs).pathToFile(status.getPath());
+      } else if (fs instanceof RawLocalFileSystem) {
+        file = ((RawLocalFileSystem) fs).pathToFile(status.getPath());
+      } else {
+        return null;
+      }
+      if (status.getLen() > Integer.MAX_VALUE) {
+        return null;
+      }
+
+      // the mapping stays valid after the file is closed
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+            status.getLen());
+      } finally {
+        raf.close();
+      }
     }
 
     /**
@@ -814,7 +919,13 @@ public class TFile {
      * close. Calling close() for multiple times has no effect.
      */
     public void close() throws IOException {
-      readerBCF.close();
+      try {
+        readerBCF.close();
+      } finally {
+        if (ownedIn != null) {
+          ownedIn.close();
+        }
+      }
     }
 
     /**
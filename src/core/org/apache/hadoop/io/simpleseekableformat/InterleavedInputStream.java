@@ -73,6 +73,19 @@ class InterleavedInputStream extends InputStream {
     this(in, metaDataBlockSize, dataBlockSize, new DefaultMetaDataConsumer());
   }
   
+  /**
+   * Create a stream that starts in the middle of the file, at the given
+   * data offset.  The underlying stream should be positioned at the
+   * corresponding raw offset, see
+   * {@link SimpleSeekableFormat#getRawOffset(long)}.
+   */
+  InterleavedInputStream(InputStream in,
+      int metaDataBlockSize, int dataBlockSize, long dataOffset) {
+    this(in, metaDataBlockSize, dataBlockSize);
+    completeMetaDataBlocks = dataOffset / dataBlockSize + 1;
+    currentDataBlockSize = (int)(dataOffset % dataBlockSize);
+  }
+
   /**
    * Number of bytes read from the underlying stream.
    */
@@ -21,6 +21,9 @@ import java.io.UnsupportedEncodingException;
  * 4 bytes: version number, now is 1.
  * 16 bytes: 8-byte of uncompressed data stream offset
  *           + 8-byte of compressed data stream offset
+ * Both offsets are those of the data segment that continues into the data
+ * block following the metadata block, so a reader can start reading
+ * segments at any metadata block.
  * 
  * 3. Data block (1023 * 1024 bytes):
  * All data blocks should be concatenated to be a stream.  The stream consists
@@ -64,6 +67,15 @@ class SimpleSeekableFormat {
   }
   
   
+  /**
+   * Returns the offset in the file of the byte at the given data offset,
+   * counting the metadata blocks in front of it.
+   */
+  static long getRawOffset(long dataOffset) {
+    return (dataOffset / DATA_BLOCK_LENGTH + 1) * METADATA_BLOCK_LENGTH
+      + dataOffset;
+  }
+
   static class OffsetPair {
     long uncompressedOffset;
     long compressedOffset;
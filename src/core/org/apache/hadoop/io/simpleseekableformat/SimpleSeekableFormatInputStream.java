@@ -1,11 +1,15 @@
 package org.apache.hadoop.io.simpleseekableformat;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.io.compress.CompressionInputStream;
+import org.apache.hadoop.io.simpleseekableformat.SimpleSeekableFormat.OffsetPair;
 
 /**
  * The reader for Seekable File Format.
@@ -14,15 +18,107 @@ import org.apache.hadoop.io.compress.CompressionInputStream;
  */
 public class SimpleSeekableFormatInputStream extends CompressionInputStream {
 
+  private final InterleavedInputStream interleavedIn;
   private final DataInputStream dataIn;
   private InputStream dataSegmentIn;
+
+  /**
+   * Data segments starting at or after this data offset are beyond the
+   * range this stream was opened for.
+   */
+  private long endDataOffset = Long.MAX_VALUE;
+  /** Uncompressed offset of the first byte returned by this stream */
+  private long startOffset;
+  /** Uncompressed offset of the next byte returned by this stream */
+  private long uncompressedOffset;
+  /** Uncompressed offset of the end of the range, once known */
+  private long rangeEndOffset = Long.MAX_VALUE;
   
   public SimpleSeekableFormatInputStream(InputStream in) {
     // we don't use the inherited field "in" at all:
     super(null);
-    this.dataIn = new DataInputStream(new InterleavedInputStream(in,
+    this.interleavedIn = new InterleavedInputStream(in,
         SimpleSeekableFormat.METADATA_BLOCK_LENGTH,
-        SimpleSeekableFormat.DATA_BLOCK_LENGTH));
+        SimpleSeekableFormat.DATA_BLOCK_LENGTH);
+    this.dataIn = new DataInputStream(interleavedIn);
+  }
+
+  /**
+   * Create a stream for the byte range [start, end) of a file, e.g. a file
+   * split.  A data segment belongs to the range that contains the start of
+   * its data block, as located through the metadata blocks, so adjacent
+   * ranges never share a segment.
+   *
+   * The stream returns the data of the segments of the range, and then
+   * continues with the segments after it, so that a reader can finish a
+   * record that crosses the end of the range.  {@link #getRangeEndOffset()}
+   * tells where the range ends.
+   */
+  public SimpleSeekableFormatInputStream(FSDataInputStream in, long start,
+      long end) throws IOException {
+    super(null);
+    final long blockLength = SimpleSeekableFormat.METADATA_BLOCK_LENGTH
+      + SimpleSeekableFormat.DATA_BLOCK_LENGTH;
+    long firstBlock = (start + blockLength - 1) / blockLength;
+    long endBlock = (end + blockLength - 1) / blockLength;
+    OffsetPair offsets = null;
+    if (firstBlock < endBlock) {
+      in.seek(firstBlock * blockLength);
+      try {
+        offsets = readMetaData(in);
+      } catch (EOFException e) {
+        // truncated file, the range is empty.
+      }
+    }
+    if (offsets == null) {
+      // No data segment starts in this range.
+      this.interleavedIn = new InterleavedInputStream(
+          new ByteArrayInputStream(new byte[0]),
+          SimpleSeekableFormat.METADATA_BLOCK_LENGTH,
+          SimpleSeekableFormat.DATA_BLOCK_LENGTH);
+      this.dataIn = new DataInputStream(interleavedIn);
+      rangeEndOffset = 0;
+      return;
+    }
+
+    in.seek(SimpleSeekableFormat.getRawOffset(offsets.compressedOffset));
+    this.interleavedIn = new InterleavedInputStream(in,
+        SimpleSeekableFormat.METADATA_BLOCK_LENGTH,
+        SimpleSeekableFormat.DATA_BLOCK_LENGTH,
+        offsets.compressedOffset);
+    this.dataIn = new DataInputStream(interleavedIn);
+    uncompressedOffset = offsets.uncompressedOffset;
+    if (offsets.compressedOffset
+        < firstBlock * SimpleSeekableFormat.DATA_BLOCK_LENGTH) {
+      // This segment started in the previous range.
+      if (moveToNextDataSegment()) {
+        uncompressedOffset += skipAll(dataSegmentIn);
+        dataSegmentIn = null;
+      }
+    }
+    startOffset = uncompressedOffset;
+    endDataOffset = endBlock * SimpleSeekableFormat.DATA_BLOCK_LENGTH;
+    // Open the first segment so that an empty range is known right away.
+    moveToNextDataSegment();
+  }
+
+  /**
+   * Returns the uncompressed offset in the file of the first byte returned
+   * by this stream.  Files written with a wrong uncompressed offset in the
+   * metadata blocks yield an offset relative to the closest metadata block.
+   */
+  public long getStartOffset() {
+    return startOffset;
+  }
+
+  /**
+   * Returns the uncompressed offset in the file of the end of the range
+   * this stream was opened for, or Long.MAX_VALUE if the stream has not
+   * reached the end of the range yet.  The offset is in the same terms as
+   * {@link #getStartOffset()}.
+   */
+  public long getRangeEndOffset() {
+    return rangeEndOffset;
   }
 
   @Override
@@ -35,6 +131,7 @@ public class SimpleSeekableFormatInputStream extends CompressionInputStream {
     do {
       int result = dataSegmentIn.read();
       if (result != -1) {
+        uncompressedOffset++;
         return result;
       }
       if (!moveToNextDataSegment()) {
@@ -53,6 +150,7 @@ public class SimpleSeekableFormatInputStream extends CompressionInputStream {
     do {
       int result = dataSegmentIn.read(b, start, length);
       if (result != -1) {
+        uncompressedOffset += result;
         return result;
       }
       if (!moveToNextDataSegment()) {
@@ -93,7 +191,11 @@ public class SimpleSeekableFormatInputStream extends CompressionInputStream {
    * Returns false if there are no more data segments.
    */
   private boolean moveToNextDataSegment() throws IOException {
+    if (interleavedIn.getDataOffset() >= endDataOffset) {
+      reachRangeEnd();
+    }
     if (dataIn.available() == 0) {
+      reachRangeEnd();
       return false;
     }
     try {
@@ -102,6 +204,7 @@ public class SimpleSeekableFormatInputStream extends CompressionInputStream {
     } catch (EOFException e) {
       // EOFException is thrown when the underlying data stream is truncated, e.g. truncated file.
       // This is considered as a normal case.
+      reachRangeEnd();
       return false;
     } catch (ClassNotFoundException e) {
       throw new RuntimeException(e);
@@ -109,6 +212,44 @@ public class SimpleSeekableFormatInputStream extends CompressionInputStream {
     return true;
   }
 
+  private void reachRangeEnd() {
+    if (rangeEndOffset == Long.MAX_VALUE) {
+      rangeEndOffset = uncompressedOffset;
+    }
+  }
+
+  /**
+   * Reads the metadata block at the current position of the stream.
+   */
+  private static OffsetPair readMetaData(DataInputStream in) throws IOException {
+    byte[] magic = new byte[SimpleSeekableFormat.MAGIC_HEADER_BYTES.length];
+    in.readFully(magic);
+    if (!Arrays.equals(magic, SimpleSeekableFormat.MAGIC_HEADER_BYTES)) {
+      throw new CorruptedDataException("Metadata block does not start with "
+          + "the magic header");
+    }
+    int version = in.readInt();
+    if (version != SimpleSeekableFormat.VERSION) {
+      throw new CorruptedDataException("Unsupported version " + version);
+    }
+    OffsetPair offsets = new OffsetPair();
+    offsets.readFrom(in);
+    return offsets;
+  }
+
+  /**
+   * Reads the stream to its end and returns the number of bytes read.
+   */
+  private static long skipAll(InputStream in) throws IOException {
+    byte[] buffer = new byte[4096];
+    long total = 0;
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      total += read;
+    }
+    return total;
+  }
+
   @Override
   public void resetState() throws IOException {
     throw new RuntimeException("SeekableFileInputFormat does not support resetState()");
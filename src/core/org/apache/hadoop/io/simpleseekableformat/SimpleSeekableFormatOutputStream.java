@@ -156,10 +156,11 @@ public class SimpleSeekableFormatOutputStream extends CompressionOutputStream im
   public void flush() throws IOException {
     DataSegmentWriter currentDataSegment = new DataSegmentWriter(currentDataSegmentBuffer, codec);
     currentDataSegment.writeTo(dataSegmentDataOut);
+    int uncompressedLength = currentDataSegmentBuffer.size();
     // Clear out the current buffer
     currentDataSegmentBuffer.reset();
     // Update the latest offsets
-    lastOffsets.uncompressedOffset += currentDataSegmentBuffer.size();
+    lastOffsets.uncompressedOffset += uncompressedLength;
     lastOffsets.compressedOffset = dataSegmentOut.getDataOffset();
   }
 
@@ -293,10 +293,23 @@ public class NetworkTopology {
     int getNumOfLeaves() {
       return numOfLeaves;
     }
+
+    /** Add all the leaves of this subtree to <i>leaves</i> */
+    void getLeaves(List<Node> leaves) {
+      for(int i=0; i<children.size(); i++) {
+        Node child = children.get(i);
+        if (child instanceof InnerNode) {
+          ((InnerNode)child).getLeaves(leaves);
+        } else {
+          leaves.add(child);
+        }
+      }
+    }
   } // end of InnerNode
     
   InnerNode clusterMap = new InnerNode(InnerNode.ROOT); // the root
   private int numOfRacks = 0;  // rack counter
+  private volatile long version = 0; // bumped on every add or remove
   private ReadWriteLock netlock;
     
   public NetworkTopology() {
@@ -330,6 +343,7 @@ public class NetworkTopology {
           numOfRacks++;
         }
       }
+      version++;
       LOG.debug("NetworkTopology became:\n" + this.toString());
     } finally {
       netlock.writeLock().unlock();
@@ -356,6 +370,7 @@ public class NetworkTopology {
           numOfRacks--;
         }
       }
+      version++;
       LOG.debug("NetworkTopology became:\n" + this.toString());
     } finally {
       netlock.writeLock().unlock();
@@ -422,6 +437,26 @@ public class NetworkTopology {
     }
   }
     
+  /** Return the version of the tree.
+   * The version changes whenever a node is added or removed, so callers
+   * that keep a copy of the leaves can tell when it has gone stale.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /** Return all the leaves of the tree, grouped by rack */
+  public List<Node> getLeaves() {
+    netlock.readLock().lock();
+    try {
+      List<Node> leaves = new ArrayList<Node>(clusterMap.getNumOfLeaves());
+      clusterMap.getLeaves(leaves);
+      return leaves;
+    } finally {
+      netlock.readLock().unlock();
+    }
+  }
+
   /** Return the distance between two nodes
    * It is assumed that the distance from one node to its parent is 1
    * The distance between two nodes is calculated by summing up their distances
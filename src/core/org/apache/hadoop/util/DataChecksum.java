@@ -23,6 +23,8 @@ import java.util.zip.CRC32;
 
 import java.io.*;
 
+import org.apache.hadoop.fs.ChecksumException;
+
 /**
  * This class provides inteface and utilities for processing checksums for
  * DFS data transfers.
@@ -36,9 +38,27 @@ public class DataChecksum implements Checksum {
   // checksum types
   public static final int CHECKSUM_NULL    = 0;
   public static final int CHECKSUM_CRC32   = 1;
+  public static final int CHECKSUM_CRC32C  = 2;
   
   private static final int CHECKSUM_NULL_SIZE  = 0;
   private static final int CHECKSUM_CRC32_SIZE = 4;
+  private static final int CHECKSUM_CRC32C_SIZE = 4;
+  
+  /**
+   * Returns the checksum type with the given name, one of "NULL", "CRC32"
+   * or "CRC32C" (case insensitive).
+   * @throws IllegalArgumentException if the name is not a known type
+   */
+  public static int getChecksumTypeByName(String name) {
+    if ("NULL".equalsIgnoreCase(name)) {
+      return CHECKSUM_NULL;
+    } else if ("CRC32".equalsIgnoreCase(name)) {
+      return CHECKSUM_CRC32;
+    } else if ("CRC32C".equalsIgnoreCase(name)) {
+      return CHECKSUM_CRC32C;
+    }
+    throw new IllegalArgumentException("Unknown checksum type " + name);
+  }
   
   
   public static DataChecksum newDataChecksum( int type, int bytesPerChecksum ) {
@@ -53,6 +73,9 @@ public class DataChecksum implements Checksum {
     case CHECKSUM_CRC32 :
       return new DataChecksum( CHECKSUM_CRC32, new CRC32(), 
                                CHECKSUM_CRC32_SIZE, bytesPerChecksum );
+    case CHECKSUM_CRC32C :
+      return new DataChecksum( CHECKSUM_CRC32C, new PureJavaCrc32C(), 
+                               CHECKSUM_CRC32C_SIZE, bytesPerChecksum );
     default:
       return null;  
     }
@@ -122,7 +145,7 @@ public class DataChecksum implements Checksum {
        return 0;
      }
 
-     if ( type == CHECKSUM_CRC32 ) {
+     if ( type == CHECKSUM_CRC32 || type == CHECKSUM_CRC32C ) {
        out.writeInt( (int) summer.getValue() );
      } else {
        throw new IOException( "Unknown Checksum " + type );
@@ -146,7 +169,7 @@ public class DataChecksum implements Checksum {
         return 0;
       }
 
-      if ( type == CHECKSUM_CRC32 ) {
+      if ( type == CHECKSUM_CRC32 || type == CHECKSUM_CRC32C ) {
         int checksum = (int) summer.getValue();
         buf[offset+0] = (byte) ((checksum >>> 24) & 0xff);
         buf[offset+1] = (byte) ((checksum >>> 16) & 0xff);
@@ -168,7 +191,7 @@ public class DataChecksum implements Checksum {
     * @return true if the checksum matches and false otherwise.
     */
    public boolean compare( byte buf[], int offset ) {
-     if ( size > 0 && type == CHECKSUM_CRC32 ) {
+     if ( size > 0 && (type == CHECKSUM_CRC32 || type == CHECKSUM_CRC32C) ) {
        int checksum = ( (buf[offset+0] & 0xff) << 24 ) | 
                       ( (buf[offset+1] & 0xff) << 16 ) |
                       ( (buf[offset+2] & 0xff) << 8 )  |
@@ -178,6 +201,73 @@ public class DataChecksum implements Checksum {
      return size == 0;
    }
    
+   /**
+    * Verifies the checksums of a run of chunks in one pass. The data in
+    * <i>data[dataOff, dataOff + dataLen)</i> is split into chunks of
+    * bytesPerChecksum bytes (the last one may be shorter), and the checksum
+    * of each chunk is compared with the one stored at the matching position
+    * in <i>checksums</i> starting at <i>checksumsOff</i>. The running
+    * checksum is left reset.
+    * 
+    * @param fileName name reported in the exception on a mismatch
+    * @param basePos position in the file of data[dataOff]
+    * @throws ChecksumException for the first chunk that does not match
+    */
+   public void verifyChunkedSums( byte[] data, int dataOff, int dataLen,
+                                  byte[] checksums, int checksumsOff,
+                                  String fileName, long basePos )
+                                  throws ChecksumException {
+     if ( size <= 0 ) {
+       return;
+     }
+     reset();
+     int pos = 0;
+     while ( pos < dataLen ) {
+       int n = Math.min( dataLen - pos, bytesPerChecksum );
+       summer.update( data, dataOff + pos, n );
+       int calculated = (int) summer.getValue();
+       summer.reset();
+       int stored = ( (checksums[checksumsOff+0] & 0xff) << 24 ) |
+                    ( (checksums[checksumsOff+1] & 0xff) << 16 ) |
+                    ( (checksums[checksumsOff+2] & 0xff) << 8 )  |
+                    ( (checksums[checksumsOff+3] & 0xff) );
+       if ( calculated != stored ) {
+         long errPos = basePos + pos;
+         throw new ChecksumException( "Checksum error: " + fileName + " at " +
+             errPos + " exp: " + stored + " got: " + calculated, errPos );
+       }
+       pos += n;
+       checksumsOff += size;
+     }
+   }
+
+   /**
+    * Computes the checksums of a run of chunks in one pass and stores them
+    * in <i>checksums</i> starting at <i>checksumsOff</i>, which must have
+    * room for one checksum per bytesPerChecksum bytes of data. The running
+    * checksum is left reset.
+    */
+   public void calculateChunkedSums( byte[] data, int dataOff, int dataLen,
+                                     byte[] checksums, int checksumsOff ) {
+     if ( size <= 0 ) {
+       return;
+     }
+     reset();
+     int pos = 0;
+     while ( pos < dataLen ) {
+       int n = Math.min( dataLen - pos, bytesPerChecksum );
+       summer.update( data, dataOff + pos, n );
+       int checksum = (int) summer.getValue();
+       summer.reset();
+       checksums[checksumsOff+0] = (byte) ((checksum >>> 24) & 0xff);
+       checksums[checksumsOff+1] = (byte) ((checksum >>> 16) & 0xff);
+       checksums[checksumsOff+2] = (byte) ((checksum >>> 8) & 0xff);
+       checksums[checksumsOff+3] = (byte) (checksum & 0xff);
+       pos += n;
+       checksumsOff += size;
+     }
+   }
+   
   private final int type;
   private final int size;
   private final Checksum summer;
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.util;
+
+import java.util.zip.Checksum;
+
+/**
+ * A pure-java implementation of the CRC32C (Castagnoli) checksum.
+ * It uses the "slicing-by-8" algorithm, which consumes eight bytes
+ * of input per table lookup round instead of one.
+ *
+ * This class is not thread-safe.
+ */
+public class PureJavaCrc32C implements Checksum {
+
+  /** The reflected Castagnoli polynomial */
+  private static final int CRC32C_POLY = 0x82F63B78;
+
+  /**
+   * Lookup tables. T[0] is the usual byte-at-a-time table; T[k] gives the
+   * contribution of a byte that is followed by k more bytes of input.
+   */
+  private static final int[][] T = new int[8][256];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      int crc = i;
+      for (int j = 0; j < 8; j++) {
+        crc = (crc >>> 1) ^ ((crc & 1) != 0 ? CRC32C_POLY : 0);
+      }
+      T[0][i] = crc;
+    }
+    for (int k = 1; k < 8; k++) {
+      for (int i = 0; i < 256; i++) {
+        int crc = T[k - 1][i];
+        T[k][i] = (crc >>> 8) ^ T[0][crc & 0xff];
+      }
+    }
+  }
+
+  private static final int[] T0 = T[0];
+  private static final int[] T1 = T[1];
+  private static final int[] T2 = T[2];
+  private static final int[] T3 = T[3];
+  private static final int[] T4 = T[4];
+  private static final int[] T5 = T[5];
+  private static final int[] T6 = T[6];
+  private static final int[] T7 = T[7];
+
+  /** the current CRC value, bit-flipped */
+  private int crc;
+
+  /** Create a new PureJavaCrc32C object. */
+  public PureJavaCrc32C() {
+    reset();
+  }
+
+  /** {@inheritDoc} */
+  public long getValue() {
+    return (~crc) & 0xffffffffL;
+  }
+
+  /** {@inheritDoc} */
+  public void reset() {
+    crc = 0xffffffff;
+  }
+
+  /** {@inheritDoc} */
+  public void update(byte[] b, int off, int len) {
+    int localCrc = crc;
+    while (len > 7) {
+      int c0 = (b[off + 0] ^ localCrc) & 0xff;
+      int c1 = (b[off + 1] ^ (localCrc >>>= 8)) & 0xff;
+      int c2 = (b[off + 2] ^ (localCrc >>>= 8)) & 0xff;
+      int c3 = (b[off + 3] ^ (localCrc >>>= 8)) & 0xff;
+      localCrc = T7[c0] ^ T6[c1] ^ T5[c2] ^ T4[c3]
+               ^ T3[b[off + 4] & 0xff] ^ T2[b[off + 5] & 0xff]
+               ^ T1[b[off + 6] & 0xff] ^ T0[b[off + 7] & 0xff];
+      off += 8;
+      len -= 8;
+    }
+    while (len > 0) {
+      localCrc = (localCrc >>> 8) ^ T0[(localCrc ^ b[off++]) & 0xff];
+      len--;
+    }
+    crc = localCrc;
+  }
+
+  /** {@inheritDoc} */
+  public void update(int b) {
+    crc = (crc >>> 8) ^ T0[(crc ^ b) & 0xff];
+  }
+}
@@ -44,7 +44,6 @@ import org.apache.commons.logging.*;
 import java.io.*;
 import java.net.*;
 import java.util.*;
-import java.util.zip.CRC32;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ConcurrentHashMap;
 import java.nio.BufferOverflowException;
@@ -82,6 +81,7 @@ public class DFSClient implements FSConstants, java.io.Closeable {
   private int socketTimeout;
   private int datanodeWriteTimeout;
   final int writePacketSize;
+  final int checksumType; // checksum type of the blocks this client writes
   private final FileSystem.Statistics stats;
   private int maxBlockAcquireFailures;
   private final int hdfsTimeout;    // timeout value for a DFS operation.
@@ -231,6 +231,8 @@ public class DFSClient implements FSConstants, java.io.Closeable {
     this.socketFactory = NetUtils.getSocketFactory(conf, ClientProtocol.class);
     // dfs.write.packet.size is an internal config variable
     this.writePacketSize = conf.getInt("dfs.write.packet.size", 64*1024);
+    this.checksumType = DataChecksum.getChecksumTypeByName(
+                          conf.get("dfs.checksum.type", "CRC32"));
     this.maxBlockAcquireFailures = 
                           conf.getInt("dfs.client.max.block.acquire.failures",
                                       MAX_BLOCK_ACQUIRE_FAILURES);
@@ -592,12 +594,50 @@ public class DFSClient implements FSConstants, java.io.Closeable {
                                      NSQuotaExceededException.class,
                                      DSQuotaExceededException.class);
     }
+    // chunks appended to the last block have to match its checksum
+    DataChecksum appendChecksum = lastBlock != null &&
+        lastBlock.getBlockSize() > 0 ? getBlockChecksum(src, lastBlock) :
+        DataChecksum.newDataChecksum(checksumType,
+                                     conf.getInt("io.bytes.per.checksum", 512));
     OutputStream result = new DFSOutputStream(src, buffersize, progress,
-        lastBlock, stat, conf.getInt("io.bytes.per.checksum", 512));
+        lastBlock, stat, appendChecksum.getChecksumType(),
+        appendChecksum.getBytesPerChecksum());
     leasechecker.put(src, result);
     return result;
   }
 
+  /**
+   * Get the checksum of a block from its metadata header on one of the
+   * datanodes that have it.
+   */
+  private DataChecksum getBlockChecksum(String src, LocatedBlock lb)
+      throws IOException {
+    Block blk = lb.getBlock();
+    IOException lastException = new IOException("No datanode has block " +
+                                                 blk + " of file " + src);
+    for (DatanodeInfo dn : lb.getLocations()) {
+      Socket sock = null;
+      try {
+        sock = socketFactory.createSocket();
+        NetUtils.connect(sock, NetUtils.createSocketAddr(dn.getName()),
+                         socketTimeout);
+        sock.setSoTimeout(socketTimeout);
+        // reading no data only returns the header with the checksum
+        BlockReader reader = BlockReader.newBlockReader(sock, src,
+            blk.getBlockId(), blk.getGenerationStamp(), 0, 0,
+            FSConstants.BUFFER_SIZE, true, clientName);
+        return reader.getChecksum();
+      } catch (IOException e) {
+        LOG.warn("Failed to get the checksum of block " + blk +
+                 " from " + dn.getName() + ": " + e);
+        lastException = e;
+      } finally {
+        IOUtils.closeSocket(sock);
+      }
+    }
+    throw lastException;
+  }
+
   /**
    * Set replication for an existing file.
    * 
@@ -725,7 +765,7 @@ public class DFSClient implements FSConstants, java.io.Closeable {
    * @param src parent path in string representation
    * @return a FileStatus object
    */
-  private static LocatedFileStatus toLocatedFileStatus(
+  static LocatedFileStatus toLocatedFileStatus(
       HdfsFileStatus stat, LocatedBlocks locs, String src) {
     if (stat == null) {
       return null;
@@ -788,6 +828,33 @@ public class DFSClient implements FSConstants, java.io.Closeable {
     }
   }
 
+  /**
+   * Get partial listings of several directories with block locations.
+   * A namenode without the batched call lists the first directory only.
+   *
+   * @see ClientProtocol#getLocatedPartialListings(String[], byte[][])
+   */
+  public LocatedDirectoryListing[] getLocatedPartialListings(
+      String[] srcs, byte[][] startAfter) throws IOException {
+    checkOpen();
+    try {
+      if (namenodeVersion >= ClientProtocol.BULK_LISTING_VERSION) {
+        return namenode.getLocatedPartialListings(srcs, startAfter);
+      }
+      return new LocatedDirectoryListing[] {
+          namenode.getLocatedPartialListing(srcs[0], startAfter[0])};
+    } catch(RemoteException re) {
+      throw re.unwrapRemoteException(AccessControlException.class);
+    }
+  }
+
+  /**
+   * @return true if the namenode returns block locations with a listing
+   */
+  boolean isLocatedListingSupported() {
+    return namenodeVersion >= ClientProtocol.BULK_BLOCK_LOCATIONS_VERSION;
+  }
+
   /** create the iterator from an array of file status */
   private RemoteIterator<LocatedFileStatus> arrayListing(final String src) 
   throws IOException {
@@ -1771,6 +1838,11 @@ public class DFSClient implements FSConstants, java.io.Closeable {
       checksum = null;
       // in will be closed when its Socket is closed.
     }
+
+    /** Get the checksum of the block being read */
+    DataChecksum getChecksum() {
+      return checksum;
+    }
     
     /** kind of like readFully(). Only reads as much as possible.
      * And allows use of protected readFully().
@@ -3039,8 +3111,9 @@ public class DFSClient implements FSConstants, java.io.Closeable {
     private Progressable progress;
 
     private DFSOutputStream(String src, long blockSize, Progressable progress,
-        int bytesPerChecksum) throws IOException {
-      super(new CRC32(), bytesPerChecksum, 4);
+        int checksumType, int bytesPerChecksum) throws IOException {
+      super(DataChecksum.newDataChecksum(checksumType, bytesPerChecksum),
+            bytesPerChecksum, 4);
       this.src = src;
       this.blockSize = blockSize;
       this.progress = progress;
@@ -3055,8 +3128,7 @@ public class DFSClient implements FSConstants, java.io.Closeable {
                               "multiple of io.bytes.per.checksum");
                               
       }
-      checksum = DataChecksum.newDataChecksum(DataChecksum.CHECKSUM_CRC32, 
-                                              bytesPerChecksum);
+      checksum = DataChecksum.newDataChecksum(checksumType, bytesPerChecksum);
     }
 
     /**
@@ -3066,7 +3138,7 @@ public class DFSClient implements FSConstants, java.io.Closeable {
     DFSOutputStream(String src, FsPermission masked, boolean overwrite,
         short replication, long blockSize, Progressable progress,
         int buffersize, int bytesPerChecksum) throws IOException {
-      this(src, blockSize, progress, bytesPerChecksum);
+      this(src, blockSize, progress, checksumType, bytesPerChecksum);
 
       computePacketChunkSize(writePacketSize, bytesPerChecksum);
 
@@ -3087,8 +3159,8 @@ public class DFSClient implements FSConstants, java.io.Closeable {
      */
     DFSOutputStream(String src, int buffersize, Progressable progress,
         LocatedBlock lastBlock, FileStatus stat,
-        int bytesPerChecksum) throws IOException {
-      this(src, stat.getBlockSize(), progress, bytesPerChecksum);
+        int checksumType, int bytesPerChecksum) throws IOException {
+      this(src, stat.getBlockSize(), progress, checksumType, bytesPerChecksum);
       initialFileSize = stat.getLen(); // length of file when opened
 
       //
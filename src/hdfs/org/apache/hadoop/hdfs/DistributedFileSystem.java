@@ -20,6 +20,9 @@ package org.apache.hadoop.hdfs;
 
 import java.io.*;
 import java.net.*;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
 
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.fs.*;
@@ -29,6 +32,8 @@ import org.apache.hadoop.hdfs.protocol.FSConstants;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.protocol.LocatedDirectoryListing;
 import org.apache.hadoop.hdfs.protocol.FSConstants.DatanodeReportType;
 import org.apache.hadoop.hdfs.protocol.FSConstants.UpgradeAction;
 import org.apache.hadoop.hdfs.server.common.UpgradeStatusReport;
@@ -45,6 +50,9 @@ import org.apache.hadoop.util.Progressable;
  *
  *****************************************************************/
 public class DistributedFileSystem extends FileSystem {
+  /** Maximum number of directories sent in one batched listing call. */
+  static final int MAX_LISTING_DIRS = 256;
+
   private Path workingDir;
   private URI uri;
 
@@ -299,6 +307,96 @@ public class DistributedFileSystem extends FileSystem {
       }
     };
   }
+
+  /**
+   * List the paths with batched calls to the namenode. A call lists many
+   * small directories, or a part of a large one, so the number of calls
+   * depends on the number of entries rather than on the number of
+   * directories. In a recursive listing, the entries of the subdirectories
+   * come after the entries of the given paths.
+   */
+  @Override
+  public RemoteIterator<LocatedFileStatus> listLocatedStatus(
+      final Path[] paths, final PathFilter filter, final boolean recursive)
+  throws IOException {
+    if (!dfs.isLocatedListingSupported()) {
+      return super.listLocatedStatus(paths, filter, recursive);
+    }
+    return new RemoteIterator<LocatedFileStatus>() {
+      // directories left to list; the first one continues after startAfter
+      private final LinkedList<String> dirs = new LinkedList<String>();
+      private byte[] startAfter = HdfsFileStatus.EMPTY_NAME;
+      private final LinkedList<LocatedFileStatus> entries =
+        new LinkedList<LocatedFileStatus>();
+
+      { // initializer
+        for (Path p : paths) {
+          dirs.add(getPathName(p));
+        }
+      }
+
+      @Override
+      public boolean hasNext() throws IOException {
+        while (entries.isEmpty() && !dirs.isEmpty()) {
+          fetch();
+        }
+        return !entries.isEmpty();
+      }
+
+      @Override
+      public LocatedFileStatus next() throws IOException {
+        if (!hasNext()) {
+          throw new java.util.NoSuchElementException("No more entry in " +
+                                                     Arrays.toString(paths));
+        }
+        return entries.removeFirst();
+      }
+
+      /** List the next directories in one call. */
+      private void fetch() throws IOException {
+        int numDirs = Math.min(dirs.size(), MAX_LISTING_DIRS);
+        String[] srcs = new String[numDirs];
+        byte[][] startAfters = new byte[numDirs][];
+        Iterator<String> it = dirs.iterator();
+        for (int i = 0; i < numDirs; i++) {
+          srcs[i] = it.next();
+          startAfters[i] = i == 0 ? startAfter : HdfsFileStatus.EMPTY_NAME;
+        }
+        LocatedDirectoryListing[] listings =
+          dfs.getLocatedPartialListings(srcs, startAfters);
+
+        startAfter = HdfsFileStatus.EMPTY_NAME;
+        for (int i = 0; i < listings.length; i++) {
+          String src = dirs.removeFirst();
+          LocatedDirectoryListing listing = listings[i];
+          if (listing == null) { // the directory does not exist
+            throw new FileNotFoundException("File " + src +
+                                            " does not exist.");
+          }
+          HdfsFileStatus[] stats = listing.getPartialListing();
+          LocatedBlocks[] locs = listing.getBlockLocations();
+          for (int j = 0; j < stats.length; j++) {
+            LocatedFileStatus stat =
+              DFSClient.toLocatedFileStatus(stats[j], locs[j], src);
+            stat.makeQualified(DistributedFileSystem.this);
+            if (!filter.accept(stat.getPath())) {
+              continue;
+            }
+            if (recursive && stat.isDir()) {
+              dirs.add(getPathName(stat.getPath()));
+            } else {
+              entries.add(stat);
+            }
+          }
+          if (listing.hasMore()) {
+            // only the last directory listed can have more entries
+            dirs.addFirst(src);
+            startAfter = listing.getLastName();
+          }
+        }
+      }
+    };
+  }
  
 
   public boolean mkdirs(Path f, FsPermission permission) throws IOException {
@@ -42,6 +42,7 @@ public interface ClientProtocol extends VersionedProtocol {
   public static final long BULK_BLOCK_LOCATIONS_VERSION = 44L;
   public static final long CONCAT_VERSION = 52L;
   public static final long LIST_CORRUPT_FILEBLOCKS_VERSION = 53L;
+  public static final long BULK_LISTING_VERSION = 54L;
 
   /**
    * Compared to the previous version the following changes have been introduced:
@@ -49,9 +50,10 @@ public interface ClientProtocol extends VersionedProtocol {
    * The log of historical changes can be retrieved from the svn).
    * 52: concat()
    * 53: Replace getCorruptFiles() with listCorruptFileBlocks()
+   * 54: getLocatedPartialListings()
    */
 
-  public static final long versionID = LIST_CORRUPT_FILEBLOCKS_VERSION;
+  public static final long versionID = BULK_LISTING_VERSION;
   
   ///////////////////////////////////////
   // File contents
@@ -327,6 +329,23 @@ public interface ClientProtocol extends VersionedProtocol {
       byte[] startAfter)
   throws IOException;
 
+  /**
+   * Get partial listings of several directories in one call,
+   * piggybacking block locations to each FileStatus.
+   * The directories are listed in order until about as many entries as
+   * a single partial listing holds are listed, so the result may cover
+   * only the first directories, and the last one covered may have more
+   * entries left.
+   *
+   * @param srcs the directory names
+   * @param startAfter for each directory, the name to start listing after
+   * @return the partial listings of the first directories of srcs;
+   *         a listing is null if its directory does not exist
+   */
+  public LocatedDirectoryListing[] getLocatedPartialListings(String[] srcs,
+      byte[][] startAfter)
+  throws IOException;
+
   ///////////////////////////////////////
   // System issues and management
   ///////////////////////////////////////
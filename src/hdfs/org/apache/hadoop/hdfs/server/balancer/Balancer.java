@@ -237,6 +237,7 @@ public class Balancer implements Tool {
   private ExecutorService moverExecutor = null;
   final static private int DISPATCHER_THREAD_POOL_SIZE = 200;
   private ExecutorService dispatcherExecutor = null;
+  private int dispatcherThreads = 1;
 
   /* This class keeps track of a scheduled block move */
   private class PendingBlockMove {
@@ -609,18 +610,6 @@ public class Balancer implements Tool {
 
   /** A node that can be the sources of a block move */
   private class Source extends BalancerDatanode {
-    /* A thread that initiates a block move
-     * and waits for block move to complete */
-    private class BlockMoveDispatcher implements Runnable {
-      private long startTime;
-      BlockMoveDispatcher(long time) {
-        this.startTime = time;
-      }
-      public void run() {
-        dispatchBlocks(startTime);
-      }
-    }
-
     private ArrayList<NodeTask> nodeTasks = new ArrayList<NodeTask>(2);
     private long blocksToReceive = 0L;
     /* source blocks point to balancerBlocks in the global list because
@@ -746,63 +735,66 @@ public class Balancer implements Tool {
                  blocksToReceive>0;
     }
 
-    /* This method iteratively does the following:
-     * it first selects a block to move,
-     * then sends a request to the proxy source to start the block move
-     * when the source's block list falls below a threshold, it asks
-     * the namenode for more blocks.
-     * It terminates when it has dispatch enough block move tasks or
+    /* Prepare the source for dispatching the block moves of an iteration */
+    private void startDispatching() {
+      this.blocksToReceive = 2*scheduledSize;
+    }
+
+    /* This method does one step of dispatching the moves of this source:
+     * it schedules the block moves that the targets and the proxy sources
+     * have room for, sending requests to the proxy sources to start them.
+     * If no move can be scheduled and the source's block list falls below
+     * a threshold, it asks the namenode for more blocks instead.
+     * The source is done when it has dispatched enough block move tasks or
      * it has received enough blocks from the namenode, or
      * the elapsed time of the iteration has exceeded the max time limit.
+     *
+     * Return DISPATCH_PROGRESS if moves were scheduled or blocks fetched,
+     * DISPATCH_BLOCKED if the source has to wait for pending moves, and
+     * DISPATCH_DONE if the source is done.
      */
     private static final long MAX_ITERATION_TIME = 20*60*1000L; //20 mins
-    private void dispatchBlocks(long startTime) {
-      this.blocksToReceive = 2*scheduledSize;
-      boolean isTimeUp = false;
-      while(!isTimeUp && scheduledSize>0 &&
-          (!srcBlockList.isEmpty() || blocksToReceive>0)) {
-
-        // check if time is up or not
-        // Even if not sent everything the iteration is over
-        if (Util.now()-startTime > maxIterationTime) {
-          isTimeUp = true;
-          continue;
-        }
-
-        PendingBlockMove pendingBlock = chooseNextBlockToMove();
-        if (pendingBlock != null) {
-          // move the block
-          pendingBlock.scheduleBlockMove();
-          continue;
-        }
+    private int dispatchStep(long startTime) {
+      // Even if not sent everything the iteration is over
+      if (scheduledSize<=0 ||
+          (srcBlockList.isEmpty() && blocksToReceive<=0) ||
+          Util.now()-startTime > maxIterationTime) {
+        return DISPATCH_DONE;
+      }
 
-        /* Since we can not schedule any block to move,
-         * filter any moved blocks from the source block list and
-         * check if we should fetch more blocks from the namenode
-         */
-        filterMovedBlocks(); // filter already moved blocks
+      boolean scheduled = false;
+      PendingBlockMove pendingBlock;
+      while (scheduledSize>0 &&
+             (pendingBlock = chooseNextBlockToMove()) != null) {
+        // move the block
+        pendingBlock.scheduleBlockMove();
+        scheduled = true;
+      }
+      if (scheduled) {
+        return DISPATCH_PROGRESS;
+      }
 
-        if (shouldFetchMoreBlocks()) {
-          // fetch new blocks
-          try {
-            blocksToReceive -= getBlockList();
-            continue;
-          } catch (IOException e) {
-            LOG.warn(StringUtils.stringifyException(e));
-            return;
-          }
-        }
+      /* Since we can not schedule any block to move,
+       * filter any moved blocks from the source block list and
+       * check if we should fetch more blocks from the namenode
+       */
+      filterMovedBlocks(); // filter already moved blocks
 
-        /* Now we can not schedule any block to move and there are
-         * no new blocks added to the source block list, so we wait.
-         */
+      if (shouldFetchMoreBlocks()) {
+        // fetch new blocks
         try {
-          synchronized(Balancer.this) {
-            Balancer.this.wait(1000);  // wait for targets/sources to be idle
-          }
-        } catch (InterruptedException ignored) {
+          blocksToReceive -= getBlockList();
+          return DISPATCH_PROGRESS;
+        } catch (IOException e) {
+          LOG.warn(StringUtils.stringifyException(e));
+          return DISPATCH_DONE;
         }
       }
+
+      /* Now we can not schedule any block to move and there are
+       * no new blocks added to the source block list, so we wait.
+       */
+      return DISPATCH_BLOCKED;
     }
   }
 
@@ -1222,8 +1214,98 @@ public class Balancer implements Tool {
   private BytesMoved bytesMoved = new BytesMoved();
   private int notChangedIterations = 0;
 
-  /* Start a thread to dispatch block moves for each source.
-   * The thread selects blocks to move & sends request to proxy source to
+  // results of a dispatch step of a source
+  private static final int DISPATCH_DONE = 0;
+  private static final int DISPATCH_PROGRESS = 1;
+  private static final int DISPATCH_BLOCKED = 2;
+
+  /* A thread that dispatches block moves for the sources in a shared queue.
+   * It takes the source at the head of the queue, does one dispatch step
+   * for it and puts it back at the tail unless it is done, so a source
+   * whose targets are busy does not hold up the other sources.
+   * When no source has made progress for a whole round, the thread waits
+   * for a block move to complete.
+   */
+  private class BlockMoveDispatcher implements Runnable {
+    private final DispatchQueue queue;
+    private final long startTime;
+
+    BlockMoveDispatcher(DispatchQueue queue, long startTime) {
+      this.queue = queue;
+      this.startTime = startTime;
+    }
+
+    public void run() {
+      try {
+        Source source;
+        while ((source = queue.take()) != null) {
+          int result = DISPATCH_DONE;
+          boolean shouldWait;
+          try {
+            result = source.dispatchStep(startTime);
+          } finally {
+            // a failed source is dropped so that the others can finish
+            shouldWait = queue.put(source, result);
+          }
+          if (shouldWait) {
+            synchronized(Balancer.this) {
+              Balancer.this.wait(1000);  // wait for targets/sources to be idle
+            }
+          }
+        }
+      } catch (InterruptedException ignored) {
+      }
+    }
+  }
+
+  /* The sources left to dispatch in an iteration */
+  private static class DispatchQueue {
+    private final LinkedList<Source> sources;
+    // sources being dispatched
+    private int numTaken = 0;
+    // dispatch steps without progress since the last progress
+    private int numBlocked = 0;
+
+    private DispatchQueue(Collection<Source> sources) {
+      this.sources = new LinkedList<Source>(sources);
+    }
+
+    /* Take the next source to dispatch.
+     * Return null if all the sources are done.
+     */
+    private synchronized Source take() throws InterruptedException {
+      while (sources.isEmpty()) {
+        if (numTaken == 0) {
+          return null;
+        }
+        wait(); // a source being dispatched may come back
+      }
+      numTaken++;
+      return sources.removeFirst();
+    }
+
+    /* Put back a source after a dispatch step with the given result.
+     * Return true if no source has made progress for a whole round.
+     */
+    private synchronized boolean put(Source source, int result) {
+      numTaken--;
+      if (result != DISPATCH_DONE) {
+        sources.addLast(source);
+      }
+      notifyAll();
+      if (result == DISPATCH_PROGRESS) {
+        numBlocked = 0;
+      } else if (result == DISPATCH_BLOCKED &&
+                 ++numBlocked >= sources.size() + numTaken) {
+        numBlocked = 0;
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /* Dispatch the block moves of all the sources with the dispatcher threads.
+   * A dispatcher selects blocks to move & sends request to proxy source to
    * initiate block move. The process is flow controlled. Block selection is
    * blocked if there are too many un-confirmed block moves.
    * Return the total number of bytes successfully moved in this iteration.
@@ -1231,11 +1313,16 @@ public class Balancer implements Tool {
   private long dispatchBlockMoves() throws InterruptedException {
     long bytesLastMoved = bytesMoved.get();
 
-    Future<?>[] futures = new Future<?>[sources.size()];
-    int i=0;
     for (Source source : sources) {
-      futures[i++] = dispatcherExecutor.submit(
-                        source.new BlockMoveDispatcher(Util.now()));
+      source.startDispatching();
+    }
+    DispatchQueue queue = new DispatchQueue(sources);
+    long startTime = Util.now();
+    Future<?>[] futures =
+      new Future<?>[Math.min(dispatcherThreads, sources.size())];
+    for (int i=0; i<futures.length; i++) {
+      futures[i] = dispatcherExecutor.submit(
+                        new BlockMoveDispatcher(queue, startTime));
     }
 
     // wait for all dispatcher threads to finish
@@ -1247,7 +1334,8 @@ public class Balancer implements Tool {
       }
     }
 
-    // wait for all block moving to be done
+    // wait for all block moving to be done. The next iteration plans from
+    // the datanode usage, which has to include the moves of this one.
     waitForMoveCompletion();
 
     return bytesMoved.get()-bytesLastMoved;
@@ -1264,11 +1352,14 @@ public class Balancer implements Tool {
   }
 
   /* wait for all block move confirmations
-   * by checking each target's pendingMove queue
+   * by checking each target's pendingMove queue.
+   * Every finished move notifies the balancer, so the wait ends as soon as
+   * the last move is confirmed; the moves still pending after
+   * MAX_WAIT_ITERATIONS+1 wait periods are cancelled.
    */
   private void waitForMoveCompletion() {
+    long killTime = Util.now() + (MAX_WAIT_ITERATIONS+1)*blockMoveWaitTime;
     boolean shouldWait;
-    int waitedIterations = 0;
     do {
       shouldWait = false;
       for (BalancerDatanode target : targets) {
@@ -1278,14 +1369,17 @@ public class Balancer implements Tool {
       }
       if (shouldWait) {
         try {
-          if (waitedIterations > MAX_WAIT_ITERATIONS) {
+          long now = Util.now();
+          if (now >= killTime) {
             for (BalancerDatanode target : targets) {
               target.killPending();
             }
-            continue;
+            // wait for the cancelled moves to finish
+            killTime = now + blockMoveWaitTime;
+          }
+          synchronized(this) {
+            wait(Math.max(1, Math.min(1000, killTime - now)));
           }
-          waitedIterations++;
-          Thread.sleep(blockMoveWaitTime);
         } catch (InterruptedException ignored) {
         }
       }
@@ -1506,8 +1600,8 @@ public class Balancer implements Tool {
                                      String.valueOf(MOVER_THREAD_POOL_SIZE)));
 
       moverExecutor = Executors.newFixedThreadPool(moveThreads);
-      int dispatchThreads = (int)Math.max(1, moveThreads/maxConcurrentMoves);
-      dispatcherExecutor = Executors.newFixedThreadPool(dispatchThreads);
+      dispatcherThreads = (int)Math.max(1, moveThreads/maxConcurrentMoves);
+      dispatcherExecutor = Executors.newFixedThreadPool(dispatcherThreads);
 
       maxIterationTime = iterationTime * 60 * 1000L;
       System.out.println("Running with threshold of " + this.threshold
@@ -1524,7 +1618,7 @@ public class Balancer implements Tool {
       }
 
       Formatter formatter = new Formatter(System.out);
-      System.out.println("Time Stamp               Iteration#  Bytes Already Moved  Bytes Left To Move  Bytes Being Moved  Iterations Left  Seconds Left");
+      System.out.println("Time Stamp               Iteration#  Bytes Already Moved  Bytes Left To Move  Bytes Being Moved  Iterations Left  Seconds Left  Bytes Moved/Sec");
       int iterations = 0;
       while (true ) {
         /* get all live datanodes of a cluster and their disk usage
@@ -1554,14 +1648,15 @@ public class Balancer implements Tool {
         }
 
         long moved = bytesMoved.get();
+        // the rate over the whole run, including the planning time
+        long bytesPerSecond = moved * 1000 / Math.max(1, Util.now()-startTime);
         String iterationsLeft = "N/A";
         String timeLeft = "N/A";
         if (iterations != 0 && moved != 0) {
           long bytesPerIteration = moved / iterations;
           long iterLeft = bytesLeftToMove / bytesPerIteration;
           iterationsLeft = String.valueOf(iterLeft );
-          long secondsPerIteration = (maxIterationTime + blockMoveWaitTime)/1000;
-          long secondsLeft = secondsPerIteration * iterLeft;
+          long secondsLeft = bytesLeftToMove / Math.max(1, bytesPerSecond);
           long daysLeft = TimeUnit.SECONDS.toDays(secondsLeft);
           timeLeft = "";
           if (daysLeft > 0) {
@@ -1579,14 +1674,15 @@ public class Balancer implements Tool {
 
         }
 
-        formatter.format("%-24s %10d  %19s  %18s  %17s  %15s  %12s\n",
+        formatter.format("%-24s %10d  %19s  %18s  %17s  %15s  %12s  %15s\n",
             DateFormat.getDateTimeInstance().format(new Date()),
             iterations,
             StringUtils.byteDesc(bytesMoved.get()),
             StringUtils.byteDesc(bytesLeftToMove),
             StringUtils.byteDesc(bytesToMove),
             iterationsLeft,
-            timeLeft
+            timeLeft,
+            StringUtils.byteDesc(bytesPerSecond)
             );
 
         /* For each pair of <source, target>, start a thread that repeatedly
@@ -1595,7 +1691,12 @@ public class Balancer implements Tool {
          * available to move.
          * Exit no byte has been moved for 5 consecutive iterations.
          */
-        if (dispatchBlockMoves() > 0) {
+        long iterationStart = Util.now();
+        long iterationMoved = dispatchBlockMoves();
+        LOG.info("Moved " + StringUtils.byteDesc(iterationMoved) +
+            " in this iteration at " + StringUtils.byteDesc(iterationMoved *
+            1000 / Math.max(1, Util.now()-iterationStart)) + "/s");
+        if (iterationMoved > 0) {
           notChangedIterations = 0;
         } else {
           notChangedIterations++;
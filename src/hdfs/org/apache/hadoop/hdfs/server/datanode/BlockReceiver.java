@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hdfs.server.datanode;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -25,10 +26,10 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.LinkedList;
-import java.util.zip.CRC32;
 import java.util.zip.Checksum;
 
 import org.apache.commons.logging.Log;
+import org.apache.hadoop.fs.ChecksumException;
 import org.apache.hadoop.fs.FSInputChecker;
 import org.apache.hadoop.fs.FSOutputSummer;
 import org.apache.hadoop.hdfs.protocol.Block;
@@ -63,6 +64,9 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
   private int bufRead; //amount of valid data in the buf
   private int maxPacketReadLen;
   protected long offsetInBlock;
+  // offset in the block the data file is positioned at, -1 if not known.
+  // Saves asking the file channel for its position on every packet.
+  private long blockFilePosition = -1;
   protected final String inAddr;
   protected final String myAddr;
   private String mirrorAddr;
@@ -92,6 +96,9 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
       this.checksum = DataChecksum.newDataChecksum(in);
       this.bytesPerChecksum = checksum.getBytesPerChecksum();
       this.checksumSize = checksum.getChecksumSize();
+      if (isRecovery && datanode.data.isValidBlock(block)) {
+        checkAppendChecksum();
+      }
       //
       // Open local disk out
       //
@@ -128,6 +135,30 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
     }
   }
 
+  /**
+   * Check that the checksum of an append matches the one in the metadata
+   * file of the block; chunks of another checksum would not match the
+   * header and fail the readers.
+   */
+  private void checkAppendChecksum() throws IOException {
+    DataInputStream metaIn = new DataInputStream(new BufferedInputStream(
+        datanode.data.getMetaDataInputStream(block), SMALL_BUFFER_SIZE));
+    try {
+      DataChecksum existing =
+        BlockMetadataHeader.readHeader(metaIn).getChecksum();
+      if (existing.getChecksumType() != checksum.getChecksumType() ||
+          existing.getBytesPerChecksum() != bytesPerChecksum) {
+        throw new IOException("Checksum type " + checksum.getChecksumType() +
+            " with " + bytesPerChecksum + " bytes per checksum of the " +
+            "write does not match type " + existing.getChecksumType() +
+            " with " + existing.getBytesPerChecksum() +
+            " bytes per checksum of block " + block);
+      }
+    } finally {
+      IOUtils.closeStream(metaIn);
+    }
+  }
+
   /**
    * close files.
    */
@@ -200,32 +231,26 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
   private void verifyChunks( byte[] dataBuf, int dataOff, int len, 
                              byte[] checksumBuf, int checksumOff ) 
                              throws IOException {
-    while (len > 0) {
-      int chunkLen = Math.min(len, bytesPerChecksum);
-      
-      checksum.update(dataBuf, dataOff, chunkLen);
-
-      if (!checksum.compare(checksumBuf, checksumOff)) {
-        if (srcDataNode != null) {
-          try {
-            LOG.info("report corrupt block " + block + " from datanode " +
-                      srcDataNode + " to namenode");
-            LocatedBlock lb = new LocatedBlock(block, 
-                                            new DatanodeInfo[] {srcDataNode});
-            datanode.namenode.reportBadBlocks(new LocatedBlock[] {lb});
-          } catch (IOException e) {
-            LOG.warn("Failed to report bad block " + block + 
-                      " from datanode " + srcDataNode + " to namenode");
-          }
+    try {
+      checksum.verifyChunkedSums(dataBuf, dataOff, len,
+                                 checksumBuf, checksumOff,
+                                 block.toString(), offsetInBlock - len);
+    } catch (ChecksumException ce) {
+      if (srcDataNode != null) {
+        try {
+          LOG.info("report corrupt block " + block + " from datanode " +
+                    srcDataNode + " to namenode");
+          LocatedBlock lb = new LocatedBlock(block, 
+                                          new DatanodeInfo[] {srcDataNode});
+          datanode.namenode.reportBadBlocks(new LocatedBlock[] {lb});
+        } catch (IOException e) {
+          LOG.warn("Failed to report bad block " + block + 
+                    " from datanode " + srcDataNode + " to namenode");
         }
-        throw new IOException("Unexpected checksum mismatch " + 
-                              "while writing " + block + " from " + inAddr);
       }
-
-      checksum.reset();
-      dataOff += chunkLen;
-      checksumOff += checksumSize;
-      len -= chunkLen;
+      throw new IOException("Unexpected checksum mismatch " + 
+                            "while writing " + block + " from " + inAddr +
+                            ": " + ce.getMessage());
     }
   }
 
@@ -397,20 +422,23 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
                 " lastPacketInBlock " + lastPacketInBlock);
     }
     
-    setBlockPosition(offsetInBlock);
-    
-    //First write the packet to the mirror:
+    //First write the packet to the mirror, so that the downstream
+    //datanodes work on it while we position and write the local files:
     if (mirrorOut != null) {
       try {
         mirrorOut.write(buf.array(), buf.position(), buf.remaining());
         mirrorOut.flush();
+        datanode.ioLoad.addNetworkBytes(buf.remaining());
       } catch (IOException e) {
         handleMirrorOutError(e);
       }
     }
 
+    setBlockPosition(offsetInBlock);
+
     buf.position(endOfHeader);        
     int len = buf.getInt();
+    long diskWriteNanos = -1;
     
     if (len < 0) {
       throw new IOException("Got wrong length during writeBlock(" + block + 
@@ -449,8 +477,10 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
 
       try {
         if (!finalized) {
+          long diskWriteStart = System.nanoTime();
           //finally write to the disk :
           out.write(pktBuf, dataOff, len);
+          blockFilePosition = offsetInBlock;
 
           // If this is a partial chunk, then verify that this is the only
           // chunk in the packet. Calculate new crc for this chunk.
@@ -465,12 +495,16 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
             partialCrc.update(pktBuf, dataOff, len);
             byte[] buf = FSOutputSummer.convertToByteStream(partialCrc, checksumSize);
             checksumOut.write(buf);
-            LOG.debug("Writing out partial crc for data len " + len);
+            if (LOG.isDebugEnabled()) {
+              LOG.debug("Writing out partial crc for data len " + len);
+            }
             partialCrc = null;
           } else {
             checksumOut.write(pktBuf, checksumOff, checksumLen);
           }
+          diskWriteNanos = System.nanoTime() - diskWriteStart;
           datanode.myMetrics.bytesWritten.inc(len);
+          datanode.ioLoad.addNetworkBytes(len);
         }
       } catch (IOException iex) {
         datanode.checkDiskError(iex);
@@ -479,7 +513,12 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
     }
 
     /// flush entire packet before sending ack
+    long flushStart = System.nanoTime();
     flush();
+    if (diskWriteNanos >= 0) {
+      datanode.ioLoad.addDiskWrite(
+          diskWriteNanos + System.nanoTime() - flushStart);
+    }
 
     // put in queue for pending acks
     if (responder != null) {
@@ -605,7 +644,11 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
       return;
     }
 
+    if (blockFilePosition == offsetInBlock) {
+      return;                   // the common case of consecutive packets
+    }
     if (datanode.data.getChannelPosition(block, streams) == offsetInBlock) {
+      blockFilePosition = offsetInBlock;
       return;                   // nothing to do 
     }
     long offsetInChecksum = BlockMetadataHeader.getHeaderSize() +
@@ -634,6 +677,7 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
 
     // set the position of the block file
     datanode.data.setChannelPosition(block, streams, offsetInBlock, offsetInChecksum);
+    blockFilePosition = offsetInBlock;
   }
 
   /**
@@ -671,7 +715,8 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
     }
 
     // compute crc of partial chunk from data read in the block file.
-    partialCrc = new CRC32();
+    partialCrc = DataChecksum.newDataChecksum(checksum.getChecksumType(),
+                                              bytesPerChecksum);
     partialCrc.update(buf, 0, sizePartialChunk);
     LOG.info("Read in partial CRC chunk from disk for block " + block);
 
@@ -724,8 +769,10 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
      */
     synchronized void enqueue(long seqno, boolean lastPacketInBlock) {
       if (running) {
-        LOG.debug("PacketResponder " + numTargets + " adding seqno " + seqno +
-                  " to ack queue.");
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("PacketResponder " + numTargets + " adding seqno " + seqno +
+                    " to ack queue.");
+        }
         ackQueue.addLast(new Packet(seqno, lastPacketInBlock));
         notifyAll();
       }
@@ -790,9 +837,11 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
             Packet pkt = ackQueue.removeFirst();
             long expected = pkt.seqno;
             notifyAll();
-            LOG.debug("PacketResponder " + numTargets +
-                      " for block " + block + 
-                      " acking for packet " + expected);
+            if (LOG.isDebugEnabled()) {
+              LOG.debug("PacketResponder " + numTargets +
+                        " for block " + block + 
+                        " acking for packet " + expected);
+            }
 
             // If this is the last packet in block, then close block
             // file and finalize the block before responding success
@@ -875,8 +924,10 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
               } else if (seqno == -2) {
                 LOG.debug("PacketResponder " + numTargets + " got -2");
               } else {
-                LOG.debug("PacketResponder " + numTargets + " got seqno = " + 
-                    seqno);
+                if (LOG.isDebugEnabled()) {
+                  LOG.debug("PacketResponder " + numTargets + " got seqno = " + 
+                      seqno);
+                }
                 Packet pkt = null;
                 synchronized (this) {
                   while (running && datanode.shouldRun && ackQueue.size() == 0) {
@@ -956,10 +1007,12 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
             replyOut.writeLong(expected); // send seqno upstream
             replyOut.writeShort(DataTransferProtocol.OP_STATUS_SUCCESS);
 
-            LOG.debug("PacketResponder " + numTargets + 
-                      " for block " + block +
-                      " responded my status " +
-                      " for seqno " + expected);
+            if (LOG.isDebugEnabled()) {
+              LOG.debug("PacketResponder " + numTargets + 
+                        " for block " + block +
+                        " responded my status " +
+                        " for seqno " + expected);
+            }
 
             // forward responses from downstream datanodes.
             for (int i = 0; i < numTargets && datanode.shouldRun; i++) {
@@ -978,8 +1031,10 @@ class BlockReceiver implements java.io.Closeable, FSConstants {
               replyOut.writeShort(op);
             }
             replyOut.flush();
-            LOG.debug("PacketResponder " + block + " " + numTargets + 
-                      " responded other status " + " for seqno " + expected);
+            if (LOG.isDebugEnabled()) {
+              LOG.debug("PacketResponder " + block + " " + numTargets + 
+                        " responded other status " + " for seqno " + expected);
+            }
 
             // If we were unable to read the seqno from downstream, then stop.
             if (expected == -2) {
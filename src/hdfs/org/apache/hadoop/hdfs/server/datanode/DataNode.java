@@ -169,6 +169,7 @@ public class DataNode extends Configured
   private LinkedList<String> delHints = new LinkedList<String>();
   public final static String EMPTY_DEL_HINT = "";
   AtomicInteger xmitsInProgress = new AtomicInteger();
+  final IOLoadTracker ioLoad = new IOLoadTracker(now());
   Daemon dataXceiverServer = null;
   ThreadGroup threadGroup = null;
   long blockReportInterval;
@@ -753,14 +754,19 @@ public class DataNode extends Configured
           // -- data transfer port
           // -- Total capacity
           // -- Bytes remaining
+          // -- Disk and network load
           //
           lastHeartbeat = startTime;
+          ioLoad.roll(startTime);
           DatanodeCommand[] cmds = namenode.sendHeartbeat(dnRegistration,
                                                        data.getCapacity(),
                                                        data.getDfsUsed(),
                                                        data.getRemaining(),
                                                        xmitsInProgress.get(),
-                                                       getXceiverCount());
+                                                       getXceiverCount(),
+                                                       data.getVolumeQueueDepth(),
+                                                       ioLoad.getIoLatency(),
+                                                       ioLoad.getNetworkThroughput());
           myMetrics.heartbeats.inc(now() - startTime);
           //LOG.info("Just sent heartbeat, with name " + localName);
           if (!processCommand(cmds))
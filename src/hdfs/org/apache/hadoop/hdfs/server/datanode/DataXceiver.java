@@ -217,6 +217,7 @@ class DataXceiver implements Runnable, FSConstants {
       }
       
       datanode.myMetrics.bytesRead.inc((int) read);
+      datanode.ioLoad.addNetworkBytes(read);
       datanode.myMetrics.blocksRead.inc();
     } catch ( SocketException ignored ) {
       // Its ok for remote side to close the connection anytime.
@@ -532,6 +533,7 @@ class DataXceiver implements Runnable, FSConstants {
                                         dataXceiverServer.balanceThrottler);
 
       datanode.myMetrics.bytesRead.inc((int) read);
+      datanode.ioLoad.addNetworkBytes(read);
       datanode.myMetrics.blocksRead.inc();
       
       LOG.info("Copied block " + block + " to " + s.getRemoteSocketAddress());
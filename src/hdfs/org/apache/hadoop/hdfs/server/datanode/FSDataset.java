@@ -838,6 +838,25 @@ public class FSDataset implements FSConstants, FSDatasetInterface {
     return volumes.numberOfVolumes() >= MIN_NUM_OF_VALID_VOLUMES;
   }
 
+  /**
+   * Return the number of blocks being written to the busiest volume
+   */
+  public synchronized int getVolumeQueueDepth() {
+    Map<FSVolume, Integer> writers = new HashMap<FSVolume, Integer>();
+    int maxWriters = 0;
+    for (Block b : ongoingCreates.keySet()) {
+      DatanodeBlockInfo info = volumeMap.get(b);
+      if (info == null) {
+        continue;
+      }
+      Integer count = writers.get(info.getVolume());
+      int n = (count == null) ? 1 : count + 1;
+      writers.put(info.getVolume(), n);
+      maxWriters = Math.max(maxWriters, n);
+    }
+    return maxWriters;
+  }
+
   /**
    * Return total capacity, used and unused
    */
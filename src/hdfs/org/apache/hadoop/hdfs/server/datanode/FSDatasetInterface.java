@@ -270,4 +270,10 @@ public interface FSDatasetInterface extends FSDatasetMBean {
    * @return true if more then minimum valid volumes left in the FSDataSet
    */
   public boolean hasEnoughResource();
+
+  /**
+   * Returns the number of block writes in progress on the busiest volume,
+   * a measure of how deep the write queue of that disk is.
+   */
+  public int getVolumeQueueDepth();
 }
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the disk write latency and the network throughput of a datanode
+ * between two heartbeats. The averages of the last interval are sent to
+ * the namenode, which can then steer new writes away from busy datanodes.
+ */
+class IOLoadTracker {
+  private final AtomicLong networkBytes = new AtomicLong();
+  private final AtomicLong diskWriteNanos = new AtomicLong();
+  private final AtomicLong diskWrites = new AtomicLong();
+
+  // counters at the start of the current interval
+  private long intervalStart;
+  private long lastNetworkBytes;
+  private long lastDiskWriteNanos;
+  private long lastDiskWrites;
+
+  // averages of the last completed interval
+  private volatile long ioLatency;
+  private volatile long networkThroughput;
+
+  IOLoadTracker(long now) {
+    intervalStart = now;
+  }
+
+  /** Count bytes sent or received over the network */
+  void addNetworkBytes(long bytes) {
+    networkBytes.addAndGet(bytes);
+  }
+
+  /** Count a write to disk that took <i>nanos</i> nanoseconds */
+  void addDiskWrite(long nanos) {
+    diskWriteNanos.addAndGet(nanos);
+    diskWrites.incrementAndGet();
+  }
+
+  /**
+   * End the current interval and start a new one.
+   * @param now current time in milliseconds
+   */
+  synchronized void roll(long now) {
+    long elapsed = now - intervalStart;
+    if (elapsed <= 0) {
+      return;
+    }
+    long bytes = networkBytes.get();
+    long nanos = diskWriteNanos.get();
+    long writes = diskWrites.get();
+    networkThroughput = (bytes - lastNetworkBytes) * 1000 / elapsed;
+    ioLatency = (writes == lastDiskWrites) ? 0 :
+      (nanos - lastDiskWriteNanos) / (writes - lastDiskWrites) / 1000;
+    intervalStart = now;
+    lastNetworkBytes = bytes;
+    lastDiskWriteNanos = nanos;
+    lastDiskWrites = writes;
+  }
+
+  /** Average disk write latency of the last interval, in microseconds */
+  long getIoLatency() {
+    return ioLatency;
+  }
+
+  /** Network throughput of the last interval, in bytes per second */
+  long getNetworkThroughput() {
+    return networkThroughput;
+  }
+}
@@ -23,7 +23,6 @@ import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.FSConstants;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
-import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.net.NetworkTopology;
 import org.apache.hadoop.net.Node;
 import org.apache.hadoop.net.NodeBase;
@@ -36,11 +35,25 @@ import java.util.*;
  * otherwise a random datanode. The 2nd replica is placed on a datanode
  * that is on a different rack. The 3rd replica is placed on a datanode
  * which is on a different node of the rack as the second replica.
+ * In load aware mode each random choice is the less loaded of two
+ * sampled nodes.
+ *
+ * Targets are chosen from a snapshot of the cluster map that is rebuilt
+ * only when a datanode is added or removed, using per-thread scratch
+ * state, so concurrent callers neither lock nor allocate.
  */
 public class BlockPlacementPolicyDefault extends BlockPlacementPolicy {
   private boolean considerLoad; 
+  private boolean loadAware;
   private NetworkTopology clusterMap;
   private FSClusterStats stats;
+  private volatile Topology topology;
+  private final ThreadLocal<Chooser> chooserState =
+    new ThreadLocal<Chooser>() {
+      protected Chooser initialValue() {
+        return new Chooser();
+      }
+    };
 
   BlockPlacementPolicyDefault(Configuration conf,  FSClusterStats stats,
                            NetworkTopology clusterMap) {
@@ -54,6 +67,7 @@ public class BlockPlacementPolicyDefault extends BlockPlacementPolicy {
   public void initialize(Configuration conf,  FSClusterStats stats,
                          NetworkTopology clusterMap) {
     this.considerLoad = conf.getBoolean("dfs.replication.considerLoad", true);
+    this.loadAware = conf.getBoolean("dfs.replication.loadAware", false);
     this.stats = stats;
     this.clusterMap = clusterMap;
   }
@@ -86,18 +100,12 @@ public class BlockPlacementPolicyDefault extends BlockPlacementPolicy {
                                     List<DatanodeDescriptor> chosenNodes,
                                     List<Node> exlcNodes,
                                     long blocksize) {
-    if (numOfReplicas == 0 || clusterMap.getNumOfLeaves()==0) {
+    Topology topology = getTopology();
+    if (numOfReplicas == 0 || topology.size==0) {
       return new DatanodeDescriptor[0];
     }
       
-    HashMap<Node, Node> excludedNodes = new HashMap<Node, Node>();
-    if (exlcNodes != null) {
-      for (Node node:exlcNodes) {
-        excludedNodes.put(node, node);
-      }
-    }
-     
-    int clusterSize = clusterMap.getNumOfLeaves();
+    int clusterSize = topology.size;
     int totalNumOfReplicas = chosenNodes.size()+numOfReplicas;
     if (totalNumOfReplicas > clusterSize) {
       numOfReplicas -= (totalNumOfReplicas-clusterSize);
@@ -105,78 +113,123 @@ public class BlockPlacementPolicyDefault extends BlockPlacementPolicy {
     }
       
     int maxNodesPerRack = 
-      (totalNumOfReplicas-1)/clusterMap.getNumOfRacks()+2;
-      
-    List<DatanodeDescriptor> results = 
-      new ArrayList<DatanodeDescriptor>(chosenNodes);
-    for (Node node:chosenNodes) {
-      excludedNodes.put(node, node);
+      (totalNumOfReplicas-1)/topology.numOfRacks+2;
+
+    double avgLoad = 0;
+    if (considerLoad && stats != null) {
+      avgLoad = (double)stats.getTotalLoad()/clusterSize;
+    }
+
+    Chooser chooser = chooserState.get();
+    chooser.reset(topology, chosenNodes.size()+Math.max(numOfReplicas, 0),
+                  avgLoad);
+    if (exlcNodes != null) {
+      for (Node node:exlcNodes) {
+        chooser.exclude(topology.indexOf(node));
+      }
+    }
+    for (DatanodeDescriptor node:chosenNodes) {
+      int index = topology.indexOf(node);
+      chooser.exclude(index);
+      chooser.addResult(node, index, (index >= 0) ? topology.rackOf[index] :
+                        topology.getRack(node.getNetworkLocation()));
     }
       
-    if (!clusterMap.contains(writer)) {
+    int writerIndex = topology.indexOf(writer);
+    if (writerIndex < 0) {
       writer=null;
     }
       
-    DatanodeDescriptor localNode = chooseTarget(numOfReplicas, writer, 
-                                                excludedNodes, blocksize, maxNodesPerRack, results);
+    DatanodeDescriptor localNode = chooseTarget(numOfReplicas, writer,
+        writerIndex, blocksize, maxNodesPerRack, chooser);
       
-    results.removeAll(chosenNodes);
+    // the chosen nodes are at the head of the results
+    int numOfChosen = chosenNodes.size();
+    DatanodeDescriptor[] targets =
+      new DatanodeDescriptor[chooser.numOfResults-numOfChosen];
+    System.arraycopy(chooser.results, numOfChosen, targets, 0, targets.length);
       
     // sorting nodes to form a pipeline
-    return getPipeline((writer==null)?localNode:writer,
-                       results.toArray(new DatanodeDescriptor[results.size()]));
+    return getPipeline((writer==null)?localNode:writer, targets,
+                       chooser, numOfChosen);
+  }
+
+  /* Return the snapshot of the cluster map, rebuilding it if
+   * a node has been added or removed since it was taken.
+   */
+  private Topology getTopology() {
+    Topology t = topology;
+    if (t == null || t.version != clusterMap.getVersion()) {
+      t = refreshTopology();
+    }
+    return t;
+  }
+
+  private synchronized Topology refreshTopology() {
+    long version = clusterMap.getVersion();
+    if (topology == null || topology.version != version) {
+      // the leaves are at least as new as the version read above
+      topology = new Topology(version, clusterMap.getLeaves());
+    }
+    return topology;
   }
     
   /* choose <i>numOfReplicas</i> from all data nodes */
   private DatanodeDescriptor chooseTarget(int numOfReplicas,
                                           DatanodeDescriptor writer,
-                                          HashMap<Node, Node> excludedNodes,
+                                          int writerIndex,
                                           long blocksize,
                                           int maxNodesPerRack,
-                                          List<DatanodeDescriptor> results) {
+                                          Chooser chooser) {
       
-    if (numOfReplicas == 0 || clusterMap.getNumOfLeaves()==0) {
+    if (numOfReplicas == 0) {
       return writer;
     }
       
-    int numOfResults = results.size();
+    Topology topology = chooser.topology;
+    int numOfResults = chooser.numOfResults;
     boolean newBlock = (numOfResults==0);
+    int writerRack = (writerIndex >= 0) ? topology.rackOf[writerIndex] :
+                                          Topology.NO_RACK;
     if (writer == null && !newBlock) {
-      writer = results.get(0);
+      writer = chooser.results[0];
+      writerRack = chooser.resultRacks[0];
     }
       
     try {
       if (numOfResults == 0) {
-        writer = chooseLocalNode(writer, excludedNodes, 
-                                 blocksize, maxNodesPerRack, results);
+        chooseLocalNode(writer, writerIndex, 
+                        blocksize, maxNodesPerRack, chooser);
+        writer = chooser.results[0];
+        writerRack = chooser.resultRacks[0];
         if (--numOfReplicas == 0) {
           return writer;
         }
       }
       if (numOfResults <= 1) {
-        chooseRemoteRack(1, results.get(0), excludedNodes, 
-                         blocksize, maxNodesPerRack, results);
+        chooseRemoteRack(1, chooser.resultRacks[0], 
+                         blocksize, maxNodesPerRack, chooser);
         if (--numOfReplicas == 0) {
           return writer;
         }
       }
       if (numOfResults <= 2) {
-        if (clusterMap.isOnSameRack(results.get(0), results.get(1))) {
-          chooseRemoteRack(1, results.get(0), excludedNodes,
-                           blocksize, maxNodesPerRack, results);
+        if (chooser.isOnSameRack(0, 1)) {
+          chooseRemoteRack(1, chooser.resultRacks[0],
+                           blocksize, maxNodesPerRack, chooser);
         } else if (newBlock){
-          chooseLocalRack(results.get(1), excludedNodes, blocksize, 
-                          maxNodesPerRack, results);
+          chooseLocalRack(chooser.results[1], chooser.resultRacks[1],
+                          blocksize, maxNodesPerRack, chooser);
         } else {
-          chooseLocalRack(writer, excludedNodes, blocksize,
-                          maxNodesPerRack, results);
+          chooseLocalRack(writer, writerRack, 
+                          blocksize, maxNodesPerRack, chooser);
         }
         if (--numOfReplicas == 0) {
           return writer;
         }
       }
-      chooseRandom(numOfReplicas, NodeBase.ROOT, excludedNodes, 
-                   blocksize, maxNodesPerRack, results);
+      chooseRandom(numOfReplicas, Topology.ANY_RACK, false, 
+                   blocksize, maxNodesPerRack, chooser);
     } catch (NotEnoughReplicasException e) {
       FSNamesystem.LOG.warn("Not able to place enough replicas, still in need of "
                + numOfReplicas);
@@ -187,33 +240,32 @@ public class BlockPlacementPolicyDefault extends BlockPlacementPolicy {
   /* choose <i>localMachine</i> as the target.
    * if <i>localMachine</i> is not available, 
    * choose a node on the same rack
-   * @return the chosen node
    */
-  private DatanodeDescriptor chooseLocalNode(
-                                             DatanodeDescriptor localMachine,
-                                             HashMap<Node, Node> excludedNodes,
-                                             long blocksize,
-                                             int maxNodesPerRack,
-                                             List<DatanodeDescriptor> results)
+  private void chooseLocalNode(DatanodeDescriptor localMachine,
+                               int localIndex,
+                               long blocksize,
+                               int maxNodesPerRack,
+                               Chooser chooser)
     throws NotEnoughReplicasException {
     // if no local machine, randomly choose one node
-    if (localMachine == null)
-      return chooseRandom(NodeBase.ROOT, excludedNodes, 
-                          blocksize, maxNodesPerRack, results);
+    if (localIndex < 0) {
+      chooseRandom(Topology.ANY_RACK, false, 
+                   blocksize, maxNodesPerRack, chooser);
+      return;
+    }
       
     // otherwise try local machine first
-    Node oldNode = excludedNodes.put(localMachine, localMachine);
-    if (oldNode == null) { // was not in the excluded list
-      if (isGoodTarget(localMachine, blocksize,
-                       maxNodesPerRack, false, results)) {
-        results.add(localMachine);
-        return localMachine;
+    if (chooser.exclude(localIndex)) { // was not in the excluded list
+      if (isGoodTarget(localIndex, blocksize,
+                       maxNodesPerRack, false, chooser)) {
+        chooser.addResult(localIndex);
+        return;
       }
     } 
       
     // try a node on local rack
-    return chooseLocalRack(localMachine, excludedNodes, 
-                           blocksize, maxNodesPerRack, results);
+    chooseLocalRack(localMachine, chooser.topology.rackOf[localIndex], 
+                    blocksize, maxNodesPerRack, chooser);
   }
     
   /* choose one node from the rack that <i>localMachine</i> is on.
@@ -221,103 +273,91 @@ public class BlockPlacementPolicyDefault extends BlockPlacementPolicy {
    * a second replica is on.
    * if still no such node is available, choose a random node 
    * in the cluster.
-   * @return the chosen node
    */
-  private DatanodeDescriptor chooseLocalRack(
-                                             DatanodeDescriptor localMachine,
-                                             HashMap<Node, Node> excludedNodes,
-                                             long blocksize,
-                                             int maxNodesPerRack,
-                                             List<DatanodeDescriptor> results)
+  private void chooseLocalRack(DatanodeDescriptor localMachine,
+                               int localRack,
+                               long blocksize,
+                               int maxNodesPerRack,
+                               Chooser chooser)
     throws NotEnoughReplicasException {
     // no local machine, so choose a random machine
     if (localMachine == null) {
-      return chooseRandom(NodeBase.ROOT, excludedNodes, 
-                          blocksize, maxNodesPerRack, results);
+      chooseRandom(Topology.ANY_RACK, false, 
+                   blocksize, maxNodesPerRack, chooser);
+      return;
     }
       
     // choose one from the local rack
     try {
-      return chooseRandom(
-                          localMachine.getNetworkLocation(),
-                          excludedNodes, blocksize, maxNodesPerRack, results);
+      chooseRandom(localRack, false, blocksize, maxNodesPerRack, chooser);
     } catch (NotEnoughReplicasException e1) {
       // find the second replica
-      DatanodeDescriptor newLocal=null;
-      for(Iterator<DatanodeDescriptor> iter=results.iterator();
-          iter.hasNext();) {
-        DatanodeDescriptor nextNode = iter.next();
-        if (nextNode != localMachine) {
-          newLocal = nextNode;
+      int newLocal = -1;
+      for(int i=0; i<chooser.numOfResults; i++) {
+        if (chooser.results[i] != localMachine) {
+          newLocal = i;
           break;
         }
       }
-      if (newLocal != null) {
+      if (newLocal >= 0) {
         try {
-          return chooseRandom(
-                              newLocal.getNetworkLocation(),
-                              excludedNodes, blocksize, maxNodesPerRack, results);
+          chooseRandom(chooser.resultRacks[newLocal], false,
+                       blocksize, maxNodesPerRack, chooser);
         } catch(NotEnoughReplicasException e2) {
           //otherwise randomly choose one from the network
-          return chooseRandom(NodeBase.ROOT, excludedNodes,
-                              blocksize, maxNodesPerRack, results);
+          chooseRandom(Topology.ANY_RACK, false,
+                       blocksize, maxNodesPerRack, chooser);
         }
       } else {
         //otherwise randomly choose one from the network
-        return chooseRandom(NodeBase.ROOT, excludedNodes,
-                            blocksize, maxNodesPerRack, results);
+        chooseRandom(Topology.ANY_RACK, false,
+                     blocksize, maxNodesPerRack, chooser);
       }
     }
   }
     
   /* choose <i>numOfReplicas</i> nodes from the racks 
-   * that <i>localMachine</i> is NOT on.
+   * that are NOT <i>localRack</i>.
    * if not enough nodes are available, choose the remaining ones 
    * from the local rack
    */
     
   private void chooseRemoteRack(int numOfReplicas,
-                                DatanodeDescriptor localMachine,
-                                HashMap<Node, Node> excludedNodes,
+                                int localRack,
                                 long blocksize,
                                 int maxReplicasPerRack,
-                                List<DatanodeDescriptor> results)
+                                Chooser chooser)
     throws NotEnoughReplicasException {
-    int oldNumOfReplicas = results.size();
+    int oldNumOfReplicas = chooser.numOfResults;
     // randomly choose one node from remote racks
     try {
-      chooseRandom(numOfReplicas, "~"+localMachine.getNetworkLocation(),
-                   excludedNodes, blocksize, maxReplicasPerRack, results);
+      chooseRandom(numOfReplicas, localRack, true,
+                   blocksize, maxReplicasPerRack, chooser);
     } catch (NotEnoughReplicasException e) {
-      chooseRandom(numOfReplicas-(results.size()-oldNumOfReplicas),
-                   localMachine.getNetworkLocation(), excludedNodes, blocksize, 
-                   maxReplicasPerRack, results);
+      chooseRandom(numOfReplicas-(chooser.numOfResults-oldNumOfReplicas),
+                   localRack, false, blocksize, 
+                   maxReplicasPerRack, chooser);
     }
   }
 
-  /* Randomly choose one target from <i>nodes</i>.
-   * @return the chosen node
+  /* Randomly choose one target from <i>rack</i>, or from all the
+   * other racks if <i>otherRacks</i> is set.
    */
-  private DatanodeDescriptor chooseRandom(
-                                          String nodes,
-                                          HashMap<Node, Node> excludedNodes,
-                                          long blocksize,
-                                          int maxNodesPerRack,
-                                          List<DatanodeDescriptor> results) 
+  private void chooseRandom(int rack,
+                            boolean otherRacks,
+                            long blocksize,
+                            int maxNodesPerRack,
+                            Chooser chooser) 
     throws NotEnoughReplicasException {
-    int numOfAvailableNodes =
-      clusterMap.countNumOfAvailableNodes(nodes, excludedNodes.keySet());
+    int numOfAvailableNodes = chooser.countAvailable(rack, otherRacks);
     while(numOfAvailableNodes > 0) {
-      DatanodeDescriptor chosenNode = 
-        (DatanodeDescriptor)(clusterMap.chooseRandom(nodes));
-
-      Node oldNode = excludedNodes.put(chosenNode, chosenNode);
-      if (oldNode == null) { // choosendNode was not in the excluded list
-        numOfAvailableNodes--;
-        if (isGoodTarget(chosenNode, blocksize, maxNodesPerRack, results)) {
-          results.add(chosenNode);
-          return chosenNode;
-        }
+      int chosenNode = 
+        chooseCandidate(rack, otherRacks, numOfAvailableNodes, chooser);
+      chooser.exclude(chosenNode);
+      numOfAvailableNodes--;
+      if (isGoodTarget(chosenNode, blocksize, maxNodesPerRack, chooser)) {
+        chooser.addResult(chosenNode);
+        return;
       }
     }
 
@@ -325,29 +365,27 @@ public class BlockPlacementPolicyDefault extends BlockPlacementPolicy {
         "Not able to place enough replicas");
   }
     
-  /* Randomly choose <i>numOfReplicas</i> targets from <i>nodes</i>.
+  /* Randomly choose <i>numOfReplicas</i> targets from <i>rack</i>,
+   * or from all the other racks if <i>otherRacks</i> is set.
    */
   private void chooseRandom(int numOfReplicas,
-                            String nodes,
-                            HashMap<Node, Node> excludedNodes,
+                            int rack,
+                            boolean otherRacks,
                             long blocksize,
                             int maxNodesPerRack,
-                            List<DatanodeDescriptor> results)
+                            Chooser chooser)
     throws NotEnoughReplicasException {
       
-    int numOfAvailableNodes =
-      clusterMap.countNumOfAvailableNodes(nodes, excludedNodes.keySet());
+    int numOfAvailableNodes = chooser.countAvailable(rack, otherRacks);
     while(numOfReplicas > 0 && numOfAvailableNodes > 0) {
-      DatanodeDescriptor chosenNode = 
-        (DatanodeDescriptor)(clusterMap.chooseRandom(nodes));
-      Node oldNode = excludedNodes.put(chosenNode, chosenNode);
-      if (oldNode == null) {
-        numOfAvailableNodes--;
-
-        if (isGoodTarget(chosenNode, blocksize, maxNodesPerRack, results)) {
-          numOfReplicas--;
-          results.add(chosenNode);
-        }
+      int chosenNode = 
+        chooseCandidate(rack, otherRacks, numOfAvailableNodes, chooser);
+      chooser.exclude(chosenNode);
+      numOfAvailableNodes--;
+
+      if (isGoodTarget(chosenNode, blocksize, maxNodesPerRack, chooser)) {
+        numOfReplicas--;
+        chooser.addResult(chosenNode);
       }
     }
       
@@ -357,26 +395,69 @@ public class BlockPlacementPolicyDefault extends BlockPlacementPolicy {
     }
   }
     
+  /* Randomly pick a candidate among the <i>available</i> nodes of the scope.
+   * In load aware mode two distinct nodes are sampled and the less loaded
+   * one is picked, which keeps new writes away from hot nodes without
+   * herding them all onto the single least loaded node.
+   */
+  private int chooseCandidate(int rack, boolean otherRacks, int available,
+                              Chooser chooser) {
+    int candidate = chooser.chooseAvailable(rack, otherRacks, available);
+    if (!loadAware || available < 2) {
+      return candidate;
+    }
+    int other;
+    do {
+      other = chooser.chooseAvailable(rack, otherRacks, available);
+    } while (other == candidate);
+    DatanodeDescriptor[] nodes = chooser.topology.nodes;
+    return (compareLoad(nodes[other], nodes[candidate]) < 0) ?
+      other : candidate;
+  }
+
+  /* Compare the load of two nodes; negative if <i>node1</i> is less loaded.
+   * Each load metric contributes the difference of the two values relative
+   * to the larger one, so that no metric dominates because of its units.
+   */
+  static double compareLoad(DatanodeDescriptor node1,
+                            DatanodeDescriptor node2) {
+    return relativeDifference(node1.getXceiverCount(),
+                              node2.getXceiverCount()) +
+      relativeDifference(node1.getVolumeQueueDepth(),
+                         node2.getVolumeQueueDepth()) +
+      relativeDifference(node1.getIoLatency(), node2.getIoLatency()) +
+      relativeDifference(node1.getNetworkThroughput(),
+                         node2.getNetworkThroughput());
+  }
+
+  private static double relativeDifference(long value1, long value2) {
+    long max = Math.max(value1, value2);
+    return (max <= 0) ? 0 : (double)(value1 - value2) / max;
+  }
+    
   /* judge if a node is a good target.
    * return true if <i>node</i> has enough space, 
    * does not have too much load, and the rack does not have too many nodes
    */
-  private boolean isGoodTarget(DatanodeDescriptor node,
+  private boolean isGoodTarget(int index,
                                long blockSize, int maxTargetPerLoc,
-                               List<DatanodeDescriptor> results) {
-    return isGoodTarget(node, blockSize, maxTargetPerLoc,
-                        this.considerLoad, results);
+                               Chooser chooser) {
+    return isGoodTarget(index, blockSize, maxTargetPerLoc,
+                        this.considerLoad, chooser);
   }
     
-  private boolean isGoodTarget(DatanodeDescriptor node,
+  private boolean isGoodTarget(int index,
                                long blockSize, int maxTargetPerLoc,
                                boolean considerLoad,
-                               List<DatanodeDescriptor> results) {
+                               Chooser chooser) {
     Log logr = FSNamesystem.LOG;
+    DatanodeDescriptor node = chooser.topology.nodes[index];
     // check if the node is (being) decommissed
     if (node.isDecommissionInProgress() || node.isDecommissioned()) {
-      logr.debug("Node "+NodeBase.getPath(node)+
-                " is not chosen because the node is (being) decommissioned");
+      if (logr.isDebugEnabled()) {
+        logr.debug("Node "+NodeBase.getPath(node)+
+                  " is not chosen because the node is (being) decommissioned");
+      }
       return false;
     }
 
@@ -384,38 +465,31 @@ public class BlockPlacementPolicyDefault extends BlockPlacementPolicy {
                      (node.getBlocksScheduled() * blockSize); 
     // check the remaining capacity of the target machine
     if (blockSize* FSConstants.MIN_BLOCKS_FOR_WRITE>remaining) {
-      logr.debug("Node "+NodeBase.getPath(node)+
-                " is not chosen because the node does not have enough space");
+      if (logr.isDebugEnabled()) {
+        logr.debug("Node "+NodeBase.getPath(node)+
+                  " is not chosen because the node does not have enough space");
+      }
       return false;
     }
       
     // check the communication traffic of the target machine
     if (considerLoad) {
-      double avgLoad = 0;
-      int size = clusterMap.getNumOfLeaves();
-      if (size != 0 && stats != null) {
-        avgLoad = (double)stats.getTotalLoad()/size;
-      }
-      if (node.getXceiverCount() > (2.0 * avgLoad)) {
-        logr.debug("Node "+NodeBase.getPath(node)+
-                  " is not chosen because the node is too busy");
+      if (node.getXceiverCount() > (2.0 * chooser.avgLoad)) {
+        if (logr.isDebugEnabled()) {
+          logr.debug("Node "+NodeBase.getPath(node)+
+                    " is not chosen because the node is too busy");
+        }
         return false;
       }
     }
       
     // check if the target rack has chosen too many nodes
-    String rackname = node.getNetworkLocation();
-    int counter=1;
-    for(Iterator<DatanodeDescriptor> iter = results.iterator();
-        iter.hasNext();) {
-      Node result = iter.next();
-      if (rackname.equals(result.getNetworkLocation())) {
-        counter++;
-      }
-    }
+    int counter = 1 + chooser.getNumOfChosen(chooser.topology.rackOf[index]);
     if (counter>maxTargetPerLoc) {
-      logr.debug("Node "+NodeBase.getPath(node)+
-                " is not chosen because the rack has too many chosen nodes");
+      if (logr.isDebugEnabled()) {
+        logr.debug("Node "+NodeBase.getPath(node)+
+                  " is not chosen because the rack has too many chosen nodes");
+      }
       return false;
     }
     return true;
@@ -425,37 +499,44 @@ public class BlockPlacementPolicyDefault extends BlockPlacementPolicy {
    * The pipeline is formed finding a shortest path that 
    * starts from the writer and traverses all <i>nodes</i>
    * This is basically a traveling salesman problem.
+   * The topology indexes of <i>nodes</i> are the results of
+   * <i>chooser</i> starting at <i>offset</i>.
    */
   private DatanodeDescriptor[] getPipeline(
                                            DatanodeDescriptor writer,
-                                           DatanodeDescriptor[] nodes) {
+                                           DatanodeDescriptor[] nodes,
+                                           Chooser chooser,
+                                           int offset) {
     if (nodes.length==0) return nodes;
       
-    synchronized(clusterMap) {
-      int index=0;
-      if (writer == null || !clusterMap.contains(writer)) {
-        writer = nodes[0];
-      }
-      for(;index<nodes.length; index++) {
-        DatanodeDescriptor shortestNode = nodes[index];
-        int shortestDistance = clusterMap.getDistance(writer, shortestNode);
-        int shortestIndex = index;
-        for(int i=index+1; i<nodes.length; i++) {
-          DatanodeDescriptor currentNode = nodes[i];
-          int currentDistance = clusterMap.getDistance(writer, currentNode);
-          if (shortestDistance>currentDistance) {
-            shortestDistance = currentDistance;
-            shortestNode = currentNode;
-            shortestIndex = i;
-          }
-        }
-        //switch position index & shortestIndex
-        if (index != shortestIndex) {
-          nodes[shortestIndex] = nodes[index];
-          nodes[index] = shortestNode;
+    Topology topology = chooser.topology;
+    int[] indexes = chooser.resultIndexes;
+    int writerIndex = topology.indexOf(writer);
+    if (writerIndex < 0) {
+      writerIndex = indexes[offset];
+    }
+    for(int index=0; index<nodes.length; index++) {
+      DatanodeDescriptor shortestNode = nodes[index];
+      int shortestNodeIndex = indexes[offset+index];
+      int shortestDistance = topology.getDistance(writerIndex, shortestNodeIndex);
+      int shortestIndex = index;
+      for(int i=index+1; i<nodes.length; i++) {
+        int currentDistance = topology.getDistance(writerIndex, indexes[offset+i]);
+        if (shortestDistance>currentDistance) {
+          shortestDistance = currentDistance;
+          shortestNode = nodes[i];
+          shortestNodeIndex = indexes[offset+i];
+          shortestIndex = i;
         }
-        writer = shortestNode;
       }
+      //switch position index & shortestIndex
+      if (index != shortestIndex) {
+        nodes[shortestIndex] = nodes[index];
+        nodes[index] = shortestNode;
+        indexes[offset+shortestIndex] = indexes[offset+index];
+        indexes[offset+index] = shortestNodeIndex;
+      }
+      writerIndex = shortestNodeIndex;
     }
     return nodes;
   }
@@ -504,5 +585,285 @@ public class BlockPlacementPolicyDefault extends BlockPlacementPolicy {
     }
     return cur;
   }
-}
 
+  /**
+   * An immutable copy of the cluster map.
+   * The datanodes are numbered so that the nodes of a rack have
+   * consecutive indexes, which lets a target be drawn from a rack, or from
+   * all the other racks, without walking the tree or taking its lock.
+   */
+  private static class Topology {
+    /** The scope of all the racks */
+    static final int ANY_RACK = -1;
+    /** The rack of a node that is not in the cluster */
+    static final int NO_RACK = -2;
+
+    final long version;
+    final int size;
+    final int numOfRacks;
+    final DatanodeDescriptor[] nodes;
+    final int[] rackOf;
+    // the nodes of rack r have indexes rackStart[r] to rackStart[r+1]-1
+    private final int[] rackStart;
+    // the path components of each rack, for computing distances
+    private final String[][] rackPaths;
+    private final Map<Node, Integer> nodeIndexes;
+    private final Map<String, Integer> rackIndexes;
+
+    Topology(long version, List<Node> leaves) {
+      this.version = version;
+      this.size = leaves.size();
+      rackIndexes = new HashMap<String, Integer>();
+      int[] leafRacks = new int[size];
+      for (int i = 0; i < size; i++) {
+        String location = leaves.get(i).getNetworkLocation();
+        Integer rack = rackIndexes.get(location);
+        if (rack == null) {
+          rack = rackIndexes.size();
+          rackIndexes.put(location, rack);
+        }
+        leafRacks[i] = rack;
+      }
+      numOfRacks = rackIndexes.size();
+
+      rackStart = new int[numOfRacks+1];
+      for (int i = 0; i < size; i++) {
+        rackStart[leafRacks[i]+1]++;
+      }
+      for (int r = 0; r < numOfRacks; r++) {
+        rackStart[r+1] += rackStart[r];
+      }
+      int[] next = new int[numOfRacks];
+      System.arraycopy(rackStart, 0, next, 0, numOfRacks);
+      nodes = new DatanodeDescriptor[size];
+      rackOf = new int[size];
+      nodeIndexes = new HashMap<Node, Integer>(size*4/3+1);
+      for (int i = 0; i < size; i++) {
+        int index = next[leafRacks[i]]++;
+        nodes[index] = (DatanodeDescriptor)leaves.get(i);
+        rackOf[index] = leafRacks[i];
+        nodeIndexes.put(nodes[index], index);
+      }
+
+      rackPaths = new String[numOfRacks][];
+      for (Map.Entry<String, Integer> e : rackIndexes.entrySet()) {
+        String location = e.getKey();
+        rackPaths[e.getValue()] = location.equals(NodeBase.ROOT) ?
+          new String[0] :
+          location.substring(1).split(NodeBase.PATH_SEPARATOR_STR);
+      }
+    }
+
+    /** Return the index of <i>node</i>, or -1 if it is not in the cluster */
+    int indexOf(Node node) {
+      if (node == null) {
+        return -1;
+      }
+      Integer index = nodeIndexes.get(node);
+      return (index == null) ? -1 : index;
+    }
+
+    /** Return the index of the rack at <i>location</i> */
+    int getRack(String location) {
+      Integer rack = rackIndexes.get(location);
+      return (rack == null) ? NO_RACK : rack;
+    }
+
+    int getRackStart(int rack) {
+      return rackStart[rack];
+    }
+
+    int getRackSize(int rack) {
+      return rackStart[rack+1] - rackStart[rack];
+    }
+
+    /** Same as {@link NetworkTopology#getDistance(Node, Node)} */
+    int getDistance(int node1, int node2) {
+      if (node1 < 0 || node2 < 0) {
+        return Integer.MAX_VALUE;
+      }
+      if (node1 == node2) {
+        return 0;
+      }
+      int rack1 = rackOf[node1], rack2 = rackOf[node2];
+      if (rack1 == rack2) {
+        return 2;
+      }
+      String[] path1 = rackPaths[rack1], path2 = rackPaths[rack2];
+      int common = 0;
+      while (common < path1.length && common < path2.length &&
+             path1[common].equals(path2[common])) {
+        common++;
+      }
+      return path1.length + path2.length + 2 - 2*common;
+    }
+  }
+
+  /**
+   * The scratch state of one chooseTarget call.
+   * There is one per thread and it is reused across calls, so choosing
+   * targets allocates nothing but the returned array. An array slot is
+   * valid only if it is stamped with the epoch of the current call, which
+   * saves clearing the arrays between calls.
+   */
+  private static class Chooser {
+    private final Random random = new Random();
+    private int epoch = 0;
+    private int[] excluded = new int[0];     // epoch if the node is excluded
+    private int[] rackEpoch = new int[0];    // epoch if the counters are valid
+    private int[] rackExcluded = new int[0]; // excluded nodes on the rack
+    private int[] rackChosen = new int[0];   // results on the rack
+    private int numOfExcluded;
+
+    Topology topology;
+    double avgLoad;
+    DatanodeDescriptor[] results = new DatanodeDescriptor[0];
+    int[] resultIndexes = new int[0];
+    int[] resultRacks = new int[0];
+    int numOfResults;
+
+    void reset(Topology topology, int maxResults, double avgLoad) {
+      this.topology = topology;
+      this.avgLoad = avgLoad;
+      if (excluded.length < topology.size) {
+        excluded = new int[topology.size + topology.size/4];
+      }
+      if (rackEpoch.length < topology.numOfRacks) {
+        int length = topology.numOfRacks + topology.numOfRacks/4;
+        rackEpoch = new int[length];
+        rackExcluded = new int[length];
+        rackChosen = new int[length];
+      }
+      if (results.length < maxResults) {
+        results = new DatanodeDescriptor[maxResults];
+        resultIndexes = new int[maxResults];
+        resultRacks = new int[maxResults];
+      }
+      if (++epoch == Integer.MAX_VALUE) {
+        Arrays.fill(excluded, 0);
+        Arrays.fill(rackEpoch, 0);
+        epoch = 1;
+      }
+      numOfExcluded = 0;
+      numOfResults = 0;
+    }
+
+    private void stampRack(int rack) {
+      if (rackEpoch[rack] != epoch) {
+        rackEpoch[rack] = epoch;
+        rackExcluded[rack] = 0;
+        rackChosen[rack] = 0;
+      }
+    }
+
+    /**
+     * Exclude the node at <i>index</i>.
+     * @return false if the node is not in the cluster or already excluded
+     */
+    boolean exclude(int index) {
+      if (index < 0 || excluded[index] == epoch) {
+        return false;
+      }
+      excluded[index] = epoch;
+      numOfExcluded++;
+      int rack = topology.rackOf[index];
+      stampRack(rack);
+      rackExcluded[rack]++;
+      return true;
+    }
+
+    void addResult(int index) {
+      addResult(topology.nodes[index], index, topology.rackOf[index]);
+    }
+
+    void addResult(DatanodeDescriptor node, int index, int rack) {
+      if (numOfResults == results.length) {
+        int length = results.length*2 + 1;
+        results = Arrays.copyOf(results, length);
+        resultIndexes = Arrays.copyOf(resultIndexes, length);
+        resultRacks = Arrays.copyOf(resultRacks, length);
+      }
+      results[numOfResults] = node;
+      resultIndexes[numOfResults] = index;
+      resultRacks[numOfResults] = rack;
+      numOfResults++;
+      if (rack >= 0) {
+        stampRack(rack);
+        rackChosen[rack]++;
+      }
+    }
+
+    /** Return the number of results on <i>rack</i> */
+    int getNumOfChosen(int rack) {
+      return (rack >= 0 && rackEpoch[rack] == epoch) ? rackChosen[rack] : 0;
+    }
+
+    boolean isOnSameRack(int result1, int result2) {
+      return resultRacks[result1] >= 0 &&
+        resultRacks[result1] == resultRacks[result2];
+    }
+
+    /**
+     * Return the number of nodes that are not excluded in <i>rack</i>,
+     * or in all the other racks if <i>otherRacks</i> is set.
+     */
+    int countAvailable(int rack, boolean otherRacks) {
+      if (rack < 0) {
+        // a rack that is not in the cluster has no nodes
+        return (rack == Topology.ANY_RACK || otherRacks) ?
+          topology.size - numOfExcluded : 0;
+      }
+      int excludedOnRack = (rackEpoch[rack] == epoch) ? rackExcluded[rack] : 0;
+      int availableOnRack = topology.getRackSize(rack) - excludedOnRack;
+      return otherRacks ?
+        topology.size - numOfExcluded - availableOnRack : availableOnRack;
+    }
+
+    /**
+     * Randomly choose a node that is not excluded in the scope.
+     * @param available the number of such nodes; must be positive
+     * @return the index of the chosen node
+     */
+    int chooseAvailable(int rack, boolean otherRacks, int available) {
+      int scopeSize;
+      if (rack < 0) {
+        scopeSize = topology.size;
+      } else if (otherRacks) {
+        scopeSize = topology.size - topology.getRackSize(rack);
+      } else {
+        scopeSize = topology.getRackSize(rack);
+      }
+      if (available*4 >= scopeSize) {
+        // most of the scope is available: draw until a node is
+        while (true) {
+          int index = toIndex(random.nextInt(scopeSize), rack, otherRacks);
+          if (excluded[index] != epoch) {
+            return index;
+          }
+        }
+      }
+      // most of the scope is excluded: walk to a random available node
+      int k = random.nextInt(available);
+      for (int i = 0; i < scopeSize; i++) {
+        int index = toIndex(i, rack, otherRacks);
+        if (excluded[index] != epoch && k-- == 0) {
+          return index;
+        }
+      }
+      throw new IllegalStateException("Only " + (available - k - 1) +
+          " of " + available + " nodes are available");
+    }
+
+    /* Map the <i>i</i>th node of the scope to its index */
+    private int toIndex(int i, int rack, boolean otherRacks) {
+      if (rack < 0) {
+        return i;
+      }
+      int start = topology.getRackStart(rack);
+      if (otherRacks) {
+        return (i < start) ? i : i + topology.getRackSize(rack);
+      }
+      return start + i;
+    }
+  }
+}
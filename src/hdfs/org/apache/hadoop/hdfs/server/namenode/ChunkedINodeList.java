@@ -0,0 +1,342 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Sorted children list of a large directory.
+ *
+ * An {@link java.util.ArrayList} has to shift all the entries behind the
+ * insertion point on every create and delete, which becomes the dominant
+ * cost for directories with hundreds of thousands of children.
+ * This list keeps the children in a sequence of bounded sorted arrays
+ * (chunks), so an update shifts at most one chunk. A lookup is a binary
+ * search over the last names of the chunks followed by a binary search
+ * within one chunk.
+ *
+ * The list is ordered by the local names of the inodes, the same order
+ * {@link INodeDirectory} maintains. Null elements are not permitted.
+ *
+ * The read methods do not modify the list, so they may run concurrently
+ * under the FSDirectory read lock; the updates run under the write lock.
+ */
+class ChunkedINodeList extends AbstractList<INode> implements RandomAccess {
+  /** Maximum number of entries in a chunk. */
+  static final int MAX_CHUNK_SIZE = 1024;
+  /** Number of entries per chunk when bulk loading a list. */
+  private static final int FILL_CHUNK_SIZE = MAX_CHUNK_SIZE * 3 / 4;
+
+  private INode[][] chunks;
+  /** Number of entries in each chunk. */
+  private int[] counts;
+  /** Index of the first entry of each chunk, updated by every change. */
+  private int[] offsets;
+  private int numChunks;
+  private int size;
+
+  ChunkedINodeList() {
+    chunks = new INode[4][];
+    counts = new int[4];
+    offsets = new int[4];
+    chunks[0] = new INode[MAX_CHUNK_SIZE];
+    numChunks = 1;
+    size = 0;
+  }
+
+  /**
+   * Create a list holding the entries of a sorted list.
+   */
+  ChunkedINodeList(List<INode> sorted) {
+    this();
+    for (INode node : sorted) {
+      int c = numChunks - 1;
+      if (counts[c] == FILL_CHUNK_SIZE) {
+        c = insertChunk(numChunks);
+      }
+      chunks[c][counts[c]++] = node;
+    }
+    size = sorted.size();
+    updateOffsets(1);
+  }
+
+  /**
+   * Search the list for a name.
+   * @return the same as {@link java.util.Collections#binarySearch(List, Object)}:
+   *         the index of the entry with the name if it is in the list;
+   *         otherwise, (-(insertion point) - 1).
+   */
+  int binarySearch(byte[] name) {
+    // find the first chunk whose last entry is not less than the name
+    int low = 0;
+    int high = numChunks - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (chunks[mid][counts[mid] - 1].compareTo(name) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    int c = low;
+    int base = offsets[c];
+
+    INode[] chunk = chunks[c];
+    low = 0;
+    high = counts[c] - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = chunk[mid].compareTo(name);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return base + mid;
+      }
+    }
+    return -(base + low) - 1;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public INode get(int index) {
+    checkIndex(index, size);
+    int c = chunkOf(index);
+    return chunks[c][index - offsets[c]];
+  }
+
+  @Override
+  public INode set(int index, INode node) {
+    checkIndex(index, size);
+    int c = chunkOf(index);
+    int i = index - offsets[c];
+    INode old = chunks[c][i];
+    chunks[c][i] = node;
+    return old;
+  }
+
+  @Override
+  public void add(int index, INode node) {
+    checkIndex(index, size + 1);
+    int c;
+    int i;
+    if (index == size) {
+      c = numChunks - 1;
+      i = counts[c];
+      if (i == MAX_CHUNK_SIZE) {
+        // appending in order: start a new chunk rather than split this one
+        c = insertChunk(numChunks);
+        i = 0;
+      }
+    } else {
+      c = chunkOf(index);
+      i = index - offsets[c];
+      if (counts[c] == MAX_CHUNK_SIZE) {
+        splitChunk(c);
+        if (i > counts[c]) {
+          i -= counts[c];
+          c++;
+        }
+      }
+    }
+    INode[] chunk = chunks[c];
+    System.arraycopy(chunk, i, chunk, i + 1, counts[c] - i);
+    chunk[i] = node;
+    counts[c]++;
+    size++;
+    modCount++;
+    updateOffsets(c + 1);
+  }
+
+  @Override
+  public INode remove(int index) {
+    checkIndex(index, size);
+    int c = chunkOf(index);
+    int i = index - offsets[c];
+    INode[] chunk = chunks[c];
+    INode old = chunk[i];
+    int moved = counts[c] - i - 1;
+    System.arraycopy(chunk, i + 1, chunk, i, moved);
+    chunk[--counts[c]] = null;
+    size--;
+    modCount++;
+
+    if (numChunks > 1) {
+      if (counts[c] == 0) {
+        removeChunk(c);
+      } else if (c + 1 < numChunks
+          && counts[c] + counts[c + 1] <= MAX_CHUNK_SIZE / 2) {
+        mergeChunks(c);
+      } else if (c > 0
+          && counts[c - 1] + counts[c] <= MAX_CHUNK_SIZE / 2) {
+        mergeChunks(c - 1);
+      }
+    }
+    updateOffsets(c + 1);
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    for (int c = 0; c < numChunks; c++) {
+      chunks[c] = null;
+      counts[c] = 0;
+    }
+    chunks[0] = new INode[MAX_CHUNK_SIZE];
+    numChunks = 1;
+    size = 0;
+    modCount++;
+  }
+
+  /**
+   * Iterate over the chunks directly instead of locating every index.
+   */
+  @Override
+  public Iterator<INode> iterator() {
+    return new Iterator<INode>() {
+      private int chunk = 0;
+      private int next = 0;
+      private int remaining = size;
+      private final int expectedModCount = modCount;
+
+      public boolean hasNext() {
+        return remaining > 0;
+      }
+
+      public INode next() {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (remaining <= 0) {
+          throw new NoSuchElementException();
+        }
+        while (next >= counts[chunk]) {
+          chunk++;
+          next = 0;
+        }
+        remaining--;
+        return chunks[chunk][next++];
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /** @return the number of chunks, for testing. */
+  int getNumChunks() {
+    return numChunks;
+  }
+
+  private void checkIndex(int index, int limit) {
+    if (index < 0 || index >= limit) {
+      throw new IndexOutOfBoundsException("Index: " + index
+          + ", Size: " + size);
+    }
+  }
+
+  /** Recompute the offsets of the chunks from chunk c on. */
+  private void updateOffsets(int c) {
+    offsets[0] = 0;
+    for (int i = Math.max(c, 1); i < numChunks; i++) {
+      offsets[i] = offsets[i - 1] + counts[i - 1];
+    }
+  }
+
+  /** @return the chunk holding the entry at the given index. */
+  private int chunkOf(int index) {
+    int low = 0;
+    int high = numChunks - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (offsets[mid] <= index) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /** Insert an empty chunk at position c. */
+  private int insertChunk(int c) {
+    if (numChunks == chunks.length) {
+      int capacity = numChunks * 3 / 2 + 1;
+      INode[][] newChunks = new INode[capacity][];
+      int[] newCounts = new int[capacity];
+      int[] newOffsets = new int[capacity];
+      System.arraycopy(chunks, 0, newChunks, 0, numChunks);
+      System.arraycopy(counts, 0, newCounts, 0, numChunks);
+      System.arraycopy(offsets, 0, newOffsets, 0, numChunks);
+      chunks = newChunks;
+      counts = newCounts;
+      offsets = newOffsets;
+    }
+    System.arraycopy(chunks, c, chunks, c + 1, numChunks - c);
+    System.arraycopy(counts, c, counts, c + 1, numChunks - c);
+    System.arraycopy(offsets, c, offsets, c + 1, numChunks - c);
+    chunks[c] = new INode[MAX_CHUNK_SIZE];
+    counts[c] = 0;
+    numChunks++;
+    updateOffsets(c);
+    return c;
+  }
+
+  /** Move the upper half of chunk c into a new chunk c+1. */
+  private void splitChunk(int c) {
+    insertChunk(c + 1);
+    int half = counts[c] / 2;
+    int moved = counts[c] - half;
+    System.arraycopy(chunks[c], half, chunks[c + 1], 0, moved);
+    Arrays.fill(chunks[c], half, counts[c], null);
+    counts[c] = half;
+    counts[c + 1] = moved;
+    updateOffsets(c + 1);
+  }
+
+  /** Append chunk c+1 to chunk c and drop it. */
+  private void mergeChunks(int c) {
+    System.arraycopy(chunks[c + 1], 0, chunks[c], counts[c], counts[c + 1]);
+    counts[c] += counts[c + 1];
+    counts[c + 1] = 0;
+    removeChunk(c + 1);
+  }
+
+  private void removeChunk(int c) {
+    int moved = numChunks - c - 1;
+    System.arraycopy(chunks, c + 1, chunks, c, moved);
+    System.arraycopy(counts, c + 1, counts, c, moved);
+    System.arraycopy(offsets, c + 1, offsets, c, moved);
+    numChunks--;
+    chunks[numChunks] = null;
+    counts[numChunks] = 0;
+    updateOffsets(c);
+  }
+}
@@ -109,6 +109,11 @@ public class DatanodeDescriptor extends DatanodeInfo {
   private int prevApproxBlocksScheduled = 0;
   private long lastBlocksScheduledRollTime = 0;
   private static final int BLOCKS_SCHEDULED_ROLL_INTERVAL = 600*1000; //10min
+
+  /* Disk and network load reported in the last heartbeat */
+  private int volumeQueueDepth = 0;
+  private long ioLatency = 0;
+  private long networkThroughput = 0;
   
   /** Default constructor */
   public DatanodeDescriptor() {}
@@ -240,6 +245,16 @@ public class DatanodeDescriptor extends DatanodeInfo {
     rollBlocksScheduled(lastUpdate);
   }
 
+  /**
+   * Update the disk and network load of the datanode.
+   */
+  void updateLoad(int volumeQueueDepth, long ioLatency,
+                  long networkThroughput) {
+    this.volumeQueueDepth = volumeQueueDepth;
+    this.ioLatency = ioLatency;
+    this.networkThroughput = networkThroughput;
+  }
+
   /**
    * Iterates over the list of blocks belonging to the data-node.
    */
@@ -446,6 +461,27 @@ public class DatanodeDescriptor extends DatanodeInfo {
     return currApproxBlocksScheduled + prevApproxBlocksScheduled;
   }
   
+  /**
+   * @return Number of block writes in progress on the busiest volume.
+   */
+  public int getVolumeQueueDepth() {
+    return volumeQueueDepth;
+  }
+
+  /**
+   * @return Average disk write latency in microseconds.
+   */
+  public long getIoLatency() {
+    return ioLatency;
+  }
+
+  /**
+   * @return Network throughput in bytes per second.
+   */
+  public long getNetworkThroughput() {
+    return networkThroughput;
+  }
+  
   /**
    * Increments counter for number of blocks scheduled. 
    */
@@ -482,6 +518,9 @@ public class DatanodeDescriptor extends DatanodeInfo {
     int decommissionOnlyReplicas;
     int underReplicatedInOpenFiles;
     long startTime;
+    // under replicated blocks found by the first check, and its time
+    int firstUnderReplicatedBlocks;
+    long firstCheckTime;
 
     synchronized void set(int underRep, int onlyRep, int underConstruction) {
       if (isDecommissionInProgress() == false) {
@@ -513,6 +552,27 @@ public class DatanodeDescriptor extends DatanodeInfo {
       return underReplicatedInOpenFiles;
     }
 
+    synchronized void setFirstCheck(int underRep, long time) {
+      firstUnderReplicatedBlocks = underRep;
+      firstCheckTime = time;
+    }
+
+    /**
+     * The average number of blocks replicated per second since
+     * the first check of the node.
+     */
+    synchronized float getBlocksPerSecond() {
+      if (isDecommissionInProgress() == false || firstCheckTime == 0) {
+        return 0;
+      }
+      long elapsed = FSNamesystem.now() - firstCheckTime;
+      int replicated = firstUnderReplicatedBlocks - underReplicatedBlocks;
+      if (elapsed <= 0 || replicated <= 0) {
+        return 0;
+      }
+      return replicated * 1000f / elapsed;
+    }
+
     synchronized void setStartTime(long time) {
       startTime = time;
     }
@@ -19,18 +19,28 @@ package org.apache.hadoop.hdfs.server.namenode;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.server.namenode.DatanodeDescriptor.DecommissioningStatus;
 import org.apache.hadoop.hdfs.util.GSet;
 import org.apache.hadoop.hdfs.util.LightWeightGSet;
 
 /**
  * Manage node decommissioning.
+ *
+ * The first check of a decommissioning node walks all its blocks and
+ * remembers those that have not reached their replication factor. Later
+ * checks only revisit the remembered blocks, so the cost of a check shrinks
+ * as the replication of the node progresses. Once no block is left, one more
+ * full walk picks up blocks that were added to the node in the meantime
+ * before the node is marked decommissioned.
  */
 class DecommissionManager {
   static final Log LOG = LogFactory.getLog(DecommissionManager.class);
@@ -49,6 +59,8 @@ class DecommissionManager {
     private final long recheckInterval;
     /** The number of decommission nodes to check for each interval */
     private final int numNodesPerCheck;
+    /** The number of blocks checked for each hold of the namesystem lock */
+    private final int blocksPerLock;
 
     // datanodes that just started decomission,
     // which has higher priority to be checked next
@@ -61,14 +73,20 @@ class DecommissionManager {
     private LinkedList<DatanodeDescriptor> checked =
       new LinkedList<DatanodeDescriptor>();
 
+    // blocks of each checked node which still need replication
+    private final Map<DatanodeDescriptor, List<Block>> pendingBlocks =
+      new HashMap<DatanodeDescriptor, List<Block>>();
+
     // the node is under check
     private volatile DatanodeDescriptor nodeBeingCheck;
     // if there was an attempt to stop nodeBeingCheck from decommission
     private volatile boolean pendingToStopDecommission = false;
     
-    Monitor(int recheckIntervalInSecond, int numNodesPerCheck) {
+    Monitor(int recheckIntervalInSecond, int numNodesPerCheck,
+        int blocksPerLock) {
       this.recheckInterval = recheckIntervalInSecond * 1000L;
       this.numNodesPerCheck = numNodesPerCheck;
+      this.blocksPerLock = Math.max(1, blocksPerLock);
     }
 
     /**
@@ -111,17 +129,17 @@ class DecommissionManager {
         pendingToStopDecommission = true;
         return false;
       }
-      if (newlyStarted.remove(datanode) ||
-               toBeChecked.remove(datanode)) {
-        checked.remove(datanode);
-      }
+      newlyStarted.remove(datanode);
+      toBeChecked.remove(datanode);
+      checked.remove(datanode);
+      pendingBlocks.remove(datanode);
       return true;
     }
     
     /**
-     * Return a list of unchecked blocks on srcNode
+     * Return a list of unchecked blocks on the node being checked,
+     * and add them to checkedBlocks
      * 
-     * @param srcNode a datanode
      * @param checkedBlocks all blocks that have been checked
      * @param numBlocks maximum number of blocks to return
      * @return a list of blocks to be checked
@@ -136,6 +154,7 @@ class DecommissionManager {
           final Block block = it.next();
           if (!checkedBlocks.contains(block)) { // the block has not been checked
             blocksToCheck.add(block);
+            checkedBlocks.put(block);
           }
         }
       } finally {
@@ -153,11 +172,57 @@ class DecommissionManager {
       }
     }
 
+    /**
+     * Check the given blocks of the node being checked, at most
+     * blocksPerLock for each hold of the namesystem lock.
+     *
+     * @param blocks blocks to check
+     * @param remaining the blocks which have not reached their replication
+     *                  factor are added here
+     */
+    private void checkBlocks(List<Block> blocks, List<Block> remaining) {
+      final int numBlocks = blocks.size();
+      for (int i=0; i<numBlocks; ) {
+        fsnamesystem.writeLock();
+        try {
+          for (int j=0; j<blocksPerLock && i<numBlocks; j++, i++) {
+            Block blk = blocks.get(i);
+            if (fsnamesystem.isReplicationInProgress(nodeBeingCheck, blk)) {
+              remaining.add(blk);
+            }
+          }
+        } finally {
+          fsnamesystem.writeUnlock();
+        }
+      }
+    }
+
+    /**
+     * Check all the blocks of the node being checked.
+     *
+     * @param numOfBlocks number of blocks on the node
+     * @return the blocks which have not reached their replication factor
+     */
+    private List<Block> checkAllBlocks(int numOfBlocks) {
+      final int numOfBlocksToFetch = Math.max(blocksPerLock, numOfBlocks/5);
+      GSet<Block, Block> checkedBlocks =
+        new LightWeightGSet<Block, Block>(numOfBlocks);
+      List<Block> remaining = new ArrayList<Block>();
+      List<Block> blocksToCheck;
+      do {
+        // get a batch of unchecked blocks
+        blocksToCheck = fetchBlocks(checkedBlocks, numOfBlocksToFetch);
+        checkBlocks(blocksToCheck, remaining);
+      } while (!blocksToCheck.isEmpty());
+      return remaining;
+    }
+
     /**
      * Change, if appropriate, the admin state of a datanode to 
      * decommission completed. Return true if decommission is complete.
      */
     private boolean checkDecommissionStateInternal() {
+      final DecommissioningStatus status = nodeBeingCheck.decommissioningStatus;
       fsnamesystem.writeLock();
       int numOfBlocks;
       try {
@@ -165,7 +230,7 @@ class DecommissionManager {
           return true;
         }
         // initialize decominssioning status
-        nodeBeingCheck.decommissioningStatus.set(0, 0, 0);
+        status.set(0, 0, 0);
         numOfBlocks = nodeBeingCheck.numBlocks();
       } finally {
         fsnamesystem.writeUnlock();
@@ -175,31 +240,19 @@ class DecommissionManager {
       // Check to see if all blocks in this decommissioned
       // node has reached their target replication factor.
       //
-      // limit the number of scans
-      final int BLOCKS_PER_ITER = 1000;
-      final int numOfBlocksToFetch = Math.max(BLOCKS_PER_ITER, numOfBlocks/5);
-      GSet<Block, Block> checkedBlocks =
-        new LightWeightGSet<Block, Block>(numOfBlocks);
-      List<Block> blocksToCheck;
-      int numBlocksToCheck;
-      do {
-        // get a batch of unchecked blocks
-        blocksToCheck = fetchBlocks(checkedBlocks, numOfBlocksToFetch);
-        numBlocksToCheck = blocksToCheck.size();
-        for (int i=0; i<numBlocksToCheck; ) {
-          fsnamesystem.writeLock();
-          try {
-            for (int j=0; j<BLOCKS_PER_ITER && i<numBlocksToCheck; j++, i++) {
-              // check if each block reaches its replication factor or not
-              Block blk = blocksToCheck.get(i);
-              fsnamesystem.isReplicationInProgress(nodeBeingCheck, blk);
-              checkedBlocks.put(blk);
-            }
-          } finally {
-            fsnamesystem.writeUnlock();
-          }
+      List<Block> pending = getPendingBlocks();
+      List<Block> remaining;
+      if (pending == null) {
+        remaining = checkAllBlocks(numOfBlocks);
+        status.setFirstCheck(remaining.size(), FSNamesystem.now());
+      } else {
+        remaining = new ArrayList<Block>(pending.size());
+        checkBlocks(pending, remaining);
+        if (remaining.isEmpty()) {
+          // make sure no block was added to the node since the first check
+          remaining = checkAllBlocks(numOfBlocks);
         }
-      } while (numBlocksToCheck != 0);
+      }
         
       fsnamesystem.writeLock();
       try {
@@ -207,8 +260,7 @@ class DecommissionManager {
         if (!nodeBeingCheck.isDecommissionInProgress()) {
           return true;
         }
-        if (nodeBeingCheck.decommissioningStatus.
-            getUnderReplicatedBlocks() == 0) {
+        if (remaining.isEmpty()) {
          nodeBeingCheck.setDecommissioned();
          LOG.info("Decommission complete for node " + nodeBeingCheck.getName());
          return true;
@@ -217,9 +269,21 @@ class DecommissionManager {
         fsnamesystem.writeUnlock();
       }
       
+      setPendingBlocks(remaining);
+      LOG.info("Decommissioning node " + nodeBeingCheck.getName() + ": " +
+          remaining.size() + " blocks need replication, replicating " +
+          status.getBlocksPerSecond() + " blocks per second");
       return false;
     }
 
+    synchronized private List<Block> getPendingBlocks() {
+      return pendingBlocks.get(nodeBeingCheck);
+    }
+
+    synchronized private void setPendingBlocks(List<Block> blocks) {
+      pendingBlocks.put(nodeBeingCheck, blocks);
+    }
+
     /**
      * Wait for more work to do
      * @return true if more work to do; false if gets interrupted
@@ -284,6 +348,8 @@ class DecommissionManager {
       if (!isDecommissioned) {
         // put to checked for next iteration of check
         checked.add(nodeBeingCheck);
+      } else {
+        pendingBlocks.remove(nodeBeingCheck);
       }
       nodeBeingCheck = null;
     }
@@ -28,6 +28,7 @@ import org.apache.hadoop.fs.permission.*;
 import org.apache.hadoop.metrics.MetricsRecord;
 import org.apache.hadoop.metrics.MetricsUtil;
 import org.apache.hadoop.metrics.MetricsContext;
+import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.protocol.DirectoryListing;
 import org.apache.hadoop.hdfs.protocol.FSConstants;
 import org.apache.hadoop.hdfs.protocol.Block;
@@ -65,6 +66,11 @@ class FSDirectory implements FSConstants, Closeable {
    * byte[] objects and reduce heap usage.
    */
   private final NameCache<ByteArray> nameCache;
+  /**
+   * Directories that keep their counts up to date even without a quota,
+   * so that content summaries of them do not walk the subtree.
+   */
+  private final Set<String> countedDirs = new HashSet<String>();
 
   // lock to protect BlockMap.
   private ReentrantReadWriteLock bLock;
@@ -122,6 +128,15 @@ class FSDirectory implements FSConstants, Closeable {
     NameNode.LOG.info("Caching file names occuring more than " + threshold
         + " times ");
     nameCache = new NameCache<ByteArray>(threshold);
+    String[] dirs = conf.getStrings("dfs.namenode.summary.cached.dirs");
+    if (dirs != null) {
+      for (String dir : dirs) {
+        if (dir.trim().length() > 0) {
+          countedDirs.add(normalizePath(dir.trim()));
+        }
+      }
+      NameNode.LOG.info("Caching content summaries of " + countedDirs);
+    }
     initialize(conf);
   }
     
@@ -158,6 +173,9 @@ class FSDirectory implements FSConstants, Closeable {
     }
     writeLock();
     try {
+      for (String dir : countedDirs) {
+        setCounted(dir);
+      }
       this.ready = true;
       this.nameCache.initialized();
       cond.signalAll();
@@ -349,6 +367,7 @@ class FSDirectory implements FSConstants, Closeable {
       namesystem.blocksMap.addINode(block, fileNode);
       BlockInfo blockInfo = namesystem.blocksMap.getStoredBlock(block);
       fileNode.addBlock(blockInfo);
+      updateFileCounts(inodes, inodes.length-1, 0, blockInfo.getNumBytes());
 
       NameNode.stateChangeLog.debug("DIR* FSDirectory.addFile: "
                                     + path + " with " + block
@@ -408,6 +427,10 @@ class FSDirectory implements FSConstants, Closeable {
 
     writeLock();
     try {
+      BlockInfo storedBlock = namesystem.blocksMap.getStoredBlock(block);
+      if (storedBlock != null) {
+        updateFileLength(fileNode, -storedBlock.getNumBytes());
+      }
       // modify file-> block and blocksMap
       fileNode.removeBlock(block);
       namesystem.blocksMap.removeINode(block);
@@ -529,6 +552,9 @@ class FSDirectory implements FSConstants, Closeable {
         // update modification time of dst and the parent of src
         srcInodes[srcInodes.length-2].setModificationTime(timestamp);
         dstInodes[dstInodes.length-2].setModificationTime(timestamp);
+        if (dstChild.isDirectory()) {
+          setCountedUnder(dst);
+        }
         return true;
         }
       } finally {
@@ -732,6 +758,7 @@ class FSDirectory implements FSConstants, Closeable {
       trgParent.setModificationTime(now);
       // update quota on the parent directory ('count' files removed, 0 space)
       unprotectedUpdateCount(trgINodes, trgINodes.length-1, - count, 0);
+      updateFileCounts(trgINodes, trgINodes.length-1, - count, 0);
     } finally {
       writeUnlock();
     }
@@ -816,6 +843,8 @@ class FSDirectory implements FSConstants, Closeable {
           removeChild(inodes, inodes.length-1);
           // set the parent's modification time
           inodes[inodes.length-2].setModificationTime(modificationTime);
+          // release the leases of the files being written under the node
+          namesystem.leaseManager.removeLeases(targetNode);
           // GC all the blocks underneath the node.
           if (toBeDeletedBlocks == null) {
             ArrayList<Block> v = new ArrayList<Block>();
@@ -823,13 +852,13 @@ class FSDirectory implements FSConstants, Closeable {
               targetNode.collectSubtreeBlocksAndClear(v);
             incrDeletedFileCount(filesRemoved);
             // remove the blocks right away if toBeDeletedBlocks is null
-            namesystem.removePathAndBlocks(src, v);
+            namesystem.removeDeletedBlocks(v);
           } else {
             int filesRemoved =
               targetNode.collectSubtreeBlocksAndClear(toBeDeletedBlocks);
             incrDeletedFileCount(filesRemoved);
             // pass null for the blocks because the blocks will be deleted later
-            namesystem.removePathAndBlocks(src, null);
+            namesystem.removeDeletedBlocks(null);
           }
           if (NameNode.stateChangeLog.isDebugEnabled()) {
             NameNode.stateChangeLog.debug("DIR* FSDirectory.unprotectedDelete: "
@@ -863,6 +892,7 @@ class FSDirectory implements FSConstants, Closeable {
     writeLock();
     try {
       long dsOld = oldnode.diskspaceConsumed();
+      long lengthOld = oldnode.computeFileSize();
       
       //
       // Remove the node from the namespace 
@@ -880,6 +910,20 @@ class FSDirectory implements FSConstants, Closeable {
       
       rootDir.addNode(path, newnode); 
 
+      int index = 0;
+      for (Block b : newnode.getBlocks()) {
+        BlockInfo info = namesystem.blocksMap.addINode(b, newnode);
+        newnode.setBlock(index, info); // inode refers to the block in BlocksMap
+        index++;
+      }
+
+      // the stored blocks may have other lengths than the ones in the edits
+      long lengthDelta = newnode.computeFileSize() - lengthOld;
+      if (lengthDelta != 0) {
+        INode[] inodes = rootDir.getExistingPathINodes(path);
+        updateFileCounts(inodes, inodes.length-1, 0, lengthDelta);
+      }
+
       //check if disk space needs to be updated.
       long dsNew = 0;
       if (updateDiskspace && (dsNew = newnode.diskspaceConsumed()) != dsOld) {
@@ -891,13 +935,6 @@ class FSDirectory implements FSConstants, Closeable {
           throw e;
         }
       }
-      
-      int index = 0;
-      for (Block b : newnode.getBlocks()) {
-        BlockInfo info = namesystem.blocksMap.addINode(b, newnode);
-        newnode.setBlock(index, info); // inode refers to the block in BlocksMap
-        index++;
-      }
     } finally {
       writeUnlock();
     }
@@ -977,6 +1014,17 @@ class FSDirectory implements FSConstants, Closeable {
    */
   DirectoryListing getPartialListing(String src, byte[] startAfter,
       boolean needLocation) throws IOException {
+    return getPartialListing(src, startAfter, needLocation, lsLimit);
+  }
+
+  /**
+   * Get a partial listing of at most limit entries of the indicated
+   * directory
+   *
+   * @see #getPartialListing(String, byte[], boolean)
+   */
+  DirectoryListing getPartialListing(String src, byte[] startAfter,
+      boolean needLocation, int limit) throws IOException {
     String srcs = normalizePath(src);
 
     readLock();
@@ -1001,7 +1049,7 @@ class FSDirectory implements FSConstants, Closeable {
       // find the first child whose name is greater than startAfter
       int startChild = dirInode.nextChild(startAfter);
       int totalNumChildren = contents.size();
-      int numOfListing = Math.min(totalNumChildren-startChild, this.lsLimit);
+      int numOfListing = Math.min(totalNumChildren-startChild, limit);
       HdfsFileStatus listing[] = new HdfsFileStatus[numOfListing];
       LocatedBlocks [] blockLocations = new LocatedBlocks[numOfListing];
       for (int i=0; i<numOfListing; i++) {
@@ -1023,6 +1071,11 @@ class FSDirectory implements FSConstants, Closeable {
   }
   }
   
+  /** @return the maximum number of entries in a partial listing */
+  int getListingLimit() {
+    return lsLimit;
+  }
+
   /** Get the file info for a specific file.
    * @param src The string representation of the path to the file
    * @return object containing information regarding the file
@@ -1200,13 +1253,64 @@ class FSDirectory implements FSConstants, Closeable {
       verifyQuota(inodes, numOfINodes, nsDelta, dsDelta, null);
       }
     for(int i = 0; i < numOfINodes; i++) {
-          if (inodes[i].isQuotaSet()) { // a directory with quota
-            INodeDirectoryWithQuota node =(INodeDirectoryWithQuota)inodes[i]; 
+      if (inodes[i] instanceof INodeDirectoryWithQuota) { // a counted directory
+        INodeDirectoryWithQuota node =(INodeDirectoryWithQuota)inodes[i]; 
         node.updateNumItemsInTree(nsDelta, dsDelta);
-          }
-        }
       }
+    }
+  }
+
+  /** update the file count and length of each directory with counts
+   * 
+   * @param inodes an array of inodes on a path
+   * @param numOfINodes the number of inodes to update starting from index 0
+   * @param fileDelta the change of the number of files
+   * @param lengthDelta the change of the length of the files
+   */
+  private void updateFileCounts(INode[] inodes, int numOfINodes,
+                                long fileDelta, long lengthDelta) {
+    if (!ready) {
+      //still intializing. the counts are computed once loaded.
+      return;
+    }
+    if (numOfINodes>inodes.length) {
+      numOfINodes = inodes.length;
+    }
+    for(int i = 0; i < numOfINodes; i++) {
+      if (inodes[i] instanceof INodeDirectoryWithQuota) {
+        ((INodeDirectoryWithQuota)inodes[i]).updateFileCounts(fileDelta,
+                                                              lengthDelta);
+      }
+    }
+  }
   
+  /**
+   * Update the length of each directory with counts above a file
+   * whose blocks changed their length in place, e.g. on a block report.
+   * 
+   * @param file the file whose length changed
+   * @param lengthDelta the change of the length of the file
+   */
+  void updateFileLength(INodeFile file, long lengthDelta) {
+    if (lengthDelta == 0) {
+      return;
+    }
+    writeLock();
+    try {
+      if (!ready) {
+        //still intializing. the counts are computed once loaded.
+        return;
+      }
+      for (INode node = file.parent; node != null; node = node.parent) {
+        if (node instanceof INodeDirectoryWithQuota) {
+          ((INodeDirectoryWithQuota)node).updateFileCounts(0, lengthDelta);
+        }
+      }
+    } finally {
+      writeUnlock();
+    }
+  }
+
   /** 
    * update quota of each inode and check to see if quota is exceeded. 
    * See {@link #updateCount(INode[], int, long, long, boolean)}
@@ -1231,7 +1335,7 @@ class FSDirectory implements FSConstants, Closeable {
    private void unprotectedUpdateCount(INode[] inodes, int numOfINodes,
                                       long nsDelta, long dsDelta) {
     for(int i=0; i < numOfINodes; i++) {
-      if (inodes[i].isQuotaSet()) { // a directory with quota
+      if (inodes[i] instanceof INodeDirectoryWithQuota) { // a counted directory
         INodeDirectoryWithQuota node =(INodeDirectoryWithQuota)inodes[i];
         node.unprotectedUpdateNumItemsInTree(nsDelta, dsDelta);
       }
@@ -1350,9 +1454,16 @@ class FSDirectory implements FSConstants, Closeable {
   private void unprotectedMkdir(INode[] inodes, int pos,
       byte[] name, PermissionStatus permission, boolean inheritPermission,
       long timestamp) throws QuotaExceededException {
-    inodes[pos] = addChild(inodes, pos, 
-        new INodeDirectory(name, permission, timestamp),
-        -1, inheritPermission );
+    INodeDirectory dir;
+    if (!countedDirs.isEmpty() && countedDirs.contains(
+        getFullPathName(inodes, pos-1) + Path.SEPARATOR
+        + DFSUtil.bytes2String(name))) {
+      dir = new INodeDirectoryWithQuota(permission, timestamp, -1, -1);
+      dir.setLocalName(name);
+    } else {
+      dir = new INodeDirectory(name, permission, timestamp);
+    }
+    inodes[pos] = addChild(inodes, pos, dir, -1, inheritPermission);
   }
   
   /** Add a node child to the namespace. The full path name of the node is src.
@@ -1461,6 +1572,9 @@ class FSDirectory implements FSConstants, Closeable {
     if (addedNode == null) {
       updateCount(pathComponents, pos, -counts.getNsCount(), 
           -childDiskspace, true);
+    } else {
+      updateFileCounts(pathComponents, pos, counts.getFileCount(),
+          counts.getLength());
     }
     return addedNode;
   }
@@ -1497,6 +1611,8 @@ class FSDirectory implements FSConstants, Closeable {
       removedNode.spaceConsumedInTree(counts);
       updateCountNoQuotaCheck(pathComponents, pos,
                   -counts.getNsCount(), -counts.getDsCount());
+      updateFileCounts(pathComponents, pos,
+                  -counts.getFileCount(), -counts.getLength());
     }
     return removedNode;
   }
@@ -1519,7 +1635,10 @@ class FSDirectory implements FSConstants, Closeable {
         throw new FileNotFoundException("File does not exist: " + srcs);
       }
       else {
-        return targetNode.computeContentSummary();
+        long[] summary = targetNode.computeContentSummary(
+            new long[]{0,0,0,0});
+        return new ContentSummary(summary[0], summary[1], summary[2],
+            targetNode.getNsQuota(), summary[3], targetNode.getDsQuota());
       }
     } finally {
       readUnlock();
@@ -1535,7 +1654,84 @@ class FSDirectory implements FSConstants, Closeable {
    */
   void updateCountForINodeWithQuota() {
     updateCountForINodeWithQuota(rootDir, new INode.DirCounts(), 
-                                 new ArrayList<INode>(50));
+                                 new ArrayList<INode>(50), null);
+  }
+
+  /**
+   * Recount the directories with counts under src from their subtrees.
+   * Counts are maintained incrementally; this corrects any that drifted.
+   * The directories above src are not recounted, unless src has counts
+   * itself and they changed.
+   * 
+   * @param src the path to check
+   * @return the paths of the directories whose counts were corrected
+   * @throws FileNotFoundException if src is not an existing directory
+   */
+  List<String> verifyCountForINodeWithQuota(String src)
+      throws FileNotFoundException {
+    String srcs = normalizePath(src);
+    writeLock();
+    try {
+      INode[] inodes = rootDir.getExistingPathINodes(srcs);
+      INode targetNode = inodes[inodes.length-1];
+      if (targetNode == null || !targetNode.isDirectory()) {
+        throw new FileNotFoundException("Directory does not exist: " + srcs);
+      }
+      INode.DirCounts before = targetNode.spaceConsumedInTree(
+          new INode.DirCounts());
+      List<String> drifted = new ArrayList<String>();
+      INode.DirCounts after = new INode.DirCounts();
+      updateCountForINodeWithQuota((INodeDirectory)targetNode, after,
+          new ArrayList<INode>(50), drifted);
+      if (targetNode instanceof INodeDirectoryWithQuota) {
+        // the ancestors of src were off by the same amount
+        unprotectedUpdateCount(inodes, inodes.length-1,
+            after.nsCount - before.nsCount, after.dsCount - before.dsCount);
+        updateFileCounts(inodes, inodes.length-1,
+            after.fileCount - before.fileCount, after.length - before.length);
+      }
+      return drifted;
+    } finally {
+      writeUnlock();
+    }
+  }
+
+  /**
+   * Make the configured directories at or below src keep their counts.
+   * Used when a directory is moved onto a configured path.
+   */
+  private void setCountedUnder(String src) {
+    for (String dir : countedDirs) {
+      if (dir.equals(src) || dir.startsWith(src + Path.SEPARATOR)) {
+        INode node = rootDir.getNode(dir);
+        if (node != null && node.isDirectory()) {
+          setCounted(dir);
+        }
+      }
+    }
+  }
+
+  /**
+   * Make a directory keep its counts up to date even if it has no quota.
+   */
+  private void setCounted(String src) {
+    INode[] inodes = rootDir.getExistingPathINodes(src);
+    INode targetNode = inodes[inodes.length-1];
+    if (targetNode == null || !targetNode.isDirectory()) {
+      NameNode.LOG.warn("Directory " + src + " for cached content summary" +
+                        " does not exist");
+      return;
+    }
+    if (!(targetNode instanceof INodeDirectoryWithQuota)) {
+      try {
+        INodeDirectoryWithQuota newNode = new INodeDirectoryWithQuota(
+            -1, -1, (INodeDirectory)targetNode);
+        ((INodeDirectory)inodes[inodes.length-2]).replaceChild(newNode);
+      } catch (QuotaExceededException e) {
+        // not thrown without a quota
+        NameNode.LOG.warn("FSDirectory.setCounted - unexpected", e);
+      }
+    }
   }
   
   /** 
@@ -1548,16 +1744,23 @@ class FSDirectory implements FSConstants, Closeable {
    * @param dir the root of the tree that represents the directory
    * @param counters counters for name space and disk space
    * @param nodesInPath INodes for the each of components in the path.
+   * @param drifted if not null, collects the paths of the directories
+   *                whose counts changed
    * @return the size of the tree
    */
   private static void updateCountForINodeWithQuota(INodeDirectory dir, 
                                                INode.DirCounts counts,
-                                               ArrayList<INode> nodesInPath) {
+                                               ArrayList<INode> nodesInPath,
+                                               List<String> drifted) {
     long parentNamespace = counts.nsCount;
     long parentDiskspace = counts.dsCount;
+    long parentFiles = counts.fileCount;
+    long parentLength = counts.length;
     
     counts.nsCount = 1L;//for self. should not call node.spaceConsumedInTree()
     counts.dsCount = 0L;
+    counts.fileCount = 0L;
+    counts.length = 0L;
     
     /* We don't need nodesInPath if we could use 'parent' field in 
      * INode. using 'parent' is not currently recommended. */
@@ -1566,16 +1769,18 @@ class FSDirectory implements FSConstants, Closeable {
     for (INode child : dir.getChildren()) {
       if (child.isDirectory()) {
         updateCountForINodeWithQuota((INodeDirectory)child, 
-                                     counts, nodesInPath);
+                                     counts, nodesInPath, drifted);
       } else { // reduce recursive calls
-        counts.nsCount += 1;
-        counts.dsCount += ((INodeFile)child).diskspaceConsumed();
+        child.spaceConsumedInTree(counts);
       }
     }
       
-    if (dir.isQuotaSet()) {
-      ((INodeDirectoryWithQuota)dir).setSpaceConsumed(counts.nsCount,
-                                                      counts.dsCount);
+    if (dir instanceof INodeDirectoryWithQuota) {
+      if (((INodeDirectoryWithQuota)dir).setSpaceConsumed(counts)
+          && drifted != null) {
+        String dirPath = getFullPathName(dir);
+        drifted.add(dirPath.length() == 0 ? Path.SEPARATOR : dirPath);
+      }
 
       // check if quota is violated for some reason.
       if ((dir.getNsQuota() >= 0 && counts.nsCount > dir.getNsQuota()) ||
@@ -1601,6 +1806,8 @@ class FSDirectory implements FSConstants, Closeable {
     
     counts.nsCount += parentNamespace;
     counts.dsCount += parentDiskspace;
+    counts.fileCount += parentFiles;
+    counts.length += parentLength;
   }
   
   /**
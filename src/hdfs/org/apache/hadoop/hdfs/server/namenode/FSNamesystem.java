@@ -150,6 +150,9 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
   volatile long corruptReplicaBlocksCount = 0L;
   volatile long underReplicatedBlocksCount = 0L;
   volatile long scheduledReplicationBlocksCount = 0L;
+  // running totals behind the re-replication throughput metrics
+  volatile long scheduledReplicationsTotal = 0L;
+  volatile long completedReplicationsTotal = 0L;
   volatile long excessBlocksCount = 0L;
   volatile long pendingDeletionBlocksCount = 0L;
   //
@@ -232,6 +235,9 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
 
   // list of blocks that need to be checked for possible overreplication
   private TreeSet<Block> overReplicatedBlocks = new TreeSet<Block>();
+  // queue over-replicated blocks without processing them; see
+  // deferOverReplicationUntilSafeModeOff()
+  private volatile boolean deferOverReplication = false;
 
   public LeaseManager leaseManager = new LeaseManager(this);
 
@@ -269,10 +275,6 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
   // allow appending to hdfs files
   private boolean supportAppends = true;
 
-  /**
-   * Last block index used for replication work.
-   */
-  private int replIndex = 0;
   volatile private long missingBlocksInCurIter = 0;
   volatile private long missingBlocksInPrevIter = 0;
 
@@ -389,7 +391,8 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
       conf.get("dfs.hosts.exclude", ""));
     this.dnthread = new Daemon(new DecommissionManager(this).new Monitor(
       conf.getInt("dfs.namenode.decommission.interval", 30),
-      conf.getInt("dfs.namenode.decommission.nodes.per.interval", 5)));
+      conf.getInt("dfs.namenode.decommission.nodes.per.interval", 5),
+      conf.getInt("dfs.namenode.decommission.blocks.per.lock", 1000)));
     dnthread.start();
 
     this.dnsToSwitchMapping = ReflectionUtils.newInstance(
@@ -1862,7 +1865,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
    * Check all blocks of a file. If any blocks are lower than their intended
    * replication factor, then insert them into neededReplication
    */
-  private void checkReplicationFactor(INodeFile file) {
+  void checkReplicationFactor(INodeFile file) {
     int numExpectedReplicas = file.getReplication();
     Block[] pendingBlocks = file.getBlocks();
     int nrBlocks = pendingBlocks.length;
@@ -2149,12 +2152,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
         throw new IOException("Rename a whitelisted directory is not allowed " + src);
       }
 
-      HdfsFileStatus dinfo = dir.getHdfsFileInfo(dst);
-      if (dir.renameTo(src, dst)) {
-        changeLease(src, dst, dinfo);     // update lease with new filename
-        return true;
-      }
-      return false;
+      return dir.renameTo(src, dst);
     } finally {
       writeUnlock();
     }
@@ -2246,8 +2244,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
     }
   }
 
-  void removePathAndBlocks(String src, List<Block> blocks) throws IOException {
-    leaseManager.removeLeaseWithPrefixPath(src);
+  void removeDeletedBlocks(List<Block> blocks) throws IOException {
     if (blocks == null) {
       return;
     }
@@ -2352,6 +2349,21 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
     return dir.getContentSummary(src);
   }
 
+  /**
+   * Recount the directories with cached counts under src and correct
+   * the ones that drifted.
+   * @return the paths of the directories whose counts were corrected
+   * @see FSDirectory#verifyCountForINodeWithQuota(String)
+   */
+  List<String> verifyCounts(String src) throws IOException {
+    writeLock();
+    try {
+      return dir.verifyCountForINodeWithQuota(src);
+    } finally {
+      writeUnlock();
+    }
+  }
+
   /**
    * Set the namespace quota and diskspace quota for a directory.
    * See {@link ClientProtocol#setQuota(String, long, long)} for the
@@ -2456,7 +2468,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
   private void finalizeINodeFileUnderConstruction(String src,
                                                   INodeFileUnderConstruction pendingFile)
     throws IOException {
-    leaseManager.removeLease(pendingFile.clientName, src);
+    leaseManager.removeLease(pendingFile);
 
     // The file is no longer pending.
     // Create permanent INode, update blockmap
@@ -2528,12 +2540,15 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
       // because the generation stamp of this block is changing.
       blocksMap.removeBlock(oldblockinfo);
 
+      long oldlength = oldblockinfo.getNumBytes();
       if (deleteblock) {
         pendingFile.removeBlock(lastblock);
+        dir.updateFileLength(pendingFile, -oldlength);
       } else {
         // update last block, construct newblockinfo and add it to the blocks map
         lastblock.set(lastblock.getBlockId(), newlength, newgenerationstamp);
         final BlockInfo newblockinfo = blocksMap.addINode(lastblock, pendingFile);
+        dir.updateFileLength(pendingFile, newlength - oldlength);
 
         // find the DatanodeDescriptor objects
         // There should be no locations in the blocksMap till now because the
@@ -2656,6 +2671,41 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
     }
   }
 
+  /**
+   * Get partial listings of several directories with block locations.
+   * The directories are listed in order until dfs.ls.limit entries are
+   * listed; a directory counts as at least one entry.
+   *
+   * @param srcs       the directory names
+   * @param startAfter the name to start after, for each directory
+   * @return the partial listings of the first directories of srcs
+   */
+  public LocatedDirectoryListing[] getLocatedPartialListings(String[] srcs,
+                                                             byte[][] startAfter)
+    throws IOException {
+    if (srcs.length != startAfter.length) {
+      throw new IOException("Listing " + srcs.length + " directories but " +
+                            startAfter.length + " start names are given");
+    }
+    List<LocatedDirectoryListing> listings =
+      new ArrayList<LocatedDirectoryListing>();
+    readLock();
+    try {
+      int remaining = dir.getListingLimit();
+      for (int i = 0; i < srcs.length && remaining > 0; i++) {
+        getListingCheck(srcs[i]);
+        LocatedDirectoryListing listing = (LocatedDirectoryListing)
+          dir.getPartialListing(srcs[i], startAfter[i], true, remaining);
+        listings.add(listing);
+        remaining -= listing == null ? 1 :
+          Math.max(1, listing.getPartialListing().length);
+      }
+    } finally {
+      readUnlock();
+    }
+    return listings.toArray(new LocatedDirectoryListing[listings.size()]);
+  }
+
   /////////////////////////////////////////////////////////
   //
   // These methods are called by datanodes
@@ -2884,6 +2934,20 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
                                     long capacity, long dfsUsed, long remaining,
                                     int xceiverCount, int xmitsInProgress)
     throws IOException {
+    return handleHeartbeat(nodeReg, capacity, dfsUsed, remaining,
+                           xceiverCount, xmitsInProgress, 0, 0L, 0L);
+  }
+
+  /**
+   * The given node has reported in, along with its disk and network load.
+   * @see #handleHeartbeat(DatanodeRegistration, long, long, long, int, int)
+   */
+  DatanodeCommand[] handleHeartbeat(DatanodeRegistration nodeReg,
+                                    long capacity, long dfsUsed, long remaining,
+                                    int xceiverCount, int xmitsInProgress,
+                                    int volumeQueueDepth, long ioLatency,
+                                    long networkThroughput)
+    throws IOException {
     DatanodeCommand cmd = null;
     synchronized (heartbeats) {
       synchronized (datanodeMap) {
@@ -2906,6 +2970,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
 
         updateStats(nodeinfo, false);
         nodeinfo.updateHeartbeat(capacity, dfsUsed, remaining, xceiverCount);
+        nodeinfo.updateLoad(volumeQueueDepth, ioLatency, networkThroughput);
         updateStats(nodeinfo, true);
 
         //check lease recovery
@@ -3132,59 +3197,24 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
    *         The block list index represents its replication priority.
    */
   List<List<Block>> chooseUnderReplicatedBlocks(int blocksToProcess) {
-    writeLock();
-    try {
-      // initialize data structure for the return value
+    // The queues have their own lock and the scan resumes from a cursor,
+    // so this neither takes the global lock nor walks the queues.
+    synchronized (neededReplications) {
+      if (neededReplications.size() == 0) {
+        missingBlocksInCurIter = 0;
+        missingBlocksInPrevIter = 0;
+      }
+      long scanCycles = neededReplications.getScanCycles();
+      // # of blocks to process equals either twice the number of live 
+      // data-nodes or the number of under-replicated blocks whichever is less
       List<List<Block>> blocksToReplicate =
-        new ArrayList<List<Block>>(UnderReplicatedBlocks.LEVEL);
-      for (int i = 0; i < UnderReplicatedBlocks.LEVEL; i++) {
-        blocksToReplicate.add(new ArrayList<Block>());
+        neededReplications.chooseUnderReplicatedBlocks(blocksToProcess);
+      if (neededReplications.getScanCycles() != scanCycles) {
+        // the scan started over from the beginning
+        missingBlocksInPrevIter = missingBlocksInCurIter;
+        missingBlocksInCurIter = 0;
       }
-
-      synchronized (neededReplications) {
-        if (neededReplications.size() == 0) {
-          missingBlocksInCurIter = 0;
-          missingBlocksInPrevIter = 0;
-          return blocksToReplicate;
-        }
-
-        // Go through all blocks that need replications.
-        BlockIterator neededReplicationsIterator = neededReplications.iterator();
-        // skip to the first unprocessed block, which is at replIndex 
-        for (int i = 0; i < replIndex && neededReplicationsIterator.hasNext(); i++) {
-          neededReplicationsIterator.next();
-        }
-        // # of blocks to process equals either twice the number of live 
-        // data-nodes or the number of under-replicated blocks whichever is less
-        blocksToProcess = Math.min(blocksToProcess, neededReplications.size());
-
-        for (int blkCnt = 0; blkCnt < blocksToProcess; blkCnt++, replIndex++) {
-          if (!neededReplicationsIterator.hasNext()) {
-            // start from the beginning
-            replIndex = 0;
-            missingBlocksInPrevIter = missingBlocksInCurIter;
-            missingBlocksInCurIter = 0;
-            blocksToProcess = Math.min(blocksToProcess, neededReplications.size());
-            if (blkCnt >= blocksToProcess) {
-              break;
-            }
-            neededReplicationsIterator = neededReplications.iterator();
-            assert neededReplicationsIterator.hasNext() :
-              "neededReplications should not be empty.";
-          }
-
-          Block block = neededReplicationsIterator.next();
-          int priority = neededReplicationsIterator.getPriority();
-          if (priority < 0 || priority >= blocksToReplicate.size()) {
-            LOG.warn("Unexpected replication priority: " + priority + " " + block);
-          } else {
-            blocksToReplicate.get(priority).add(block);
-          }
-        } // end for
-      } // end synchronized
       return blocksToReplicate;
-    } finally {
-      writeUnlock();
     }
   }
 
@@ -3209,7 +3239,6 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
         // abandoned block or block reopened for append
         if (fileINode == null || fileINode.isUnderConstruction()) {
           neededReplications.remove(block, priority); // remove from neededReplications
-          replIndex--;
           return false;
         }
         requiredReplication = fileINode.getReplication();
@@ -3232,7 +3261,6 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
           pendingReplications.getNumReplicas(block);
         if (numEffectiveReplicas >= requiredReplication) {
           neededReplications.remove(block, priority); // remove from neededReplications
-          replIndex--;
           NameNode.stateChangeLog.info("BLOCK* "
             + "Removing block " + block
             + " from neededReplications as it has enough replicas.");
@@ -3261,7 +3289,6 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
         // abandoned block or block reopened for append
         if (fileINode == null || fileINode.isUnderConstruction()) {
           neededReplications.remove(block, priority); // remove from neededReplications
-          replIndex--;
           return false;
         }
         requiredReplication = fileINode.getReplication();
@@ -3272,7 +3299,6 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
           pendingReplications.getNumReplicas(block);
         if (numEffectiveReplicas >= requiredReplication) {
           neededReplications.remove(block, priority); // remove from neededReplications
-          replIndex--;
           NameNode.stateChangeLog.info("BLOCK* "
             + "Removing block " + block
             + " from neededReplications as it has enough replicas.");
@@ -3290,6 +3316,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
         // The reason we use 'pending' is so we can retry
         // replications that fail after an appropriate amount of time.
         pendingReplications.add(block, targets.length);
+        scheduledReplicationsTotal++;
         NameNode.stateChangeLog.debug(
           "BLOCK* block " + block
             + " is moved from neededReplications to pendingReplications");
@@ -3297,7 +3324,6 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
         // remove from neededReplications
         if (numEffectiveReplicas + targets.length >= requiredReplication) {
           neededReplications.remove(block, priority); // remove from neededReplications
-          replIndex--;
         }
         if (NameNode.stateChangeLog.isInfoEnabled()) {
           StringBuffer targetList = new StringBuffer("datanode(s)");
@@ -3325,11 +3351,13 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
    * Parse the data-nodes the block belongs to and choose one,
    * which will be the replication source.
    * <p/>
-   * We prefer nodes that are in DECOMMISSION_INPROGRESS state to other nodes
-   * since the former do not have write traffic and hence are less busy.
-   * We do not use already decommissioned nodes as a source.
-   * Otherwise we choose a random node among those that did not reach their
-   * replication limit.
+   * We prefer the node with the fewest blocks scheduled for replication,
+   * so that the replication of decommissioning nodes is spread over all
+   * the nodes holding their blocks. Among those we prefer nodes that are in
+   * DECOMMISSION_INPROGRESS state since they do not have write traffic and
+   * hence are less busy, otherwise we choose a random one.
+   * We do not use already decommissioned nodes as a source, nor nodes
+   * that reached their replication limit.
    * <p/>
    * In addition form a list of all nodes containing the block
    * and calculate its replication numbers.
@@ -3376,12 +3404,24 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
       if (node.isDecommissioned()) {
         continue;
       }
-      // we prefer nodes that are in DECOMMISSION_INPROGRESS state
-      if (node.isDecommissionInProgress() || srcNode == null) {
+      if (srcNode == null) {
         srcNode = node;
         continue;
       }
-      if (srcNode.isDecommissionInProgress()) {
+      // we prefer the node with the least replication work
+      int scheduled = node.getNumberOfBlocksToBeReplicated();
+      int srcScheduled = srcNode.getNumberOfBlocksToBeReplicated();
+      if (scheduled != srcScheduled) {
+        if (scheduled < srcScheduled) {
+          srcNode = node;
+        }
+        continue;
+      }
+      // then nodes that are in DECOMMISSION_INPROGRESS state
+      if (node.isDecommissionInProgress() != srcNode.isDecommissionInProgress()) {
+        if (node.isDecommissionInProgress()) {
+          srcNode = node;
+        }
         continue;
       }
       // switch to a different node randomly
@@ -3824,6 +3864,10 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
         long diff = (file == null) ? 0 :
           (file.getPreferredBlockSize() - storedBlock.getNumBytes());
 
+        if (file != null) {
+          dir.updateFileLength(file, storedBlock.getNumBytes() - cursize);
+        }
+
         if (diff > 0 && file.isUnderConstruction() &&
           cursize < storedBlock.getNumBytes()) {
           try {
@@ -4007,7 +4051,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
    */
   private void processOverReplicatedBlocksAsync() {
 
-    while (true) {
+    while (!deferOverReplication) {
       Block block;
       writeLock();
       try {
@@ -4033,6 +4077,15 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
    */
   private void processOverReplicatedBlock(Block block, short replication,
                                           DatanodeDescriptor addedNode, DatanodeDescriptor delNodeHint) {
+    if (deferOverReplication) {
+      writeLock();
+      try {
+        overReplicatedBlocks.add(block);
+      } finally {
+        writeUnlock();
+      }
+      return;
+    }
 
     List<DatanodeID> excessReplicateTmp = new ArrayList<DatanodeID>();
     List<DatanodeID> originalDatanodes = new ArrayList<DatanodeID>();
@@ -4382,7 +4435,9 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
       //
       // Modify the blocks->datanode map and node's map.
       // 
-      pendingReplications.remove(block);
+      if (pendingReplications.remove(block)) {
+        completedReplicationsTotal++;
+      }
       addStoredBlock(block, node, delHintNode);
     } finally {
       writeUnlock();
@@ -4837,13 +4892,14 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
    *
    * @param srcNode a datanode
    * @param block   a block
+   * @return true if the block has not reached its replication factor
    */
-  void isReplicationInProgress(DatanodeDescriptor srcNode, Block block) {
+  boolean isReplicationInProgress(DatanodeDescriptor srcNode, Block block) {
     final DecommissioningStatus status = srcNode.decommissioningStatus;
 
     INode fileINode = blocksMap.getINode(block);
     if (fileINode == null) {
-      return;
+      return false;
     }
     NumberReplicas num = countNodes(block);
     int curReplicas = num.liveReplicas();
@@ -4872,7 +4928,9 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
           num.decommissionedReplicas(),
           curExpectedReplicas);
       }
+      return true;
     }
+    return false;
   }
 
   /**
@@ -5196,6 +5254,8 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
       if (!isPopulatingReplQueues()) {
         initializeReplQueues();
       }
+      // the deferred over-replicated blocks are processed from now on
+      deferOverReplication = false;
       long timeInSafemode = now() - systemStart;
       NameNode.stateChangeLog.info("STATE* Leaving safe mode after "
         + timeInSafemode / 1000 + " secs.");
@@ -5526,6 +5586,41 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
             safeMode.isPopulatingReplQueues());
   }
 
+  /**
+   * Populate the replication queues while staying in safe mode, so that
+   * leaving safe mode later does not have to scan all blocks. The queues
+   * are kept up to date from then on. They are only populated once enough
+   * blocks are reported for the replication queue threshold; before that
+   * most blocks would look under-replicated.
+   *
+   * @return true if the replication queues are populated
+   */
+  boolean initializeReplQueues() {
+    writeLock();
+    try {
+      if (safeMode == null || safeMode.isPopulatingReplQueues()) {
+        return true;
+      }
+      if (!safeMode.canInitializeReplQueues()) {
+        return false;
+      }
+      safeMode.initializeReplQueues();
+      return true;
+    } finally {
+      writeUnlock();
+    }
+  }
+
+  /**
+   * Only queue over-replicated blocks until safe mode is left instead of
+   * choosing their excess replicas. A standby drops its invalidates, so
+   * replicas it marked as excess would never be deleted after failover and
+   * would not count as live either.
+   */
+  void deferOverReplicationUntilSafeModeOff() {
+    deferOverReplication = true;
+  }
+
   /**
    * Increment number of blocks that reached minimal replication.
    *
@@ -5819,6 +5914,21 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
     return scheduledReplicationBlocksCount;
   }
 
+  /**
+   * Returns the number of blocks scheduled for replication since startup
+   */
+  public long getScheduledReplicationsTotal() {
+    return scheduledReplicationsTotal;
+  }
+
+  /**
+   * Returns the number of scheduled replicas that datanodes have reported
+   * since startup
+   */
+  public long getCompletedReplicationsTotal() {
+    return completedReplicationsTotal;
+  }
+
   public long getPendingDeletionBlocks() {
     return pendingDeletionBlocksCount;
   }
@@ -5974,32 +6084,6 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
     }
   }
 
-  // rename was successful. If any part of the renamed subtree had
-  // files that were being written to, update with new filename.
-  //
-
-  void changeLease(String src, String dst, HdfsFileStatus dinfo)
-    throws IOException {
-    String overwrite;
-    String replaceBy;
-
-    boolean destinationExisted = true;
-    if (dinfo == null) {
-      destinationExisted = false;
-    }
-
-    if (destinationExisted && dinfo.isDir()) {
-      Path spath = new Path(src);
-      overwrite = spath.getParent().toString() + Path.SEPARATOR;
-      replaceBy = dst + Path.SEPARATOR;
-    } else {
-      overwrite = src;
-      replaceBy = dst;
-    }
-
-    leaseManager.changeLease(src, dst, overwrite, replaceBy);
-  }
-
   /**
    * Serializes leases.
    */
@@ -6008,18 +6092,13 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
       out.writeInt(leaseManager.countPath()); // write the size
 
       for (Lease lease : leaseManager.getSortedLeases()) {
-        for (String path : lease.getPaths()) {
-          // verify that path exists in namespace
-          INode node = dir.getFileINode(path);
-          if (node == null) {
+        for (INodeFileUnderConstruction cons : lease.getFiles()) {
+          // verify that the file is still in the namespace
+          String path = cons.getFullPathName();
+          if (dir.getFileINode(path) != cons) {
             throw new IOException("saveLeases found path " + path +
               " but no matching entry in namespace.");
           }
-          if (!node.isUnderConstruction()) {
-            throw new IOException("saveLeases found path " + path +
-              " but is not under construction.");
-          }
-          INodeFileUnderConstruction cons = (INodeFileUnderConstruction) node;
           FSImage.writeINodeUnderConstruction(out, cons, path);
         }
       }
@@ -6092,14 +6171,23 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean, FSClusterSt
     if (startBlockAfter != null) {
       startBlockId = Block.filename2id(startBlockAfter);
     }
-    BlockIterator blkIterator = getCorruptReplicaBlockIterator();
-    while (blkIterator.hasNext()) {
-      Block blk = blkIterator.next();
+    // the queue is kept in insertion order; page through it by block id
+    List<Block> blocks = new ArrayList<Block>();
+    synchronized (neededReplications) {
+      BlockIterator blkIterator = getCorruptReplicaBlockIterator();
+      while (blkIterator.hasNext()) {
+        Block blk = blkIterator.next();
+        if ((startBlockAfter == null) || (blk.getBlockId() > startBlockId)) {
+          blocks.add(blk);
+        }
+      }
+    }
+    Collections.sort(blocks);
+    for (Block blk : blocks) {
       INode inode = blocksMap.getINode(blk);
       if (inode != null && countNodes(blk).liveReplicas() == 0) {
         String src = FSDirectory.getFullPathName(inode);
-        if (((startBlockAfter == null) || (blk.getBlockId() > startBlockId))
-            && (src.startsWith(path))) {
+        if (src.startsWith(path)) {
           corruptFiles.add(new CorruptFileBlockInfo(src, blk));
           count++;
           if (count >= maxCorruptFilesReturned)
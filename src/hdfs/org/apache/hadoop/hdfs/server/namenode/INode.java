@@ -40,12 +40,15 @@ abstract class INode implements Comparable<byte[]>, FSInodeInfo {
   protected long modificationTime;
   protected volatile long accessTime;
 
-  /** Simple wrapper for two counters : 
-   *  nsCount (namespace consumed) and dsCount (diskspace consumed).
+  /** Simple wrapper for the counters : 
+   *  nsCount (namespace consumed), dsCount (diskspace consumed),
+   *  fileCount (files) and length (length of the files).
    */
   static class DirCounts {
     long nsCount = 0;
     long dsCount = 0;
+    long fileCount = 0;
+    long length = 0;
     
     /** returns namespace count */
     long getNsCount() {
@@ -55,6 +58,14 @@ abstract class INode implements Comparable<byte[]>, FSInodeInfo {
     long getDsCount() {
       return dsCount;
     }
+    /** returns file count */
+    long getFileCount() {
+      return fileCount;
+    }
+    /** returns the length of the files */
+    long getLength() {
+      return length;
+    }
   }
   
   //Only updated by updatePermissionStatus(...).
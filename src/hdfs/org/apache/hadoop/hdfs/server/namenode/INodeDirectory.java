@@ -34,6 +34,11 @@ import org.apache.hadoop.hdfs.protocol.Block;
  */
 class INodeDirectory extends INode {
   protected static final int DEFAULT_FILES_PER_DIRECTORY = 5;
+  /**
+   * Directories with more children than this keep them in a
+   * {@link ChunkedINodeList} instead of an ArrayList.
+   */
+  static final int LARGE_DIRECTORY_SIZE = ChunkedINodeList.MAX_CHUNK_SIZE;
   final static String ROOT_NAME = "";
 
   private List<INode> children;
@@ -61,6 +66,9 @@ class INodeDirectory extends INode {
   INodeDirectory(INodeDirectory other) {
     super(other);
     this.children = other.getChildren();
+    for (INode child : children) {
+      child.parent = this;
+    }
   }
   
   /**
@@ -72,7 +80,7 @@ class INodeDirectory extends INode {
 
   INode removeChild(INode node) {
     assert children != null;
-    int low = Collections.binarySearch(children, node.name);
+    int low = searchChildren(node.name);
     if (low >= 0) {
       return children.remove(low);
     } else {
@@ -88,7 +96,7 @@ class INodeDirectory extends INode {
     if ( children == null ) {
       throw new IllegalArgumentException("The directory is empty");
     }
-    int low = Collections.binarySearch(children, newChild.name);
+    int low = searchChildren(newChild.name);
     if (low>=0) { // an old child exists so replace by the newChild
       children.set(low, newChild);
     } else {
@@ -104,13 +112,24 @@ class INodeDirectory extends INode {
     if (children == null) {
       return null;
     }
-    int low = Collections.binarySearch(children, name);
+    int low = searchChildren(name);
     if (low >= 0) {
       return children.get(low);
     }
     return null;
   }
 
+  /**
+   * Binary search the children for a name.
+   * @see Collections#binarySearch(List, Object)
+   */
+  private int searchChildren(byte[] name) {
+    if (children instanceof ChunkedINodeList) {
+      return ((ChunkedINodeList)children).binarySearch(name);
+    }
+    return Collections.binarySearch(children, name);
+  }
+
   /**
    */
   private INode getNode(byte[][] components) {
@@ -239,11 +258,15 @@ class INodeDirectory extends INode {
     if (children == null) {
       children = new ArrayList<INode>(DEFAULT_FILES_PER_DIRECTORY);
     }
-    int low = Collections.binarySearch(children, node.name);
+    int low = searchChildren(node.name);
     if(low >= 0)
       return null;
     node.parent = this;
     children.add(-low - 1, node);
+    if (children.size() > LARGE_DIRECTORY_SIZE
+        && !(children instanceof ChunkedINodeList)) {
+      children = new ChunkedINodeList(children);
+    }
     if (propagateModTime) {
       // update modification time of the parent directory
       setModificationTime(node.getModificationTime());      
@@ -269,7 +292,7 @@ class INodeDirectory extends INode {
     if (name.length == 0) { // empty name
       return 0;
     }
-    int nextPos = Collections.binarySearch(children, name) + 1;
+    int nextPos = searchChildren(name) + 1;
     if (nextPos >= 0) {  // the name is in the list of children
       return nextPos;
     }
@@ -23,13 +23,20 @@ import org.apache.hadoop.hdfs.protocol.NSQuotaExceededException;
 import org.apache.hadoop.hdfs.protocol.QuotaExceededException;
 
 /**
- * Directory INode class that has a quota restriction
+ * Directory INode class that has a quota restriction.
+ * 
+ * The directory keeps the counts of its subtree up to date on every
+ * change, which also lets it answer content summaries without walking
+ * the subtree. A directory without quota (both quotas -1) only keeps
+ * the counts.
  */
 class INodeDirectoryWithQuota extends INodeDirectory {
   private long nsQuota; /// NameSpace quota
   private long nsCount;
   private long dsQuota; /// disk space quota
   private long diskspace;
+  private long fileCount;
+  private long length; /// length of the files
   
   /** Convert an existing directory inode to one with the given quota
    * 
@@ -44,6 +51,8 @@ class INodeDirectoryWithQuota extends INodeDirectory {
     other.spaceConsumedInTree(counts);
     this.nsCount= counts.getNsCount();
     this.diskspace = counts.getDsCount();
+    this.fileCount = counts.getFileCount();
+    this.length = counts.getLength();
     setQuota(nsQuota, dsQuota);
   }
   
@@ -98,9 +107,25 @@ class INodeDirectoryWithQuota extends INodeDirectory {
   DirCounts spaceConsumedInTree(DirCounts counts) {
     counts.nsCount += nsCount;
     counts.dsCount += diskspace;
+    counts.fileCount += fileCount;
+    counts.length += length;
     return counts;
   }
 
+  /**
+   * {@inheritDoc}
+   * 
+   * Answered from the counts of the directory.
+   */
+  @Override
+  long[] computeContentSummary(long[] summary) {
+    summary[0] += length;
+    summary[1] += fileCount;
+    summary[2] += nsCount - fileCount;
+    summary[3] += diskspace;
+    return summary;
+  }
+
   /** Get the number of names in the subtree rooted at this directory
    * @return the size of the subtree rooted at this directory
    */
@@ -131,18 +156,35 @@ class INodeDirectoryWithQuota extends INodeDirectory {
     nsCount = nsCount + nsDelta;
     diskspace = diskspace + dsDelta;
   }
+
+  /** Update the number of files and the length of the files
+   * 
+   * @param fileDelta the change of the number of files
+   * @param lengthDelta the change of the length of the files
+   */
+  void updateFileCounts(long fileDelta, long lengthDelta) {
+    fileCount += fileDelta;
+    length += lengthDelta;
+  }
   
   /** 
-   * Sets namespace and diskspace take by the directory rooted 
-   * at this INode. This should be used carefully. It does not check 
+   * Sets the counts of the directory rooted at this INode.
+   * This should be used carefully. It does not check 
    * for quota violations.
    * 
-   * @param namespace size of the directory to be set
-   * @param diskspace disk space take by all the nodes under this directory
+   * @param counts the counts of all the nodes under this directory
+   * @return true if any of the counts changed
    */
-  void setSpaceConsumed(long namespace, long diskspace) {
-    this.nsCount = namespace;
-    this.diskspace = diskspace;
+  boolean setSpaceConsumed(DirCounts counts) {
+    boolean changed = nsCount != counts.nsCount
+        || diskspace != counts.dsCount
+        || fileCount != counts.fileCount
+        || length != counts.length;
+    this.nsCount = counts.nsCount;
+    this.diskspace = counts.dsCount;
+    this.fileCount = counts.fileCount;
+    this.length = counts.length;
+    return changed;
   }
   
   /** Verify if the namespace count disk space satisfies the quota restriction 
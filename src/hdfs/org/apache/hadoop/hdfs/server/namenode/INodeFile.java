@@ -167,22 +167,30 @@ class INodeFile extends INode {
 
   /** {@inheritDoc} */
   long[] computeContentSummary(long[] summary) {
-    long bytes = 0;
-    for(Block blk : blocks) {
-      bytes += blk.getNumBytes();
-    }
-    summary[0] += bytes;
+    summary[0] += computeFileSize();
     summary[1]++;
     summary[3] += diskspaceConsumed();
     return summary;
   }
 
-
+  /** @return the sum of the lengths of the blocks of the file */
+  long computeFileSize() {
+    long bytes = 0;
+    if (blocks == null) {
+      return 0;
+    }
+    for(Block blk : blocks) {
+      bytes += blk.getNumBytes();
+    }
+    return bytes;
+  }
 
   @Override
   DirCounts spaceConsumedInTree(DirCounts counts) {
     counts.nsCount += 1;
     counts.dsCount += diskspaceConsumed();
+    counts.fileCount += 1;
+    counts.length += computeFileSize();
     return counts;
   }
 
@@ -20,16 +20,16 @@ package org.apache.hadoop.hdfs.server.namenode;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.protocol.FSConstants;
 
 /**
@@ -53,6 +53,12 @@ import org.apache.hadoop.hdfs.protocol.FSConstants;
  * 2.9) Namenode removes f from the lease
  *      and removes the lease once all files have been removed
  * 2.10) Namenode commit changes to edit log
+ *
+ * Leases refer to the inodes of the files being written, not to their path
+ * names, so renames do not touch the leases. The leases are kept in the
+ * order in which they were last renewed, which is also the order of their
+ * expiry, so renewing a lease costs O(1) and checking for expired leases
+ * only visits the expired ones.
  */
 public class LeaseManager {
   public static final Log LOG = LogFactory.getLog(LeaseManager.class);
@@ -66,15 +72,17 @@ public class LeaseManager {
   // Used for handling lock-leases
   // Mapping: leaseHolder -> Lease
   //
-  private SortedMap<String, Lease> leases = new TreeMap<String, Lease>();
-  // Set of: Lease
-  private SortedSet<Lease> sortedLeases = new TreeSet<Lease>();
+  private Map<String, Lease> leases = new HashMap<String, Lease>();
+  // Set of: Lease, the least recently renewed first
+  private Set<Lease> sortedLeases = new LinkedHashSet<Lease>();
 
   // 
-  // Map path names to leases. It is protected by the sortedLeases lock.
-  // The map stores pathnames in lexicographical order.
+  // Map files under construction to their leases. It is protected by the
+  // sortedLeases lock. Inodes are compared by identity since INode.equals
+  // only compares the local names.
   //
-  private SortedMap<String, Lease> sortedLeasesByPath = new TreeMap<String, Lease>();
+  private Map<INodeFileUnderConstruction, Lease> leasesByFile =
+    new IdentityHashMap<INodeFileUnderConstruction, Lease>();
 
   LeaseManager(FSNamesystem fsnamesystem) {this.fsnamesystem = fsnamesystem;}
 
@@ -82,27 +90,45 @@ public class LeaseManager {
     return leases.get(holder);
   }
   
-  SortedSet<Lease> getSortedLeases() {return sortedLeases;}
+  /** @return the leases, the least recently renewed first */
+  Collection<Lease> getSortedLeases() {return sortedLeases;}
 
   /** @return the lease containing src */
-  public Lease getLeaseByPath(String src) {return sortedLeasesByPath.get(src);}
+  public Lease getLeaseByPath(String src) {
+    INodeFile file = fsnamesystem.dir.getFileINode(src);
+    if (file == null || !file.isUnderConstruction()) {
+      return null;
+    }
+    synchronized (this) {
+      return leasesByFile.get(file);
+    }
+  }
 
   /** @return the number of leases currently in the system */
   public synchronized int countLease() {return sortedLeases.size();}
 
   /** @return the number of paths contained in all leases */
   synchronized int countPath() {
-    int count = 0;
-    for(Lease lease : sortedLeases) {
-      count += lease.getPaths().size();
-    }
-    return count;
+    return leasesByFile.size();
   }
   
   /**
    * Adds (or re-adds) the lease for the specified file.
    */
-  synchronized void addLease(String holder, String src) {
+  void addLease(String holder, String src) {
+    INodeFile file = fsnamesystem.dir.getFileINode(src);
+    if (file == null || !file.isUnderConstruction()) {
+      LOG.error("Cannot add a lease for " + src + 
+          ", it is not a file under construction");
+      return;
+    }
+    addLease(holder, (INodeFileUnderConstruction)file);
+  }
+
+  /**
+   * Adds (or re-adds) the lease for the specified file.
+   */
+  synchronized void addLease(String holder, INodeFileUnderConstruction file) {
     Lease lease = getLease(holder);
     if (lease == null) {
       lease = new Lease(holder);
@@ -111,17 +137,49 @@ public class LeaseManager {
     } else {
       renewLease(lease);
     }
-    sortedLeasesByPath.put(src, lease);
-    lease.paths.add(src);
+    Lease old = leasesByFile.put(file, lease);
+    if (old != null && old != lease) {
+      removeFile(old, file);
+    }
+    lease.files.add(file);
   }
 
   /**
    * Remove the specified lease and src.
    */
   synchronized void removeLease(Lease lease, String src) {
-    sortedLeasesByPath.remove(src);
-    if (!lease.removePath(src)) {
-      LOG.error(src + " not found in lease.paths (=" + lease.paths + ")");
+    for (INodeFileUnderConstruction file : lease.files) {
+      if (src.equals(file.getFullPathName())) {
+        removeLease(lease, file);
+        return;
+      }
+    }
+    LOG.error(src + " not found in lease " + lease);
+  }
+
+  /**
+   * Remove the specified file from the specified lease.
+   */
+  synchronized void removeLease(Lease lease, INodeFileUnderConstruction file) {
+    if (leasesByFile.get(file) == lease) {
+      leasesByFile.remove(file);
+    }
+    removeFile(lease, file);
+  }
+
+  /**
+   * Remove the lease of the specified file.
+   */
+  synchronized void removeLease(INodeFileUnderConstruction file) {
+    Lease lease = leasesByFile.remove(file);
+    if (lease != null) {
+      removeFile(lease, file);
+    }
+  }
+
+  private void removeFile(Lease lease, INodeFileUnderConstruction file) {
+    if (!lease.files.remove(file)) {
+      LOG.error(file.getLocalName() + " not found in lease " + lease);
     }
 
     if (!lease.hasPath()) {
@@ -133,12 +191,26 @@ public class LeaseManager {
   }
 
   /**
-   * Remove the lease for the specified holder and src
+   * Remove the leases of all the files under construction in the given
+   * subtree, which is about to be deleted.
    */
-  synchronized void removeLease(String holder, String src) {
-    Lease lease = getLease(holder);
-    if (lease != null) {
-      removeLease(lease, src);
+  synchronized void removeLeases(INode subtree) {
+    if (leasesByFile.isEmpty()) {
+      return;
+    }
+    if (subtree.isUnderConstruction()) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(LeaseManager.class.getSimpleName()
+            + ".removeLeases: file=" + subtree.getLocalName());
+      }
+      removeLease((INodeFileUnderConstruction)subtree);
+    } else if (subtree.isDirectory()) {
+      List<INode> children = ((INodeDirectory)subtree).getChildren();
+      if (children != null) {
+        for (INode child : children) {
+          removeLeases(child);
+        }
+      }
     }
   }
 
@@ -147,15 +219,12 @@ public class LeaseManager {
    */
   synchronized String findPath(INodeFileUnderConstruction pendingFile
       ) throws IOException {
-    Lease lease = getLease(pendingFile.clientName);
+    Lease lease = leasesByFile.get(pendingFile);
     if (lease != null) {
-      String src = lease.findPath(pendingFile);
-      if (src != null) {
-        return src;
-      }
+      return pendingFile.getFullPathName();
     }
     throw new IOException("pendingFile (=" + pendingFile + ") not found."
-        + "(lease=" + lease + ")");
+        + "(lease=" + getLease(pendingFile.clientName) + ")");
   }
 
   /**
@@ -180,8 +249,8 @@ public class LeaseManager {
     sortedLeases.remove(newLease);
     sortedLeases.add(newLease);
 
-    for (String path : newLease.paths) {
-      sortedLeasesByPath.put(path, newLease);
+    for (INodeFileUnderConstruction file : newLease.files) {
+      leasesByFile.put(file, newLease);
     }
   }
   /************************************************************
@@ -194,7 +263,9 @@ public class LeaseManager {
   class Lease implements Comparable<Lease> {
     private final String holder;
     private long lastUpdate;
-    private final Collection<String> paths = new TreeSet<String>();
+    private final Set<INodeFileUnderConstruction> files =
+      Collections.newSetFromMap(
+          new IdentityHashMap<INodeFileUnderConstruction, Boolean>());
   
     /** Only LeaseManager object can create a lease */
     private Lease(String holder) {
@@ -216,29 +287,13 @@ public class LeaseManager {
       return FSNamesystem.now() - lastUpdate > softLimit;
     }
 
-    /**
-     * @return the path associated with the pendingFile and null if not found.
-     */
-    private String findPath(INodeFileUnderConstruction pendingFile) {
-      for(String src : paths) {
-        if (fsnamesystem.dir.getFileINode(src) == pendingFile) {
-          return src;
-        }
-      }
-      return null;
-    }
-
     /** Does this lease contain any path? */
-    boolean hasPath() {return !paths.isEmpty();}
-
-    boolean removePath(String src) {
-      return paths.remove(src);
-    }
+    boolean hasPath() {return !files.isEmpty();}
 
     /** {@inheritDoc} */
     public String toString() {
       return "[Lease.  Holder: " + holder
-          + ", pendingcreates: " + paths.size() + "]";
+          + ", pendingcreates: " + files.size() + "]";
     }
   
     /** {@inheritDoc} */
@@ -274,13 +329,9 @@ public class LeaseManager {
       return holder.hashCode();
     }
     
-    Collection<String> getPaths() {
-      return paths;
-    }
-    
-    void replacePath(String oldpath, String newpath) {
-      paths.remove(oldpath);
-      paths.add(newpath);
+    /** @return the files under construction held by this lease */
+    Collection<INodeFileUnderConstruction> getFiles() {
+      return files;
     }
     
     String getHolder() {
@@ -288,61 +339,6 @@ public class LeaseManager {
     }
   }
 
-  synchronized void changeLease(String src, String dst,
-      String overwrite, String replaceBy) {
-    if (LOG.isDebugEnabled()) {
-      LOG.debug(getClass().getSimpleName() + ".changelease: " +
-               " src=" + src + ", dest=" + dst + 
-               ", overwrite=" + overwrite +
-               ", replaceBy=" + replaceBy);
-    }
-
-    final int len = overwrite.length();
-    for(Map.Entry<String, Lease> entry : findLeaseWithPrefixPath(src, sortedLeasesByPath)) {
-      final String oldpath = entry.getKey();
-      final Lease lease = entry.getValue();
-      //overwrite must be a prefix of oldpath
-      final String newpath = replaceBy + oldpath.substring(len);
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("changeLease: replacing " + oldpath + " with " + newpath);
-      }
-      lease.replacePath(oldpath, newpath);
-      sortedLeasesByPath.remove(oldpath);
-      sortedLeasesByPath.put(newpath, lease);
-    }
-  }
-
-  synchronized void removeLeaseWithPrefixPath(String prefix) {
-    for(Map.Entry<String, Lease> entry : findLeaseWithPrefixPath(prefix, sortedLeasesByPath)) {
-      if (LOG.isDebugEnabled()) {
-        LOG.debug(LeaseManager.class.getSimpleName()
-            + ".removeLeaseWithPrefixPath: entry=" + entry);
-      }
-      removeLease(entry.getValue(), entry.getKey());    
-    }
-  }
-
-  static private List<Map.Entry<String, Lease>> findLeaseWithPrefixPath(
-      String prefix, SortedMap<String, Lease> path2lease) {
-    if (LOG.isDebugEnabled()) {
-      LOG.debug(LeaseManager.class.getSimpleName() + ".findLease: prefix=" + prefix);
-    }
-
-    List<Map.Entry<String, Lease>> entries = new ArrayList<Map.Entry<String, Lease>>();
-    final int srclen = prefix.length();
-
-    for(Map.Entry<String, Lease> entry : path2lease.tailMap(prefix).entrySet()) {
-      final String p = entry.getKey();
-      if (!p.startsWith(prefix)) {
-        return entries;
-      }
-      if (p.length() == srclen || p.charAt(srclen) == Path.SEPARATOR_CHAR) {
-        entries.add(entry);
-      }
-    }
-    return entries;
-  }
-
   public void setLeasePeriod(long softLimit, long hardLimit) {
     this.softLimit = softLimit;
     this.hardLimit = hardLimit; 
@@ -381,31 +377,34 @@ public class LeaseManager {
   /** Check the leases beginning from the oldest. */
   private synchronized void checkLeases() {
     for(; sortedLeases.size() > 0; ) {
-      final Lease oldest = sortedLeases.first();
+      final Lease oldest = sortedLeases.iterator().next();
       if (!oldest.expiredHardLimit()) {
         return;
       }
 
       LOG.info("Lease " + oldest + " has expired hard limit");
 
-      final List<String> removing = new ArrayList<String>();
-      // need to create a copy of the oldest lease paths, becuase 
-      // internalReleaseLease() removes paths corresponding to empty files,
+      final List<INodeFileUnderConstruction> removing =
+        new ArrayList<INodeFileUnderConstruction>();
+      // need to create a copy of the oldest lease files, becuase 
+      // internalReleaseLease() removes files which are empty,
       // i.e. it needs to modify the collection being iterated over
       // causing ConcurrentModificationException
-      String[] leasePaths = new String[oldest.getPaths().size()];
-      oldest.getPaths().toArray(leasePaths);
-      for(String p : leasePaths) {
+      INodeFileUnderConstruction[] leaseFiles =
+        new INodeFileUnderConstruction[oldest.getFiles().size()];
+      oldest.getFiles().toArray(leaseFiles);
+      for(INodeFileUnderConstruction file : leaseFiles) {
+        String p = file.getFullPathName();
         try {
           fsnamesystem.internalReleaseLease(oldest, p);
         } catch (IOException e) {
           LOG.error("Cannot release the path "+p+" in the lease "+oldest, e);
-          removing.add(p);
+          removing.add(file);
         }
       }
 
-      for(String p : removing) {
-        removeLease(oldest, p);
+      for(INodeFileUnderConstruction file : removing) {
+        removeLease(oldest, file);
       }
     }
   }
@@ -415,7 +414,7 @@ public class LeaseManager {
     return getClass().getSimpleName() + "= {"
         + "\n leases=" + leases
         + "\n sortedLeases=" + sortedLeases
-        + "\n sortedLeasesByPath=" + sortedLeasesByPath
+        + "\n leasesByFile=" + leasesByFile.size()
         + "\n}";
   }
 }
@@ -738,6 +738,20 @@ public class NameNode implements ClientProtocol, DatanodeProtocol,
     }
     return (LocatedDirectoryListing)files;
   }
+
+  @Override
+  public LocatedDirectoryListing[] getLocatedPartialListings(
+      String[] srcs, byte[][] startAfter)
+  throws IOException {
+    LocatedDirectoryListing[] listings =
+      namesystem.getLocatedPartialListings(srcs, startAfter);
+    for (LocatedDirectoryListing files : listings) {
+      if (files != null) {
+        myMetrics.numGetListingOps.inc();
+      }
+    }
+    return listings;
+  }
   
   /**
    * Get the file info for a specific file.
@@ -938,11 +952,15 @@ public class NameNode implements ClientProtocol, DatanodeProtocol,
                                        long dfsUsed,
                                        long remaining,
                                        int xmitsInProgress,
-                                       int xceiverCount) throws IOException {
+                                       int xceiverCount,
+                                       int volumeQueueDepth,
+                                       long ioLatency,
+                                       long networkThroughput) throws IOException {
     verifyRequest(nodeReg);
     myMetrics.numHeartbeat.inc();
     return namesystem.handleHeartbeat(nodeReg, capacity, dfsUsed, remaining,
-        xceiverCount, xmitsInProgress);
+        xceiverCount, xmitsInProgress, volumeQueueDepth, ioLatency,
+        networkThroughput);
   }
 
   public DatanodeCommand blockReport(DatanodeRegistration nodeReg,
@@ -18,17 +18,25 @@
 package org.apache.hadoop.hdfs.server.namenode;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.TreeSet;
 import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -39,8 +47,11 @@ import org.apache.hadoop.net.NetUtils;
 import org.apache.hadoop.net.NodeBase;
 import org.apache.hadoop.security.AccessControlException;
 import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.FSConstants.DatanodeReportType;
@@ -68,6 +79,13 @@ import org.apache.hadoop.fs.permission.PermissionStatus;
  *  Additionally, the tool collects a detailed overall DFS statistics, and
  *  optionally can print detailed statistics on block locations and replication
  *  factors of each file.
+ * <p>Directories are listed in batches of at most <code>dfs.ls.limit</code>
+ *  entries, so the directory lock is released between batches. With
+ *  <code>dfs.namenode.fsck.threads</code> above one, the subtrees below the
+ *  checked path are checked in parallel and their output is written in
+ *  order. On request the output carries cursor lines ({@link #CURSOR_PREFIX});
+ *  passing the last cursor back as <code>startafter</code> continues an
+ *  interrupted check after the entries already checked.</p>
  */
 public class NamenodeFsck {
   public static final Log LOG = LogFactory.getLog(NameNode.class.getName());
@@ -77,6 +95,14 @@ public class NamenodeFsck {
   public static final String HEALTHY_STATUS = "is HEALTHY";
   public static final String NONEXISTENT_STATUS = "does not exist";
   public static final String FAILURE_STATUS = "FAILED";
+  /**
+   * Prefix of a cursor line, followed by HEALTHY or CORRUPT for the files
+   * checked so far and the path of the last checked entry. That entry and
+   * every entry before it in traversal order have been checked.
+   */
+  public static final String CURSOR_PREFIX = "FSCK CURSOR ";
+  /** Number of checked files between two cursor lines. */
+  static final int CURSOR_INTERVAL = 1000;
   
   /** Don't attempt any fixing . */
   public static final int FIXING_NONE = 0;
@@ -95,8 +121,15 @@ public class NamenodeFsck {
   private boolean showLocations = false;
   private boolean showRacks = false;
   private boolean showCorruptFileBlocks = false;
+  private boolean checkCounts = false;
+  private boolean printCursor = false;
   private int fixing = FIXING_NONE;
   private String path = "/";
+  private final int numThreads;
+
+  // Cursor of an interrupted check; the entries up to and including it
+  // are skipped
+  private String resumeAfter = null;
 
   // We return back N files that are corrupt; the list of files returned is
   // ordered by block id; to allow continuation support, pass in the last block
@@ -131,13 +164,19 @@ public class NamenodeFsck {
       else if (key.equals("locations")) { this.showLocations = true; }
       else if (key.equals("racks")) { this.showRacks = true; }
       else if (key.equals("openforwrite")) {this.showOpenFiles = true; }
+      else if (key.equals("checkcounts")) { this.checkCounts = true; }
       else if (key.equals("listcorruptfileblocks")) {
         this.showCorruptFileBlocks = true;
       }
       else if (key.equals("startblockafter")) {
         this.startBlockAfter = pmap.get("startblockafter")[0]; 
       }
+      else if (key.equals("cursor")) { this.printCursor = true; }
+      else if (key.equals("startafter")) {
+        this.resumeAfter = pmap.get("startafter")[0];
+      }
     }
+    this.numThreads = conf.getInt("dfs.namenode.fsck.threads", 1);
   }
   
   /**
@@ -145,14 +184,15 @@ public class NamenodeFsck {
    * @throws Exception
    */
   public void fsck() throws IOException {
+    ExecutorService workers = null;
     try {
-      FileStatus[] files = nn.namesystem.dir.getListing(path);
+      FileStatus file = nn.namesystem.dir.getFileInfo(path);
       FsckResult res = new FsckResult();
       res.totalRacks = nn.getNetworkTopology().getNumOfRacks();
       res.totalDatanodes = nn.namesystem.getNumberOfDatanodes(
         DatanodeReportType.LIVE);
       res.setReplication((short) conf.getInt("dfs.replication", 3));
-      if (files != null) {
+      if (file != null) {
         if (showCorruptFileBlocks && showOpenFiles) {
           listCorruptOpenFiles();
         
@@ -164,8 +204,28 @@ public class NamenodeFsck {
           return;
         }
 
-        for (int i = 0; i < files.length; i++) {
-          check(files[i], res);
+        if (checkCounts) {
+          checkCounts();
+          return;
+        }
+
+        if (!file.isDir()) {
+          check(file, res, out);
+        } else {
+          String dir = file.getPath().toString();
+          if (resumeAfter != null) {
+            if (!resumeAfter.startsWith(dir.endsWith(Path.SEPARATOR) ?
+                                        dir : dir + Path.SEPARATOR)) {
+              throw new IOException("Cursor '" + resumeAfter +
+                                    "' is not under '" + dir + "'");
+            }
+            out.println("Continuing after '" + resumeAfter + "', the " +
+                        "entries before it are not included below");
+          }
+          if (numThreads > 1) {
+            workers = Executors.newFixedThreadPool(numThreads);
+          }
+          checkChildren(dir, resumeAfter, res, out, workers);
         }
         out.println(res);
         // DFSck client scans for the string HEALTHY/CORRUPT to check the status
@@ -185,6 +245,9 @@ public class NamenodeFsck {
       out.println(e.getMessage());
       out.print("\n\n" + errMsg);
     } finally {
+      if (workers != null) {
+        workers.shutdownNow();
+      }
       out.close();
     }
   }
@@ -211,6 +274,21 @@ public class NamenodeFsck {
     return summary;
   }
 
+  /**
+   * Recount the directories whose counts are cached and report the ones
+   * that drifted from their contents. Their counts are corrected.
+   */
+  private void checkCounts() throws IOException {
+    List<String> drifted = nn.getNamesystem().verifyCounts(path);
+    for (String dir : drifted) {
+      out.println(dir + ": inconsistent counts corrected");
+    }
+    out.println("Checked directory counts, " + drifted.size() +
+                " inconsistent directories");
+    out.print("\n\nThe directory counts under path '" + path + "' " +
+              (drifted.isEmpty() ? HEALTHY_STATUS : CORRUPT_STATUS));
+  }
+
   private void listCorruptFileBlocks() throws AccessControlException,
                                               IOException {
     Collection<FSNamesystem.CorruptFileBlockInfo> corruptFiles = nn
@@ -293,23 +371,105 @@ public class NamenodeFsck {
     }
   }
   
-  private void check(FileStatus file, FsckResult res) throws IOException {
+  /**
+   * Check the entries of a directory. The directory is listed in batches
+   * of at most dfs.ls.limit entries, so that its lock is held for one
+   * batch at a time.
+   *
+   * @param dir the directory to check
+   * @param resumeAfter a cursor below dir, or null. The entries up to and
+   *                    including it in traversal order are skipped.
+   * @param workers if not null, the subtrees of the entries are checked
+   *                on these threads
+   */
+  private void checkChildren(String dir, String resumeAfter, FsckResult res,
+                             PrintWriter out, ExecutorService workers
+                             ) throws IOException {
+    byte[] startAfter = HdfsFileStatus.EMPTY_NAME;
+    if (resumeAfter != null) {
+      String prefix = dir.endsWith(Path.SEPARATOR) ? dir : dir + Path.SEPARATOR;
+      int end = resumeAfter.indexOf(Path.SEPARATOR_CHAR, prefix.length());
+      if (end < 0) {
+        end = resumeAfter.length();
+      } else {
+        // the cursor is inside the subtree of this entry; finish it first
+        checkChildren(resumeAfter.substring(0, end), resumeAfter, res, out,
+                      workers);
+      }
+      startAfter = DFSUtil.string2Bytes(
+          resumeAfter.substring(prefix.length(), end));
+    }
+
+    LinkedList<Subtree> pending = new LinkedList<Subtree>();
+    DirectoryListing batch;
+    do {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedIOException("Interrupted while checking " + dir);
+      }
+      batch = nn.namesystem.dir.getPartialListing(dir, startAfter, false);
+      if (batch == null) { // the directory is deleted
+        break;
+      }
+      HdfsFileStatus[] entries = batch.getPartialListing();
+      for (HdfsFileStatus entry : entries) {
+        FileStatus file = toFileStatus(entry, dir);
+        if (workers == null) {
+          check(file, res, out);
+          continue;
+        }
+        Subtree subtree = new Subtree(file);
+        subtree.result = workers.submit(subtree);
+        pending.add(subtree);
+        // bound the output buffered by the subtrees not yet written
+        while (pending.size() > 2 * numThreads) {
+          finishSubtree(pending.removeFirst(), res, out);
+        }
+      }
+      if (entries.length > 0) {
+        startAfter = entries[entries.length - 1].getLocalNameInBytes();
+      }
+    } while (batch.hasMore());
+    while (!pending.isEmpty()) {
+      finishSubtree(pending.removeFirst(), res, out);
+    }
+  }
+
+  /**
+   * Write the output of a subtree checked by a worker and add its result.
+   */
+  private void finishSubtree(Subtree subtree, FsckResult res,
+                             PrintWriter out) throws IOException {
+    res.add(subtree.copyTo(out));
+    if (printCursor) {
+      printCursor(subtree.file.getPath().toString(), res, out);
+    }
+  }
+
+  private void printCursor(String path, FsckResult res, PrintWriter out) {
+    out.print("\n" + CURSOR_PREFIX + (res.isHealthy() ? "HEALTHY " : "CORRUPT ")
+              + path + "\n");
+    out.flush();
+  }
+
+  private static FileStatus toFileStatus(HdfsFileStatus stat, String parent) {
+    return new FileStatus(stat.getLen(), stat.isDir(), stat.getReplication(),
+        stat.getBlockSize(), stat.getModificationTime(),
+        stat.getAccessTime(), stat.getPermission(), stat.getOwner(),
+        stat.getGroup(), stat.getFullPath(new Path(parent)));
+  }
+
+  private void check(FileStatus file, FsckResult res,
+                     PrintWriter out) throws IOException {
     int minReplication = nn.namesystem.getMinReplication();
     String path = file.getPath().toString();
     boolean isOpen = false;
 
     if (file.isDir()) {
-      FileStatus[] files = nn.namesystem.dir.getListing(path);
-      if (files == null) {
-        return;
-      }
       if (showFiles) {
         out.println(path + " <dir>");
       }
       res.totalDirs++;
-      for (int i = 0; i < files.length; i++) {
-        check(files[i], res);
-      }
+      checkChildren(path, null, res, out, null);
       return;
     }
     long fileLen = file.getLen();
@@ -445,9 +605,98 @@ public class NamenodeFsck {
         out.print(report.toString() + "\n");
       }
     }
+    if (printCursor && res.totalFiles % CURSOR_INTERVAL == 0) {
+      printCursor(path, res, out);
+    }
+  }
+
+  /**
+   * A subtree checked by a worker thread. Its output is kept in memory
+   * until the subtrees before it are written out; after that it is copied
+   * to the response while the check goes on.
+   */
+  private class Subtree extends Writer implements Callable<FsckResult> {
+    private final FileStatus file;
+    private final StringBuilder buffer = new StringBuilder();
+    private boolean done = false;
+    Future<FsckResult> result;
+
+    Subtree(FileStatus file) {
+      this.file = file;
+    }
+
+    public FsckResult call() throws IOException {
+      FsckResult res = new FsckResult();
+      try {
+        check(file, res, new PrintWriter(this));
+      } finally {
+        synchronized (this) {
+          done = true;
+          notifyAll();
+        }
+      }
+      return res;
+    }
+
+    @Override
+    public synchronized void write(char[] cbuf, int off, int len) {
+      buffer.append(cbuf, off, len);
+      notifyAll();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Copy the output to out until the subtree is checked.
+     * @return the result of the subtree
+     */
+    FsckResult copyTo(PrintWriter out) throws IOException {
+      boolean finished;
+      do {
+        String output;
+        synchronized (this) {
+          while (buffer.length() == 0 && !done) {
+            try {
+              wait();
+            } catch (InterruptedException e) {
+              throw new InterruptedIOException("Interrupted while checking " +
+                                               file.getPath());
+            }
+          }
+          output = buffer.toString();
+          buffer.setLength(0);
+          finished = done;
+        }
+        out.print(output);
+        out.flush();
+      } while (!finished);
+
+      try {
+        return result.get();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException("Interrupted while checking " +
+                                         file.getPath());
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException)cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException)cause;
+        } else if (cause instanceof Error) {
+          throw (Error)cause;
+        }
+        throw new IOException(cause);
+      }
+    }
   }
   
-  private void lostFoundMove(FileStatus file, LocatedBlocks blocks)
+  private synchronized void lostFoundMove(FileStatus file, LocatedBlocks blocks)
     throws IOException {
     final DFSClient dfs = new DFSClient(NameNode.getAddress(conf), conf);
     try {
@@ -687,6 +936,28 @@ public class NamenodeFsck {
       return ((missingIds.size() == 0) && (corruptBlocks == 0));
     }
     
+    /** Add the counts of another part of the namespace. */
+    void add(FsckResult r) {
+      missingIds.addAll(r.missingIds);
+      missingSize += r.missingSize;
+      corruptFiles += r.corruptFiles;
+      corruptBlocks += r.corruptBlocks;
+      excessiveReplicas += r.excessiveReplicas;
+      missingReplicas += r.missingReplicas;
+      numOverReplicatedBlocks += r.numOverReplicatedBlocks;
+      numUnderReplicatedBlocks += r.numUnderReplicatedBlocks;
+      numMisReplicatedBlocks += r.numMisReplicatedBlocks;
+      numMinReplicatedBlocks += r.numMinReplicatedBlocks;
+      totalBlocks += r.totalBlocks;
+      totalOpenFilesBlocks += r.totalOpenFilesBlocks;
+      totalFiles += r.totalFiles;
+      totalOpenFiles += r.totalOpenFiles;
+      totalDirs += r.totalDirs;
+      totalSize += r.totalSize;
+      totalOpenFilesSize += r.totalOpenFilesSize;
+      totalReplicas += r.totalReplicas;
+    }
+
     /** Add a missing block name, plus its size. */
     public void addMissing(String id, long size) {
       missingIds.add(id);
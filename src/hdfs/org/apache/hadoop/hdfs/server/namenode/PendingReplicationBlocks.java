@@ -84,8 +84,9 @@ class PendingReplicationBlocks {
    * One replication request for this block has finished.
    * Decrement the number of pending replication requests
    * for this block.
+   * @return true if a replication of the block was pending
    */
-  void remove(Block block) {
+  boolean remove(Block block) {
     synchronized (pendingReplications) {
       PendingBlockInfo found = pendingReplications.get(block);
       if (found != null) {
@@ -94,8 +95,10 @@ class PendingReplicationBlocks {
         if (found.getNumReplicas() <= 0) {
           pendingReplications.remove(block);
         }
+        return true;
       }
     }
+    return false;
   }
 
   /**
@@ -20,30 +20,44 @@ package org.apache.hadoop.hdfs.server.namenode;
 import java.util.*;
 
 import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.util.LightWeightLinkedSet;
 
 /* Class for keeping track of under replication blocks
  * Blocks have replication priority, with priority 0 indicating the highest
  * Blocks have only one replicas has the highest
+ * Blocks with replicas on decommissioning nodes go ahead of other blocks
+ * which miss only a few replicas
+ *
+ * Each priority queue is kept in insertion order with O(1) add and remove.
+ * The replication monitor scans the queues round-robin from a cursor which
+ * survives between passes, so each pass costs only the blocks it returns.
  */
 class UnderReplicatedBlocks implements Iterable<Block> {
   static final int LEVEL = 3;
   static public final int QUEUE_WITH_CORRUPT_BLOCKS = 2;
-  private List<TreeSet<Block>> priorityQueues = new ArrayList<TreeSet<Block>>();
+  private List<LightWeightLinkedSet<Block>> priorityQueues =
+    new ArrayList<LightWeightLinkedSet<Block>>();
+  // the queue being scanned; its bookmark is the position of the scan.
+  // The first scan starts by moving on to the top of queue 0.
+  private int scanLevel = LEVEL-1;
+  // number of times the scan has started over from the top of queue 0
+  private long scanCycles = 0;
       
   /* constructor */
   UnderReplicatedBlocks() {
     for(int i=0; i<LEVEL; i++) {
-      priorityQueues.add(new TreeSet<Block>());
+      priorityQueues.add(new LightWeightLinkedSet<Block>());
     }
   }
 
   /**
    * Empty the queues.
    */
-  void clear() {
+  synchronized void clear() {
     for(int i=0; i<LEVEL; i++) {
       priorityQueues.get(i).clear();
     }
+    scanLevel = LEVEL-1;
   }
 
   /* Return the total number of under replication blocks */
@@ -57,7 +71,7 @@ class UnderReplicatedBlocks implements Iterable<Block> {
         
   /* Check if a block is in the neededReplication queue */
   synchronized boolean contains(Block block) {
-    for(TreeSet<Block> set:priorityQueues) {
+    for(LightWeightLinkedSet<Block> set:priorityQueues) {
       if(set.contains(block)) { return true; }
     }
     return false;
@@ -85,6 +99,9 @@ class UnderReplicatedBlocks implements Iterable<Block> {
       return 0; // highest priority
     } else if(curReplicas*3<expectedReplicas) {
       return 1;
+    } else if(decommissionedReplicas > 0) {
+      // decommissioning nodes wait for these blocks
+      return 1;
     } else {
       return 2;
     }
@@ -171,6 +188,10 @@ class UnderReplicatedBlocks implements Iterable<Block> {
                                   " oldPri  " + oldPri);
     if(oldPri != LEVEL && oldPri != curPri) {
       remove(block, oldPri);
+    } else if(curPri != LEVEL && !priorityQueues.get(curPri).contains(block)) {
+      // the block may be queued at another priority if its number of
+      // decommissioned replicas changed
+      remove(block, LEVEL);
     }
     if(curPri != LEVEL && priorityQueues.get(curPri).add(block)) {
       NameNode.stateChangeLog.debug(
@@ -183,6 +204,48 @@ class UnderReplicatedBlocks implements Iterable<Block> {
     }
   }
 
+  /**
+   * Choose blocks to replicate, continuing the round-robin scan of the
+   * queues where the previous call stopped: through queue 0, then 1 and 2,
+   * then back to the top of queue 0. Blocks added to a queue the scan has
+   * already left wait for the next round. The cost of a call is proportional
+   * to the number of blocks returned, however long the queues are.
+   *
+   * @param blocksToProcess maximum number of blocks to return; no block is
+   *                        returned twice by one call
+   * @return the blocks to replicate; the list index is their priority
+   */
+  synchronized List<List<Block>> chooseUnderReplicatedBlocks(
+                                                int blocksToProcess) {
+    List<List<Block>> blocksToReplicate = new ArrayList<List<Block>>(LEVEL);
+    for (int i = 0; i < LEVEL; i++) {
+      blocksToReplicate.add(new ArrayList<Block>());
+    }
+
+    blocksToProcess = Math.min(blocksToProcess, size());
+    int blkCnt = 0;
+    while (blkCnt < blocksToProcess) {
+      Block block = priorityQueues.get(scanLevel).nextFromBookmark();
+      if (block == null) {
+        // the end of this queue, move on to the next one
+        if (++scanLevel == LEVEL) {
+          scanLevel = 0;
+          scanCycles++;
+        }
+        priorityQueues.get(scanLevel).resetBookmark();
+        continue;
+      }
+      blocksToReplicate.get(scanLevel).add(block);
+      blkCnt++;
+    }
+    return blocksToReplicate;
+  }
+
+  /* Return the number of times the replication scan started over */
+  synchronized long getScanCycles() {
+    return scanCycles;
+  }
+
   /* returns an interator of all blocks in a given priority queue */
   synchronized BlockIterator iterator(int level) {
     return new BlockIterator(level);
@@ -236,10 +299,7 @@ class UnderReplicatedBlocks implements Iterable<Block> {
     }
  
     public void remove() {
-      if (isIteratorForLevel) 
-        iterators.get(0).remove();
-      else
-        iterators.get(level).remove();
+      throw new UnsupportedOperationException("Remove is not supported.");
     }
  
     public int getPriority() {
@@ -59,6 +59,12 @@ public class FSNamesystemMetrics implements Updater {
   final MetricsIntValue scheduledReplicationBlocks = new MetricsIntValue("ScheduledReplicationBlocks", registry);
   final MetricsIntValue missingBlocks = new MetricsIntValue("MissingBlocks", registry);    
   final MetricsIntValue blockCapacity = new MetricsIntValue("BlockCapacity", registry);
+  // re-replication throughput, per second over the last update interval
+  final MetricsIntValue scheduledReplicationsPerSec = new MetricsIntValue("ScheduledReplicationsPerSec", registry);
+  final MetricsIntValue completedReplicationsPerSec = new MetricsIntValue("CompletedReplicationsPerSec", registry);
+  private long lastUpdateTime = System.currentTimeMillis();
+  private long lastScheduledReplications = 0;
+  private long lastCompletedReplications = 0;
    
   public FSNamesystemMetrics(Configuration conf) {
     String sessionId = conf.get("session.id");
@@ -115,6 +121,19 @@ public class FSNamesystemMetrics implements Updater {
       missingBlocks.set((int)fsNameSystem.getMissingBlocksCount());
       blockCapacity.set(fsNameSystem.getBlockCapacity());
 
+      long now = System.currentTimeMillis();
+      long scheduled = fsNameSystem.getScheduledReplicationsTotal();
+      long completed = fsNameSystem.getCompletedReplicationsTotal();
+      if (now > lastUpdateTime) {
+        scheduledReplicationsPerSec.set((int)((scheduled -
+            lastScheduledReplications) * 1000 / (now - lastUpdateTime)));
+        completedReplicationsPerSec.set((int)((completed -
+            lastCompletedReplications) * 1000 / (now - lastUpdateTime)));
+      }
+      lastUpdateTime = now;
+      lastScheduledReplications = scheduled;
+      lastCompletedReplications = completed;
+
       for (MetricsBase m : registry.getMetricsList()) {
         m.pushMetric(metricsRecord);
       }
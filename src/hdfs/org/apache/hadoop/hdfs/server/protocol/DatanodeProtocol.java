@@ -35,10 +35,9 @@ import org.apache.hadoop.ipc.VersionedProtocol;
  **********************************************************************/
 public interface DatanodeProtocol extends VersionedProtocol {
   /**
-   * 19: SendHeartbeat returns an array of DatanodeCommand objects
-   *     in stead of a DatanodeCommand object.
+   * 20: SendHeartbeat reports the disk and network load of the datanode.
    */
-  public static final long versionID = 19L;
+  public static final long versionID = 20L;
   
   // error code
   final static int NOTIFY = 0;
@@ -77,12 +76,19 @@ public interface DatanodeProtocol extends VersionedProtocol {
    * an array of "DatanodeCommand" objects.
    * A DatanodeCommand tells the DataNode to invalidate local block(s), 
    * or to copy them to other DataNodes, etc.
+   * @param volumeQueueDepth number of block writes in progress
+   *     on the busiest volume
+   * @param ioLatency average disk write latency in microseconds
+   * @param networkThroughput network throughput in bytes per second
    */
   public DatanodeCommand[] sendHeartbeat(DatanodeRegistration registration,
                                        long capacity,
                                        long dfsUsed, long remaining,
                                        int xmitsInProgress,
-                                       int xceiverCount) throws IOException;
+                                       int xceiverCount,
+                                       int volumeQueueDepth,
+                                       long ioLatency,
+                                       long networkThroughput) throws IOException;
 
   /**
    * blockReport() tells the NameNode about all the locally-stored blocks.
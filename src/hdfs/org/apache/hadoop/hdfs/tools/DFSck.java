@@ -56,9 +56,13 @@ import org.apache.hadoop.security.SecurityUtil;
  *  optionally can print detailed statistics on block locations and replication
  *  factors of each file.
  *  The tool also provides and option to filter open files during the scan.
+ *  If the connection to the namenode is lost during a check, the check is
+ *  continued after the last cursor the namenode sent.
  *  
  */
 public class DFSck extends Configured implements Tool {
+  /** Number of times a check is continued after losing the connection. */
+  static final int MAX_RESUMES = 3;
 
   DFSck() {
     this.out = System.out;
@@ -66,6 +70,11 @@ public class DFSck extends Configured implements Tool {
   
   private final PrintStream out;
 
+  // last cursor sent by the namenode, and whether the files checked before
+  // it had corrupt ones
+  private String cursor = null;
+  private boolean corruptBeforeCursor = false;
+
   /**
    * Filesystem checker.
    * @param conf current Configuration
@@ -91,8 +100,10 @@ public class DFSck extends Configured implements Tool {
    */
   static void printUsage() {
     System.err.println("Usage: DFSck <path> [-list-corruptfileblocks | " +
+                       "-checkcounts | " +
                        "[-move | -delete | -openforwrite ] " +
-                       "[-files [-blocks [-locations | -racks]]]] ");
+                       "[-files [-blocks [-locations | -racks]]] " +
+                       "[-startafter <cursor>]] ");
     System.err.println("\t<path>\tstart checking from this path");
     System.err.println("\t-move\tmove corrupted files to /lost+found");
     System.err.println("\t-delete\tdelete corrupted files");
@@ -100,9 +111,13 @@ public class DFSck extends Configured implements Tool {
     System.err.println("\t-openforwrite\tprint out files opened for write");
     System.err.println("\t-list-corruptfileblocks\tprint out list of missing " +
                        "blocks and files they belong to");
+    System.err.println("\t-checkcounts\trecount the directories whose " +
+                       "content summaries are cached and correct drifted ones");
     System.err.println("\t-blocks\tprint out block report");
     System.err.println("\t-locations\tprint out locations for every block");
     System.err.println("\t-racks\tprint out network topology for data-node locations");
+    System.err.println("\t-startafter <cursor>\tcontinue an interrupted " +
+                       "check after the given cursor");
     System.err.println("\t\tBy default fsck ignores files opened for write, " +
                        "use -openforwrite to report such files. They are usually " +
                        " tagged CORRUPT or HEALTHY depending on their block " +
@@ -184,10 +199,13 @@ public class DFSck extends Configured implements Tool {
     String dir = "/";
     // find top-level dir first
     for (int idx = 0; idx < args.length; idx++) {
-      if (!args[idx].startsWith("-")) { dir = args[idx]; break; }
+      if (args[idx].equals("-startafter")) { idx++; }
+      else if (!args[idx].startsWith("-")) { dir = args[idx]; break; }
     }
     url.append(URLEncoder.encode(dir, "UTF-8"));
     boolean doListCorruptFileBlocks = false;
+    cursor = null;
+    corruptBeforeCursor = false;
     for (int idx = 0; idx < args.length; idx++) {
       if (args[idx].equals("-move")) { url.append("&move=1"); }
       else if (args[idx].equals("-delete")) { url.append("&delete=1"); }
@@ -196,6 +214,10 @@ public class DFSck extends Configured implements Tool {
       else if (args[idx].equals("-blocks")) { url.append("&blocks=1"); }
       else if (args[idx].equals("-locations")) { url.append("&locations=1"); }
       else if (args[idx].equals("-racks")) { url.append("&racks=1"); }
+      else if (args[idx].equals("-checkcounts")) { url.append("&checkcounts=1"); }
+      else if (args[idx].equals("-startafter") && idx + 1 < args.length) {
+        cursor = args[++idx];
+      }
       else if (args[idx].equals("-list-corruptfileblocks")) {
         url.append("&listcorruptfileblocks=1");
         doListCorruptFileBlocks = true;
@@ -204,30 +226,85 @@ public class DFSck extends Configured implements Tool {
     if (doListCorruptFileBlocks) {
       return listCorruptFileBlocks(dir, url.toString());
     }
-    URL path = new URL(url.toString());
+    url.append("&cursor=1");
+    String lastLine = null;
+    int errCode = -1;
+    for (int resumes = 0; ; resumes++) {
+      StringBuffer checkUrl = new StringBuffer(url);
+      if (cursor != null) {
+        checkUrl.append("&startafter=").append(URLEncoder.encode(cursor,
+                                                                 "UTF-8"));
+      }
+      try {
+        lastLine = check(checkUrl.toString());
+        break;
+      } catch (IOException e) {
+        if (cursor == null) {
+          throw e;
+        }
+        if (resumes >= MAX_RESUMES) {
+          out.println("Fsck interrupted, use -startafter " + cursor +
+                      " to continue it");
+          throw e;
+        }
+        out.println("\nLost the connection to the namenode (" + e +
+                    "), continuing after " + cursor);
+      }
+    }
+    if (lastLine.endsWith(NamenodeFsck.HEALTHY_STATUS)) {
+      errCode = corruptBeforeCursor ? 1 : 0;
+    } else if (lastLine.endsWith(NamenodeFsck.CORRUPT_STATUS)) {
+      errCode = 1;
+    } else if (lastLine.endsWith(NamenodeFsck.NONEXISTENT_STATUS)) {
+      errCode = 0;
+    }
+    return errCode;
+  }
+
+  /**
+   * Copy the fsck output of the namenode, keeping track of the cursors in
+   * it instead of printing them.
+   * @return the last line of the output
+   */
+  private String check(String url) throws IOException {
+    URL path = new URL(url);
     URLConnection connection = path.openConnection();
     InputStream stream = connection.getInputStream();
     BufferedReader input = new BufferedReader(new InputStreamReader(
                                               stream, "UTF-8"));
     String line = null;
     String lastLine = null;
-    int errCode = -1;
+    int emptyLines = 0;
     try {
       while ((line = input.readLine()) != null) {
-        out.println(line);
+        if (line.startsWith(NamenodeFsck.CURSOR_PREFIX)) {
+          String[] fields = line.substring(
+              NamenodeFsck.CURSOR_PREFIX.length()).split(" ", 2);
+          corruptBeforeCursor |= fields[0].equals("CORRUPT");
+          cursor = fields[1];
+          // a cursor starts on a new line, which may have added an empty one
+          if (emptyLines > 0) {
+            emptyLines--;
+          }
+          continue;
+        }
+        if (line.length() == 0) {
+          emptyLines++;
+        } else {
+          for (; emptyLines > 0; emptyLines--) {
+            out.println();
+          }
+          out.println(line);
+        }
         lastLine = line;
       }
+      for (; emptyLines > 0; emptyLines--) {
+        out.println();
+      }
     } finally {
       input.close();
     }
-    if (lastLine.endsWith(NamenodeFsck.HEALTHY_STATUS)) {
-      errCode = 0;
-    } else if (lastLine.endsWith(NamenodeFsck.CORRUPT_STATUS)) {
-      errCode = 1;
-    } else if (lastLine.endsWith(NamenodeFsck.NONEXISTENT_STATUS)) {
-      errCode = 0;
-    }
-    return errCode;
+    return lastLine;
   }
 
   static{
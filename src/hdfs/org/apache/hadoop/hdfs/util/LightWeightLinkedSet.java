@@ -0,0 +1,295 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A low memory footprint set which keeps its elements in insertion order.
+ * Like {@link LightWeightGSet}, it uses an array for storing the elements
+ * and linked lists for collision resolution; in addition every element is
+ * on a doubly linked list in insertion order, so add, remove and contains
+ * are O(1).
+ *
+ * Unlike {@link LightWeightGSet}, the array grows and shrinks with the size
+ * of the set, and the elements do not have to implement any interface.
+ *
+ * The set keeps a bookmark into the insertion order, which lets a caller scan
+ * the set a few elements at a time while it is being modified, without
+ * starting over: removing the element at the bookmark moves the bookmark to
+ * the next element, and elements added are appended behind it.
+ *
+ * This class does not support null element.
+ *
+ * This class is not thread safe.
+ *
+ * @param <T> Element type
+ */
+public class LightWeightLinkedSet<T> implements Iterable<T> {
+  static final int MIN_ARRAY_LENGTH = 16;
+  static final int MAX_ARRAY_LENGTH = 1 << 30; //prevent int overflow problem
+
+  /**
+   * An element of the set, on the collision list of its row of the hash
+   * table and on the insertion order list.
+   */
+  private static final class Entry<T> {
+    final T element;
+    final int hash;
+    /** Next entry in the same row of the hash table. */
+    Entry<T> next;
+    /** Neighbours in insertion order. */
+    Entry<T> before, after;
+
+    Entry(T element, int hash) {
+      this.element = element;
+      this.hash = hash;
+    }
+  }
+
+  /**
+   * An internal array of entries, which are the rows of the hash table.
+   * The size must be a power of two.
+   */
+  private Entry<T>[] entries;
+  /** A mask for computing the array index from the hash value of an element. */
+  private int hash_mask;
+  /** The size of the set (not the entry array). */
+  private int size = 0;
+  /** First and last entries in insertion order. */
+  private Entry<T> head = null, tail = null;
+  /** The next entry of a bookmark scan; null once the scan is past the end. */
+  private Entry<T> bookmark = null;
+  /** Modification version for fail-fast.
+   * @see ConcurrentModificationException
+   */
+  private int modification = 0;
+
+  public LightWeightLinkedSet() {
+    entries = newArray(MIN_ARRAY_LENGTH);
+    hash_mask = entries.length - 1;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> Entry<T>[] newArray(int length) {
+    return (Entry<T>[]) new Entry[length];
+  }
+
+  private static int hash(Object element) {
+    // spread the high bits, since the index only uses the low bits
+    final int h = element.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  private Entry<T> getEntry(Object element) {
+    if (element == null) {
+      throw new NullPointerException("element == null");
+    }
+    final int h = hash(element);
+    for(Entry<T> e = entries[h & hash_mask]; e != null; e = e.next) {
+      if (e.hash == h && e.element.equals(element)) {
+        return e;
+      }
+    }
+    return null;
+  }
+
+  public boolean contains(Object element) {
+    return getEntry(element) != null;
+  }
+
+  /**
+   * Add an element to the end of the insertion order.
+   *
+   * @return true if the element was not already in the set.
+   */
+  public boolean add(T element) {
+    if (getEntry(element) != null) {
+      return false;
+    }
+    final Entry<T> e = new Entry<T>(element, hash(element));
+    final int index = e.hash & hash_mask;
+    e.next = entries[index];
+    entries[index] = e;
+
+    e.before = tail;
+    if (tail == null) {
+      head = e;
+    } else {
+      tail.after = e;
+    }
+    tail = e;
+
+    modification++;
+    size++;
+    if (size > entries.length && entries.length < MAX_ARRAY_LENGTH) {
+      resize(entries.length << 1);
+    }
+    return true;
+  }
+
+  /**
+   * Remove an element.
+   *
+   * @return true if the element was in the set.
+   */
+  public boolean remove(Object element) {
+    final Entry<T> e = getEntry(element);
+    if (e == null) {
+      return false;
+    }
+
+    // unlink from the row of the hash table
+    final int index = e.hash & hash_mask;
+    if (entries[index] == e) {
+      entries[index] = e.next;
+    } else {
+      Entry<T> prev = entries[index];
+      while (prev.next != e) {
+        prev = prev.next;
+      }
+      prev.next = e.next;
+    }
+
+    // unlink from the insertion order
+    if (e.before == null) {
+      head = e.after;
+    } else {
+      e.before.after = e.after;
+    }
+    if (e.after == null) {
+      tail = e.before;
+    } else {
+      e.after.before = e.before;
+    }
+    if (bookmark == e) {
+      bookmark = e.after;
+    }
+
+    modification++;
+    size--;
+    if (size < entries.length >> 2 && entries.length > MIN_ARRAY_LENGTH) {
+      resize(entries.length >> 1);
+    }
+    return true;
+  }
+
+  /** Rehash all the entries into an array of the given length. */
+  private void resize(int length) {
+    entries = newArray(length);
+    hash_mask = length - 1;
+    for(Entry<T> e = head; e != null; e = e.after) {
+      final int index = e.hash & hash_mask;
+      e.next = entries[index];
+      entries[index] = e;
+    }
+  }
+
+  /**
+   * Remove all elements.
+   */
+  public void clear() {
+    entries = newArray(MIN_ARRAY_LENGTH);
+    hash_mask = entries.length - 1;
+    head = tail = bookmark = null;
+    modification++;
+    size = 0;
+  }
+
+  /**
+   * Move the bookmark to the first element.
+   */
+  public void resetBookmark() {
+    bookmark = head;
+  }
+
+  /**
+   * Return the element at the bookmark, and move the bookmark to the next
+   * element.
+   *
+   * @return the element; or null if the bookmark is past the last element.
+   *         A set whose bookmark was never reset is past its last element.
+   */
+  public T nextFromBookmark() {
+    if (bookmark == null) {
+      return null;
+    }
+    final T element = bookmark.element;
+    bookmark = bookmark.after;
+    return element;
+  }
+
+  /**
+   * @return an iterator in insertion order. It does not support remove.
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return new SetIterator();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder b = new StringBuilder(getClass().getSimpleName());
+    b.append("(size=").append(size)
+     .append(", modification=").append(modification)
+     .append(", entries.length=").append(entries.length)
+     .append(")");
+    return b.toString();
+  }
+
+  private class SetIterator implements Iterator<T> {
+    /** The starting modification for fail-fast. */
+    private final int startModification = modification;
+    /** The next entry to return. */
+    private Entry<T> next = head;
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public T next() {
+      if (modification != startModification) {
+        throw new ConcurrentModificationException("modification=" + modification
+            + " != startModification = " + startModification);
+      }
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      final T e = next.element;
+      next = next.after;
+      return e;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Remove is not supported.");
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.mapred;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.file.tfile.ColumnFile;
+
+/**
+ * An {@link InputFormat} for {@link ColumnFile}s.  Keys are row numbers
+ * within the file, values hold the columns listed in
+ * <code>mapred.input.columnfile.columns</code>, in that order.  When no
+ * columns are listed, every column is read.
+ *
+ * Only the projected columns are read from disk and decompressed.  Splits
+ * may fall anywhere; each row group is read by the split in which it
+ * starts.
+ */
+public class ColumnFileInputFormat
+  extends FileInputFormat<LongWritable, ColumnFile.Row> {
+
+  public static final String COLUMNS = "mapred.input.columnfile.columns";
+
+  /**
+   * Set the columns to read, by name.
+   * @param job the job to modify
+   * @param columns the column names, in the order they should appear
+   *                in each value
+   */
+  public static void setReadColumns(JobConf job, String... columns) {
+    StringBuilder sb = new StringBuilder();
+    for (String column : columns) {
+      if (sb.length() > 0) {
+        sb.append(',');
+      }
+      sb.append(column);
+    }
+    job.set(COLUMNS, sb.toString());
+  }
+
+  /**
+   * Get the names of the columns to read.
+   * @param job the job
+   * @return the column names, or null to read every column
+   */
+  public static String[] getReadColumns(JobConf job) {
+    String columns = job.get(COLUMNS);
+    if (columns == null || columns.trim().length() == 0) {
+      return null;
+    }
+    String[] ret = columns.split(",");
+    for (int i = 0; i < ret.length; i++) {
+      ret[i] = ret[i].trim();
+    }
+    return ret;
+  }
+
+  public RecordReader<LongWritable, ColumnFile.Row> getRecordReader(
+      InputSplit split, JobConf job, Reporter reporter) throws IOException {
+    reporter.setStatus(split.toString());
+    return new ColumnFileRecordReader(job, (FileSplit) split);
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.mapred;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.file.tfile.ColumnFile;
+
+/**
+ * A {@link RecordReader} for {@link ColumnFile}s.  It reads the row groups
+ * that start within its split, and only the columns chosen with
+ * {@link ColumnFileInputFormat#setReadColumns(JobConf, String...)}.
+ */
+public class ColumnFileRecordReader
+  implements RecordReader<LongWritable, ColumnFile.Row> {
+
+  private final FSDataInputStream fileIn;
+  private final ColumnFile.Reader reader;
+  private final ColumnFile.Reader.Scanner scanner;
+  private final long firstRow;
+  private final long endRow;
+  private final int columns;
+
+  public ColumnFileRecordReader(JobConf job, FileSplit split)
+    throws IOException {
+    Path path = split.getPath();
+    FileSystem fs = path.getFileSystem(job);
+    fileIn = fs.open(path);
+    boolean done = false;
+    try {
+      reader = new ColumnFile.Reader(fileIn,
+          fs.getFileStatus(path).getLen(), job);
+
+      String[] names = ColumnFileInputFormat.getReadColumns(job);
+      int[] projection;
+      if (names == null) {
+        projection = new int[reader.getColumnCount()];
+        for (int i = 0; i < projection.length; i++) {
+          projection[i] = i;
+        }
+      } else {
+        projection = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+          projection[i] = reader.getColumnIndex(names[i]);
+        }
+      }
+      columns = projection.length;
+
+      int begin = reader.getRowGroupAt(split.getStart());
+      int end = reader.getRowGroupAt(split.getStart() + split.getLength());
+      scanner = reader.createScanner(projection, begin, end);
+      firstRow = reader.getFirstRow(begin);
+      endRow = reader.getFirstRow(end);
+      done = true;
+    } finally {
+      if (!done) {
+        fileIn.close();
+      }
+    }
+  }
+
+  public LongWritable createKey() {
+    return new LongWritable();
+  }
+
+  public ColumnFile.Row createValue() {
+    ColumnFile.Row row = new ColumnFile.Row();
+    row.setSize(columns);
+    return row;
+  }
+
+  public synchronized boolean next(LongWritable key, ColumnFile.Row value)
+    throws IOException {
+    key.set(scanner.getRowNumber());
+    return scanner.next(value);
+  }
+
+  public synchronized long getPos() throws IOException {
+    return scanner.getRowNumber();
+  }
+
+  /**
+   * Return the progress within the split, in rows.
+   */
+  public float getProgress() throws IOException {
+    if (endRow == firstRow) {
+      return 0.0f;
+    }
+    return Math.min(1.0f,
+        (scanner.getRowNumber() - firstRow) / (float)(endRow - firstRow));
+  }
+
+  public synchronized void close() throws IOException {
+    try {
+      scanner.close();
+      reader.close();
+    } finally {
+      fileIn.close();
+    }
+  }
+}
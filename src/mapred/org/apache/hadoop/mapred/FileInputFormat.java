@@ -243,7 +243,13 @@ public abstract class FileInputFormat<K, V> implements InputFormat<K, V> {
    * @param inputFilter
    *          The input filter that can be used to filter files/dirs. 
    * @throws IOException
+   * @deprecated {@link #listLocatedStatus(JobConf)} no longer calls this
+   *          method; it lists the subdirectories in batches through
+   *          {@link LocatedFileStatusFetcher}. Overriding this method has
+   *          no effect; override {@link #listLocatedStatus(JobConf)} to
+   *          change how the input directories are listed.
    */
+  @Deprecated
   protected void addLocatedInputPathRecursively(List<LocatedFileStatus> result,
       FileSystem fs, Path path, PathFilter inputFilter) 
       throws IOException {
@@ -290,6 +296,7 @@ public abstract class FileInputFormat<K, V> implements InputFormat<K, V> {
     }
     PathFilter inputFilter = new MultiPathFilter(filters);
 
+    List<Path> matchedPaths = new ArrayList<Path>();
     for (Path p: dirs) {
       FileSystem fs = p.getFileSystem(job); 
       FileStatus[] matches = fs.globStatus(p, inputFilter);
@@ -299,16 +306,7 @@ public abstract class FileInputFormat<K, V> implements InputFormat<K, V> {
         errors.add(new IOException("Input Pattern " + p + " matches 0 files"));
       } else {
         for (FileStatus globStat: matches) {
-          for(RemoteIterator<LocatedFileStatus> itor = fs.listLocatedStatus(
-              globStat.getPath(), inputFilter); itor.hasNext();) {
-            LocatedFileStatus stat = itor.next();
-            if (recursive && stat.isDir()) {
-              addLocatedInputPathRecursively(
-                  result, fs, stat.getPath(), inputFilter);
-            } else {
-              result.add(stat);
-            }
-          }          
+          matchedPaths.add(globStat.getPath());
         }
       }
     }
@@ -316,6 +314,10 @@ public abstract class FileInputFormat<K, V> implements InputFormat<K, V> {
     if (!errors.isEmpty()) {
       throw new InvalidInputException(errors);
     }
+    // list all the matches together so that the directories are listed
+    // in batches
+    result.addAll(LocatedFileStatusFetcher.listLocatedStatus(
+        job, matchedPaths, inputFilter, recursive));
     LOG.info("Total input paths to process : " + result.size()); 
     return result.toArray(new LocatedFileStatus[result.size()]);
   }
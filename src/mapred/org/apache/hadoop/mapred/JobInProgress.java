@@ -837,6 +837,19 @@ public class JobInProgress {
     return numReduceTasks - runningReduceTasks - failedReduceTIPs -
     finishedReduceTasks + speculativeReduceTasks;
   }
+  /**
+   * Get the names of the topology nodes (hosts and racks) that have local
+   * data for some non-running map of this job.
+   */
+  public synchronized Collection<String> getNonRunningMapLocations() {
+    List<String> locations = new ArrayList<String>();
+    if (nonRunningMapCache != null) {
+      for (Node node : nonRunningMapCache.keySet()) {
+        locations.add(node.getName());
+      }
+    }
+    return locations;
+  }
   public int getNumSlotsPerTask(TaskType taskType) {
     if (taskType == TaskType.MAP) {
       return numSlotsPerMap;
@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.mapred;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
+
+/**
+ * Lists the input paths of a job together with the block locations of
+ * the files.
+ *
+ * The paths are listed with
+ * {@link FileSystem#listLocatedStatus(Path[], PathFilter, boolean)}, which
+ * lists many directories per call on HDFS. With {@link #NUM_THREADS} above
+ * one, the paths are split into as many groups, listed in parallel.
+ */
+public class LocatedFileStatusFetcher {
+  /** Number of threads listing the input paths. */
+  public static final String NUM_THREADS = "mapred.input.listing.threads";
+
+  private LocatedFileStatusFetcher() {
+  }
+
+  /**
+   * List the given paths. For a directory the entries in it are returned,
+   * and a file is returned itself.
+   *
+   * @param conf the job configuration
+   * @param paths the paths to list, usually the matches of the input paths
+   * @param filter the input path filter
+   * @param recursive if true, the entries of the subdirectories are listed
+   *                  in place of the subdirectories
+   * @return the listed entries; the entries of a path come after those of
+   *         the paths before it
+   * @throws IOException if a path cannot be listed
+   */
+  public static List<LocatedFileStatus> listLocatedStatus(Configuration conf,
+      List<Path> paths, final PathFilter filter, final boolean recursive)
+  throws IOException {
+    int numThreads = Math.max(1, conf.getInt(NUM_THREADS, 1));
+    int groupSize = Math.max(1, (paths.size() + numThreads - 1) / numThreads);
+
+    // split the paths into groups of paths on the same file system
+    List<Callable<List<LocatedFileStatus>>> groups =
+      new ArrayList<Callable<List<LocatedFileStatus>>>();
+    int start = 0;
+    while (start < paths.size()) {
+      final FileSystem fs = paths.get(start).getFileSystem(conf);
+      int end = start + 1;
+      while (end < paths.size() && end - start < groupSize &&
+             paths.get(end).getFileSystem(conf) == fs) {
+        end++;
+      }
+      final Path[] group =
+        paths.subList(start, end).toArray(new Path[end - start]);
+      groups.add(new Callable<List<LocatedFileStatus>>() {
+        public List<LocatedFileStatus> call() throws IOException {
+          List<LocatedFileStatus> result = new ArrayList<LocatedFileStatus>();
+          for (RemoteIterator<LocatedFileStatus> itor =
+                 fs.listLocatedStatus(group, filter, recursive);
+               itor.hasNext();) {
+            result.add(itor.next());
+          }
+          return result;
+        }
+      });
+      start = end;
+    }
+
+    List<LocatedFileStatus> result = new ArrayList<LocatedFileStatus>();
+    if (numThreads == 1 || groups.size() == 1) {
+      for (Callable<List<LocatedFileStatus>> group : groups) {
+        try {
+          result.addAll(group.call());
+        } catch (IOException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new IOException(e);
+        }
+      }
+      return result;
+    }
+
+    ExecutorService executor =
+      Executors.newFixedThreadPool(Math.min(numThreads, groups.size()));
+    try {
+      List<Future<List<LocatedFileStatus>>> futures =
+        new ArrayList<Future<List<LocatedFileStatus>>>();
+      for (Callable<List<LocatedFileStatus>> group : groups) {
+        futures.add(executor.submit(group));
+      }
+      for (Future<List<LocatedFileStatus>> future : futures) {
+        result.addAll(future.get());
+      }
+      return result;
+    } catch (InterruptedException e) {
+      throw new IOException("Interrupted while listing input paths");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException)cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      throw new IOException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
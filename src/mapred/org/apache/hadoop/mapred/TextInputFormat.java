@@ -24,10 +24,13 @@ import org.apache.hadoop.fs.*;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.compress.*;
+import org.apache.hadoop.io.simpleseekableformat.SimpleSeekableFormatCodec;
 
 /** An {@link InputFormat} for plain text files.  Files are broken into lines.
  * Either linefeed or carriage-return are used to signal end of line.  Keys are
  * the position in the file, and values are the line of text.. 
+ * Compressed files are not split, except for those written with
+ * {@link SimpleSeekableFormatCodec}, which are split at data segments.
  * @deprecated Use {@link org.apache.hadoop.mapreduce.lib.input.TextInputFormat}
  *  instead.
  */
@@ -42,7 +45,8 @@ public class TextInputFormat extends FileInputFormat<LongWritable, Text>
   }
   
   protected boolean isSplitable(FileSystem fs, Path file) {
-    return compressionCodecs.getCodec(file) == null;
+    CompressionCodec codec = compressionCodecs.getCodec(file);
+    return codec == null || codec instanceof SimpleSeekableFormatCodec;
   }
 
   static class EmptyRecordReader implements RecordReader<LongWritable, Text> {
@@ -83,6 +87,10 @@ public class TextInputFormat extends FileInputFormat<LongWritable, Text>
     long start = ((FileSplit)genericSplit).getStart();
     Path file = ((FileSplit)genericSplit).getPath();
     final CompressionCodec codec = compressionCodecs.getCodec(file);
+    if (codec instanceof SimpleSeekableFormatCodec) {
+      return new SimpleSeekableFormatLineRecordReader(job,
+                                                      (FileSplit) genericSplit);
+    }
     if (codec != null && start != 0) {
       // (codec != null) means the file is not splittable.
       
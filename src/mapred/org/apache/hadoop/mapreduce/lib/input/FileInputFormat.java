@@ -31,8 +31,8 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
-import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.LocatedFileStatusFetcher;
 import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.Job;
@@ -258,7 +258,7 @@ public abstract class FileInputFormat<K, V> extends InputFormat<K, V> {
       filters.add(jobFilter);
     }
     PathFilter inputFilter = new MultiPathFilter(filters);
-    List<LocatedFileStatus> result = new ArrayList<LocatedFileStatus>();    
+    List<Path> matchedPaths = new ArrayList<Path>();
     for (int i=0; i < dirs.length; ++i) {
       Path p = dirs[i];
       FileSystem fs = p.getFileSystem(job.getConfiguration()); 
@@ -269,11 +269,7 @@ public abstract class FileInputFormat<K, V> extends InputFormat<K, V> {
         errors.add(new IOException("Input Pattern " + p + " matches 0 files"));
       } else {
         for (FileStatus globStat: matches) {
-          for(RemoteIterator<LocatedFileStatus> itor = 
-            fs.listLocatedStatus(globStat.getPath(),
-              inputFilter); itor.hasNext();) {
-            result.add(itor.next());
-          }          
+          matchedPaths.add(globStat.getPath());
         }
       }
     }
@@ -281,6 +277,11 @@ public abstract class FileInputFormat<K, V> extends InputFormat<K, V> {
     if (!errors.isEmpty()) {
       throw new InvalidInputException(errors);
     }
+    // list all the matches together so that the directories are listed
+    // in batches
+    List<LocatedFileStatus> result =
+      LocatedFileStatusFetcher.listLocatedStatus(job.getConfiguration(),
+          matchedPaths, inputFilter, false);
     LOG.info("Total input paths to process : " + result.size()); 
     return result;
   }
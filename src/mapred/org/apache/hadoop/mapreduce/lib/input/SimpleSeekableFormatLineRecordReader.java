@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.mapreduce.lib.input;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.simpleseekableformat.SimpleSeekableFormatInputStream;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.util.LineReader;
+
+/**
+ * Reads the lines of a split of a text file written with
+ * {@link org.apache.hadoop.io.simpleseekableformat.SimpleSeekableFormatCodec}.
+ * Keys are uncompressed offsets in the file, values are lines.
+ *
+ * A split reads every line that starts within its data segments, including
+ * a line that starts right at the end of them.  Every split but the first
+ * therefore skips its first line, which the previous split has read.
+ */
+public class SimpleSeekableFormatLineRecordReader
+    extends RecordReader<LongWritable, Text> {
+  private static final Log LOG =
+    LogFactory.getLog(SimpleSeekableFormatLineRecordReader.class);
+
+  private FSDataInputStream fileIn;
+  private SimpleSeekableFormatInputStream in;
+  private LineReader lineIn;
+  private long splitStart;
+  private long splitLength;
+  private int maxLineLength;
+  private boolean empty;
+  private long pos;
+  private LongWritable key = null;
+  private Text value = null;
+
+  public void initialize(InputSplit genericSplit,
+                         TaskAttemptContext context) throws IOException {
+    FileSplit split = (FileSplit) genericSplit;
+    Configuration job = context.getConfiguration();
+    this.maxLineLength = job.getInt("mapred.linerecordreader.maxlength",
+                                    Integer.MAX_VALUE);
+    splitStart = split.getStart();
+    splitLength = split.getLength();
+    final Path file = split.getPath();
+    FileSystem fs = file.getFileSystem(job);
+    fileIn = fs.open(file);
+    in = new SimpleSeekableFormatInputStream(fileIn, splitStart,
+                                             splitStart + splitLength);
+    lineIn = new LineReader(in, job);
+    pos = in.getStartOffset();
+    empty = (in.getRangeEndOffset() == pos);
+    if (splitStart != 0 && !empty) {
+      // skip first line and re-establish "pos".
+      pos += lineIn.readLine(new Text(), 0, Integer.MAX_VALUE);
+    }
+  }
+
+  public boolean nextKeyValue() throws IOException {
+    if (key == null) {
+      key = new LongWritable();
+    }
+    if (value == null) {
+      value = new Text();
+    }
+    while (!empty && pos <= in.getRangeEndOffset()) {
+      key.set(pos);
+
+      int newSize = lineIn.readLine(value, maxLineLength, Integer.MAX_VALUE);
+      if (newSize == 0) {
+        break;
+      }
+      pos += newSize;
+      if (newSize < maxLineLength) {
+        return true;
+      }
+
+      // line too long. try again
+      LOG.info("Skipped line of size " + newSize + " at pos " +
+               (pos - newSize));
+    }
+    key = null;
+    value = null;
+    return false;
+  }
+
+  @Override
+  public LongWritable getCurrentKey() {
+    return key;
+  }
+
+  @Override
+  public Text getCurrentValue() {
+    return value;
+  }
+
+  /**
+   * Get the progress within the split, based on the bytes read from the file
+   */
+  public float getProgress() throws IOException {
+    if (splitLength == 0) {
+      return 0.0f;
+    }
+    return Math.min(1.0f,
+        Math.max(0.0f, (fileIn.getPos() - splitStart) / (float)splitLength));
+  }
+
+  public synchronized void close() throws IOException {
+    if (lineIn != null) {
+      lineIn.close();
+    }
+  }
+}
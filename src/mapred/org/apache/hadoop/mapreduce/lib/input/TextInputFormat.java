@@ -23,6 +23,7 @@ import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.simpleseekableformat.SimpleSeekableFormatCodec;
 import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.JobContext;
@@ -31,13 +32,23 @@ import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 /** An {@link InputFormat} for plain text files.  Files are broken into lines.
  * Either linefeed or carriage-return are used to signal end of line.  Keys are
- * the position in the file, and values are the line of text.. */
+ * the position in the file, and values are the line of text.. 
+ * Compressed files are not split, except for those written with
+ * {@link SimpleSeekableFormatCodec}, which are split at data segments. */
 public class TextInputFormat extends FileInputFormat<LongWritable, Text> {
 
   @Override
   public RecordReader<LongWritable, Text> 
     createRecordReader(InputSplit split,
                        TaskAttemptContext context) {
+    if (split instanceof FileSplit) {
+      Path file = ((FileSplit)split).getPath();
+      CompressionCodec codec = 
+        new CompressionCodecFactory(context.getConfiguration()).getCodec(file);
+      if (codec instanceof SimpleSeekableFormatCodec) {
+        return new SimpleSeekableFormatLineRecordReader();
+      }
+    }
     return new LineRecordReader();
   }
 
@@ -45,7 +56,7 @@ public class TextInputFormat extends FileInputFormat<LongWritable, Text> {
   protected boolean isSplitable(JobContext context, Path file) {
     CompressionCodec codec = 
       new CompressionCodecFactory(context.getConfiguration()).getCodec(file);
-    return codec == null;
+    return codec == null || codec instanceof SimpleSeekableFormatCodec;
   }
 
 }
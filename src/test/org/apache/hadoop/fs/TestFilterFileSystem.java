@@ -88,6 +88,8 @@ public class TestFilterFileSystem extends TestCase {
         PathFilter filter) { return null; }
     public FileStatus[] listLocatedStatus(Path[] files) { return null; }
     public FileStatus[] listLocatedStatus(Path[] files, PathFilter filter) { return null; }
+    public RemoteIterator<LocatedFileStatus> listLocatedStatus(Path[] files,
+        PathFilter filter, boolean recursive) { return null; }
     public FileStatus[] globStatus(Path pathPattern) { return null; }
     public FileStatus[] globStatus(Path pathPattern, PathFilter filter) {
       return null;
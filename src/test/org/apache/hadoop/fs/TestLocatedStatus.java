@@ -147,4 +147,83 @@ public class TestLocatedStatus {
     
     fs.delete(TEST_DIR, true);
   }
-}
\ No newline at end of file
+
+  /** Test listing several paths in one call */
+  @Test
+  public void testMultiplePaths() throws IOException {
+    // directories with more entries than a listing call returns
+    Set<Path> allFiles = new TreeSet<Path>();
+    Set<Path> topEntries = new TreeSet<Path>();
+    Path[] dirs = new Path[5];
+    for (int i = 0; i < dirs.length; i++) {
+      dirs[i] = new Path(TEST_DIR, "dir" + i);
+      for (int j = 0; j < 3; j++) {
+        Path file = new Path(dirs[i], "file" + j);
+        writeFile(fs, file, FILE_LEN);
+        allFiles.add(fs.makeQualified(file));
+        topEntries.add(fs.makeQualified(file));
+      }
+      Path subDir = new Path(dirs[i], "sub");
+      Path subFile = new Path(subDir, "file");
+      writeFile(fs, subFile, FILE_LEN);
+      allFiles.add(fs.makeQualified(subFile));
+      topEntries.add(fs.makeQualified(subDir));
+    }
+    // a file is listed itself
+    Path[] paths = new Path[dirs.length + 1];
+    System.arraycopy(dirs, 0, paths, 0, dirs.length);
+    paths[dirs.length] = FILE1;
+    writeFile(fs, FILE1, FILE_LEN);
+    allFiles.add(fs.makeQualified(FILE1));
+    topEntries.add(fs.makeQualified(FILE1));
+
+    PathFilter acceptAll = new PathFilter() {
+      public boolean accept(Path file) {
+        return true;
+      }
+    };
+
+    // the entries of a path come after those of the paths before it
+    int lastDir = -1;
+    for (RemoteIterator<LocatedFileStatus> itor =
+           fs.listLocatedStatus(paths, acceptAll, false); itor.hasNext(); ) {
+      LocatedFileStatus stat = itor.next();
+      assertTrue(topEntries.remove(stat.getPath()));
+      if (!stat.isDir()) {
+        assertEquals(1, stat.getBlockLocations().length);
+      }
+      String parent = stat.getPath().getParent().getName();
+      int dir = parent.startsWith("dir") ?
+          Integer.parseInt(parent.substring(3)) : dirs.length;
+      assertTrue(dir >= lastDir);
+      lastDir = dir;
+    }
+    assertTrue(topEntries.isEmpty());
+
+    for (RemoteIterator<LocatedFileStatus> itor =
+           fs.listLocatedStatus(paths, acceptAll, true); itor.hasNext(); ) {
+      LocatedFileStatus stat = itor.next();
+      assertFalse(stat.isDir());
+      assertTrue(allFiles.remove(stat.getPath()));
+      assertEquals(FILE_LEN, stat.getLen());
+      assertEquals(1, stat.getBlockLocations().length);
+    }
+    assertTrue(allFiles.isEmpty());
+
+    // the filter applies to the subdirectories too
+    PathFilter noSub = new PathFilter() {
+      public boolean accept(Path file) {
+        return !file.getName().equals("sub");
+      }
+    };
+    int count = 0;
+    for (RemoteIterator<LocatedFileStatus> itor =
+           fs.listLocatedStatus(dirs, noSub, true); itor.hasNext(); ) {
+      assertFalse(itor.next().getPath().getParent().getName().equals("sub"));
+      count++;
+    }
+    assertEquals(3 * dirs.length, count);
+
+    fs.delete(TEST_DIR, true);
+  }
+}
@@ -199,6 +199,10 @@ public class TestDFSClientRetries extends TestCase {
     public LocatedDirectoryListing getLocatedPartialListing(String src,
         byte[] startAfter) throws IOException {
       return null; }
+
+    public LocatedDirectoryListing[] getLocatedPartialListings(String[] srcs,
+        byte[][] startAfter) throws IOException {
+      return null; }
     
     public void renewLease(String clientName) throws IOException {}
 
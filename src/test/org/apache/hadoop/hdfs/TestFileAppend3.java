@@ -116,6 +116,37 @@ public class TestFileAppend3 extends junit.framework.TestCase {
     AppendTestUtil.check(fs, p, len1 + len2);
   }
 
+  /** Append from a client that writes another checksum type. */
+  public void testAppendOtherChecksumType() throws Exception {
+    final Path p = new Path("/checksumType/foo");
+    System.out.println("p=" + p);
+
+    //a. Create a CRC32 file with half a block and a partial chunk.
+    final int len1 = (int)BLOCK_SIZE/2 + 100;
+    {
+      FSDataOutputStream out = fs.create(p, false, buffersize, REPLICATION, BLOCK_SIZE);
+      AppendTestUtil.write(out, 0, len1);
+      out.close();
+    }
+
+    //   Append from a CRC32C client; the appended chunks keep CRC32.
+    Configuration conf2 = new Configuration(conf);
+    conf2.set("dfs.checksum.type", "CRC32C");
+    DistributedFileSystem fs2 = new DistributedFileSystem();
+    fs2.initialize(fs.getUri(), conf2);
+    final int len2 = (int)BLOCK_SIZE/4;
+    try {
+      FSDataOutputStream out = fs2.append(p);
+      AppendTestUtil.write(out, len1, len2);
+      out.close();
+    } finally {
+      fs2.close();
+    }
+
+    //b. Reopen file and read all the data.
+    AppendTestUtil.check(fs, p, len1 + len2);
+  }
+
   /** TC5: Only one simultaneous append. */
   public void testTC5() throws Exception {
     final Path p = new Path("/TC5/foo");
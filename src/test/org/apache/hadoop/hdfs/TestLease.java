@@ -63,4 +63,36 @@ public class TestLease extends junit.framework.TestCase {
       if (cluster != null) {cluster.shutdown();}
     }
   }
+
+  public void testLeaseAfterRenameAndDelete() throws Exception {
+    Configuration conf = new Configuration();
+    MiniDFSCluster cluster = new MiniDFSCluster(conf, 2, true, null);
+    try {
+      FileSystem fs = cluster.getFileSystem();
+      Path src = new Path(dir, "src");
+      Path dst = new Path(dir, "dst");
+      assertTrue(fs.mkdirs(src));
+
+      Path a = new Path(src, "a");
+      DataOutputStream a_out = fs.create(a);
+      a_out.writeBytes("something");
+      assertTrue(hasLease(cluster, a));
+
+      // the lease follows the file when its parent is renamed.
+      // The stream is not used any more: the client still writes to the
+      // old path, which the namenode rejects.
+      assertTrue(fs.rename(src, dst));
+      Path renamed = new Path(dst, "a");
+      assertTrue(!hasLease(cluster, a));
+      assertTrue(hasLease(cluster, renamed));
+
+      // deleting the parent of an open file removes the lease
+      assertTrue(fs.delete(dst, true));
+      assertTrue(!hasLease(cluster, renamed));
+      assertEquals(0,
+          cluster.getNameNode().namesystem.leaseManager.countLease());
+    } finally {
+      if (cluster != null) {cluster.shutdown();}
+    }
+  }
 }
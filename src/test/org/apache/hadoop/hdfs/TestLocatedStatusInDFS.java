@@ -17,14 +17,22 @@
  */
 package org.apache.hadoop.hdfs;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
 import org.apache.commons.logging.impl.Log4JLogger;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.fs.TestLocatedStatus;
 import org.apache.log4j.Level;
 
+import static org.junit.Assert.*;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
+import org.junit.Test;
 
 /**
  * This class tests the FileStatus API.
@@ -54,4 +62,27 @@ public class TestLocatedStatusInDFS extends TestLocatedStatus {
   protected static Path getTestDir() {
     return new Path("/main_");
   }
+
+  /** Test that a missing path fails a batched listing */
+  @Test
+  public void testMissingPath() throws IOException {
+    Path dir = new Path(TEST_DIR, "dir");
+    fs.mkdirs(dir);
+    PathFilter acceptAll = new PathFilter() {
+      public boolean accept(Path file) {
+        return true;
+      }
+    };
+    try {
+      RemoteIterator<LocatedFileStatus> itor = fs.listLocatedStatus(
+          new Path[] {dir, new Path(TEST_DIR, "missing")}, acceptAll, false);
+      while (itor.hasNext()) {
+        itor.next();
+      }
+      fail("Listing a missing path should fail");
+    } catch (FileNotFoundException e) {
+      // expected
+    }
+    fs.delete(TEST_DIR, true);
+  }
 }
@@ -17,17 +17,22 @@
  */
 package org.apache.hadoop.hdfs;
 
+import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
+import java.io.PrintStream;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.protocol.FSConstants;
 import org.apache.hadoop.hdfs.protocol.QuotaExceededException;
 import org.apache.hadoop.hdfs.tools.DFSAdmin;
+import org.apache.hadoop.hdfs.tools.DFSck;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.security.UnixUserGroupInformation;
+import org.apache.hadoop.util.ToolRunner;
 import org.apache.hadoop.hdfs.protocol.NSQuotaExceededException;
 import org.apache.hadoop.hdfs.protocol.DSQuotaExceededException;
 
@@ -620,4 +625,118 @@ public class TestQuota extends TestCase {
       cluster.shutdown();
     }
   }
+
+  private static void checkContentSummary(DistributedFileSystem dfs, Path dir,
+      long dirs, long files, long length, long space) throws Exception {
+    ContentSummary c = dfs.getContentSummary(dir);
+    assertEquals(dirs, c.getDirectoryCount());
+    assertEquals(files, c.getFileCount());
+    assertEquals(length, c.getLength());
+    assertEquals(space, c.getSpaceConsumed());
+  }
+
+  /**
+   * Test that a directory configured to cache its content summary reports
+   * the counts of its subtree through creates, renames, appends, deletes
+   * and a restart, and that fsck -checkcounts finds it consistent.
+   */
+  public void testCachedContentSummary() throws Exception {
+    final Configuration conf = new Configuration();
+    conf.set("dfs.block.size", "512");
+    conf.setBoolean("dfs.support.append", true);
+    conf.set("dfs.namenode.summary.cached.dirs", "/cached");
+    MiniDFSCluster cluster = new MiniDFSCluster(conf, 2, true, null);
+    try {
+      DistributedFileSystem dfs =
+        (DistributedFileSystem)cluster.getFileSystem();
+      final int fileLen = 1024;
+      final short replication = 2;
+      final Path cached = new Path("/cached");
+      final Path dirA = new Path(cached, "a");
+      final Path other = new Path("/other");
+      assertTrue(dfs.mkdirs(dirA));
+      assertTrue(dfs.mkdirs(other));
+      DFSTestUtil.createFile(dfs, new Path(dirA, "f1"), fileLen,
+                             replication, 0);
+      DFSTestUtil.createFile(dfs, new Path(other, "f2"), fileLen,
+                             replication, 0);
+      checkContentSummary(dfs, cached, 2, 1, fileLen, fileLen * replication);
+
+      // move a file in
+      assertTrue(dfs.rename(new Path(other, "f2"), new Path(dirA, "f2")));
+      checkContentSummary(dfs, cached, 2, 2, 2 * fileLen,
+                          2 * fileLen * replication);
+
+      // a file being written counts with the length the namenode knows of
+      Path f3 = new Path(cached, "f3");
+      FSDataOutputStream out = dfs.create(f3, replication);
+      out.write(new byte[fileLen]);
+      out.sync();
+      ContentSummary c = dfs.getContentSummary(cached);
+      assertEquals(3, c.getFileCount());
+      assertEquals(dfs.getContentSummary(dirA).getLength() +
+                   dfs.getContentSummary(f3).getLength(), c.getLength());
+      out.close();
+      checkContentSummary(dfs, cached, 2, 3, 3 * fileLen,
+                          3 * fileLen * replication);
+
+      // append to a file
+      out = dfs.append(new Path(dirA, "f1"));
+      out.write(new byte[fileLen]);
+      out.close();
+      checkContentSummary(dfs, cached, 2, 3, 4 * fileLen,
+                          4 * fileLen * replication);
+
+      // move a directory out, delete a file
+      assertTrue(dfs.rename(dirA, new Path(other, "a")));
+      checkContentSummary(dfs, cached, 1, 1, fileLen, fileLen * replication);
+      assertTrue(dfs.delete(f3, false));
+      checkContentSummary(dfs, cached, 1, 0, 0, 0);
+      assertTrue(dfs.rename(new Path(other, "a"), dirA));
+      checkContentSummary(dfs, cached, 2, 2, 3 * fileLen,
+                          3 * fileLen * replication);
+
+      // the counts are rebuilt on restart
+      cluster.shutdown();
+      cluster = new MiniDFSCluster(conf, 2, false, null);
+      dfs = (DistributedFileSystem)cluster.getFileSystem();
+      checkContentSummary(dfs, cached, 2, 2, 3 * fileLen,
+                          3 * fileLen * replication);
+
+      ByteArrayOutputStream bStream = new ByteArrayOutputStream();
+      PrintStream fsckOut = new PrintStream(bStream, true);
+      assertEquals(0, ToolRunner.run(new DFSck(conf, fsckOut),
+          new String[] {"/", "-checkcounts"}));
+
+      // a configured directory that is created again keeps its counts
+      assertTrue(dfs.delete(cached, true));
+      DFSTestUtil.createFile(dfs, new Path(cached, "f4"), fileLen,
+                             replication, 0);
+      checkContentSummary(dfs, cached, 1, 1, fileLen, fileLen * replication);
+      assertEquals(0, ToolRunner.run(new DFSck(conf, fsckOut),
+          new String[] {"/", "-checkcounts"}));
+
+      // a directory moved onto the configured path keeps its counts
+      assertTrue(dfs.delete(cached, true));
+      Path staging = new Path("/staging");
+      DFSTestUtil.createFile(dfs, new Path(staging, "f5"), fileLen,
+                             replication, 0);
+      assertTrue(dfs.rename(staging, cached));
+      checkContentSummary(dfs, cached, 1, 1, fileLen, fileLen * replication);
+
+      // the length of a file being written follows its blocks
+      out = dfs.create(new Path(dirA, "f6"), replication);
+      out.write(new byte[fileLen]);
+      out.sync();
+      assertEquals(fileLen + dfs.getContentSummary(dirA).getLength(),
+                   dfs.getContentSummary(cached).getLength());
+      out.close();
+      checkContentSummary(dfs, cached, 2, 2, 2 * fileLen,
+                          2 * fileLen * replication);
+      assertEquals(0, ToolRunner.run(new DFSck(conf, fsckOut),
+          new String[] {"/", "-checkcounts"}));
+    } finally {
+      cluster.shutdown();
+    }
+  }
 }
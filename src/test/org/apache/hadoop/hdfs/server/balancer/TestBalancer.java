@@ -142,6 +142,12 @@ public class TestBalancer extends TestCase {
    */
   private void testUnevenDistribution(
       long distribution[], long capacities[], String[] racks) throws Exception {
+    testUnevenDistribution(distribution, capacities, racks, new String[0]);
+  }
+
+  private void testUnevenDistribution(long distribution[],
+      long capacities[], String[] racks, String[] balancerArgs)
+      throws Exception {
     int numDatanodes = distribution.length;
     if (capacities.length != numDatanodes || racks.length != numDatanodes) {
       throw new IllegalArgumentException("Array length is not the same");
@@ -173,7 +179,7 @@ public class TestBalancer extends TestCase {
     for(long capacity:capacities) {
       totalCapacity += capacity;
     }
-    runBalancer(totalUsedSpace, totalCapacity);
+    runBalancer(totalUsedSpace, totalCapacity, balancerArgs);
   }
 
   /* wait for one heartbeat */
@@ -227,11 +233,16 @@ public class TestBalancer extends TestCase {
   /* Start balancer and check if the cluster is balanced after the run */
   private void runBalancer( long totalUsedSpace, long totalCapacity )
   throws Exception {
+    runBalancer(totalUsedSpace, totalCapacity, new String[0]);
+  }
+
+  private void runBalancer(long totalUsedSpace, long totalCapacity,
+      String[] balancerArgs) throws Exception {
     waitForHeartBeat(totalUsedSpace, totalCapacity);
 
     // start rebalancing
     balancer = new Balancer(CONF);
-    balancer.run(new String[0]);
+    balancer.run(balancerArgs);
 
     waitForHeartBeat(totalUsedSpace, totalCapacity);
     boolean balanced;
@@ -275,6 +286,21 @@ public class TestBalancer extends TestCase {
         new String[] {RACK0, RACK1});
   }
 
+  /** Test a cluster with more sources than dispatcher threads:
+   * two over utilized nodes share the single dispatcher thread */
+  public void testBalancer2() throws Exception {
+    try {
+      testUnevenDistribution(
+          new long[] {40*CAPACITY/100, 38*CAPACITY/100,
+                      6*CAPACITY/100, 6*CAPACITY/100},
+          new long[] {CAPACITY, CAPACITY, CAPACITY, CAPACITY},
+          new String[] {RACK0, RACK0, RACK1, RACK1},
+          new String[] {"-par_moves", "1", "-node_par_moves", "1"});
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
   /**
    * @param args
    */
@@ -282,5 +308,6 @@ public class TestBalancer extends TestCase {
     TestBalancer balancerTest = new TestBalancer();
     balancerTest.testBalancer0();
     balancerTest.testBalancer1();
+    balancerTest.testBalancer2();
   }
 }
@@ -659,4 +659,17 @@ public class SimulatedFSDataset  implements FSConstants, FSDatasetInterface, Con
   public boolean hasEnoughResource() {
     return true;
   }
+
+  /**
+   * All the blocks are on one simulated volume.
+   */
+  public synchronized int getVolumeQueueDepth() {
+    int writers = 0;
+    for (BInfo b : blockMap.values()) {
+      if (!b.isFinalized()) {
+        writers++;
+      }
+    }
+    return writers;
+  }
 }
@@ -30,7 +30,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.logging.impl.Log4JLogger;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
@@ -672,6 +674,58 @@ public class NNThroughputBenchmark {
     }
   }
 
+  /**
+   * List file statistics.
+   * 
+   * Measure how many partial listing calls the name-node can handle per
+   * second. Each call lists the page of the parent directory that follows
+   * one of the files. Use a large -filesPerDir to measure large directories.
+   */
+  class ListFileStats extends OpenFileStats {
+    // Operation types
+    static final String OP_LIST_NAME = "list";
+    static final String OP_LIST_USAGE = 
+      "-op " + OP_LIST_NAME + OP_USAGE_ARGS;
+
+    protected String[][] parentNames;
+    protected byte[][][] startAfter;
+
+    ListFileStats(List<String> args) {
+      super(args);
+    }
+
+    String getOpName() {
+      return OP_LIST_NAME;
+    }
+
+    void generateInputs(int[] opsPerThread) throws IOException {
+      super.generateInputs(opsPerThread);
+      parentNames = new String[fileNames.length][];
+      startAfter = new byte[fileNames.length][][];
+      for(int idx=0; idx < numThreads; idx++) {
+        int nrNames = fileNames[idx].length;
+        parentNames[idx] = new String[nrNames];
+        startAfter[idx] = new byte[nrNames][];
+        for(int jdx=0; jdx < nrNames; jdx++) {
+          String fileName = fileNames[idx][jdx];
+          int slash = fileName.lastIndexOf(Path.SEPARATOR_CHAR);
+          parentNames[idx][jdx] = fileName.substring(0, slash);
+          startAfter[idx][jdx] = 
+            DFSUtil.string2Bytes(fileName.substring(slash + 1));
+        }
+      }
+    }
+
+    long executeOp(int daemonId, int inputIdx, String ignore) 
+    throws IOException {
+      long start = System.currentTimeMillis();
+      nameNode.getPartialListing(parentNames[daemonId][inputIdx],
+                                 startAfter[daemonId][inputIdx]);
+      long end = System.currentTimeMillis();
+      return end-start;
+    }
+  }
+
   /**
    * Minimal data-node simulator.
    */
@@ -725,7 +779,8 @@ public class NNThroughputBenchmark {
     void sendHeartbeat() throws IOException {
       // register datanode
       DatanodeCommand[] cmds = nameNode.sendHeartbeat(
-          dnRegistration, DF_CAPACITY, DF_USED, DF_CAPACITY - DF_USED, 0, 0);
+          dnRegistration, DF_CAPACITY, DF_USED, DF_CAPACITY - DF_USED,
+          0, 0, 0, 0, 0);
       if(cmds != null) {
         for (DatanodeCommand cmd : cmds ) {
           LOG.debug("sendHeartbeat Name-node reply: " + cmd.getAction());
@@ -759,7 +814,8 @@ public class NNThroughputBenchmark {
     int replicateBlocks() throws IOException {
       // register datanode
       DatanodeCommand[] cmds = nameNode.sendHeartbeat(
-          dnRegistration, DF_CAPACITY, DF_USED, DF_CAPACITY - DF_USED, 0, 0);
+          dnRegistration, DF_CAPACITY, DF_USED, DF_CAPACITY - DF_USED,
+          0, 0, 0, 0, 0);
       if (cmds != null) {
         for (DatanodeCommand cmd : cmds) {
           if (cmd.getAction() == DatanodeProtocol.DNA_TRANSFER) {
@@ -941,6 +997,130 @@ public class NNThroughputBenchmark {
     }
   }   // end BlockReportStats
 
+  /**
+   * Block allocation statistics.
+   * 
+   * Measures how many addBlock calls the name-node can handle per second,
+   * which is dominated by choosing the targets of the new block.
+   * Each thread writes its own files, one block per operation.
+   * The targets report each block as received before the next one
+   * is allocated, but only the addBlock call itself is timed.
+   */
+  class AddBlockStats extends OperationStatsBase {
+    static final String OP_ADD_BLOCK_NAME = "addBlock";
+    static final String OP_ADD_BLOCK_USAGE = 
+      "-op addBlock [-threads T] [-datanodes D] [-blocks N] " +
+      "[-blocksPerFile F]";
+
+    private int numDatanodes;
+    private int blocksPerFile;
+    private FileNameGenerator nameGenerator;
+    private String[][] fileNames;
+    private TinyDatanode[] datanodes; // array of data-nodes sorted by name
+
+    AddBlockStats(List<String> args) {
+      super();
+      this.numDatanodes = 10;
+      this.blocksPerFile = 10;
+      // set heartbeat interval to 3 min, so that expiration were 40 min
+      config.setLong("dfs.heartbeat.interval", 3 * 60);
+      parseArguments(args);
+      // adjust replication to the number of data-nodes
+      this.replication = (short)Math.min((int)replication, numDatanodes);
+    }
+
+    String getOpName() {
+      return OP_ADD_BLOCK_NAME;
+    }
+
+    void parseArguments(List<String> args) {
+      boolean ignoreUnrelatedOptions = verifyOpArgument(args);
+      for (int i = 2; i < args.size(); i++) {       // parse command line
+        if(args.get(i).equals("-blocks")) {
+          if(i+1 == args.size())  printUsage();
+          numOpsRequired = Integer.parseInt(args.get(++i));
+        } else if(args.get(i).equals("-threads")) {
+          if(i+1 == args.size())  printUsage();
+          numThreads = Integer.parseInt(args.get(++i));
+        } else if(args.get(i).equals("-datanodes")) {
+          if(i+1 == args.size())  printUsage();
+          numDatanodes = Integer.parseInt(args.get(++i));
+        } else if(args.get(i).equals("-blocksPerFile")) {
+          if(i+1 == args.size())  printUsage();
+          blocksPerFile = Integer.parseInt(args.get(++i));
+        } else if(!ignoreUnrelatedOptions)
+          printUsage();
+      }
+      nameGenerator = new FileNameGenerator(getBaseDir(), 100);
+    }
+
+    void generateInputs(int[] opsPerThread) throws IOException {
+      assert opsPerThread.length == numThreads : "Error opsPerThread.length"; 
+      // create data-nodes
+      datanodes = new TinyDatanode[numDatanodes];
+      String prevDNName = "";
+      for(int idx=0; idx < numDatanodes; idx++) {
+        datanodes[idx] = new TinyDatanode(idx, 0);
+        datanodes[idx].register();
+        assert datanodes[idx].getName().compareTo(prevDNName) > 0
+          : "Data-nodes must be sorted lexicographically.";
+        datanodes[idx].sendHeartbeat();
+        prevDNName = datanodes[idx].getName();
+      }
+      nameNode.setSafeMode(FSConstants.SafeModeAction.SAFEMODE_LEAVE);
+      LOG.info("Generate " + numOpsRequired + " intputs for " + getOpName());
+      fileNames = new String[numThreads][];
+      for(int idx=0; idx < numThreads; idx++) {
+        int nrFiles = (opsPerThread[idx] + blocksPerFile - 1) / blocksPerFile;
+        fileNames[idx] = new String[nrFiles];
+        for(int jdx=0; jdx < nrFiles; jdx++)
+          fileNames[idx][jdx] = nameGenerator.
+                                  getNextFileName("ThroughputBench");
+      }
+    }
+
+    /**
+     * returns client name
+     */
+    String getExecutionArgument(int daemonId) {
+      return getClientName(daemonId);
+    }
+
+    /**
+     * Add the next block to the current file of the thread.
+     * The file is created before its first block and closed after its last.
+     */
+    long executeOp(int daemonId, int inputIdx, String clientName) 
+    throws IOException {
+      String fileName = fileNames[daemonId][inputIdx / blocksPerFile];
+      if(inputIdx % blocksPerFile == 0)
+        nameNode.create(fileName, FsPermission.getDefault(),
+                        clientName, true, replication, BLOCK_SIZE);
+      long start = System.currentTimeMillis();
+      LocatedBlock loc = nameNode.addBlock(fileName, clientName);
+      long end = System.currentTimeMillis();
+      for(DatanodeInfo dnInfo : loc.getLocations()) {
+        int dnIdx = Arrays.binarySearch(datanodes, dnInfo.getName());
+        nameNode.blockReceived(
+            datanodes[dnIdx].dnRegistration, 
+            new Block[] {loc.getBlock()},
+            new String[] {""});
+      }
+      if(inputIdx % blocksPerFile == blocksPerFile - 1)
+        while(!nameNode.complete(fileName, clientName));
+      return end-start;
+    }
+
+    void printResults() {
+      LOG.info("--- " + getOpName() + " inputs ---");
+      LOG.info("nrBlocks = " + numOpsRequired);
+      LOG.info("nrThreads = " + numThreads);
+      LOG.info("nrDatanodes = " + numDatanodes);
+      LOG.info("blocksPerFile = " + blocksPerFile);
+      printStats();
+    }
+  }   // end AddBlockStats
+
   /**
    * Measures how fast replication monitor can compute data-node work.
    * 
@@ -1103,7 +1283,9 @@ public class NNThroughputBenchmark {
         + " | \n\t" + OpenFileStats.OP_OPEN_USAGE
         + " | \n\t" + DeleteFileStats.OP_DELETE_USAGE
         + " | \n\t" + RenameFileStats.OP_RENAME_USAGE
+        + " | \n\t" + ListFileStats.OP_LIST_USAGE
         + " | \n\t" + BlockReportStats.OP_BLOCK_REPORT_USAGE
+        + " | \n\t" + AddBlockStats.OP_ADD_BLOCK_USAGE
         + " | \n\t" + ReplicationStats.OP_REPLICATION_USAGE
         + " | \n\t" + CleanAllStats.OP_CLEAN_USAGE
     );
@@ -1142,10 +1324,18 @@ public class NNThroughputBenchmark {
         opStat = bench.new RenameFileStats(args);
         ops.add(opStat);
       }
+      if(runAll || ListFileStats.OP_LIST_NAME.equals(type)) {
+        opStat = bench.new ListFileStats(args);
+        ops.add(opStat);
+      }
       if(runAll || BlockReportStats.OP_BLOCK_REPORT_NAME.equals(type)) {
         opStat = bench.new BlockReportStats(args);
         ops.add(opStat);
       }
+      if(runAll || AddBlockStats.OP_ADD_BLOCK_NAME.equals(type)) {
+        opStat = bench.new AddBlockStats(args);
+        ops.add(opStat);
+      }
       if(runAll || ReplicationStats.OP_REPLICATION_NAME.equals(type)) {
         opStat = bench.new ReplicationStats(args);
         ops.add(opStat);
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.DFSUtil;
+
+public class TestChunkedINodeList extends TestCase {
+  private static final PermissionStatus PERM = new PermissionStatus(
+      "user", "group", FsPermission.getDefault());
+
+  private static INode newINode(String name) {
+    return new INodeDirectory(name, PERM);
+  }
+
+  private static String name(int i) {
+    return String.format("file%08d", i);
+  }
+
+  /**
+   * Compare the list with the expected contents through get, iterator
+   * and binarySearch.
+   */
+  private static void checkList(List<INode> expected, ChunkedINodeList list) {
+    assertEquals(expected.size(), list.size());
+    Iterator<INode> it = list.iterator();
+    for (int i = 0; i < expected.size(); i++) {
+      assertSame(expected.get(i), list.get(i));
+      assertSame(expected.get(i), it.next());
+      assertEquals(i, list.binarySearch(expected.get(i).name));
+    }
+    assertFalse(it.hasNext());
+  }
+
+  /**
+   * Insert and delete at random positions so that chunks get split
+   * and merged, and check the list against an ArrayList.
+   */
+  public void testRandomUpdates() {
+    Random r = new Random(0xc0ffee);
+    List<INode> expected = new ArrayList<INode>();
+    ChunkedINodeList list = new ChunkedINodeList();
+    TreeSet<Integer> ids = new TreeSet<Integer>();
+
+    for (int round = 0; round < 20000; round++) {
+      boolean insert = expected.size() < 4 * ChunkedINodeList.MAX_CHUNK_SIZE
+          ? r.nextInt(4) != 0 : r.nextInt(4) == 0;
+      if (insert || expected.isEmpty()) {
+        int id = r.nextInt(1000000);
+        if (!ids.add(id)) {
+          continue;
+        }
+        INode node = newINode(name(id));
+        int pos = list.binarySearch(node.name);
+        assertTrue(pos < 0);
+        expected.add(-pos - 1, node);
+        list.add(-pos - 1, node);
+      } else {
+        int pos = r.nextInt(expected.size());
+        ids.remove(Integer.valueOf(
+            expected.get(pos).getLocalName().substring(4)));
+        assertSame(expected.remove(pos), list.remove(pos));
+      }
+      if (round % 1000 == 0) {
+        checkList(expected, list);
+      }
+    }
+    checkList(expected, list);
+    assertTrue(list.getNumChunks() > 1);
+
+    // a name larger than all the others goes to the end
+    assertEquals(-expected.size() - 1,
+        list.binarySearch(DFSUtil.string2Bytes("zzz")));
+    assertEquals(-1, list.binarySearch(DFSUtil.string2Bytes("a")));
+
+    while (!expected.isEmpty()) {
+      assertSame(expected.remove(0), list.remove(0));
+    }
+    checkList(expected, list);
+    assertEquals(1, list.getNumChunks());
+  }
+
+  /**
+   * Appending in order fills the chunks instead of leaving them half full.
+   */
+  public void testAppend() {
+    List<INode> expected = new ArrayList<INode>();
+    ChunkedINodeList list = new ChunkedINodeList();
+    int n = 10 * ChunkedINodeList.MAX_CHUNK_SIZE;
+    for (int i = 0; i < n; i++) {
+      INode node = newINode(name(i));
+      expected.add(node);
+      list.add(node);
+    }
+    checkList(expected, list);
+    assertEquals(10, list.getNumChunks());
+    checkList(expected, new ChunkedINodeList(expected));
+  }
+
+  /**
+   * A directory switches to the chunked list once it grows large and
+   * keeps its children sorted and searchable.
+   */
+  public void testLargeDirectory() {
+    INodeDirectory dir = new INodeDirectory("dir", PERM);
+    int n = 3 * INodeDirectory.LARGE_DIRECTORY_SIZE;
+    // insert in a scrambled order
+    for (int i = 0; i < n; i++) {
+      int id = (int)((i * 7919L) % n);
+      assertNotNull(dir.addChild(newINode(name(id)), false));
+    }
+    assertNull(dir.addChild(newINode(name(5)), false));
+    assertTrue(dir.getChildren() instanceof ChunkedINodeList);
+
+    List<INode> children = dir.getChildren();
+    assertEquals(n, children.size());
+    for (int i = 0; i < n; i++) {
+      assertEquals(name(i), children.get(i).getLocalName());
+      assertSame(children.get(i), dir.getChild(name(i)));
+    }
+    assertEquals(11, dir.nextChild(DFSUtil.string2Bytes(name(10))));
+
+    INode removed = dir.removeChild(newINode(name(10)));
+    assertEquals(name(10), removed.getLocalName());
+    assertNull(dir.getChild(name(10)));
+    assertNull(dir.removeChild(newINode(name(10))));
+    assertEquals(n - 1, children.size());
+    assertEquals(10, dir.nextChild(DFSUtil.string2Bytes(name(10))));
+
+    INode replacement = newINode(name(11));
+    dir.replaceChild(replacement);
+    assertSame(replacement, dir.getChild(name(11)));
+  }
+}
@@ -451,6 +451,84 @@ public class TestFsck extends TestCase {
     }
   }
 
+  private static String runNamenodeFsck(Configuration conf, NameNode nn,
+                                        String... params) throws IOException {
+    ByteArrayOutputStream bStream = new ByteArrayOutputStream();
+    final PrintWriter writer = new PrintWriter(bStream);
+    HttpServletResponse response = new HttpServletResponseStub() {
+      @Override
+      public PrintWriter getWriter() throws IOException {
+        return writer;
+      }
+    };
+    Map<String, String[]> pmap = new HashMap<String, String[]>();
+    for (int i = 0; i < params.length; i += 2) {
+      pmap.put(params[i], new String[]{params[i + 1]});
+    }
+    new NamenodeFsck(conf, nn, pmap, response).fsck();
+    return bStream.toString();
+  }
+
+  /**
+   * Check directories in small listing batches with parallel workers and
+   * continue the check after each cursor it printed.
+   */
+  public void testFsckParallelResume() throws Exception {
+    MiniDFSCluster cluster = null;
+    try {
+      Configuration conf = new Configuration();
+      conf.setInt("dfs.ls.limit", 2);
+      cluster = new MiniDFSCluster(conf, 1, true, null);
+      FileSystem fs = cluster.getFileSystem();
+      for (int i = 0; i < 5; i++) {
+        for (int j = 0; j < 5; j++) {
+          DFSTestUtil.createFile(fs, new Path("/dir" + i + "/file" + j),
+                                 1L, (short) 1, 0L);
+        }
+      }
+      NameNode nn = cluster.getNameNode();
+
+      String sequential = runNamenodeFsck(conf, nn, "path", "/",
+                                          "files", "1");
+      assertTrue(sequential.contains("Total files:\t25"));
+      assertTrue(sequential.contains(NamenodeFsck.HEALTHY_STATUS));
+
+      Configuration parallelConf = new Configuration(conf);
+      parallelConf.setInt("dfs.namenode.fsck.threads", 3);
+      String parallel = runNamenodeFsck(parallelConf, nn, "path", "/",
+                                        "files", "1", "cursor", "1");
+      assertTrue(parallel.contains("Total files:\t25"));
+      assertTrue(parallel.contains("Total dirs:\t5"));
+      assertTrue(parallel.contains(NamenodeFsck.HEALTHY_STATUS));
+      // the subtrees are written in order
+      int last = -1;
+      for (int i = 0; i < 5; i++) {
+        int pos = parallel.indexOf("/dir" + i + "/file4 ");
+        assertTrue(pos > last);
+        last = pos;
+      }
+
+      String cursor = NamenodeFsck.CURSOR_PREFIX + "HEALTHY /dir2";
+      assertTrue(parallel.contains(cursor));
+      String resumed = runNamenodeFsck(parallelConf, nn, "path", "/",
+                                       "files", "1", "startafter", "/dir2");
+      assertFalse(resumed.contains("/dir2/file"));
+      assertTrue(resumed.contains("/dir3/file0 "));
+      assertTrue(resumed.contains("Total files:\t10"));
+
+      resumed = runNamenodeFsck(conf, nn, "path", "/", "files", "1",
+                                "startafter", "/dir1/file2");
+      assertFalse(resumed.contains("/dir1/file2 "));
+      assertTrue(resumed.contains("/dir1/file3 "));
+      assertTrue(resumed.contains("Total files:\t17"));
+      assertTrue(resumed.contains(NamenodeFsck.HEALTHY_STATUS));
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
   /** check if option -list-corruptfiles of fsck command works properly */
   public void testFsckListCorruptFilesBlocks() throws Exception {
     Configuration conf = new Configuration();
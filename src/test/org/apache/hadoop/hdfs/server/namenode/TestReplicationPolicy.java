@@ -421,4 +421,75 @@ public class TestReplicationPolicy extends TestCase {
     assertTrue(cluster.isOnSameRack(dataNodes[2], targets[0]));
   }
   
+  /**
+   * This testcase tests that targets follow changes of the cluster map.
+   * The writer NODE joins the cluster, so the 1st replica should be placed
+   * on it; once it leaves, it should never be chosen.
+   * @throws Exception
+   */
+  public void testChooseTargetAfterTopologyChange() throws Exception {
+    NODE.updateHeartbeat(
+        2*FSConstants.MIN_BLOCKS_FOR_WRITE*BLOCK_SIZE, 0L,
+        2*FSConstants.MIN_BLOCKS_FOR_WRITE*BLOCK_SIZE, 0);
+    DatanodeDescriptor[] targets;
+    cluster.add(NODE);
+    try {
+      targets = replicator.chooseTarget(filename,
+                                        3, NODE, BLOCK_SIZE);
+      assertEquals(targets.length, 3);
+      assertEquals(targets[0], NODE);
+      assertFalse(cluster.isOnSameRack(targets[0], targets[1]));
+      assertTrue(cluster.isOnSameRack(targets[1], targets[2]));
+    } finally {
+      cluster.remove(NODE);
+    }
+
+    for(int i=0; i<10; i++) {
+      targets = replicator.chooseTarget(filename,
+                                        NUM_OF_DATANODES, NODE, BLOCK_SIZE);
+      assertEquals(targets.length, NUM_OF_DATANODES);
+      for(DatanodeDescriptor target : targets) {
+        assertFalse(target == NODE);
+      }
+    }
+  }
+
+  /**
+   * In this testcase, the client is outside of the cluster and the load
+   * aware mode is on. dataNodes[2] reports a deep write queue and a slow
+   * disk, so it should never be picked while another node is available,
+   * but it should still be picked when it is the only choice.
+   * @throws Exception
+   */
+  public void testChooseTargetLoadAware() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean("dfs.replication.loadAware", true);
+    BlockPlacementPolicyDefault loadAware =
+      new BlockPlacementPolicyDefault(conf, null, cluster);
+    DatanodeDescriptor hotNode = dataNodes[2];
+    hotNode.updateLoad(20, 50000L, 100L*1024*1024);
+    try {
+      List<DatanodeDescriptor> chosenNodes = new ArrayList<DatanodeDescriptor>();
+      DatanodeDescriptor[] targets;
+      for(int i=0; i<100; i++) {
+        targets = loadAware.chooseTarget(1, NODE, chosenNodes, null,
+                                         BLOCK_SIZE);
+        assertEquals(targets.length, 1);
+        assertFalse(targets[0] == hotNode);
+      }
+
+      List<Node> excludedNodes = new ArrayList<Node>();
+      for(int i=0; i<NUM_OF_DATANODES; i++) {
+        if (dataNodes[i] != hotNode) {
+          excludedNodes.add(dataNodes[i]);
+        }
+      }
+      targets = loadAware.chooseTarget(1, NODE, chosenNodes, excludedNodes,
+                                       BLOCK_SIZE);
+      assertEquals(targets.length, 1);
+      assertEquals(targets[0], hotNode);
+    } finally {
+      hotNode.updateLoad(0, 0L, 0L);
+    }
+  }
 }
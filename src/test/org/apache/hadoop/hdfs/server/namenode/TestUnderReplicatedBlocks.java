@@ -1,5 +1,10 @@
 package org.apache.hadoop.hdfs.server.namenode;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FsShell;
@@ -7,6 +12,7 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.DFSTestUtil;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.server.common.GenerationStamp;
 
 import junit.framework.TestCase;
 
@@ -41,4 +47,107 @@ public class TestUnderReplicatedBlocks extends TestCase {
     
   }
 
+  private static Block block(long id) {
+    return new Block(id, 0, GenerationStamp.FIRST_VALID_STAMP);
+  }
+
+  private static long[] ids(List<Block> blocks) {
+    long[] ids = new long[blocks.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = blocks.get(i).getBlockId();
+    }
+    return ids;
+  }
+
+  private static void assertIds(long[] expected, List<Block> blocks) {
+    assertEquals(Arrays.toString(expected),
+                 Arrays.toString(ids(blocks)));
+  }
+
+  public void testChooseResumesFromCursor() {
+    UnderReplicatedBlocks queues = new UnderReplicatedBlocks();
+    // priority 0: one replica out of three
+    for (long id = 0; id < 6; id++) {
+      assertTrue(queues.add(block(id), 1, 0, 3));
+    }
+    // priority 2: two replicas out of three
+    for (long id = 100; id < 103; id++) {
+      assertTrue(queues.add(block(id), 2, 0, 3));
+    }
+    assertFalse(queues.add(block(0), 1, 0, 3));
+    assertEquals(9, queues.size());
+
+    List<List<Block>> chosen = queues.chooseUnderReplicatedBlocks(4);
+    assertIds(new long[] {0, 1, 2, 3}, chosen.get(0));
+    assertEquals(0, chosen.get(2).size());
+
+    // removing the block at the cursor does not lose the position
+    assertTrue(queues.remove(block(4), 1, 0, 3));
+    chosen = queues.chooseUnderReplicatedBlocks(3);
+    assertIds(new long[] {5}, chosen.get(0));
+    assertIds(new long[] {100, 101}, chosen.get(2));
+    long cycles = queues.getScanCycles();
+
+    // wrap around to the top of priority 0, without returning duplicates
+    queues.add(block(6), 1, 0, 3);
+    chosen = queues.chooseUnderReplicatedBlocks(100);
+    assertIds(new long[] {0, 1, 2, 3, 5, 6}, chosen.get(0));
+    assertIds(new long[] {102, 100, 101}, chosen.get(2));
+    assertEquals(cycles + 1, queues.getScanCycles());
+
+    queues.clear();
+    assertEquals(0, queues.size());
+    assertEquals(0, queues.chooseUnderReplicatedBlocks(10).get(0).size());
+  }
+
+  public void testDecommissionPriority() {
+    UnderReplicatedBlocks queues = new UnderReplicatedBlocks();
+    // two live replicas out of three
+    assertTrue(queues.add(block(0), 2, 0, 3));
+    // two live replicas and one on a decommissioning node
+    assertTrue(queues.add(block(1), 2, 1, 3));
+    // only replicas on decommissioning nodes
+    assertTrue(queues.add(block(2), 0, 2, 3));
+
+    List<List<Block>> chosen = queues.chooseUnderReplicatedBlocks(3);
+    assertIds(new long[] {2}, chosen.get(0));
+    assertIds(new long[] {1}, chosen.get(1));
+    assertIds(new long[] {0}, chosen.get(2));
+
+    // the decommissioning replica is gone from the count
+    queues.update(block(1), 2, 0, 3, 0, 0);
+    assertEquals(3, queues.size());
+    chosen = queues.chooseUnderReplicatedBlocks(3);
+    assertIds(new long[] {2}, chosen.get(0));
+    assertEquals(0, chosen.get(1).size());
+    assertIds(new long[] {0, 1}, chosen.get(2));
+    assertTrue(queues.remove(block(1), 2, 0, 3));
+    assertEquals(2, queues.size());
+  }
+
+  public void testManyBlocks() {
+    UnderReplicatedBlocks queues = new UnderReplicatedBlocks();
+    final int n = 10000;
+    for (long id = 0; id < n; id++) {
+      queues.add(block(id), 1, 0, 3);
+    }
+    for (long id = 0; id < n; id += 2) {
+      assertTrue(queues.remove(block(id), 1, 0, 3));
+    }
+    assertEquals(n / 2, queues.size());
+    for (long id = 0; id < n; id++) {
+      assertEquals(id % 2 == 1, queues.contains(block(id)));
+    }
+
+    // every block is chosen exactly once per round
+    Set<Block> seen = new HashSet<Block>();
+    for (int i = 0; i < n / 2 / 7 + 1; i++) {
+      for (Block b : queues.chooseUnderReplicatedBlocks(7).get(0)) {
+        if (seen.size() < n / 2) {
+          assertTrue(seen.add(b));
+        }
+      }
+    }
+    assertEquals(n / 2, seen.size());
+  }
 }
@@ -123,6 +123,38 @@ public class TestSequenceFile extends TestCase {
     }
   }
 
+  /** Test block compression on a pool of threads. */
+  public void testParallelBlockCompression() throws Exception {
+    Configuration parallelConf = new Configuration(conf);
+    parallelConf.setInt("io.seqfile.compress.threads", 4);
+    parallelConf.setInt("io.seqfile.compress.blocksize", 10000);
+    int count = 1024 * 10;
+    int seed = new Random().nextInt();
+    LOG.info("Seed = " + seed);
+    Path file = new Path(System.getProperty("test.build.data",".") +
+                         "/test.parallel.bc.seq");
+    FileSystem fs = FileSystem.getLocal(conf);
+    try {
+      fs.delete(file, true);
+      SequenceFile.Writer writer = 
+        SequenceFile.createWriter(fs, parallelConf, file, RandomDatum.class,
+                                  RandomDatum.class, CompressionType.BLOCK,
+                                  new DefaultCodec());
+      RandomDatum.Generator generator = new RandomDatum.Generator(seed);
+      for (int i = 0; i < count; i++) {
+        generator.next();
+        writer.append(generator.getKey(), generator.getValue());
+        if (i == count / 2) {
+          writer.sync();
+        }
+      }
+      writer.close();
+      readTest(fs, count, seed, file);
+    } finally {
+      fs.close();
+    }
+  }
+
   private static void writeTest(FileSystem fs, int count, int seed, Path file, 
                                 CompressionType compressionType, CompressionCodec codec)
     throws IOException {
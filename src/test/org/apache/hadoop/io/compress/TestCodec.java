@@ -22,6 +22,7 @@ import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Random;
 
 import junit.framework.TestCase;
@@ -41,6 +42,11 @@ import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.io.SequenceFile.CompressionType;
 import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.bzip2.BZip2DummyCompressor;
+import org.apache.hadoop.io.compress.bzip2.BZip2DummyDecompressor;
+import org.apache.hadoop.io.compress.bzip2.Bzip2Compressor;
+import org.apache.hadoop.io.compress.bzip2.Bzip2Decompressor;
+import org.apache.hadoop.io.compress.bzip2.Bzip2Factory;
 import org.apache.hadoop.io.compress.zlib.ZlibFactory;
 
 public class TestCodec extends TestCase {
@@ -149,6 +155,69 @@ public class TestCodec extends TestCase {
     assertTrue("Got mismatched ZlibCompressor", c2 != CodecPool.getCompressor(gzc));
   }
 
+  public void testNativeBzip2Interop() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean("hadoop.native.lib", true);
+    if (!Bzip2Factory.isNativeBzip2Loaded(conf)) {
+      LOG.warn("testNativeBzip2Interop skipped: native libs not loaded");
+      return;
+    }
+    BZip2Codec codec = ReflectionUtils.newInstance(BZip2Codec.class, conf);
+    byte[] data = new byte[300 * 1024];
+    Random r = new Random(seed);
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte)('a' + r.nextInt(8));
+    }
+
+    // Reuse one pooled compressor and decompressor for several streams,
+    // and check every stream against the pure-java codec both ways.
+    Compressor c = CodecPool.getCompressor(codec);
+    Decompressor d = CodecPool.getDecompressor(codec);
+    assertTrue(c instanceof Bzip2Compressor);
+    assertTrue(d instanceof Bzip2Decompressor);
+    try {
+      for (int i = 0; i < 3; i++) {
+        c.reset();
+        byte[] nativeBytes = bzip2Compress(codec, data, c);
+        byte[] javaBytes = bzip2Compress(codec, data, new BZip2DummyCompressor());
+        d.reset();
+        assertTrue(Arrays.equals(data, bzip2Decompress(codec, nativeBytes, d)));
+        d.reset();
+        assertTrue(Arrays.equals(data, bzip2Decompress(codec, javaBytes, d)));
+        assertTrue(Arrays.equals(data, bzip2Decompress(codec, nativeBytes,
+            new BZip2DummyDecompressor())));
+      }
+    } finally {
+      CodecPool.returnCompressor(c);
+      CodecPool.returnDecompressor(d);
+    }
+  }
+
+  private static byte[] bzip2Compress(CompressionCodec codec, byte[] data,
+                                      Compressor compressor)
+    throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    CompressionOutputStream cout = codec.createOutputStream(out, compressor);
+    cout.write(data, 0, data.length);
+    cout.finish();
+    return Arrays.copyOf(out.getData(), out.getLength());
+  }
+
+  private static byte[] bzip2Decompress(CompressionCodec codec, byte[] data,
+                                        Decompressor decompressor)
+    throws IOException {
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(data, 0, data.length);
+    CompressionInputStream cin = codec.createInputStream(in, decompressor);
+    DataOutputBuffer out = new DataOutputBuffer();
+    byte[] buf = new byte[4096];
+    int n;
+    while ((n = cin.read(buf, 0, buf.length)) > 0) {
+      out.write(buf, 0, n);
+    }
+    return Arrays.copyOf(out.getData(), out.getLength());
+  }
+
   public void testSequenceFileDefaultCodec() throws IOException, ClassNotFoundException, 
       InstantiationException, IllegalAccessException {
     sequenceFileCodecTest(conf, 100, "org.apache.hadoop.io.compress.DefaultCodec", 100);
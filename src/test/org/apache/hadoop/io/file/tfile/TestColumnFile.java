@@ -0,0 +1,234 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.hadoop.io.file.tfile;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.file.tfile.ColumnFile.ColumnStats;
+import org.apache.hadoop.io.file.tfile.ColumnFile.Reader;
+import org.apache.hadoop.io.file.tfile.ColumnFile.Row;
+import org.apache.hadoop.io.file.tfile.ColumnFile.Writer;
+import org.apache.hadoop.io.file.tfile.ColumnFile.Reader.Scanner;
+
+public class TestColumnFile extends TestCase {
+  private static String ROOT =
+      System.getProperty("test.build.data", "/tmp/tfile-test");
+
+  private static final String[] COLUMNS = { "id", "name", "sparse" };
+
+  private FileSystem fs;
+  private Configuration conf;
+  private Path path;
+
+  @Override
+  public void setUp() throws IOException {
+    conf = new Configuration();
+    conf.setInt("tfile.column.rowgroup.size", 16 * 1024);
+    path = new Path(ROOT, "TestColumnFile");
+    fs = path.getFileSystem(conf);
+  }
+
+  @Override
+  public void tearDown() throws IOException {
+    fs.delete(path, true);
+  }
+
+  static byte[][] makeRow(int i) {
+    return new byte[][] {
+        String.format("%08d", i).getBytes(),
+        ("name" + (i % 97)).getBytes(),
+        (i % 3 == 0) ? ("s" + i).getBytes() : null };
+  }
+
+  private void writeFile(int count, String compress) throws IOException {
+    FSDataOutputStream out = fs.create(path);
+    Writer writer = new Writer(out, COLUMNS, compress, conf);
+    for (int i = 0; i < count; i++) {
+      writer.append(makeRow(i));
+    }
+    writer.close();
+    out.close();
+  }
+
+  private Reader openReader() throws IOException {
+    FSDataInputStream in = fs.open(path);
+    return new Reader(in, fs.getFileStatus(path).getLen(), conf);
+  }
+
+  private static void assertValue(byte[] expected, Row row, int i) {
+    if (expected == null) {
+      assertTrue(row.isNull(i));
+      assertNull(row.get(i));
+    } else {
+      assertFalse(row.isNull(i));
+      BytesWritable value = row.get(i);
+      assertEquals(new String(expected),
+          new String(value.getBytes(), 0, value.getLength()));
+    }
+  }
+
+  private void checkScan(String compress) throws IOException {
+    int count = 5000;
+    writeFile(count, compress);
+    Reader reader = openReader();
+    assertEquals(Arrays.asList(COLUMNS),
+        Arrays.asList(reader.getColumnNames()));
+    assertEquals(count, reader.getRowCount());
+    assertTrue(reader.getRowGroupCount() > 1);
+
+    // all columns
+    Scanner scanner = reader.createScanner(new int[] { 0, 1, 2 });
+    Row row = new Row();
+    int i = 0;
+    while (scanner.next(row)) {
+      byte[][] expected = makeRow(i++);
+      assertEquals(3, row.size());
+      for (int c = 0; c < 3; c++) {
+        assertValue(expected[c], row, c);
+      }
+    }
+    assertEquals(count, i);
+    scanner.close();
+
+    // projected and reordered columns
+    scanner = reader.createScanner(new int[] { 2, 0 });
+    i = 0;
+    while (scanner.next(row)) {
+      byte[][] expected = makeRow(i++);
+      assertEquals(2, row.size());
+      assertValue(expected[2], row, 0);
+      assertValue(expected[0], row, 1);
+    }
+    assertEquals(count, i);
+    scanner.close();
+
+    // no columns at all still counts rows
+    scanner = reader.createScanner(new int[0]);
+    i = 0;
+    while (scanner.next(row)) {
+      i++;
+    }
+    assertEquals(count, i);
+    scanner.close();
+    reader.close();
+  }
+
+  public void testScanNone() throws IOException {
+    checkScan(TFile.COMPRESSION_NONE);
+  }
+
+  public void testScanGz() throws IOException {
+    checkScan(TFile.COMPRESSION_GZ);
+  }
+
+  public void testStats() throws IOException {
+    int count = 3000;
+    writeFile(count, TFile.COMPRESSION_GZ);
+    Reader reader = openReader();
+
+    ColumnStats id = reader.getColumnStats(0);
+    assertEquals(count, id.getRowCount());
+    assertEquals(0, id.getNullCount());
+    assertEquals("00000000", new String(id.getMin()));
+    assertEquals(String.format("%08d", count - 1), new String(id.getMax()));
+
+    ColumnStats sparse = reader.getColumnStats(2);
+    assertEquals(count - (count + 2) / 3, sparse.getNullCount());
+
+    // per row group ranges of the sorted id column do not overlap, so the
+    // stats locate a row without reading any data
+    byte[] wanted = String.format("%08d", 1234).getBytes();
+    int matches = 0;
+    long rows = 0;
+    for (int g = 0; g < reader.getRowGroupCount(); g++) {
+      ColumnStats stats = reader.getColumnStats(g, 0);
+      rows += stats.getRowCount();
+      assertEquals(reader.getRowCount(g), stats.getRowCount());
+      if (stats.mayContain(wanted, wanted)) {
+        matches++;
+        Scanner scanner = reader.createScanner(new int[] { 0 }, g, g + 1);
+        assertEquals(reader.getFirstRow(g), scanner.getRowNumber());
+        scanner.close();
+      }
+    }
+    assertEquals(1, matches);
+    assertEquals(count, rows);
+    reader.close();
+  }
+
+  public void testRowGroupAt() throws IOException {
+    int count = 5000;
+    writeFile(count, TFile.COMPRESSION_GZ);
+    long length = fs.getFileStatus(path).getLen();
+    Reader reader = openReader();
+
+    // adjacent byte ranges cover every row group exactly once
+    for (int splits = 1; splits < 20; splits++) {
+      long splitSize = length / splits + 1;
+      int expected = 0;
+      for (long offset = 0; offset < length; offset += splitSize) {
+        int begin = reader.getRowGroupAt(offset);
+        int end = reader.getRowGroupAt(offset + splitSize);
+        assertEquals(expected, begin);
+        expected = end;
+      }
+      assertEquals(reader.getRowGroupCount(), expected);
+    }
+    reader.close();
+  }
+
+  public void testEmpty() throws IOException {
+    writeFile(0, TFile.COMPRESSION_GZ);
+    Reader reader = openReader();
+    assertEquals(0, reader.getRowCount());
+    assertEquals(0, reader.getRowGroupCount());
+    assertNull(reader.getColumnStats(1).getMin());
+    Scanner scanner = reader.createScanner(new int[] { 1 });
+    assertFalse(scanner.next(new Row()));
+    scanner.close();
+    reader.close();
+  }
+
+  public void testRowWritable() throws IOException {
+    Row row = new Row();
+    row.setSize(3);
+    row.set(0, "a".getBytes());
+    row.set(1, null);
+    row.set(2, new byte[0]);
+    DataOutputBuffer out = new DataOutputBuffer();
+    row.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    Row copy = new Row();
+    copy.readFields(in);
+    assertEquals(3, copy.size());
+    assertValue("a".getBytes(), copy, 0);
+    assertValue(null, copy, 1);
+    assertValue(new byte[0], copy, 2);
+  }
+}
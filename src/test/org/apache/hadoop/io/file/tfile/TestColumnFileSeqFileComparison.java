@@ -0,0 +1,214 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.hadoop.io.file.tfile;
+
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.file.tfile.ColumnFile.Row;
+
+/**
+ * Compare scanning a table stored in a ColumnFile with scanning the same table
+ * stored row by row in a block-compressed SequenceFile. The SequenceFile scan
+ * must decompress every column; the ColumnFile scan of a single column only
+ * decompresses that column.
+ *
+ * Run main() with the number of rows and columns to get larger numbers.
+ */
+public class TestColumnFileSeqFileComparison extends TestCase {
+  private static final Log LOG =
+      LogFactory.getLog(TestColumnFileSeqFileComparison.class);
+
+  private static String ROOT =
+      System.getProperty("test.build.data", "/tmp/tfile-test");
+
+  private int rows = 50000;
+  private int columns = 8;
+  private String compress = TFile.COMPRESSION_GZ;
+
+  private Configuration conf;
+  private FileSystem fs;
+  private Path cfilePath;
+  private Path seqPath;
+  private String[] columnNames;
+  private byte[][] dictionary;
+
+  @Override
+  public void setUp() throws IOException {
+    conf = new Configuration();
+    cfilePath = new Path(ROOT, "TestColumnFileSeqFileComparison.cfile");
+    seqPath = new Path(ROOT, "TestColumnFileSeqFileComparison.seq");
+    fs = cfilePath.getFileSystem(conf);
+    columnNames = new String[columns];
+    for (int i = 0; i < columns; i++) {
+      columnNames[i] = "col" + i;
+    }
+    Random rng = new Random(1);
+    dictionary = new byte[1000][];
+    for (int i = 0; i < dictionary.length; i++) {
+      dictionary[i] = new byte[rng.nextInt(20) + 4];
+      for (int j = 0; j < dictionary[i].length; j++) {
+        dictionary[i][j] = (byte) ('a' + rng.nextInt(26));
+      }
+    }
+  }
+
+  @Override
+  public void tearDown() throws IOException {
+    fs.delete(cfilePath, true);
+    fs.delete(seqPath, true);
+  }
+
+  private void createFiles() throws IOException {
+    Random rng = new Random(2);
+    FSDataOutputStream out = fs.create(cfilePath);
+    ColumnFile.Writer cWriter =
+        new ColumnFile.Writer(out, columnNames, compress, conf);
+    SequenceFile.Writer sWriter =
+        SequenceFile.createWriter(fs, conf, seqPath, LongWritable.class,
+            Row.class, SequenceFile.CompressionType.BLOCK,
+            Compression.getCompressionAlgorithmByName(compress).getCodec());
+    LongWritable key = new LongWritable();
+    Row row = new Row();
+    row.setSize(columns);
+    byte[][] values = new byte[columns][];
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < columns; c++) {
+        values[c] = dictionary[rng.nextInt(dictionary.length)];
+        row.set(c, values[c]);
+      }
+      cWriter.append(values);
+      key.set(r);
+      sWriter.append(key, row);
+    }
+    cWriter.close();
+    out.close();
+    sWriter.close();
+  }
+
+  private long scanSeqFile(int column) throws IOException {
+    SequenceFile.Reader reader = new SequenceFile.Reader(fs, seqPath, conf);
+    LongWritable key = new LongWritable();
+    Row row = new Row();
+    long sum = 0;
+    try {
+      while (reader.next(key, row)) {
+        sum += checksum(row.get(column));
+      }
+    } finally {
+      reader.close();
+    }
+    return sum;
+  }
+
+  private long scanColumnFile(int[] projection) throws IOException {
+    FSDataInputStream in = fs.open(cfilePath);
+    ColumnFile.Reader reader =
+        new ColumnFile.Reader(in, fs.getFileStatus(cfilePath).getLen(), conf);
+    ColumnFile.Reader.Scanner scanner = reader.createScanner(projection);
+    Row row = new Row();
+    long sum = 0;
+    try {
+      while (scanner.next(row)) {
+        sum += checksum(row.get(0));
+      }
+    } finally {
+      scanner.close();
+      reader.close();
+      in.close();
+    }
+    return sum;
+  }
+
+  private static long checksum(BytesWritable b) {
+    long sum = 0;
+    for (int i = 0; i < b.getLength(); i++) {
+      sum = sum * 31 + b.getBytes()[i];
+    }
+    return sum;
+  }
+
+  public void testScanComparison() throws IOException {
+    NanoTimer timer = new NanoTimer(false);
+
+    timer.start();
+    createFiles();
+    timer.stop();
+    LOG.info(String.format("Wrote %d rows x %d columns in %s."
+        + " ColumnFile: %d bytes, SequenceFile: %d bytes", rows, columns,
+        timer, fs.getFileStatus(cfilePath).getLen(),
+        fs.getFileStatus(seqPath).getLen()));
+
+    int[] all = new int[columns];
+    for (int i = 0; i < columns; i++) {
+      all[i] = (i + 3) % columns;
+    }
+
+    timer.reset();
+    timer.start();
+    long seqSum = scanSeqFile(3);
+    timer.stop();
+    LOG.info("SequenceFile scan, all columns: " + timer);
+
+    timer.reset();
+    timer.start();
+    long allSum = scanColumnFile(all);
+    timer.stop();
+    LOG.info("ColumnFile scan, all columns: " + timer);
+
+    timer.reset();
+    timer.start();
+    long oneSum = scanColumnFile(new int[] { 3 });
+    timer.stop();
+    LOG.info("ColumnFile scan, one column: " + timer);
+
+    assertEquals(seqSum, allSum);
+    assertEquals(seqSum, oneSum);
+  }
+
+  public static void main(String[] args) throws IOException {
+    TestColumnFileSeqFileComparison test =
+        new TestColumnFileSeqFileComparison();
+    if (args.length > 0) {
+      test.rows = Integer.parseInt(args[0]);
+    }
+    if (args.length > 1) {
+      test.columns = Integer.parseInt(args[1]);
+    }
+    if (args.length > 2) {
+      test.compress = args[2];
+    }
+    test.setUp();
+    try {
+      test.testScanComparison();
+    } finally {
+      test.tearDown();
+    }
+  }
+}
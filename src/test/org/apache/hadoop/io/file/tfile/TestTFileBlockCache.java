@@ -0,0 +1,262 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.hadoop.io.file.tfile;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.file.tfile.RandomDistribution.DiscreteRNG;
+import org.apache.hadoop.io.file.tfile.TFile.Reader;
+import org.apache.hadoop.io.file.tfile.TFile.Writer;
+import org.apache.hadoop.io.file.tfile.TFile.Reader.Scanner;
+
+/**
+ * Test the cache of decompressed blocks and memory mapped reads, and measure
+ * point lookups against a TFile with and without them.
+ */
+public class TestTFileBlockCache extends TestCase {
+  private static final Log LOG = LogFactory.getLog(TestTFileBlockCache.class);
+
+  private static String ROOT =
+      System.getProperty("test.build.data", "/tmp/tfile-test");
+
+  private int records = 20000;
+  private int lookups = 5000;
+  private Configuration conf;
+  private FileSystem fs;
+  private Path path;
+
+  @Override
+  public void setUp() throws IOException {
+    conf = new Configuration();
+    path = new Path(ROOT, "TestTFileBlockCache");
+    fs = FileSystem.getLocal(conf);
+    BlockCache cache = BlockCache.getInstance(cacheConf(64 * 1024 * 1024));
+    cache.clear();
+  }
+
+  @Override
+  public void tearDown() throws IOException {
+    fs.delete(path, true);
+  }
+
+  private Configuration cacheConf(long size) {
+    Configuration c = new Configuration(conf);
+    c.setLong("tfile.blockcache.size", size);
+    return c;
+  }
+
+  private static byte[] key(int i) {
+    return String.format("key%08d", i).getBytes();
+  }
+
+  private static byte[] value(int i) {
+    StringBuilder sb = new StringBuilder();
+    for (int j = 0; j < 8; j++) {
+      sb.append("value").append(i % (j + 7)).append(' ');
+    }
+    return sb.toString().getBytes();
+  }
+
+  private void createTFile() throws IOException {
+    FSDataOutputStream out = fs.create(path);
+    Writer writer =
+        new Writer(out, 8 * 1024, TFile.COMPRESSION_GZ, "memcmp", conf);
+    for (int i = 0; i < records; i++) {
+      writer.append(key(i), value(i));
+    }
+    writer.close();
+    out.close();
+  }
+
+  private void lookup(Scanner scanner, int i, BytesWritable value)
+      throws IOException {
+    assertTrue(scanner.seekTo(key(i)));
+    scanner.entry().getValue(value);
+    assertTrue(Arrays.equals(value(i), Arrays.copyOf(value.get(), value
+        .getSize())));
+  }
+
+  /**
+   * Run skewed random lookups and return the number of lookups per second.
+   */
+  private double runLookups(Reader reader) throws IOException {
+    DiscreteRNG keyGen =
+        new RandomDistribution.Zipf(new Random(1), 0, records, 1.1);
+    BytesWritable value = new BytesWritable();
+    Scanner scanner = reader.createScanner();
+    NanoTimer timer = new NanoTimer(false);
+    timer.start();
+    for (int i = 0; i < lookups; i++) {
+      // spread the popular keys over the file
+      int k = (int) ((keyGen.nextInt() * 7919L) % records);
+      lookup(scanner, k, value);
+    }
+    timer.stop();
+    scanner.close();
+    return lookups * 1e9 / timer.read();
+  }
+
+  public void testBlockCache() {
+    BlockCache cache = new BlockCache(100);
+    assertNull(cache.get("a", 0));
+    cache.put("a", 0, new byte[40]);
+    cache.put("a", 40, new byte[40]);
+    assertNotNull(cache.get("a", 0));
+    assertNull(cache.get("b", 0));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(80, cache.getSize());
+
+    // "a"@40 is the least recently used
+    cache.put("b", 0, new byte[40]);
+    assertEquals(1, cache.getEvictionCount());
+    assertNull(cache.get("a", 40));
+    assertNotNull(cache.get("a", 0));
+    assertNotNull(cache.get("b", 0));
+
+    // too large to cache
+    cache.put("c", 0, new byte[101]);
+    assertNull(cache.get("c", 0));
+    assertEquals(80, cache.getSize());
+
+    cache.setCapacity(50);
+    assertEquals(1, cache.getBlockCount());
+    assertNotNull(cache.get("b", 0));
+
+    cache.clear();
+    assertEquals(0, cache.getSize());
+    assertEquals(0, cache.getBlockCount());
+  }
+
+  public void testDisabled() throws IOException {
+    assertNull(BlockCache.getInstance(conf));
+    createTFile();
+    Reader reader = new Reader(fs, path, conf);
+    runLookups(reader);
+    reader.close();
+  }
+
+  public void testCachedLookups() throws IOException {
+    createTFile();
+    BlockCache cache = BlockCache.getInstance(cacheConf(64 * 1024 * 1024));
+    cache.setCapacity(64 * 1024 * 1024);
+    long misses = cache.getMissCount();
+    Reader reader = new Reader(fs, path, cacheConf(64 * 1024 * 1024));
+    runLookups(reader);
+    int blocks = reader.readerBCF.getBlockCount();
+    // every block is decompressed at most once
+    assertTrue(cache.getMissCount() - misses <= blocks);
+    assertTrue(cache.getBlockCount() <= blocks);
+    reader.close();
+
+    // a second reader of the same file shares the cached blocks
+    misses = cache.getMissCount();
+    reader = new Reader(fs, path, cacheConf(64 * 1024 * 1024));
+    runLookups(reader);
+    assertEquals(misses, cache.getMissCount());
+    reader.close();
+
+    // a reader configured with a smaller cache does not shrink the shared one
+    reader = new Reader(fs, path, cacheConf(1024));
+    assertEquals(64 * 1024 * 1024, cache.getCapacity());
+    misses = cache.getMissCount();
+    runLookups(reader);
+    assertEquals(misses, cache.getMissCount());
+    reader.close();
+
+    // a small cache evicts, and still returns the right values
+    cache.clear();
+    cache.setCapacity(64 * 1024);
+    reader = new Reader(fs, path, cacheConf(64 * 1024));
+    runLookups(reader);
+    assertTrue(cache.getSize() <= 64 * 1024);
+    assertTrue(cache.getEvictionCount() > 0);
+    reader.close();
+  }
+
+  public void testMappedLookups() throws IOException {
+    createTFile();
+    Configuration c = new Configuration(conf);
+    c.setBoolean("tfile.local.mmap", true);
+    Reader reader = new Reader(fs, path, c);
+    Scanner scanner = reader.createScanner();
+    BytesWritable value = new BytesWritable();
+    for (int i = 0; i < records; i += 97) {
+      lookup(scanner, i, value);
+    }
+    scanner.close();
+    runLookups(reader);
+    reader.close();
+  }
+
+  public void testLookupPerformance() throws IOException {
+    createTFile();
+    Reader reader = new Reader(fs, path, conf);
+    LOG.info(String.format("%d records, %d blocks, file size %d", records,
+        reader.readerBCF.getBlockCount(), fs.getFileStatus(path).getLen()));
+    LOG.info(String.format("no cache: %.0f lookups/s", runLookups(reader)));
+    reader.close();
+
+    long[] sizes = { 512 * 1024, 2 * 1024 * 1024, 64 * 1024 * 1024 };
+    for (long size : sizes) {
+      for (boolean mmap : new boolean[] { false, true }) {
+        Configuration c = cacheConf(size);
+        c.setBoolean("tfile.local.mmap", mmap);
+        BlockCache cache = BlockCache.getInstance(c);
+        cache.setCapacity(size);
+        cache.clear();
+        long hits = cache.getHitCount();
+        long misses = cache.getMissCount();
+        reader = new Reader(fs, path, c);
+        double rate = runLookups(reader);
+        reader.close();
+        hits = cache.getHitCount() - hits;
+        misses = cache.getMissCount() - misses;
+        LOG.info(String.format(
+            "cache %dKB%s: %.0f lookups/s, hit ratio %.3f", size / 1024,
+            mmap ? ", mmap" : "", rate, (double) hits / (hits + misses)));
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    TestTFileBlockCache test = new TestTFileBlockCache();
+    if (args.length > 0) {
+      test.records = Integer.parseInt(args[0]);
+    }
+    if (args.length > 1) {
+      test.lookups = Integer.parseInt(args[1]);
+    }
+    test.setUp();
+    try {
+      test.testLookupPerformance();
+    } finally {
+      test.tearDown();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.mapred;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.file.tfile.ColumnFile;
+
+public class TestColumnFileInputFormat extends TestCase {
+  private static int MAX_LENGTH = 20000;
+  private static Configuration conf = new Configuration();
+
+  public void testFormat() throws Exception {
+    JobConf job = new JobConf(conf);
+    job.setInt("tfile.column.rowgroup.size", 8 * 1024);
+    FileSystem fs = FileSystem.getLocal(conf);
+    Path dir = new Path(System.getProperty("test.build.data",".") + "/mapred");
+    Path file = new Path(dir, "test.cfile");
+
+    Reporter reporter = Reporter.NULL;
+
+    int seed = new Random().nextInt();
+    Random random = new Random(seed);
+
+    fs.delete(dir, true);
+
+    FileInputFormat.setInputPaths(job, dir);
+    ColumnFileInputFormat.setReadColumns(job, "c", "a");
+
+    // for a variety of lengths
+    for (int length = 0; length < MAX_LENGTH;
+         length+= random.nextInt(MAX_LENGTH/10)+1) {
+
+      // create a file with length rows
+      FSDataOutputStream out = fs.create(file);
+      ColumnFile.Writer writer = new ColumnFile.Writer(out,
+          new String[] { "a", "b", "c" }, "gz", job);
+      try {
+        for (int i = 0; i < length; i++) {
+          byte[] b = new byte[random.nextInt(100)];
+          random.nextBytes(b);
+          writer.append(new byte[][] {
+              Integer.toString(i).getBytes(), b,
+              (i % 2 == 0) ? null : Integer.toString(-i).getBytes() });
+        }
+      } finally {
+        writer.close();
+        out.close();
+      }
+
+      // try splitting the file in a variety of sizes
+      InputFormat<LongWritable, ColumnFile.Row> format =
+        new ColumnFileInputFormat();
+      LongWritable key = new LongWritable();
+      for (int i = 0; i < 3; i++) {
+        int numSplits = random.nextInt(20) + 1;
+        InputSplit[] splits = format.getSplits(job, numSplits);
+
+        // check each split
+        BitSet bits = new BitSet(length);
+        for (int j = 0; j < splits.length; j++) {
+          RecordReader<LongWritable, ColumnFile.Row> reader =
+            format.getRecordReader(splits[j], job, reporter);
+          ColumnFile.Row value = reader.createValue();
+          try {
+            while (reader.next(key, value)) {
+              int row = (int) key.get();
+              assertFalse("Row in multiple partitions.", bits.get(row));
+              bits.set(row);
+              assertEquals(2, value.size());
+              if (row % 2 == 0) {
+                assertTrue(value.isNull(0));
+              } else {
+                assertEquals(Integer.toString(-row), toString(value.get(0)));
+              }
+              assertEquals(Integer.toString(row), toString(value.get(1)));
+            }
+          } finally {
+            reader.close();
+          }
+        }
+        assertEquals("Some rows in no partition.", length, bits.cardinality());
+      }
+    }
+  }
+
+  private static String toString(BytesWritable b) {
+    return new String(b.getBytes(), 0, b.getLength());
+  }
+
+  public static void main(String[] args) throws Exception {
+    new TestColumnFileInputFormat().testFormat();
+  }
+}
@@ -26,6 +26,7 @@ import org.apache.commons.logging.*;
 import org.apache.hadoop.fs.*;
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.io.compress.*;
+import org.apache.hadoop.io.simpleseekableformat.SimpleSeekableFormatCodec;
 import org.apache.hadoop.util.LineReader;
 import org.apache.hadoop.util.ReflectionUtils;
 
@@ -302,6 +303,64 @@ public class TestTextInputFormat extends TestCase {
     assertEquals("Compressed empty file length == 0", 0, results.size());
   }
   
+  /**
+   * Test that text files written with SimpleSeekableFormatCodec are split
+   * and that every line is read exactly once, whatever the split size.
+   */
+  public static void testSimpleSeekableFormat() throws IOException {
+    JobConf job = new JobConf();
+    job.set("io.compression.codecs", SimpleSeekableFormatCodec.class.getName());
+    job.setInt("fileformat.ssf.max.uncompressed.segment.length", 10000);
+    CompressionCodec ssf =
+      ReflectionUtils.newInstance(SimpleSeekableFormatCodec.class, job);
+    localFs.delete(workDir, true);
+    Path file = new Path(workDir, "test.txt.ssf");
+
+    // Write the lines in chunks that do not end at line boundaries, so that
+    // lines cross data segments.
+    List<String> lines = new ArrayList<String>();
+    StringBuilder contents = new StringBuilder();
+    for (int i = 0; i < 300000; i++) {
+      String line = "line " + i;
+      lines.add(line);
+      contents.append(line).append('\n');
+    }
+    byte[] bytes = contents.toString().getBytes();
+    OutputStream out = ssf.createOutputStream(localFs.create(file));
+    for (int off = 0; off < bytes.length; off += 777) {
+      out.write(bytes, off, Math.min(777, bytes.length - off));
+    }
+    out.close();
+    long fileLength = localFs.getFileStatus(file).getLen();
+    assertTrue("file spans several metadata blocks", fileLength > 3 << 20);
+
+    FileInputFormat.setInputPaths(job, workDir);
+    TextInputFormat format = new TextInputFormat();
+    format.configure(job);
+    for (int numSplits : new int[] {1, 2, 3, 7, 20}) {
+      InputSplit[] splits = format.getSplits(job, numSplits);
+      assertTrue("number of splits", splits.length >= numSplits);
+      int count = 0;
+      long offset = 0;
+      for (InputSplit split : splits) {
+        RecordReader<LongWritable, Text> reader =
+          format.getRecordReader(split, job, voidReporter);
+        LongWritable key = reader.createKey();
+        Text value = reader.createValue();
+        while (reader.next(key, value)) {
+          assertEquals("line " + count + " with " + numSplits + " splits",
+                       lines.get(count), value.toString());
+          assertEquals("offset of line " + count, offset, key.get());
+          offset += value.getLength() + 1;
+          count++;
+        }
+        reader.close();
+      }
+      assertEquals("lines read with " + numSplits + " splits",
+                   lines.size(), count);
+    }
+  }
+
   private static String unquote(String in) {
     StringBuffer result = new StringBuffer();
     for(int i=0; i < in.length(); ++i) {
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.mapreduce.lib.input;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.simpleseekableformat.SimpleSeekableFormatCodec;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.util.ReflectionUtils;
+
+public class TestTextInputFormat extends TestCase {
+  private static Path workDir =
+    new Path(new Path(System.getProperty("test.build.data", "."), "data"),
+             "TestTextInputFormatNewApi");
+
+  /**
+   * Test that text files written with SimpleSeekableFormatCodec are split
+   * and that every line is read exactly once, whatever the split size.
+   */
+  public void testSimpleSeekableFormat() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set("io.compression.codecs",
+             SimpleSeekableFormatCodec.class.getName());
+    conf.setInt("fileformat.ssf.max.uncompressed.segment.length", 10000);
+    FileSystem localFs = FileSystem.getLocal(conf);
+    CompressionCodec ssf =
+      ReflectionUtils.newInstance(SimpleSeekableFormatCodec.class, conf);
+    localFs.delete(workDir, true);
+    Path file = new Path(workDir, "test.txt.ssf");
+
+    // Write the lines in chunks that do not end at line boundaries, so that
+    // lines cross data segments.
+    List<String> lines = new ArrayList<String>();
+    StringBuilder contents = new StringBuilder();
+    for (int i = 0; i < 300000; i++) {
+      String line = "line " + i;
+      lines.add(line);
+      contents.append(line).append('\n');
+    }
+    byte[] bytes = contents.toString().getBytes();
+    OutputStream out = ssf.createOutputStream(localFs.create(file));
+    for (int off = 0; off < bytes.length; off += 777) {
+      out.write(bytes, off, Math.min(777, bytes.length - off));
+    }
+    out.close();
+    long fileLength = localFs.getFileStatus(file).getLen();
+    assertTrue("file spans several metadata blocks", fileLength > 3 << 20);
+
+    conf.set("mapred.input.dir", workDir.toString());
+    TextInputFormat format = new TextInputFormat();
+    for (int numSplits : new int[] {1, 2, 3, 7, 20}) {
+      conf.setLong("mapred.max.split.size",
+                   (fileLength + numSplits - 1) / numSplits);
+      List<InputSplit> splits =
+        format.getSplits(new JobContext(conf, new JobID()));
+      assertTrue("number of splits", splits.size() >= numSplits);
+      int count = 0;
+      long offset = 0;
+      for (InputSplit split : splits) {
+        TaskAttemptContext context =
+          new TaskAttemptContext(conf, new TaskAttemptID());
+        RecordReader<LongWritable, Text> reader =
+          format.createRecordReader(split, context);
+        assertTrue("reader class",
+                   reader instanceof SimpleSeekableFormatLineRecordReader);
+        reader.initialize(split, context);
+        while (reader.nextKeyValue()) {
+          Text value = reader.getCurrentValue();
+          assertEquals("line " + count + " with " + numSplits + " splits",
+                       lines.get(count), value.toString());
+          assertEquals("offset of line " + count, offset,
+                       reader.getCurrentKey().get());
+          offset += value.getLength() + 1;
+          count++;
+        }
+        reader.close();
+      }
+      assertEquals("lines read with " + numSplits + " splits",
+                   lines.size(), count);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.util;
+
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.fs.ChecksumException;
+
+public class TestDataChecksum extends TestCase {
+
+  private static final int BYTES_PER_CHECKSUM = 512;
+
+  public void testCrc32cKnownValue() {
+    // standard check value for CRC32C
+    byte[] data = "123456789".getBytes();
+    PureJavaCrc32C crc = new PureJavaCrc32C();
+    crc.update(data, 0, data.length);
+    assertEquals(0xE3069283L, crc.getValue());
+    crc.reset();
+    assertEquals(0L, crc.getValue());
+  }
+
+  public void testCrc32cBulkMatchesBytewise() {
+    Random r = new Random(1);
+    byte[] data = new byte[1000];
+    r.nextBytes(data);
+    // every alignment and length, to exercise the 8 byte loop and the tail
+    for (int off = 0; off < 16; off++) {
+      for (int len = 0; len < 100; len++) {
+        PureJavaCrc32C bulk = new PureJavaCrc32C();
+        PureJavaCrc32C bytewise = new PureJavaCrc32C();
+        bulk.update(data, off, len);
+        for (int i = off; i < off + len; i++) {
+          bytewise.update(data[i]);
+        }
+        assertEquals(bytewise.getValue(), bulk.getValue());
+      }
+    }
+  }
+
+  public void testChecksumTypes() throws Exception {
+    assertEquals(DataChecksum.CHECKSUM_CRC32,
+                 DataChecksum.getChecksumTypeByName("CRC32"));
+    assertEquals(DataChecksum.CHECKSUM_CRC32C,
+                 DataChecksum.getChecksumTypeByName("crc32c"));
+    try {
+      DataChecksum.getChecksumTypeByName("MD5");
+      fail("Unknown checksum type accepted");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    // the type survives a round trip through the header
+    DataChecksum sum = DataChecksum.newDataChecksum(
+        DataChecksum.CHECKSUM_CRC32C, BYTES_PER_CHECKSUM);
+    DataChecksum read = DataChecksum.newDataChecksum(sum.getHeader(), 0);
+    assertEquals(DataChecksum.CHECKSUM_CRC32C, read.getChecksumType());
+    assertEquals(BYTES_PER_CHECKSUM, read.getBytesPerChecksum());
+    assertEquals(4, read.getChecksumSize());
+  }
+
+  public void testChunkedSums() throws Exception {
+    checkChunkedSums(DataChecksum.CHECKSUM_CRC32);
+    checkChunkedSums(DataChecksum.CHECKSUM_CRC32C);
+  }
+
+  private void checkChunkedSums(int type) throws Exception {
+    DataChecksum sum = DataChecksum.newDataChecksum(type, BYTES_PER_CHECKSUM);
+    Random r = new Random(type);
+    // a partial last chunk
+    int dataLen = 5 * BYTES_PER_CHECKSUM + 100;
+    byte[] data = new byte[dataLen + 10];
+    r.nextBytes(data);
+    int numChunks = 6;
+    byte[] sums = new byte[numChunks * sum.getChecksumSize() + 3];
+    sum.calculateChunkedSums(data, 10, dataLen, sums, 3);
+
+    // the bulk sums match the ones computed chunk by chunk
+    for (int i = 0; i < numChunks; i++) {
+      int n = Math.min(BYTES_PER_CHECKSUM, dataLen - i * BYTES_PER_CHECKSUM);
+      sum.update(data, 10 + i * BYTES_PER_CHECKSUM, n);
+      assertTrue(sum.compare(sums, 3 + i * sum.getChecksumSize()));
+      sum.reset();
+    }
+    if (type == DataChecksum.CHECKSUM_CRC32) {
+      CRC32 crc = new CRC32();
+      crc.update(data, 10, BYTES_PER_CHECKSUM);
+      sum.update(data, 10, BYTES_PER_CHECKSUM);
+      assertEquals(crc.getValue(), sum.getValue());
+      sum.reset();
+    }
+
+    sum.verifyChunkedSums(data, 10, dataLen, sums, 3, "test", 0);
+
+    // corrupt a byte in the fourth chunk
+    data[10 + 3 * BYTES_PER_CHECKSUM + 7] ^= 1;
+    try {
+      sum.verifyChunkedSums(data, 10, dataLen, sums, 3, "test", 1000);
+      fail("Corrupt data was not detected");
+    } catch (ChecksumException ce) {
+      assertEquals(1000 + 3 * BYTES_PER_CHECKSUM, ce.getPos());
+    }
+  }
+}
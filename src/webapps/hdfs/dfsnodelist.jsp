@@ -84,6 +84,8 @@ void generateDecommissioningNodeData(JspWriter out, DatanodeDescriptor d,
         + d.decommissioningStatus.getUnderReplicatedInOpenFiles()
         + "<td class=\"timesincedecommissionrequest\">"
         + hoursSinceDecommStarted + " hrs " + remainderMinutes + " mins"
+        + "<td class=\"blockspersecond\">"
+        + String.format("%.1f", d.decommissioningStatus.getBlocksPerSecond())
         + "\n");
 }
 
@@ -301,6 +303,8 @@ throws IOException {
 	                      + "> Under Replicated Blocks <br> In Files Under Construction"
 	                      + " <th " + NodeHeaderStr("timesincedecommissionrequest")
 	                      + "> Time Since Decommissioning Started"
+	                      + " <th " + NodeHeaderStr("blockspersecond")
+	                      + "> Replicated Blocks <br> Per Second"
                           );
                           jspHelper.sortNodeList(decommissioning, "name", "ASC");
                           for (int i = 0; i < decommissioning.size(); i++) {